@@ -0,0 +1,111 @@
+package com.example.android.newsfeed;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scrolls and refreshes a 500 article feed, counting how many rows get bound and how long
+ * each step takes on the main thread.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NewsArticleAdapterBenchmark {
+
+    private static final String LOG_TAG = NewsArticleAdapterBenchmark.class.getSimpleName();
+    private static final int FEED_SIZE = 500;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int SCROLL_STEPS = 100;
+    private static final int SCROLL_STEP_PX = 120;
+
+    private NewsArticleAdapter mAdapter;
+    private RecyclerView mRecyclerView;
+
+    private static List<NewsArticle> feed(int changedPosition) {
+        List<NewsArticle> articles = new ArrayList<>(FEED_SIZE);
+        for (int i = 0; i < FEED_SIZE; i++) {
+            String headline = i == changedPosition ? "Updated headline " + i : "Headline " + i;
+            articles.add(new NewsArticle(NewsArticle.NO_THUMBNAIL_URL, headline,
+                    PublicationDates.parse("2017-04-01T10:00:00Z"), "https://www.theguardian.com/article/" + i));
+        }
+        return articles;
+    }
+
+    private void layout() {
+        mRecyclerView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mRecyclerView.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    @Test
+    public void scrollAndRefresh_bindsOnlyChangedRows() throws Exception {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        final long[] bindsAndNanos = new long[6];
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mAdapter = new NewsArticleAdapter(context, new FeedPager(FEED_SIZE, 0, 1, 1));
+                mRecyclerView = new RecyclerView(context);
+                mRecyclerView.setLayoutManager(new LinearLayoutManager(context));
+                mRecyclerView.setAdapter(mAdapter);
+                mAdapter.setArticles(feed(-1));
+                layout();
+
+                int binds = mAdapter.getBindCount();
+                long start = System.nanoTime();
+                for (int i = 0; i < SCROLL_STEPS; i++) {
+                    mRecyclerView.scrollBy(0, SCROLL_STEP_PX);
+                    layout();
+                }
+                bindsAndNanos[0] = mAdapter.getBindCount() - binds;
+                bindsAndNanos[1] = System.nanoTime() - start;
+            }
+        });
+
+        // Refresh with one changed row on screen, diffed off the main thread as the app does.
+        final int firstVisible = ((LinearLayoutManager) mRecyclerView.getLayoutManager())
+                .findFirstVisibleItemPosition();
+        final List<NewsArticle> refreshed = feed(firstVisible + 1);
+        final List<NewsArticle> previous = feed(-1);
+        final DiffUtil.DiffResult diff = NewsArticleAdapter.calculateDiff(previous, refreshed);
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                int binds = mAdapter.getBindCount();
+                long start = System.nanoTime();
+                mAdapter.applyDiff(refreshed, diff);
+                layout();
+                bindsAndNanos[2] = mAdapter.getBindCount() - binds;
+                bindsAndNanos[3] = System.nanoTime() - start;
+
+                // What clearing and re-adding the whole list used to cost.
+                binds = mAdapter.getBindCount();
+                start = System.nanoTime();
+                mAdapter.notifyDataSetChanged();
+                layout();
+                bindsAndNanos[4] = mAdapter.getBindCount() - binds;
+                bindsAndNanos[5] = System.nanoTime() - start;
+            }
+        });
+
+        Log.i(LOG_TAG, "scroll: " + bindsAndNanos[0] + " binds in " + bindsAndNanos[1] / 1000 + " us");
+        Log.i(LOG_TAG, "diffed refresh: " + bindsAndNanos[2] + " binds in " + bindsAndNanos[3] / 1000 + " us");
+        Log.i(LOG_TAG, "full refresh: " + bindsAndNanos[4] + " binds in " + bindsAndNanos[5] / 1000 + " us");
+        assertTrue(bindsAndNanos[2] < bindsAndNanos[4]);
+    }
+}
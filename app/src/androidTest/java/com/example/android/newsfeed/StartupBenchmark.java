@@ -0,0 +1,36 @@
+package com.example.android.newsfeed;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Launches the feed and logs how long each phase took until its first frame, with the
+ * initializers running alongside the inflation as they do in the app.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+
+    private static final String LOG_TAG = StartupBenchmark.class.getSimpleName();
+
+    @Rule
+    public final ActivityTestRule<NewsFeedActivity> mActivityRule =
+            new ActivityTestRule<>(NewsFeedActivity.class, false, false);
+
+    @Test
+    public void launch_reachesFirstFrame() throws Exception {
+        mActivityRule.launchActivity(null);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        String phases = StartupTrace.dump();
+        Log.i(LOG_TAG, "launch phases:\n" + phases);
+        assertTrue(phases, phases.contains("first-frame"));
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.android.newsfeed;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Thrown when The Guardian answered, but not with articles: an error status such as 429 Too
+ * Many Requests or 503, or a body that couldn't be parsed.
+ */
+public class ApiException extends IOException {
+
+    /**
+     * Status code used for a response that came back 200 but couldn't be parsed.
+     */
+    public static final int MALFORMED_RESPONSE = -1;
+
+    /**
+     * Status code used for a prefetch the {@link RequestScheduler} dropped without making it.
+     */
+    public static final int DROPPED = -2;
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final int mStatusCode;
+    private final long mRetryAfterMillis;
+
+    /**
+     * Constructs a new {@link ApiException}.
+     *
+     * @param statusCode       HTTP status of the response, or {@link #MALFORMED_RESPONSE}
+     * @param retryAfterMillis how long the server asked us to wait, or 0 if it didn't say
+     */
+    public ApiException(int statusCode, long retryAfterMillis) {
+        super("HTTP " + statusCode);
+        mStatusCode = statusCode;
+        mRetryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Constructs a new {@link ApiException} for a request that was never made because the
+     * rate limit budget was tight.
+     */
+    public static ApiException dropped() {
+        return new ApiException(DROPPED, 0);
+    }
+
+    public ApiException(String message, Throwable cause) {
+        super(message, cause);
+        mStatusCode = MALFORMED_RESPONSE;
+        mRetryAfterMillis = 0;
+    }
+
+    public int getStatusCode() {
+        return mStatusCode;
+    }
+
+    public long getRetryAfterMillis() {
+        return mRetryAfterMillis;
+    }
+
+    /**
+     * Return whether the server said the rate limit was exceeded.
+     */
+    public boolean isRateLimited() {
+        return mStatusCode == TOO_MANY_REQUESTS;
+    }
+
+    /**
+     * Return whether the given failure is a request the {@link RequestScheduler} dropped.
+     */
+    public static boolean isDropped(IOException e) {
+        return e instanceof ApiException && ((ApiException) e).getStatusCode() == DROPPED;
+    }
+
+    /**
+     * Return whether the same request could succeed if made again: the server was overloaded
+     * or down rather than the request being wrong.
+     */
+    public boolean isRetriable() {
+        return mStatusCode == TOO_MANY_REQUESTS || mStatusCode >= 500;
+    }
+
+    /**
+     * Return whether the given failure is worth retrying. Network errors such as timeouts and
+     * reset connections are; a URL that can't be requested at all is not.
+     */
+    public static boolean isRetriable(IOException e) {
+        if (e instanceof ApiException) {
+            return ((ApiException) e).isRetriable();
+        }
+        return !(e instanceof MalformedURLException);
+    }
+
+    /**
+     * Parse a Retry-After header, given either as a number of seconds or as an HTTP date, into
+     * milliseconds from nowMillis. Returns 0 if the header is missing or can't be parsed.
+     */
+    public static long parseRetryAfter(String value, long nowMillis) {
+        if (value == null || value.trim().isEmpty()) {
+            return 0;
+        }
+        value = value.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            // Not a number of seconds, so it should be a date.
+        }
+        SimpleDateFormat httpDate = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        httpDate.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return Math.max(0, httpDate.parse(value).getTime() - nowMillis);
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.android.newsfeed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Persistent cache of parsed {@link NewsArticle} lists, keyed by request URL.
+ * <p>
+ * Each entry is one small binary file in the cache directory. The cache is bounded by entry
+ * count and total bytes and evicts the least recently used entries first, leaving out the
+ * pinned ones, which the background sync keeps for use without a connection. A
+ * {@link LazyArticleList} is stored as its response body, so caching it doesn't decode every
+ * article, and it is read back as one.
+ */
+public class ArticleCache {
+
+    /**
+     * Bump whenever the file layout below changes; older files are then ignored.
+     */
+    private static final int FORMAT_VERSION = 3;
+
+    /**
+     * How the articles of an entry are stored: as one record per article, or as the response
+     * body of a {@link LazyArticleList}.
+     */
+    private static final byte KIND_RECORDS = 0;
+    private static final byte KIND_RESPONSE = 1;
+
+    private static final String FILE_SUFFIX = ".articles";
+
+    /**
+     * Lists the file names of the pinned entries, so they stay pinned in the next process.
+     */
+    private static final String PINNED_FILE = "pinned";
+
+    private final LruDirectory mFiles;
+
+    /**
+     * File names of the entries that are never evicted. Loaded before anything else is read.
+     */
+    private Set<String> mPinned;
+
+    /**
+     * A cached list together with the time it was fetched from the network.
+     */
+    public static class Entry {
+        public final List<NewsArticle> articles;
+        public final long fetchedAtMillis;
+
+        public Entry(List<NewsArticle> articles, long fetchedAtMillis) {
+            this.articles = articles;
+            this.fetchedAtMillis = fetchedAtMillis;
+        }
+    }
+
+    /**
+     * Constructs a new {@link ArticleCache}.
+     *
+     * @param directory  to keep the cache files in
+     * @param maxEntries maximum number of cached lists
+     * @param maxBytes   maximum total size of the cache files
+     */
+    public ArticleCache(File directory, int maxEntries, long maxBytes) {
+        mFiles = new LruDirectory(directory, FILE_SUFFIX, maxEntries, maxBytes);
+    }
+
+    /**
+     * Return the cached entry for the given key, or null if there is none.
+     */
+    public synchronized Entry get(String key) {
+        ensurePinned();
+        String fileName = mFiles.fileName(key);
+        if (!mFiles.contains(fileName)) {
+            return null;
+        }
+        Entry entry = null;
+        try {
+            entry = read(mFiles.getFile(fileName), key);
+        } catch (IOException e) {
+            // Unreadable files are treated as a miss and dropped below.
+        }
+        if (entry == null) {
+            mFiles.delete(fileName);
+            return null;
+        }
+        mFiles.touch(fileName);
+        return entry;
+    }
+
+    /**
+     * Store the given list under the given key, evicting old entries if needed.
+     */
+    public synchronized void put(String key, List<NewsArticle> articles, long fetchedAtMillis)
+            throws IOException {
+        ensurePinned();
+        String fileName = mFiles.fileName(key);
+        File temp = mFiles.newTempFile(fileName);
+        write(temp, key, articles, fetchedAtMillis);
+        mFiles.commit(fileName, temp);
+    }
+
+    /**
+     * Keep the entries of the given keys however long they go unused, in place of the ones
+     * pinned before. Pinned entries still count towards the bounds, but only the others are
+     * evicted to stay within them.
+     */
+    public synchronized void setPinned(Collection<String> keys) throws IOException {
+        ensurePinned();
+        Set<String> pinned = new HashSet<>();
+        for (String key : keys) {
+            pinned.add(mFiles.fileName(key));
+        }
+        if (pinned.equals(mPinned)) {
+            return;
+        }
+        File temp = mFiles.newTempFile(PINNED_FILE);
+        DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(pinned.size());
+            for (String fileName : pinned) {
+                output.writeUTF(fileName);
+            }
+        } finally {
+            output.close();
+        }
+        mFiles.replace(PINNED_FILE, temp);
+        mPinned = pinned;
+        mFiles.setPinned(pinned);
+    }
+
+    public synchronized boolean isPinned(String key) {
+        ensurePinned();
+        return mPinned.contains(mFiles.fileName(key));
+    }
+
+    /**
+     * Remove every cached entry, pinned or not.
+     */
+    public synchronized void clear() {
+        ensurePinned();
+        mFiles.clear();
+        mPinned = new HashSet<>();
+        mFiles.setPinned(mPinned);
+        mFiles.getFile(PINNED_FILE).delete();
+    }
+
+    public synchronized int size() {
+        ensurePinned();
+        return mFiles.size();
+    }
+
+    public synchronized long sizeInBytes() {
+        ensurePinned();
+        return mFiles.sizeInBytes();
+    }
+
+    /**
+     * Read which entries are pinned, before the directory is first listed and trimmed.
+     */
+    private void ensurePinned() {
+        if (mPinned == null) {
+            mPinned = readPinned(mFiles.getFile(PINNED_FILE));
+            mFiles.setPinned(mPinned);
+        }
+    }
+
+    /**
+     * Read the file names listed in the given pinned file, or none if it is missing or
+     * unreadable.
+     */
+    private static Set<String> readPinned(File file) {
+        Set<String> pinned = new HashSet<>();
+        if (!file.isFile()) {
+            return pinned;
+        }
+        try {
+            DataInputStream input = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (input.readInt() != FORMAT_VERSION) {
+                    return pinned;
+                }
+                for (int count = input.readInt(); count > 0; count--) {
+                    pinned.add(input.readUTF());
+                }
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            // Nothing pinned then; the next sync pins its entries again.
+            pinned.clear();
+        }
+        return pinned;
+    }
+
+    private static void write(File file, String key, List<NewsArticle> articles, long fetchedAtMillis)
+            throws IOException {
+        DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            output.writeInt(FORMAT_VERSION);
+            output.writeUTF(key);
+            output.writeLong(fetchedAtMillis);
+            if (articles instanceof LazyArticleList) {
+                byte[] body = ((LazyArticleList) articles).getBody();
+                output.writeByte(KIND_RESPONSE);
+                output.writeInt(body.length);
+                output.write(body);
+            } else {
+                output.writeByte(KIND_RECORDS);
+                output.writeInt(articles.size());
+                for (NewsArticle newsArticle : articles) {
+                    output.writeUTF(newsArticle.hasThumbnail() ? newsArticle.getImageId() : "");
+                    output.writeUTF(newsArticle.getHeadline());
+                    output.writeLong(newsArticle.getPublicationTime());
+                    output.writeUTF(newsArticle.getUrl());
+                }
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Read the entry stored in the given file, or return null if it belongs to another key
+     * or was written in an older format.
+     */
+    private static Entry read(File file, String key) throws IOException {
+        DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != FORMAT_VERSION || !key.equals(input.readUTF())) {
+                return null;
+            }
+            long fetchedAtMillis = input.readLong();
+            byte kind = input.readByte();
+            if (kind == KIND_RESPONSE) {
+                int length = input.readInt();
+                if (length < 0 || length > file.length()) {
+                    return null;
+                }
+                byte[] body = new byte[length];
+                input.readFully(body);
+                try {
+                    return new Entry(LazyArticleList.index(body), fetchedAtMillis);
+                } catch (IllegalStateException e) {
+                    return null;
+                }
+            } else if (kind != KIND_RECORDS) {
+                return null;
+            }
+            int count = input.readInt();
+            List<NewsArticle> articles = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String imageId = input.readUTF();
+                String headline = input.readUTF();
+                long publicationTime = input.readLong();
+                String url = input.readUTF();
+                articles.add(new NewsArticle(imageId.isEmpty() ? null : imageId, headline,
+                        publicationTime, url));
+            }
+            return new Entry(articles, fetchedAtMillis);
+        } finally {
+            input.close();
+        }
+    }
+}
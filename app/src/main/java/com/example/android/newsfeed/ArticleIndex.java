@@ -0,0 +1,500 @@
+package com.example.android.newsfeed;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory full-text index over every article the app has fetched, for answering
+ * search-as-you-type on the device while the remote query is still running.
+ * <p>
+ * An inverted index maps each word of a headline, plus the section the article's URL is filed
+ * under, to the articles containing it. An article matches a query when each word of the
+ * query but the last is one of its terms, and one of its terms starts with the last word,
+ * which is usually still being typed; terms are kept sorted to find those. Words are runs of
+ * letters and digits in lower case, so "covid-19" matches "Covid-19" and "covid 19" alike.
+ * <p>
+ * Articles are added a list at a time under a key, such as the request URL they were fetched
+ * with. The index is bounded like {@link ArticleCache}, by number of lists and total bytes, and
+ * drops the least recently added lists first; an article stays while any list holding it does.
+ * <p>
+ * The index keeps where each article is rather than the article: the list and position it was
+ * added from. The headline and URL of a {@link LazyArticleList} are read from its bytes, so
+ * indexing one doesn't decode its articles, and only the articles a search returns are. All
+ * methods are safe to call from any thread.
+ */
+public class ArticleIndex {
+
+    private final int mMaxEntries;
+    private final long mMaxBytes;
+
+    /**
+     * The list every indexed article was added from, by document number, with null for dropped
+     * ones until the index is compacted. The other arrays are by document number as well.
+     */
+    private final List<List<NewsArticle>> mSources = new ArrayList<>();
+
+    /**
+     * Position of each article in its list, its publication time and its URL key.
+     */
+    private int[] mPositions = new int[16];
+    private long[] mPublicationTimes = new long[16];
+    private String[] mUrlKeys = new String[16];
+
+    /**
+     * Number of lists holding each document, and rough bytes each takes up.
+     */
+    private int[] mOwners = new int[16];
+    private long[] mDocumentBytes = new long[16];
+
+    /**
+     * Document numbers of each list, by key, least recently added first.
+     */
+    private final LinkedHashMap<String, int[]> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Document number of every indexed article, by {@link NewsArticle#getUrlKey()}, so an
+     * article is only indexed once.
+     */
+    private final Map<String, Integer> mDocumentsByUrl = new HashMap<>();
+
+    /**
+     * Document numbers containing each term, in increasing order.
+     */
+    private final TreeMap<String, Postings> mTerms = new TreeMap<>();
+
+    private long mPostingCount;
+    private int mLiveCount;
+    private long mTotalBytes;
+
+    /**
+     * Constructs a new {@link ArticleIndex}.
+     *
+     * @param maxEntries maximum number of lists indexed
+     * @param maxBytes   maximum rough size of the index and the articles it holds
+     */
+    public ArticleIndex(int maxEntries, long maxBytes) {
+        mMaxEntries = maxEntries;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Index the given articles under the given key, replacing the list indexed under it
+     * before, and drop the oldest lists if the index is now too big. Articles that are already
+     * indexed under another key are not indexed again.
+     */
+    public synchronized void put(String key, List<NewsArticle> newsArticles) {
+        if (newsArticles == null) {
+            return;
+        }
+        int[] documents = new int[newsArticles.size()];
+        int count = 0;
+        for (int position = 0; position < newsArticles.size(); position++) {
+            int document = add(newsArticles, position);
+            if (document >= 0) {
+                mOwners[document]++;
+                documents[count++] = document;
+            }
+        }
+        int[] replaced = mEntries.put(key, Arrays.copyOf(documents, count));
+        if (replaced != null) {
+            release(replaced);
+        }
+        trimToSize();
+    }
+
+    /**
+     * Index the article at the given position of the list, unless it already is. Returns its
+     * document number, or -1 if there is no article there.
+     */
+    private int add(List<NewsArticle> source, int position) {
+        String headline;
+        String url;
+        String urlKey;
+        long publicationTime;
+        long bytes;
+        if (source instanceof LazyArticleList) {
+            LazyArticleList lazy = (LazyArticleList) source;
+            url = lazy.getUrl(position);
+            urlKey = NewsArticle.urlKey(url);
+            if (mDocumentsByUrl.containsKey(urlKey)) {
+                return mDocumentsByUrl.get(urlKey);
+            }
+            headline = lazy.getHeadline(position);
+            publicationTime = lazy.getPublicationTime(position);
+            // The bytes of the result, which the body holds until the article is dropped.
+            bytes = lazy.getResultLength(position);
+        } else {
+            NewsArticle newsArticle = source.get(position);
+            if (newsArticle == null) {
+                return -1;
+            }
+            urlKey = newsArticle.getUrlKey();
+            if (mDocumentsByUrl.containsKey(urlKey)) {
+                return mDocumentsByUrl.get(urlKey);
+            }
+            headline = newsArticle.getHeadline();
+            url = newsArticle.getUrl();
+            publicationTime = newsArticle.getPublicationTime();
+            bytes = estimateSizeBytes(newsArticle);
+        }
+
+        int document = mSources.size();
+        mSources.add(source);
+        if (document == mOwners.length) {
+            int length = document * 2;
+            mPositions = Arrays.copyOf(mPositions, length);
+            mPublicationTimes = Arrays.copyOf(mPublicationTimes, length);
+            mUrlKeys = Arrays.copyOf(mUrlKeys, length);
+            mOwners = Arrays.copyOf(mOwners, length);
+            mDocumentBytes = Arrays.copyOf(mDocumentBytes, length);
+        }
+        mPositions[document] = position;
+        mPublicationTimes[document] = publicationTime;
+        mUrlKeys[document] = urlKey;
+        mDocumentsByUrl.put(urlKey, document);
+        List<String> terms = terms(headline, url);
+        for (String term : terms) {
+            Postings postings = mTerms.get(term);
+            if (postings == null) {
+                postings = new Postings();
+                mTerms.put(term, postings);
+            }
+            // A headline can repeat a word; documents only need listing once.
+            if (postings.add(document)) {
+                mPostingCount++;
+            }
+        }
+        // The key in the lookup table and the document's place in the postings of its terms.
+        mDocumentBytes[document] = bytes + 32 + 2L * urlKey.length() + 4L * terms.size();
+        mTotalBytes += mDocumentBytes[document];
+        mLiveCount++;
+        return document;
+    }
+
+    /**
+     * Let go of the documents of a list that was replaced or dropped, dropping the ones no
+     * other list holds.
+     */
+    private void release(int[] documents) {
+        for (int document : documents) {
+            if (--mOwners[document] == 0) {
+                mSources.set(document, null);
+                mDocumentsByUrl.remove(mUrlKeys[document]);
+                mUrlKeys[document] = null;
+                mTotalBytes -= mDocumentBytes[document];
+                mLiveCount--;
+            }
+        }
+    }
+
+    private void trimToSize() {
+        Iterator<int[]> eldest = mEntries.values().iterator();
+        while ((mEntries.size() > mMaxEntries || mTotalBytes > mMaxBytes) && eldest.hasNext()) {
+            int[] documents = eldest.next();
+            eldest.remove();
+            release(documents);
+        }
+        // Dropped documents stay in the postings until most of them are dropped.
+        if (mSources.size() - mLiveCount > mLiveCount) {
+            compact();
+        }
+    }
+
+    /**
+     * Index the documents that are left again, from scratch, so the postings of dropped ones
+     * are freed.
+     */
+    private void compact() {
+        List<List<NewsArticle>> sources = new ArrayList<>(mSources);
+        int[] positions = mPositions;
+        int[] owners = mOwners;
+        Map<String, int[]> entries = new LinkedHashMap<>(mEntries);
+        int length = Math.max(16, mLiveCount);
+        mSources.clear();
+        mPositions = new int[length];
+        mPublicationTimes = new long[length];
+        mUrlKeys = new String[length];
+        mOwners = new int[length];
+        mDocumentBytes = new long[length];
+        mDocumentsByUrl.clear();
+        mTerms.clear();
+        mPostingCount = 0;
+        mLiveCount = 0;
+        mTotalBytes = 0;
+
+        int[] renumbered = new int[sources.size()];
+        for (int document = 0; document < sources.size(); document++) {
+            if (sources.get(document) != null) {
+                renumbered[document] = add(sources.get(document), positions[document]);
+                mOwners[renumbered[document]] = owners[document];
+            }
+        }
+        // Re-putting keeps the order the lists were added in.
+        mEntries.clear();
+        for (Map.Entry<String, int[]> entry : entries.entrySet()) {
+            int[] entryDocuments = entry.getValue();
+            for (int i = 0; i < entryDocuments.length; i++) {
+                entryDocuments[i] = renumbered[entryDocuments[i]];
+            }
+            mEntries.put(entry.getKey(), entryDocuments);
+        }
+    }
+
+    /**
+     * Return whether a list is indexed under the given key.
+     */
+    public synchronized boolean contains(String key) {
+        return mEntries.containsKey(key);
+    }
+
+    /**
+     * Number of articles indexed.
+     */
+    public synchronized int size() {
+        return mLiveCount;
+    }
+
+    /**
+     * Number of lists indexed.
+     */
+    public synchronized int getEntryCount() {
+        return mEntries.size();
+    }
+
+    /**
+     * Rough number of bytes the index and the articles it holds take up, as bounded.
+     */
+    public synchronized long sizeInBytes() {
+        return mTotalBytes;
+    }
+
+    /**
+     * Return up to the given number of indexed articles matching every word of the normalized
+     * query, newest first. The last word is matched as a prefix.
+     */
+    public synchronized List<NewsArticle> search(String query, int limit) {
+        if (query.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        // Split the query the way headlines are, so "covid-19" or "U.K." match as written.
+        List<String> tokens = words(query);
+        if (tokens.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String[] words = tokens.toArray(new String[tokens.size()]);
+
+        // Intersect the exact words, rarest first, so the candidate list shrinks fastest.
+        Postings[] exact = new Postings[words.length - 1];
+        for (int i = 0; i < exact.length; i++) {
+            exact[i] = mTerms.get(words[i]);
+            if (exact[i] == null) {
+                return Collections.emptyList();
+            }
+        }
+        Arrays.sort(exact, Postings.SHORTEST_FIRST);
+        int[] candidates = null;
+        int candidateCount = 0;
+        for (Postings postings : exact) {
+            if (candidates == null) {
+                candidates = Arrays.copyOf(postings.mDocuments, postings.mSize);
+                candidateCount = postings.mSize;
+            } else {
+                candidateCount = intersect(candidates, candidateCount, postings);
+            }
+            if (candidateCount == 0) {
+                return Collections.emptyList();
+            }
+        }
+
+        // Then every document with a term starting with the last word.
+        String prefix = words[words.length - 1];
+        SortedMap<String, Postings> prefixTerms = mTerms.subMap(prefix, prefix + Character.MAX_VALUE);
+        if (prefixTerms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        BitSet prefixMatches = new BitSet(mSources.size());
+        for (Postings postings : prefixTerms.values()) {
+            for (int i = 0; i < postings.mSize; i++) {
+                prefixMatches.set(postings.mDocuments[i]);
+            }
+        }
+
+        // Oldest first, so the head is the one to drop when a newer match comes along.
+        PriorityQueue<Integer> newest = new PriorityQueue<>(Math.min(limit, mSources.size()) + 1,
+                new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer first, Integer second) {
+                        long firstTime = mPublicationTimes[first];
+                        long secondTime = mPublicationTimes[second];
+                        return firstTime < secondTime ? -1 : (firstTime == secondTime ? 0 : 1);
+                    }
+                });
+        if (candidates == null) {
+            for (int document = prefixMatches.nextSetBit(0); document >= 0;
+                 document = prefixMatches.nextSetBit(document + 1)) {
+                offer(newest, document, limit);
+            }
+        } else {
+            for (int i = 0; i < candidateCount; i++) {
+                if (prefixMatches.get(candidates[i])) {
+                    offer(newest, candidates[i], limit);
+                }
+            }
+        }
+
+        // Only now are the matching articles decoded.
+        List<NewsArticle> matches = new ArrayList<>(newest.size());
+        for (int document : newest) {
+            NewsArticle newsArticle = mSources.get(document).get(mPositions[document]);
+            if (newsArticle != null) {
+                matches.add(newsArticle);
+            }
+        }
+        Collections.sort(matches, NewsArticle.NEWEST_FIRST);
+        return matches;
+    }
+
+    /**
+     * Keep the given number of newest documents in the queue.
+     */
+    private void offer(PriorityQueue<Integer> newest, int document, int limit) {
+        if (mSources.get(document) == null) {
+            // Dropped, but still in the postings.
+            return;
+        }
+        newest.offer(document);
+        if (newest.size() > limit) {
+            newest.poll();
+        }
+    }
+
+    /**
+     * Keep the candidates that are also in the postings. Both are in increasing order.
+     * Returns how many are left at the start of the array.
+     */
+    private static int intersect(int[] candidates, int candidateCount, Postings postings) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < candidateCount && j < postings.mSize; i++) {
+            while (j < postings.mSize && postings.mDocuments[j] < candidates[i]) {
+                j++;
+            }
+            if (j < postings.mSize && postings.mDocuments[j] == candidates[i]) {
+                candidates[kept++] = candidates[i];
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Return the terms an article is found by: the words of its headline and the section of
+     * its URL, such as "world" for https://www.theguardian.com/world/2017/apr/01/...
+     */
+    static List<String> terms(String headline, String url) {
+        List<String> terms = words(headline);
+
+        int hostEnd = url.indexOf('/', url.indexOf("//") + 2);
+        if (hostEnd > 0) {
+            int sectionEnd = url.indexOf('/', hostEnd + 1);
+            if (sectionEnd > hostEnd + 1) {
+                terms.add(url.substring(hostEnd + 1, sectionEnd).toLowerCase(Locale.US));
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Return the words of the given text in lower case: its runs of letters and digits.
+     */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        String lowerCase = text.toLowerCase(Locale.US);
+        int start = -1;
+        for (int i = 0; i <= lowerCase.length(); i++) {
+            boolean wordCharacter = i < lowerCase.length() && Character.isLetterOrDigit(lowerCase.charAt(i));
+            if (wordCharacter && start < 0) {
+                start = i;
+            } else if (!wordCharacter && start >= 0) {
+                words.add(lowerCase.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Rough number of bytes a decoded article takes up, with its Strings.
+     */
+    private static long estimateSizeBytes(NewsArticle newsArticle) {
+        // Object headers and references are counted at 16 and 4 bytes, as on a 32-bit ART heap.
+        return 40 + 3 * 24 + 2L * (newsArticle.getHeadline().length() + newsArticle.getUrlKey().length());
+    }
+
+    /**
+     * Rough number of bytes the index takes up, not counting the articles themselves.
+     */
+    public synchronized long estimateSizeBytes() {
+        // Object headers and references are counted at 16 and 4 bytes, as on a 32-bit ART heap.
+        long bytes = 0;
+        for (Map.Entry<String, Postings> term : mTerms.entrySet()) {
+            bytes += 40 + 16 + 2 * term.getKey().length(); // tree node, String and its chars
+            bytes += 16 + 16 + 4L * term.getValue().mDocuments.length; // Postings and its array
+        }
+        bytes += 40L * mSources.size(); // document arrays
+        bytes += 32L * mDocumentsByUrl.size(); // hash map entries and boxed numbers
+        return bytes;
+    }
+
+    /**
+     * Total number of (term, document) pairs in the index.
+     */
+    public synchronized long getPostingCount() {
+        return mPostingCount;
+    }
+
+    public synchronized int getTermCount() {
+        return mTerms.size();
+    }
+
+    /**
+     * Growable, increasing list of document numbers.
+     */
+    private static class Postings {
+
+        static final Comparator<Postings> SHORTEST_FIRST = new Comparator<Postings>() {
+            @Override
+            public int compare(Postings first, Postings second) {
+                return first.mSize - second.mSize;
+            }
+        };
+
+        int[] mDocuments = new int[2];
+        int mSize;
+
+        /**
+         * Append a document number, unless it was the last one appended.
+         */
+        boolean add(int document) {
+            if (mSize > 0 && mDocuments[mSize - 1] == document) {
+                return false;
+            }
+            if (mSize == mDocuments.length) {
+                mDocuments = Arrays.copyOf(mDocuments, mSize * 2);
+            }
+            mDocuments[mSize++] = document;
+            return true;
+        }
+    }
+}
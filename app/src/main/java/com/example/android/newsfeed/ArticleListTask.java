@@ -0,0 +1,85 @@
+package com.example.android.newsfeed;
+
+import java.util.List;
+
+/**
+ * Loads one list of news articles, such as a page of search results, for a
+ * {@link FeedLoadingEngine}.
+ * <p>
+ * A cached copy of the list is published first as {@link FeedState.Status#STALE}, so something
+ * can be drawn straight away, and is then revalidated against the network if it is older than
+ * the repository's TTL, or straight away if the user asked for a refresh. Revalidating only
+ * fetches what was published since the cached list, see
+ * {@link ArticleRepository#refresh(String, RequestToken)}.
+ */
+public class ArticleListTask implements FeedLoadingEngine.Task {
+
+    private final ArticleRepository mRepository;
+    private final ArticleRows mRows;
+
+    /**
+     * Query URL
+     */
+    private final String mUrl;
+
+    /**
+     * Set when the user asked for a refresh, so even a fresh cached list is revalidated.
+     */
+    private final boolean mForceRefresh;
+
+    /**
+     * How urgent the network request is, see {@link RequestScheduler}.
+     */
+    private final RequestScheduler.Priority mPriority;
+
+    /**
+     * Constructs a new {@link ArticleListTask}.
+     *
+     * @param repository   to read the cache and the network through
+     * @param rows         to format the rows of the loaded articles with
+     * @param url          to load data from
+     * @param forceRefresh whether to revalidate the cached list even if it is still fresh
+     */
+    public ArticleListTask(ArticleRepository repository, ArticleRows rows, String url, boolean forceRefresh) {
+        this(repository, rows, url, forceRefresh, RequestScheduler.Priority.REFRESH);
+    }
+
+    /**
+     * Constructs a new {@link ArticleListTask} whose network request has the given priority.
+     */
+    public ArticleListTask(ArticleRepository repository, ArticleRows rows, String url, boolean forceRefresh,
+                           RequestScheduler.Priority priority) {
+        mRepository = repository;
+        mRows = rows;
+        mUrl = url;
+        mForceRefresh = forceRefresh;
+        mPriority = priority;
+    }
+
+    /**
+     * This is on a background thread.
+     */
+    @Override
+    public FeedState load(RequestToken token, FeedLoadingEngine.Publisher publisher) {
+        List<NewsArticle> cached = null;
+        ArticleCache.Entry entry = mRepository.getCached(mUrl);
+        if (entry != null) {
+            cached = entry.articles;
+            // Format the rows here, so the adapter only has to set their text.
+            mRows.prepare(cached);
+            if (!mForceRefresh && mRepository.isFresh(entry)) {
+                return new FeedState(FeedState.Status.LOADED, cached);
+            }
+            publisher.publish(FeedState.Status.STALE, cached);
+        }
+
+        // Perform the network request, parse the response, and extract a list of news articles.
+        List<NewsArticle> news = mRepository.refresh(mUrl, token.newChild(mPriority));
+        if (news == null) {
+            // Keep showing whatever was cached rather than an empty list.
+            return new FeedState(FeedState.Status.ERROR, cached);
+        }
+        mRows.prepare(news);
+        return new FeedState(FeedState.Status.LOADED, news);
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.android.newsfeed;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Single place the app gets {@link NewsArticle} lists from: the on-disk {@link ArticleCache}
+ * first, then The Guardian.
+ */
+public class ArticleRepository {
+
+    private static final String LOG_TAG = ArticleRepository.class.getName();
+
+    private static final int DEFAULT_MAX_ENTRIES = 64;
+    private static final long DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+    private static final String CACHE_DIRECTORY = "articles";
+
+    /**
+     * Page size The Guardian uses when a request doesn't give one.
+     */
+    private static final int DEFAULT_PAGE_SIZE = 10;
+
+    private static ArticleRepository sInstance;
+
+    private final ArticleCache mCache;
+    private final long mTtlMillis;
+
+    /**
+     * Adds lists to the index off the thread that loaded them, since indexing reads the
+     * headline and URL of every article.
+     */
+    private static final ExecutorService INDEX_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * The articles of the lists read from the cache or the network, for searching on the
+     * device. Bounded like the cache, by request URL.
+     */
+    private final ArticleIndex mIndex;
+
+    /**
+     * Constructs a new {@link ArticleRepository}.
+     *
+     * @param cache     to read from and write fetched lists to
+     * @param ttlMillis how long a cached list counts as fresh
+     */
+    public ArticleRepository(ArticleCache cache, long ttlMillis) {
+        mCache = cache;
+        mTtlMillis = ttlMillis;
+        mIndex = new ArticleIndex(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Return the process-wide repository, caching under the app's cache directory for as long
+     * as the app's resources say.
+     */
+    public static synchronized ArticleRepository getInstance(Context context) {
+        if (sInstance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), CACHE_DIRECTORY);
+            sInstance = new ArticleRepository(
+                    new ArticleCache(directory, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES),
+                    context.getResources().getInteger(R.integer.article_cache_ttl_millis));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Return the cached list for the given request URL, or null if there is none.
+     */
+    public ArticleCache.Entry getCached(String requestUrl) {
+        ArticleCache.Entry entry = mCache.get(requestUrl);
+        // Lists fetched since the app started are indexed as they arrive. This one may have
+        // been cached by an earlier run.
+        if (entry != null && !mIndex.contains(requestUrl)) {
+            index(requestUrl, entry.articles);
+        }
+        return entry;
+    }
+
+    /**
+     * Keep the cached lists of the given request URLs however long they go unused, in place
+     * of the ones kept before.
+     */
+    public void setPinned(List<String> requestUrls) {
+        try {
+            mCache.setPinned(requestUrls);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem pinning the synced newsArticle results.", e);
+        }
+    }
+
+    /**
+     * Return the index of every article this repository has handed out. Articles are added
+     * in the background, so the latest ones may take a moment to show up in it.
+     */
+    public ArticleIndex getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * Return whether the given entry is young enough to be shown without revalidating it.
+     */
+    public boolean isFresh(ArticleCache.Entry entry) {
+        return System.currentTimeMillis() - entry.fetchedAtMillis < mTtlMillis;
+    }
+
+    /**
+     * Fetch the given request URL from the network and cache the result.
+     * Returns null if the request failed.
+     */
+    public List<NewsArticle> fetch(String requestUrl) {
+        return fetch(requestUrl, new RequestToken());
+    }
+
+    /**
+     * Fetch the given request URL from the network and cache the result.
+     * Returns null if the request failed or was cancelled through the token.
+     */
+    public List<NewsArticle> fetch(String requestUrl, RequestToken token) {
+        List<NewsArticle> newsArticles = QueryUtils.fetchNewsArticleData(requestUrl, token);
+        if (newsArticles != null) {
+            index(requestUrl, newsArticles);
+            try {
+                mCache.put(requestUrl, newsArticles, System.currentTimeMillis());
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem caching the newsArticle results.", e);
+            }
+        }
+        return newsArticles;
+    }
+
+    /**
+     * Bring the cached list for the given request URL up to date and return it.
+     * <p>
+     * If the list is ordered newest first and already cached, only the articles published
+     * since the newest one in the cache are requested, using The Guardian's from-date, and
+     * they are merged on top of the cached list. Otherwise this is the same as
+     * {@link #fetch(String, RequestToken)}. Returns null if the request failed or was
+     * cancelled through the token.
+     */
+    public List<NewsArticle> refresh(String requestUrl, RequestToken token) {
+        ArticleCache.Entry entry = mCache.get(requestUrl);
+        long watermark = entry == null ? PublicationDates.UNKNOWN : watermark(entry.articles);
+        String sinceUrl = sinceUrl(requestUrl, watermark);
+        if (sinceUrl == null) {
+            return fetch(requestUrl, token);
+        }
+
+        List<NewsArticle> newer = QueryUtils.fetchNewsArticleData(sinceUrl, token);
+        if (newer == null) {
+            return null;
+        }
+        Log.v(LOG_TAG, newer.size() + " articles since " + PublicationDates.format(watermark));
+        List<NewsArticle> newsArticles = mergeNewer(newer, entry.articles, pageSizeOf(requestUrl));
+        index(requestUrl, newsArticles);
+        try {
+            mCache.put(requestUrl, newsArticles, System.currentTimeMillis());
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem caching the newsArticle results.", e);
+        }
+        return newsArticles;
+    }
+
+    private void index(final String requestUrl, final List<NewsArticle> newsArticles) {
+        INDEX_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                mIndex.put(requestUrl, newsArticles);
+            }
+        });
+    }
+
+    /**
+     * Return the publication time of the newest of the given articles, or
+     * {@link PublicationDates#UNKNOWN} if none of them has one.
+     */
+    static long watermark(List<NewsArticle> newsArticles) {
+        long watermark = PublicationDates.UNKNOWN;
+        for (NewsArticle newsArticle : newsArticles) {
+            if (newsArticle != null) {
+                watermark = Math.max(watermark, newsArticle.getPublicationTime());
+            }
+        }
+        return watermark;
+    }
+
+    /**
+     * Return the given request URL asking only for articles published at or after the
+     * watermark, or null if the request can't be narrowed down that way: it isn't the first
+     * page of a newest-first list, or there is no watermark.
+     */
+    static String sinceUrl(String requestUrl, long watermark) {
+        if (watermark == PublicationDates.UNKNOWN || !requestUrl.contains("order-by=newest")
+                || parameter(requestUrl, "page") != null || parameter(requestUrl, "from-date") != null) {
+            return null;
+        }
+        try {
+            // The boundary is inclusive, so the newest cached article comes back as well and
+            // nothing published in the same second is missed.
+            return requestUrl + (requestUrl.indexOf('?') < 0 ? "?" : "&") + "from-date="
+                    + URLEncoder.encode(PublicationDates.format(watermark), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Merge articles fetched since the watermark on top of the cached first page, replacing
+     * cached copies of the same article, and keep the newest page-size of them. The result is
+     * what fetching the whole first page again would have returned.
+     */
+    static List<NewsArticle> mergeNewer(List<NewsArticle> newer, List<NewsArticle> cached, int pageSize) {
+        Set<String> newerUrls = new HashSet<>();
+        List<NewsArticle> merged = new ArrayList<>(Math.min(newer.size() + cached.size(), pageSize));
+        for (NewsArticle newsArticle : newer) {
+            if (newsArticle != null && merged.size() < pageSize && newerUrls.add(newsArticle.getUrlKey())) {
+                merged.add(newsArticle);
+            }
+        }
+        for (NewsArticle newsArticle : cached) {
+            if (merged.size() >= pageSize) {
+                break;
+            }
+            if (newsArticle != null && !newerUrls.contains(newsArticle.getUrlKey())) {
+                merged.add(newsArticle);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Return the page-size the given request URL asks for.
+     */
+    static int pageSizeOf(String requestUrl) {
+        String pageSize = parameter(requestUrl, "page-size");
+        if (pageSize == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        try {
+            return Integer.parseInt(pageSize);
+        } catch (NumberFormatException e) {
+            return DEFAULT_PAGE_SIZE;
+        }
+    }
+
+    /**
+     * Return the raw value of a query parameter of the given URL, or null if it has none.
+     */
+    private static String parameter(String url, String name) {
+        int queryStart = url.indexOf('?');
+        if (queryStart < 0) {
+            return null;
+        }
+        for (String pair : url.substring(queryStart + 1).split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return pair.substring(name.length() + 1);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.android.newsfeed;
+
+/**
+ * Everything one row of the list shows for a {@link NewsArticle}, worked out ahead of time on
+ * a background thread so that binding the row only has to set text.
+ */
+public class ArticleRow {
+
+    /**
+     * Added to URLs that come without a scheme, which would otherwise crash the browser intent.
+     */
+    private static final String DEFAULT_SCHEME = "https://";
+
+    public final NewsArticle article;
+
+    /**
+     * Headline with surrounding whitespace trimmed and inner runs of it collapsed.
+     */
+    public final String headline;
+
+    /**
+     * Web URL of the article, always starting with a scheme so it can be opened.
+     */
+    public final String url;
+
+    /**
+     * Thumbnail URL, or null if the article has none.
+     */
+    public final String thumbnailUrl;
+
+    /**
+     * Text shown for the publication time. Only changed on the main thread once the row is
+     * on screen.
+     */
+    private String mTimestamp;
+
+    /**
+     * When {@link #mTimestamp} was worked out.
+     */
+    private long mTimestampAtMillis;
+
+    ArticleRow(NewsArticle article, TimeFormatter formatter, long nowMillis) {
+        this.article = article;
+        headline = cleanHeadline(article.getHeadline());
+        url = sanitizeUrl(article.getUrl());
+        thumbnailUrl = article.hasThumbnail() ? article.getImageId() : null;
+        mTimestamp = formatter.format(article.getPublicationTime(), nowMillis);
+        mTimestampAtMillis = nowMillis;
+    }
+
+    public String getTimestamp() {
+        return mTimestamp;
+    }
+
+    /**
+     * Work out the timestamp again if it was worked out more than a minute before nowMillis.
+     * Returns true if the text changed.
+     */
+    public boolean refreshTimestamp(TimeFormatter formatter, long nowMillis) {
+        if (nowMillis - mTimestampAtMillis < 60 * 1000L) {
+            return false;
+        }
+        String timestamp = formatter.format(article.getPublicationTime(), nowMillis);
+        mTimestampAtMillis = nowMillis;
+        if (timestamp.equals(mTimestamp)) {
+            return false;
+        }
+        mTimestamp = timestamp;
+        return true;
+    }
+
+    static String cleanHeadline(String headline) {
+        String trimmed = headline.trim();
+        // Most headlines need nothing more, so only collapse when there is something to do.
+        for (int i = 1; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (Character.isWhitespace(c) && (c != ' ' || Character.isWhitespace(trimmed.charAt(i - 1)))) {
+                return trimmed.replaceAll("\\s+", " ");
+            }
+        }
+        return trimmed;
+    }
+
+    static String sanitizeUrl(String url) {
+        String trimmed = url.trim();
+        if (trimmed.startsWith("http://") || trimmed.startsWith("https://")) {
+            return trimmed;
+        }
+        if (trimmed.startsWith("//")) {
+            return "https:" + trimmed;
+        }
+        return DEFAULT_SCHEME + trimmed;
+    }
+}
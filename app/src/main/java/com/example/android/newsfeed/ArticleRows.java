@@ -0,0 +1,120 @@
+package com.example.android.newsfeed;
+
+import android.content.Context;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Builds and keeps the {@link ArticleRow}s of recently loaded articles.
+ * <p>
+ * Loads call {@link #prepare(List)} on their background thread right after parsing, so by
+ * the time a list reaches the adapter its first rows are usually already here. Rows that
+ * aren't are built on demand as they are bound.
+ */
+public class ArticleRows {
+
+    /**
+     * Rows kept, enough for the pages held in memory across every loaded feed.
+     */
+    private static final int MAX_ROWS = 1024;
+
+    /**
+     * Rows of a {@link LazyArticleList} prepared ahead, a couple of screenfuls. Preparing the
+     * rest would decode every article of the response before the first one is shown.
+     */
+    private static final int MAX_PREPARED_LAZY_ROWS = 24;
+
+    private static ArticleRows sInstance;
+
+    private final TimeFormatter mFormatter;
+
+    /**
+     * Rows by {@link NewsArticle#getUrlKey()}, least recently used first. Guarded by this.
+     */
+    private final Map<String, ArticleRow> mRows = new LinkedHashMap<String, ArticleRow>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ArticleRow> eldest) {
+            return size() > MAX_ROWS;
+        }
+    };
+
+    private int mBuiltOnDemandCount;
+
+    public ArticleRows(TimeFormatter formatter) {
+        mFormatter = formatter;
+    }
+
+    /**
+     * Return the process-wide rows, made again if the locale has changed since.
+     */
+    public static synchronized ArticleRows getInstance(Context context) {
+        if (sInstance == null || !sInstance.mFormatter.getLocale().equals(Locale.getDefault())) {
+            sInstance = new ArticleRows(TimeFormatter.fromResources(context.getApplicationContext()));
+        }
+        return sInstance;
+    }
+
+    public TimeFormatter getFormatter() {
+        return mFormatter;
+    }
+
+    /**
+     * Build the rows of the given articles ahead of them being shown, or of the first of them
+     * for a {@link LazyArticleList}. Call on a background thread.
+     */
+    public void prepare(List<NewsArticle> newsArticles) {
+        if (newsArticles == null) {
+            return;
+        }
+        int count = newsArticles.size();
+        if (newsArticles instanceof LazyArticleList) {
+            count = Math.min(count, MAX_PREPARED_LAZY_ROWS);
+        }
+        long nowMillis = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            NewsArticle newsArticle = newsArticles.get(i);
+            if (newsArticle != null && find(newsArticle) == null) {
+                put(new ArticleRow(newsArticle, mFormatter, nowMillis));
+            }
+        }
+    }
+
+    /**
+     * Return the row of the given article, building it if it hasn't been prepared.
+     */
+    public ArticleRow get(NewsArticle newsArticle) {
+        ArticleRow row = find(newsArticle);
+        if (row == null) {
+            row = new ArticleRow(newsArticle, mFormatter, System.currentTimeMillis());
+            synchronized (this) {
+                mBuiltOnDemandCount++;
+            }
+            put(row);
+        }
+        return row;
+    }
+
+    /**
+     * Number of rows that had to be built when they were asked for, rather than prepared.
+     */
+    public synchronized int getBuiltOnDemandCount() {
+        return mBuiltOnDemandCount;
+    }
+
+    private synchronized ArticleRow find(NewsArticle newsArticle) {
+        ArticleRow row = mRows.get(newsArticle.getUrlKey());
+        // A lazy list decodes its articles again once they drop out of its LRU, so a copy
+        // showing the same counts. One made for an older copy, since edited, doesn't.
+        if (row == null || (row.article != newsArticle && !row.article.hasSameContent(newsArticle))) {
+            return null;
+        }
+        return row;
+    }
+
+    private synchronized void put(ArticleRow row) {
+        mRows.put(row.article.getUrlKey(), row);
+    }
+}
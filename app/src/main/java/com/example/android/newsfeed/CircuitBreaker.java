@@ -0,0 +1,83 @@
+package com.example.android.newsfeed;
+
+/**
+ * Stops requests to a server that keeps failing, so callers fall back to cached data straight
+ * away instead of each waiting out its own timeouts and retries.
+ * <p>
+ * After a run of failed calls the breaker opens and turns every request away. Once it has been
+ * open for a while one trial request is let through: if that succeeds the breaker closes
+ * again, otherwise it stays open for another while.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int mFailureThreshold;
+    private final long mOpenNanos;
+
+    private State mState = State.CLOSED;
+    private int mConsecutiveFailures;
+    private long mOpenedAtNanos;
+
+    /**
+     * Constructs a new {@link CircuitBreaker}.
+     *
+     * @param failureThreshold failed calls in a row that open the breaker
+     * @param openMillis       how long the breaker stays open before a trial request
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        mFailureThreshold = failureThreshold;
+        mOpenNanos = openMillis * 1000000L;
+    }
+
+    /**
+     * Return whether a request may be made now. While half open only the first caller, which
+     * makes the trial request, gets true.
+     */
+    public synchronized boolean allowRequest() {
+        switch (mState) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - mOpenedAtNanos >= mOpenNanos) {
+                    mState = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                // The trial request is still running.
+                return false;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        mState = State.CLOSED;
+        mConsecutiveFailures = 0;
+    }
+
+    public synchronized void onFailure() {
+        mConsecutiveFailures++;
+        if (mState == State.HALF_OPEN || mConsecutiveFailures >= mFailureThreshold) {
+            mState = State.OPEN;
+            mOpenedAtNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Called when a call ended without telling whether the server is healthy, as when it was
+     * cancelled. Lets the next caller make the trial request if this one was it.
+     */
+    public synchronized void onAbandoned() {
+        if (mState == State.HALF_OPEN) {
+            mState = State.OPEN;
+            // Already waited out, so the next request is the trial.
+            mOpenedAtNanos = System.nanoTime() - mOpenNanos;
+        }
+    }
+
+    public synchronized State getState() {
+        return mState;
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.android.newsfeed;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds one feed out of several Guardian requests, such as the sections of the home feed.
+ * <p>
+ * The requests run side by side on the given executor, so the feed takes about as long as the
+ * slowest section rather than the sum of them all, and each one is abandoned if it runs longer
+ * than the timeout. Results are merged newest first, with articles that appear in more than
+ * one section kept once. The merged list is handed out first as it stands in the cache, and
+ * again as every section arrives.
+ */
+public class FeedAggregator {
+
+    private static final String LOG_TAG = FeedAggregator.class.getName();
+
+    /**
+     * Thread that cancels requests which have run out of time.
+     */
+    private static final ScheduledExecutorService TIMEOUT_EXECUTOR =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "FeedAggregator timeouts");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * Receives the merged feed as it stands in the cache, and again every time another request
+     * has finished.
+     */
+    public interface Listener {
+        /**
+         * Called on the aggregating thread.
+         *
+         * @param newsArticles every article received so far, newest first
+         * @param finished     number of URLs settled so far: fresh in the cache, fetched or failed
+         * @param total        number of URLs in the feed
+         */
+        void onPartialResult(List<NewsArticle> newsArticles, int finished, int total);
+    }
+
+    private final ArticleRepository mRepository;
+    private final Executor mExecutor;
+    private final long mTimeoutMillis;
+
+    private final AtomicInteger mTimedOutCount = new AtomicInteger();
+
+    /**
+     * Constructs a new {@link FeedAggregator}.
+     *
+     * @param repository    to fetch, and cache, each request through
+     * @param executor      to run the requests on; its size bounds how many run at once
+     * @param timeoutMillis how long one request may run, from when it starts, before it is cancelled
+     */
+    public FeedAggregator(ArticleRepository repository, Executor executor, long timeoutMillis) {
+        mRepository = repository;
+        mExecutor = executor;
+        mTimeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Return the merged feed of every URL, or null if there is nothing for any of them.
+     * <p>
+     * The feed starts out from what is cached for each URL, and only the URLs without a fresh
+     * cached copy are fetched, unless forceRefresh is set. A URL that can't be fetched keeps its
+     * cached copy. Blocks until every request has finished, failed or timed out, or the token
+     * is cancelled.
+     *
+     * @param forceRefresh whether to fetch every URL, even those whose cached copy is fresh
+     */
+    public List<NewsArticle> aggregate(List<String> requestUrls, boolean forceRefresh, final RequestToken token,
+                                       Listener listener) {
+        int total = requestUrls.size();
+        List<List<NewsArticle>> sections = new ArrayList<>(total);
+        CompletionService<List<NewsArticle>> completionService =
+                new ExecutorCompletionService<>(mExecutor);
+        Map<Future<List<NewsArticle>>, Integer> pending = new HashMap<>();
+        for (int index = 0; index < total; index++) {
+            final String requestUrl = requestUrls.get(index);
+            ArticleCache.Entry entry = mRepository.getCached(requestUrl);
+            sections.add(entry != null ? entry.articles : null);
+            if (!forceRefresh && entry != null && mRepository.isFresh(entry)) {
+                continue;
+            }
+            Future<List<NewsArticle>> future = completionService.submit(new Callable<List<NewsArticle>>() {
+                @Override
+                public List<NewsArticle> call() {
+                    return fetch(requestUrl, token.newChild());
+                }
+            });
+            pending.put(future, index);
+        }
+
+        int finished = total - pending.size();
+        List<NewsArticle> newsArticles = merge(sections);
+        if (listener != null && !pending.isEmpty() && !newsArticles.isEmpty()) {
+            // What is cached can be shown while the requests run.
+            listener.onPartialResult(newsArticles, finished, total);
+        }
+
+        while (!pending.isEmpty()) {
+            Future<List<NewsArticle>> future;
+            List<NewsArticle> section;
+            try {
+                future = completionService.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                token.cancel();
+                return null;
+            }
+            try {
+                section = future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                Log.e(LOG_TAG, "Problem fetching a section.", e);
+                section = null;
+            }
+            int index = pending.remove(future);
+            if (token.isCancelled()) {
+                return null;
+            }
+            finished++;
+            if (section != null) {
+                sections.set(index, section);
+                newsArticles = merge(sections);
+            }
+            if (listener != null) {
+                listener.onPartialResult(newsArticles, finished, total);
+            }
+        }
+
+        for (List<NewsArticle> section : sections) {
+            if (section != null) {
+                return newsArticles;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Merge the given lists newest first, keeping an article listed under several of them once.
+     */
+    static List<NewsArticle> merge(List<List<NewsArticle>> sections) {
+        Map<String, NewsArticle> merged = new LinkedHashMap<>();
+        for (List<NewsArticle> section : sections) {
+            if (section == null) {
+                continue;
+            }
+            for (NewsArticle newsArticle : section) {
+                if (newsArticle != null && !merged.containsKey(newsArticle.getUrlKey())) {
+                    merged.put(newsArticle.getUrlKey(), newsArticle);
+                }
+            }
+        }
+        List<NewsArticle> newsArticles = new ArrayList<>(merged.values());
+        Collections.sort(newsArticles, NewsArticle.NEWEST_FIRST);
+        return newsArticles;
+    }
+
+    private List<NewsArticle> fetch(String requestUrl, final RequestToken token) {
+        ScheduledFuture<?> timeout = TIMEOUT_EXECUTOR.schedule(new Runnable() {
+            @Override
+            public void run() {
+                mTimedOutCount.incrementAndGet();
+                Log.w(LOG_TAG, "Request timed out after " + mTimeoutMillis + " ms");
+                token.cancel();
+            }
+        }, mTimeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            return mRepository.refresh(requestUrl, token);
+        } finally {
+            timeout.cancel(false);
+        }
+    }
+
+    /**
+     * Number of requests cancelled for running out of time.
+     */
+    public int getTimedOutCount() {
+        return mTimedOutCount.get();
+    }
+}
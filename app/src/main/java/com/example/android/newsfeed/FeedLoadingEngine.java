@@ -0,0 +1,353 @@
+package com.example.android.newsfeed;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the loads behind {@link NewsFeedActivity} and reports how each one is getting on as a
+ * stream of {@link FeedState}s.
+ * <p>
+ * Loads are identified by an ID, as loaders were. Starting a load under an ID that is already
+ * running cancels the old one through its {@link RequestToken}, which aborts its socket reads
+ * and its parse, and starts the new one straight away on the executor rather than waiting for
+ * the old one to wind down. States of a cancelled load are never delivered.
+ * <p>
+ * States are delivered on the delivery executor, the main thread in the app, to every open
+ * {@link Subscription}. A subscription only receives states while it is active, as between
+ * onStart and onStop; on becoming active it catches up on the latest state of every load it
+ * hasn't seen yet, so nothing that arrived in the background is lost and nothing is delivered
+ * twice.
+ */
+public class FeedLoadingEngine {
+
+    private static final String LOG_TAG = FeedLoadingEngine.class.getName();
+
+    /**
+     * Most loads running at once in the app. Superseded loads give their thread back quickly,
+     * so a few are plenty.
+     */
+    private static final int DEFAULT_THREADS = 4;
+
+    private static ExecutorService sDefaultExecutor;
+
+    /**
+     * The work of one load, run on a worker thread.
+     */
+    public interface Task {
+        /**
+         * Load the articles and return the final state, {@link FeedState.Status#LOADED} or
+         * {@link FeedState.Status#ERROR}. States on the way can be published as they come.
+         * The token is cancelled if the load is superseded; the task should then return as
+         * soon as it can, and whatever it returns is dropped.
+         */
+        FeedState load(RequestToken token, Publisher publisher);
+    }
+
+    /**
+     * Hands intermediate states of a load to the engine.
+     */
+    public interface Publisher {
+        void publish(FeedState.Status status, List<NewsArticle> articles);
+    }
+
+    public interface Observer {
+        void onStateChanged(FeedState state);
+    }
+
+    private final ExecutorService mExecutor;
+    private final Executor mDeliveryExecutor;
+
+    /**
+     * Current load of every ID. Guarded by this, as are the fields below.
+     */
+    private final Map<Integer, Load> mLoads = new HashMap<>();
+
+    /**
+     * Latest state delivered for every ID that hasn't been cancelled.
+     */
+    private final Map<Integer, FeedState> mLatest = new LinkedHashMap<>();
+    private final List<Subscription> mSubscriptions = new ArrayList<>();
+    private long mSequence;
+
+    private int mStartedCount;
+    private int mSupersededCount;
+    private int mDeliveredCount;
+
+    /**
+     * Constructs a new {@link FeedLoadingEngine}.
+     *
+     * @param executor         to run the loads on
+     * @param deliveryExecutor to deliver states on, usually the main thread
+     */
+    public FeedLoadingEngine(ExecutorService executor, Executor deliveryExecutor) {
+        mExecutor = executor;
+        mDeliveryExecutor = deliveryExecutor;
+    }
+
+    /**
+     * Return an engine that runs its loads on the app's shared worker threads and delivers
+     * their states on the main thread.
+     */
+    public static FeedLoadingEngine create() {
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        return new FeedLoadingEngine(getDefaultExecutor(), new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                mainHandler.post(runnable);
+            }
+        });
+    }
+
+    private static synchronized ExecutorService getDefaultExecutor() {
+        if (sDefaultExecutor == null) {
+            sDefaultExecutor = Executors.newFixedThreadPool(DEFAULT_THREADS, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "FeedLoadingEngine");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sDefaultExecutor;
+    }
+
+    /**
+     * Start the given task as the load with the given ID, cancelling the one running under
+     * that ID, if any.
+     */
+    public void start(int id, Task task) {
+        Load load = new Load(id, task);
+        Load previous;
+        synchronized (this) {
+            previous = mLoads.put(id, load);
+            mStartedCount++;
+            if (previous != null && !previous.mFinished) {
+                mSupersededCount++;
+            }
+        }
+        if (previous != null) {
+            previous.cancel();
+        }
+        load.publish(FeedState.Status.LOADING, null);
+        load.mFuture = mExecutor.submit(load);
+    }
+
+    /**
+     * Cancel the load with the given ID and forget its states, as when its result has been
+     * taken over by the activity.
+     */
+    public void cancel(int id) {
+        Load load;
+        synchronized (this) {
+            load = mLoads.remove(id);
+            mLatest.remove(id);
+        }
+        if (load != null) {
+            load.cancel();
+        }
+    }
+
+    public void cancelAll() {
+        List<Load> loads;
+        synchronized (this) {
+            loads = new ArrayList<>(mLoads.values());
+            mLoads.clear();
+            mLatest.clear();
+        }
+        for (Load load : loads) {
+            load.cancel();
+        }
+    }
+
+    /**
+     * Return whether the load with the given ID has started and not yet finished.
+     */
+    public synchronized boolean isRunning(int id) {
+        Load load = mLoads.get(id);
+        return load != null && !load.mFinished;
+    }
+
+    /**
+     * Open an inactive subscription delivering states to the given observer.
+     */
+    public Subscription observe(Observer observer) {
+        Subscription subscription = new Subscription(observer);
+        synchronized (this) {
+            mSubscriptions.add(subscription);
+        }
+        return subscription;
+    }
+
+    /**
+     * Number of loads cancelled because another was started under the same ID.
+     */
+    public synchronized int getSupersededCount() {
+        return mSupersededCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "started=" + mStartedCount + " superseded=" + mSupersededCount + " delivered=" + mDeliveredCount;
+    }
+
+    /**
+     * Called on the delivery executor with a state the given load published.
+     */
+    private void deliver(Load load, FeedState state) {
+        List<Subscription> subscriptions;
+        synchronized (this) {
+            if (mLoads.get(state.id) != load) {
+                // Superseded or cancelled since.
+                return;
+            }
+            if (state.isFinal()) {
+                load.mFinished = true;
+            }
+            mLatest.put(state.id, state);
+            mDeliveredCount++;
+            subscriptions = new ArrayList<>(mSubscriptions);
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.deliver(state);
+        }
+        if (state.status != FeedState.Status.LOADING) {
+            FeedMetrics.recordSince(FeedMetrics.Phase.DELIVERY, state.publishedAtNanos);
+        }
+    }
+
+    private synchronized List<FeedState> latestStates() {
+        return new ArrayList<>(mLatest.values());
+    }
+
+    private synchronized void remove(Subscription subscription) {
+        mSubscriptions.remove(subscription);
+    }
+
+    /**
+     * One run of a {@link Task}.
+     */
+    private class Load implements Runnable, Publisher {
+
+        private final int mId;
+        private final Task mTask;
+        private final RequestToken mToken = new RequestToken();
+        private volatile Future<?> mFuture;
+
+        /**
+         * Set once the final state has been delivered. Guarded by the engine.
+         */
+        private boolean mFinished;
+
+        Load(int id, Task task) {
+            mId = id;
+            mTask = task;
+        }
+
+        @Override
+        public void run() {
+            if (mToken.isCancelled()) {
+                return;
+            }
+            FeedState result;
+            try {
+                result = mTask.load(mToken, this);
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Load " + mId + " failed", e);
+                result = new FeedState(FeedState.Status.ERROR, null);
+            }
+            if (result != null) {
+                publish(result.status, result.articles);
+            }
+        }
+
+        @Override
+        public void publish(FeedState.Status status, List<NewsArticle> articles) {
+            if (mToken.isCancelled()) {
+                return;
+            }
+            final FeedState state;
+            synchronized (FeedLoadingEngine.this) {
+                state = new FeedState(mId, status, articles, ++mSequence, System.nanoTime());
+            }
+            mDeliveryExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(Load.this, state);
+                }
+            });
+        }
+
+        void cancel() {
+            mToken.cancel();
+            Future<?> future = mFuture;
+            if (future != null) {
+                // Only takes it off the queue if it hasn't started; a running load stops
+                // through its token, since interrupting could break its cache writes.
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Delivers states to one observer while active. Used from the delivery thread.
+     */
+    public class Subscription {
+
+        private final Observer mObserver;
+        private boolean mActive;
+        private boolean mClosed;
+
+        /**
+         * Sequence of the last state delivered, by load ID.
+         */
+        private final Map<Integer, Long> mDelivered = new HashMap<>();
+
+        Subscription(Observer observer) {
+            mObserver = observer;
+        }
+
+        /**
+         * Start or stop delivering. Starting first delivers the latest state of every load
+         * that changed while stopped.
+         */
+        public synchronized void setActive(boolean active) {
+            mActive = active && !mClosed;
+            if (mActive) {
+                for (FeedState state : latestStates()) {
+                    deliver(state);
+                }
+            }
+        }
+
+        public synchronized void close() {
+            mClosed = true;
+            mActive = false;
+            remove(this);
+        }
+
+        synchronized void deliver(FeedState state) {
+            if (!mActive) {
+                return;
+            }
+            Long delivered = mDelivered.get(state.id);
+            if (delivered != null && delivered >= state.sequence) {
+                return;
+            }
+            mDelivered.put(state.id, state.sequence);
+            mObserver.onStateChanged(state);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.android.newsfeed;
+
+import java.util.Locale;
+
+/**
+ * Timings and sizes of every feed request, from connecting to the list reaching the screen.
+ * <p>
+ * Each phase goes into its own {@link LatencyHistogram}, so recording from the loading threads
+ * costs a few atomic adds and nothing has to be reported anywhere until someone asks for
+ * {@link #dump()}. Comparing the phases tells whether a slow refresh was the network, the
+ * parser or the UI.
+ */
+public final class FeedMetrics {
+
+    /**
+     * What is measured. Times are in microseconds.
+     */
+    public enum Phase {
+        /** From asking the {@link RequestScheduler} for a permit until it gave one. */
+        QUEUE("us"),
+        /** From opening the request until connected, including any DNS lookup and handshake. */
+        CONNECT("us"),
+        /** From opening the request until the response headers arrived. */
+        FIRST_BYTE("us"),
+        /** Time spent waiting for body bytes while parsing. */
+        BODY_READ("us"),
+        /** Time spent parsing, not counting the waits for body bytes. */
+        PARSE("us"),
+        /** From a load publishing a state until its observers have handled it on the main thread. */
+        DELIVERY("us"),
+        /** Response body bytes read off the network. */
+        BYTES("B"),
+        /** Articles per response. */
+        ARTICLES(""),
+        /** A whole call to the API, from the first attempt until it succeeded or gave up. */
+        CALL("us"),
+        /** Retries per call. */
+        RETRIES("");
+
+        private final String mUnit;
+
+        Phase(String unit) {
+            mUnit = unit;
+        }
+    }
+
+    private static final LatencyHistogram[] HISTOGRAMS = new LatencyHistogram[Phase.values().length];
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            HISTOGRAMS[i] = new LatencyHistogram();
+        }
+    }
+
+    private FeedMetrics() {
+    }
+
+    public static void record(Phase phase, long value) {
+        HISTOGRAMS[phase.ordinal()].record(value);
+    }
+
+    /**
+     * Record the time since the given {@link System#nanoTime()} reading, in microseconds.
+     */
+    public static void recordSince(Phase phase, long startNanos) {
+        record(phase, (System.nanoTime() - startNanos) / 1000);
+    }
+
+    public static LatencyHistogram get(Phase phase) {
+        return HISTOGRAMS[phase.ordinal()];
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Return every phase on a line of its own, with its count, mean, percentiles and maximum.
+     */
+    public static String dump() {
+        StringBuilder dump = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = get(phase);
+            dump.append(phase.name().toLowerCase(Locale.US)).append(' ').append(histogram);
+            if (!phase.mUnit.isEmpty()) {
+                dump.append(' ').append(phase.mUnit);
+            }
+            dump.append('\n');
+        }
+        return dump.toString();
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.android.newsfeed;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of the pages of a paginated Guardian feed as the user scrolls through it.
+ * <p>
+ * Positions are stable: a page that has been dropped to save memory keeps its slots in the
+ * list, {@link #getItem(int)} returns null for them, and the page is requested again when the
+ * user scrolls back to it.
+ */
+public class FeedPager {
+
+    private int mPageSize;
+
+    /**
+     * Page size to switch to the next time the feed is replaced.
+     */
+    private int mNextPageSize;
+    private final int mPrefetchDistance;
+    private final int mMaxPageRequests;
+    private final int mMaxPagesInMemory;
+
+    /**
+     * Loaded pages by page number, starting at 1.
+     */
+    private final Map<Integer, List<NewsArticle>> mPages = new HashMap<>();
+    private final Set<Integer> mPagesInFlight = new HashSet<>();
+
+    /**
+     * Highest page number loaded so far, and how many articles it held.
+     */
+    private int mLastPage;
+    private int mLastPageSize;
+    private boolean mEndReached;
+
+    /**
+     * Set when the feed was handed over whole rather than a page at a time, in which case
+     * nothing is ever requested or dropped.
+     */
+    private boolean mUnpaged;
+
+    /**
+     * Page the user was last seen looking at, used to decide which pages are far away.
+     */
+    private int mCurrentPage = 1;
+
+    /**
+     * Constructs a new {@link FeedPager}.
+     *
+     * @param pageSize         number of articles requested per page
+     * @param prefetchDistance how many rows before the end of the list the next page is requested
+     * @param maxPageRequests  maximum number of page requests running at once
+     * @param maxPagesInMemory maximum number of pages kept, dropping the ones furthest away
+     */
+    public FeedPager(int pageSize, int prefetchDistance, int maxPageRequests, int maxPagesInMemory) {
+        mPageSize = pageSize;
+        mNextPageSize = pageSize;
+        mPrefetchDistance = prefetchDistance;
+        mMaxPageRequests = maxPageRequests;
+        mMaxPagesInMemory = maxPagesInMemory;
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    /**
+     * Use the given page size from the next time the feed is cleared or replaced. The feed
+     * being shown keeps the page size it was loaded with.
+     */
+    public void setPageSize(int pageSize) {
+        mNextPageSize = pageSize;
+    }
+
+    /**
+     * Forget every page, as when a new query replaces the feed.
+     */
+    public void clear() {
+        mPageSize = mNextPageSize;
+        mPages.clear();
+        mPagesInFlight.clear();
+        mLastPage = 0;
+        mLastPageSize = 0;
+        mEndReached = false;
+        mUnpaged = false;
+        mCurrentPage = 1;
+    }
+
+    /**
+     * Replace the feed with the given first page.
+     */
+    public void reset(List<NewsArticle> firstPage) {
+        clear();
+        if (firstPage != null) {
+            onPageLoaded(1, firstPage);
+        }
+    }
+
+    /**
+     * Replace the feed with a complete list that has no further pages, such as a feed merged
+     * from several requests. It is split into pages only to keep positions consistent.
+     */
+    public void resetUnpaged(List<NewsArticle> newsArticles) {
+        clear();
+        if (newsArticles == null) {
+            return;
+        }
+        mUnpaged = true;
+        for (int start = 0; start < newsArticles.size(); start += mPageSize) {
+            int end = Math.min(start + mPageSize, newsArticles.size());
+            mPages.put(pageOf(start), newsArticles.subList(start, end));
+            mLastPage = pageOf(start);
+            mLastPageSize = end - start;
+        }
+        mEndReached = true;
+    }
+
+    public int getItemCount() {
+        if (mLastPage == 0) {
+            return 0;
+        }
+        return (mLastPage - 1) * mPageSize + mLastPageSize;
+    }
+
+    /**
+     * Return the article at the given position, or null if its page isn't in memory.
+     */
+    public NewsArticle getItem(int position) {
+        return itemOf(mPages, mPageSize, position);
+    }
+
+    private static NewsArticle itemOf(Map<Integer, List<NewsArticle>> pages, int pageSize, int position) {
+        List<NewsArticle> page = pages.get(position / pageSize + 1);
+        int index = position % pageSize;
+        if (page == null || index >= page.size()) {
+            return null;
+        }
+        return page.get(index);
+    }
+
+    /**
+     * Return every position as a list, with null for the rows of dropped pages. The list keeps
+     * the pages as they are now, but only reads an article when its position is asked for, so
+     * taking a snapshot doesn't decode the articles of a {@link LazyArticleList} page.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(new HashMap<>(mPages), mPageSize, getItemCount());
+    }
+
+    /**
+     * The pages of a {@link FeedPager} at one moment, as a list. Two snapshots can be compared
+     * position by position without decoding the articles of their lazy pages.
+     */
+    public static class Snapshot extends AbstractList<NewsArticle> {
+
+        private final Map<Integer, List<NewsArticle>> mPages;
+        private final int mPageSize;
+        private final int mCount;
+
+        Snapshot(Map<Integer, List<NewsArticle>> pages, int pageSize, int count) {
+            mPages = pages;
+            mPageSize = pageSize;
+            mCount = count;
+        }
+
+        @Override
+        public NewsArticle get(int position) {
+            checkPosition(position);
+            return itemOf(mPages, mPageSize, position);
+        }
+
+        @Override
+        public int size() {
+            return mCount;
+        }
+
+        /**
+         * Return whether the page holding the given position is in memory.
+         */
+        public boolean isLoaded(int position) {
+            checkPosition(position);
+            List<NewsArticle> page = mPages.get(position / mPageSize + 1);
+            return page != null && position % mPageSize < page.size();
+        }
+
+        /**
+         * Return whether the articles at the given positions of this and another snapshot have
+         * the same URL. Both positions must be loaded.
+         */
+        public boolean hasSameUrl(int position, Snapshot other, int otherPosition) {
+            List<NewsArticle> page = mPages.get(position / mPageSize + 1);
+            List<NewsArticle> otherPage = other.mPages.get(otherPosition / other.mPageSize + 1);
+            int index = position % mPageSize;
+            int otherIndex = otherPosition % other.mPageSize;
+            if (page instanceof LazyArticleList && otherPage instanceof LazyArticleList) {
+                return LazyArticleList.hasSameUrl((LazyArticleList) page, index,
+                        (LazyArticleList) otherPage, otherIndex);
+            }
+            if (page instanceof LazyArticleList) {
+                NewsArticle otherArticle = otherPage.get(otherIndex);
+                return otherArticle != null && ((LazyArticleList) page).hasSameUrl(index, otherArticle);
+            }
+            if (otherPage instanceof LazyArticleList) {
+                NewsArticle newsArticle = page.get(index);
+                return newsArticle != null && ((LazyArticleList) otherPage).hasSameUrl(otherIndex, newsArticle);
+            }
+            NewsArticle newsArticle = page.get(index);
+            NewsArticle otherArticle = otherPage.get(otherIndex);
+            return newsArticle != null && otherArticle != null && newsArticle.hasSameUrl(otherArticle);
+        }
+
+        /**
+         * Return whether the articles at the given positions of this and another snapshot show
+         * the same. Lazy pages are only decoded when their results are written differently.
+         * Both positions must be loaded.
+         */
+        public boolean hasSameContent(int position, Snapshot other, int otherPosition) {
+            List<NewsArticle> page = mPages.get(position / mPageSize + 1);
+            List<NewsArticle> otherPage = other.mPages.get(otherPosition / other.mPageSize + 1);
+            int index = position % mPageSize;
+            int otherIndex = otherPosition % other.mPageSize;
+            if (page instanceof LazyArticleList && otherPage instanceof LazyArticleList
+                    && LazyArticleList.isSameResult((LazyArticleList) page, index, (LazyArticleList) otherPage, otherIndex)) {
+                return true;
+            }
+            NewsArticle newsArticle = page.get(index);
+            NewsArticle otherArticle = otherPage.get(otherIndex);
+            return newsArticle != null && otherArticle != null && newsArticle.hasSameContent(otherArticle);
+        }
+
+        private void checkPosition(int position) {
+            if (position < 0 || position >= mCount) {
+                throw new IndexOutOfBoundsException("Position " + position + " of " + mCount);
+            }
+        }
+    }
+
+    /**
+     * Work out which pages should be requested now that the given rows are on screen, and mark
+     * them as in flight. The caller must report each of them back through
+     * {@link #onPageLoaded(int, List)} or {@link #onPageFailed(int)}.
+     */
+    public List<Integer> pagesToRequest(int firstVisible, int visibleCount) {
+        List<Integer> pages = new ArrayList<>();
+        if (mLastPage == 0 || mUnpaged) {
+            return pages;
+        }
+        int lastVisible = firstVisible + Math.max(visibleCount, 1) - 1;
+        mCurrentPage = pageOf(firstVisible + visibleCount / 2);
+
+        // Visible pages that were dropped while the user was elsewhere.
+        for (int page = pageOf(firstVisible); page <= Math.min(pageOf(lastVisible), mLastPage); page++) {
+            if (!mPages.containsKey(page)) {
+                addRequest(pages, page);
+            }
+        }
+
+        // The next page, once the user gets close to the end of what has been loaded.
+        if (!mEndReached && lastVisible >= getItemCount() - 1 - mPrefetchDistance) {
+            addRequest(pages, mLastPage + 1);
+        }
+        return pages;
+    }
+
+    /**
+     * Return whether the given page, as returned by {@link #pagesToRequest(int, int)}, lies
+     * beyond the pages loaded so far and is only wanted ahead of being scrolled to. Any other
+     * page requested is on screen, having been dropped while the user was elsewhere.
+     */
+    public boolean isLookAhead(int page) {
+        return page > mLastPage;
+    }
+
+    private void addRequest(List<Integer> pages, int page) {
+        if (!mPagesInFlight.contains(page) && mPagesInFlight.size() < mMaxPageRequests) {
+            mPagesInFlight.add(page);
+            pages.add(page);
+        }
+    }
+
+    /**
+     * Store a page that has arrived and drop the pages furthest from the current one if there
+     * are now too many in memory.
+     */
+    public void onPageLoaded(int page, List<NewsArticle> newsArticles) {
+        mPagesInFlight.remove(page);
+        if (newsArticles == null) {
+            return;
+        }
+        mPages.put(page, newsArticles);
+        if (page >= mLastPage) {
+            mLastPage = page;
+            mLastPageSize = Math.min(newsArticles.size(), mPageSize);
+            mEndReached = newsArticles.size() < mPageSize;
+        }
+        trimPages();
+    }
+
+    public void onPageFailed(int page) {
+        mPagesInFlight.remove(page);
+    }
+
+    private void trimPages() {
+        while (mPages.size() > mMaxPagesInMemory) {
+            int furthest = 0;
+            for (int page : mPages.keySet()) {
+                if (furthest == 0 || Math.abs(page - mCurrentPage) > Math.abs(furthest - mCurrentPage)) {
+                    furthest = page;
+                }
+            }
+            mPages.remove(furthest);
+        }
+    }
+
+    private int pageOf(int position) {
+        return position / mPageSize + 1;
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.android.newsfeed;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The last home feed shown, kept in one small binary file so that a cold start can draw it
+ * before any load has run.
+ * <p>
+ * The file starts with a header and a table of record offsets, followed by one record per
+ * article: the publication time, then the headline, URL and thumbnail URL, each as a length
+ * and its UTF-8 bytes. It is read back through a memory-mapped {@link FileChannel}, and an
+ * article is only decoded when it is asked for, so showing the first screenful doesn't pay
+ * for the rest of the feed.
+ */
+public class FeedSnapshot {
+
+    private static final String LOG_TAG = FeedSnapshot.class.getName();
+
+    private static final String FILE_NAME = "home-feed.snapshot";
+
+    /**
+     * "NFSS", so that any other file is rejected straight away.
+     */
+    private static final int MAGIC = 0x4e465353;
+
+    /**
+     * Bump whenever the file layout changes; older files are then ignored.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Magic, version, saved-at time and article count.
+     */
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Writes snapshots off the main thread, one at a time.
+     */
+    private static final ExecutorService SAVE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * Feed waiting to be written, or null. Only the latest one is worth writing.
+     */
+    private static List<NewsArticle> sPendingSave;
+
+    private final ByteBuffer mBuffer;
+    private final long mSavedAtMillis;
+    private final int[] mOffsets;
+
+    /**
+     * Articles decoded so far, by position.
+     */
+    private final NewsArticle[] mArticles;
+    private int mDecodedCount;
+
+    private FeedSnapshot(ByteBuffer buffer, long savedAtMillis, int[] offsets) {
+        mBuffer = buffer;
+        mSavedAtMillis = savedAtMillis;
+        mOffsets = offsets;
+        mArticles = new NewsArticle[offsets.length];
+    }
+
+    /**
+     * Return the file the app keeps its home feed snapshot in.
+     */
+    public static File getFile(Context context) {
+        return new File(context.getApplicationContext().getCacheDir(), FILE_NAME);
+    }
+
+    /**
+     * Map the snapshot in the given file, or return null if there is none or it can't be
+     * used, as when it was written in an older format or cut short.
+     */
+    public static FeedSnapshot open(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            RandomAccessFile input = new RandomAccessFile(file, "r");
+            ByteBuffer buffer;
+            try {
+                // The mapping stays valid after the file is closed.
+                buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+            } finally {
+                input.close();
+            }
+            return parseHeader(buffer);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the feed snapshot", e);
+            return null;
+        }
+    }
+
+    /**
+     * Check the header and offset table, leaving the records themselves for later.
+     */
+    private static FeedSnapshot parseHeader(ByteBuffer buffer) {
+        int size = buffer.limit();
+        if (size < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            return null;
+        }
+        long savedAtMillis = buffer.getLong(8);
+        int count = buffer.getInt(16);
+        if (count < 0 || count > (size - HEADER_BYTES) / 4) {
+            return null;
+        }
+        int[] offsets = new int[count];
+        int previous = HEADER_BYTES + count * 4;
+        for (int i = 0; i < count; i++) {
+            int offset = buffer.getInt(HEADER_BYTES + i * 4);
+            // Records follow each other, and each has at least its time and three lengths.
+            if (offset < previous || offset > size - (8 + 3 * 4)) {
+                return null;
+            }
+            offsets[i] = offset;
+            previous = offset;
+        }
+        return new FeedSnapshot(buffer, savedAtMillis, offsets);
+    }
+
+    /**
+     * Write the given articles to the given file, replacing any snapshot already there.
+     */
+    public static void write(File file, List<NewsArticle> articles, long savedAtMillis) throws IOException {
+        // Encode the records first, since the offset table in front of them needs their sizes.
+        List<byte[]> records = new ArrayList<>(articles.size());
+        for (NewsArticle newsArticle : articles) {
+            if (newsArticle != null) {
+                records.add(encode(newsArticle));
+            }
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeLong(savedAtMillis);
+            output.writeInt(records.size());
+            int offset = HEADER_BYTES + records.size() * 4;
+            for (byte[] record : records) {
+                output.writeInt(offset);
+                offset += record.length;
+            }
+            for (byte[] record : records) {
+                output.write(record);
+            }
+        } finally {
+            output.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot write feed snapshot " + file);
+        }
+    }
+
+    /**
+     * Write the given articles to the given file on a background thread. If several feeds
+     * are saved in quick succession, only the last one may be written.
+     */
+    public static void saveInBackground(final File file, List<NewsArticle> articles) {
+        synchronized (FeedSnapshot.class) {
+            boolean scheduled = sPendingSave != null;
+            sPendingSave = new ArrayList<>(articles);
+            if (scheduled) {
+                // The save already queued will pick up this feed instead.
+                return;
+            }
+        }
+        SAVE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<NewsArticle> articles;
+                synchronized (FeedSnapshot.class) {
+                    articles = sPendingSave;
+                    sPendingSave = null;
+                }
+                try {
+                    write(file, articles, System.currentTimeMillis());
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem writing the feed snapshot", e);
+                }
+            }
+        });
+    }
+
+    private static byte[] encode(NewsArticle newsArticle) {
+        byte[] headline = newsArticle.getHeadline().getBytes(UTF_8);
+        byte[] url = newsArticle.getUrl().getBytes(UTF_8);
+        byte[] thumbnail = newsArticle.hasThumbnail() ? newsArticle.getImageId().getBytes(UTF_8) : new byte[0];
+        ByteBuffer record = ByteBuffer.allocate(8 + 3 * 4 + headline.length + url.length + thumbnail.length);
+        record.putLong(newsArticle.getPublicationTime());
+        record.putInt(headline.length).put(headline);
+        record.putInt(url.length).put(url);
+        record.putInt(thumbnail.length).put(thumbnail);
+        return record.array();
+    }
+
+    public long getSavedAtMillis() {
+        return mSavedAtMillis;
+    }
+
+    public int size() {
+        return mOffsets.length;
+    }
+
+    /**
+     * Return the article at the given position, decoding it if this is the first time it is
+     * asked for, or null if its record is damaged.
+     */
+    public synchronized NewsArticle get(int position) {
+        NewsArticle newsArticle = mArticles[position];
+        if (newsArticle == null) {
+            newsArticle = decode(mOffsets[position]);
+            mArticles[position] = newsArticle;
+            if (newsArticle != null) {
+                mDecodedCount++;
+            }
+        }
+        return newsArticle;
+    }
+
+    /**
+     * Return the first articles of the snapshot, up to the given number, decoding only those.
+     */
+    public List<NewsArticle> head(int count) {
+        int end = Math.min(count, size());
+        List<NewsArticle> articles = new ArrayList<>(end);
+        for (int position = 0; position < end; position++) {
+            NewsArticle newsArticle = get(position);
+            if (newsArticle == null) {
+                break;
+            }
+            articles.add(newsArticle);
+        }
+        return articles;
+    }
+
+    /**
+     * Number of articles decoded so far.
+     */
+    public synchronized int getDecodedCount() {
+        return mDecodedCount;
+    }
+
+    private NewsArticle decode(int offset) {
+        // A view of its own, so the shared buffer's position is never moved.
+        ByteBuffer record = mBuffer.duplicate();
+        try {
+            record.position(offset);
+            long publicationTime = record.getLong();
+            String headline = readString(record);
+            String url = readString(record);
+            String thumbnail = readString(record);
+            return new NewsArticle(thumbnail.isEmpty() ? null : thumbnail, headline, publicationTime, url);
+        } catch (RuntimeException e) {
+            // Lengths pointing past the end of the file.
+            Log.e(LOG_TAG, "Damaged record at " + offset + " in the feed snapshot", e);
+            return null;
+        }
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
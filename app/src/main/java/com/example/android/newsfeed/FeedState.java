@@ -0,0 +1,70 @@
+package com.example.android.newsfeed;
+
+import java.util.List;
+
+/**
+ * Where one load of a {@link FeedLoadingEngine} has got to, and the articles it has so far.
+ */
+public class FeedState {
+
+    public enum Status {
+        /** Started, nothing to show yet. */
+        LOADING,
+        /** Some of the feed has arrived, as when the first sections of the home feed are in. */
+        PARTIAL,
+        /** Cached articles, shown while fresher ones are fetched. */
+        STALE,
+        /** Finished with the articles the network returned, or a cached list still fresh. */
+        LOADED,
+        /** Finished without fresh articles. Any articles are the cached ones. */
+        ERROR
+    }
+
+    /**
+     * Load this state belongs to, as passed to {@link FeedLoadingEngine#start}.
+     */
+    public final int id;
+    public final Status status;
+
+    /**
+     * Articles to show, or null if there are none.
+     */
+    public final List<NewsArticle> articles;
+
+    /**
+     * Increases with every state the engine publishes, across all loads.
+     */
+    final long sequence;
+
+    /**
+     * When the state was published, for timing its delivery.
+     */
+    final long publishedAtNanos;
+
+    /**
+     * Constructs a new {@link FeedState}, as a load's result.
+     */
+    public FeedState(Status status, List<NewsArticle> articles) {
+        this(0, status, articles, 0, 0);
+    }
+
+    FeedState(int id, Status status, List<NewsArticle> articles, long sequence, long publishedAtNanos) {
+        this.id = id;
+        this.status = status;
+        this.articles = articles;
+        this.sequence = sequence;
+        this.publishedAtNanos = publishedAtNanos;
+    }
+
+    /**
+     * Return whether the load has finished with this state.
+     */
+    public boolean isFinal() {
+        return status == Status.LOADED || status == Status.ERROR;
+    }
+
+    @Override
+    public String toString() {
+        return id + " " + status + " " + (articles == null ? "-" : articles.size() + " articles");
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.android.newsfeed;
+
+/**
+ * Decides what the feed screen shows for each state of the feed load: whether the articles
+ * replace the rows on screen, whether the progress bar shows, the message shown when there are
+ * none and the banner shown over articles that aren't complete or up to date.
+ * <p>
+ * Kept apart from {@link NewsFeedActivity}, so that what each state looks like can be tested
+ * off the device.
+ */
+public class FeedStatePresenter {
+
+    /**
+     * What to show for one state.
+     */
+    public static class Screen {
+
+        /**
+         * Whether the state's articles replace the rows on screen. If not, the rows stay.
+         */
+        public final boolean replaceRows;
+
+        /**
+         * Whether the progress bar shows, in place of an empty list.
+         */
+        public final boolean progress;
+
+        /**
+         * String shown in place of an empty list, or 0 for none.
+         */
+        public final int emptyMessage;
+
+        /**
+         * String shown above the list, or 0 for none.
+         */
+        public final int banner;
+
+        /**
+         * Whether tapping the message or the banner loads the feed again.
+         */
+        public final boolean retry;
+
+        Screen(boolean replaceRows, boolean progress, int emptyMessage, int banner, boolean retry) {
+            this.replaceRows = replaceRows;
+            this.progress = progress;
+            this.emptyMessage = emptyMessage;
+            this.banner = banner;
+            this.retry = retry;
+        }
+    }
+
+    private FeedStatePresenter() {
+    }
+
+    /**
+     * Return what to show for the given state of the feed load.
+     *
+     * @param searching whether the feed is a search, rather than the home feed
+     * @param connected whether the device has a network connection
+     * @param hasRows   whether rows are on screen already, as from the last run or a local search
+     */
+    public static Screen present(FeedState state, boolean searching, boolean connected, boolean hasRows) {
+        switch (state.status) {
+            case LOADING:
+                // Nothing yet; the rows already on screen stand in until something arrives.
+                return new Screen(false, !hasRows, 0, 0, false);
+            case PARTIAL:
+                // The first sections of the home feed, with more to come.
+                return new Screen(true, false, 0, R.string.feed_loading_more, false);
+            case STALE:
+                // A saved copy, while the fresh one is on its way.
+                return new Screen(true, false, 0, R.string.feed_updating, false);
+            case ERROR:
+                int failed = connected ? R.string.feed_load_failed : R.string.no_connection;
+                if (state.articles == null) {
+                    // Nothing new, so whatever is on screen is better than nothing.
+                    return new Screen(false, false, failed, hasRows ? R.string.feed_not_updated : 0, true);
+                }
+                return new Screen(true, false, failed, state.articles.isEmpty() ? 0 : R.string.feed_not_updated,
+                        true);
+            default:
+                return new Screen(true, false, searching ? R.string.no_articles : R.string.instructions, 0, false);
+        }
+    }
+}
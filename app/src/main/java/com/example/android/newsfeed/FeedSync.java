@@ -0,0 +1,104 @@
+package com.example.android.newsfeed;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.List;
+
+/**
+ * Keeps the article cache filled in the background, so the feed can be shown from it straight
+ * away, and still be shown when there is no connection.
+ * <p>
+ * The sync runs as a periodic JobScheduler job on Lollipop and later. It refreshes the home
+ * feed sections and the first page of the recent searches on an unmetered network, or on any
+ * network while charging, and JobScheduler retries a failed sync with exponential backoff.
+ * Synced lists are pinned in the cache, so browsing other feeds doesn't evict them. Older
+ * versions just fill the cache as the feed is used.
+ */
+public final class FeedSync {
+
+    private static final String LOG_TAG = FeedSync.class.getName();
+
+    /**
+     * The same sync is scheduled twice, since a job's constraints must all hold at once and we
+     * want either of these to be enough.
+     */
+    private static final int JOB_ID_UNMETERED = 1;
+    private static final int JOB_ID_CHARGING = 2;
+
+    private static final long SYNC_INTERVAL_MILLIS = 60 * 60 * 1000;
+    private static final long INITIAL_BACKOFF_MILLIS = 60 * 1000;
+
+    private FeedSync() {
+    }
+
+    /**
+     * Schedule the periodic sync, unless it is already scheduled.
+     */
+    public static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        scheduleJobs(context.getApplicationContext());
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void scheduleJobs(Context context) {
+        JobScheduler jobScheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        boolean unmeteredScheduled = false;
+        boolean chargingScheduled = false;
+        for (JobInfo job : jobScheduler.getAllPendingJobs()) {
+            unmeteredScheduled |= job.getId() == JOB_ID_UNMETERED;
+            chargingScheduled |= job.getId() == JOB_ID_CHARGING;
+        }
+        // Scheduling a job again would restart its period, so leave existing ones alone.
+        if (!unmeteredScheduled) {
+            jobScheduler.schedule(newJob(context, JOB_ID_UNMETERED)
+                    .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                    .build());
+        }
+        if (!chargingScheduled) {
+            jobScheduler.schedule(newJob(context, JOB_ID_CHARGING)
+                    .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                    .setRequiresCharging(true)
+                    .build());
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static JobInfo.Builder newJob(Context context, int jobId) {
+        return new JobInfo.Builder(jobId, new ComponentName(context, FeedSyncJobService.class))
+                .setPeriodic(SYNC_INTERVAL_MILLIS)
+                .setBackoffCriteria(INITIAL_BACKOFF_MILLIS, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                .setPersisted(true);
+    }
+
+    /**
+     * Fetch every URL whose cached copy isn't fresh any more into the repository's cache, and
+     * pin them there in place of the URLs of the last sync. Returns false if any of them
+     * failed, in which case the sync should be retried.
+     */
+    static boolean sync(ArticleRepository repository, List<String> requestUrls, RequestToken token) {
+        repository.setPinned(requestUrls);
+        boolean succeeded = true;
+        for (String requestUrl : requestUrls) {
+            if (token.isCancelled()) {
+                return false;
+            }
+            ArticleCache.Entry entry = repository.getCached(requestUrl);
+            if (entry != null && repository.isFresh(entry)) {
+                continue;
+            }
+            if (repository.refresh(requestUrl, token) == null) {
+                succeeded = false;
+            }
+        }
+        Log.v(LOG_TAG, "Sync of " + requestUrls.size() + " feeds " + (succeeded ? "succeeded" : "failed"));
+        return succeeded;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.android.newsfeed;
+
+import android.annotation.TargetApi;
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.os.Build;
+import android.util.SparseArray;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the {@link FeedSync} job off the main thread.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class FeedSyncJobService extends JobService {
+
+    private static final ExecutorService SYNC_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * Tokens of the syncs currently running, keyed by job ID, since both jobs of
+     * {@link FeedSync} can run at once. Guarded by itself.
+     */
+    private final SparseArray<RequestToken> mRequestTokens = new SparseArray<>();
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        // Only runs when the rate limit has permits to spare; a dropped sync is rescheduled.
+        final RequestToken token = new RequestToken(RequestScheduler.Priority.PREFETCH);
+        synchronized (mRequestTokens) {
+            mRequestTokens.put(params.getJobId(), token);
+        }
+        SYNC_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean succeeded = FeedSync.sync(ArticleRepository.getInstance(FeedSyncJobService.this),
+                        GuardianRequests.syncUrls(FeedSyncJobService.this), token);
+                synchronized (mRequestTokens) {
+                    if (mRequestTokens.get(params.getJobId()) == token) {
+                        mRequestTokens.remove(params.getJobId());
+                    }
+                }
+                if (!token.isCancelled()) {
+                    // Asking for a reschedule makes JobScheduler back off exponentially.
+                    jobFinished(params, !succeeded);
+                }
+            }
+        });
+        // The job goes on in the background until jobFinished is called.
+        return true;
+    }
+
+    /**
+     * The job's conditions no longer hold, such as the device leaving unmetered Wi-Fi.
+     */
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        RequestToken token;
+        synchronized (mRequestTokens) {
+            token = mRequestTokens.get(params.getJobId());
+            mRequestTokens.remove(params.getJobId());
+        }
+        if (token != null) {
+            token.cancel();
+        }
+        return true;
+    }
+}
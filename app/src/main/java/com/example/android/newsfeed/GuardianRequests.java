@@ -0,0 +1,127 @@
+package com.example.android.newsfeed;
+
+import android.content.Context;
+import android.net.Uri;
+import android.preference.PreferenceManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds the request URLs for The Guardian's content API, so the activity and the background
+ * sync ask for, and cache under, exactly the same URLs.
+ */
+public final class GuardianRequests {
+
+    private static final String NEWS_API_URL = "https://content.guardianapis.com/";
+    private static final String NEWS_REQUEST_URL = NEWS_API_URL + "search?";
+
+    private GuardianRequests() {
+    }
+
+    /**
+     * Return the URL of one page of search results. A null query asks for the latest articles.
+     */
+    public static String searchUrl(String query, int page, int pageSize, String orderBy) {
+        return searchUrl(query, page, pageSize, orderBy, true);
+    }
+
+    /**
+     * Return the URL of one page of search results, leaving out thumbnails if they aren't wanted.
+     */
+    public static String searchUrl(String query, int page, int pageSize, String orderBy, boolean thumbnails) {
+        return buildUrl(NEWS_REQUEST_URL, query, page, pageSize, orderBy, thumbnails);
+    }
+
+    /**
+     * Return the URL of the newest articles of one section, such as "world".
+     */
+    public static String sectionUrl(String section, int pageSize, String orderBy, boolean thumbnails) {
+        return buildUrl(NEWS_API_URL + section + "?", null, 1, pageSize, orderBy, thumbnails);
+    }
+
+    /**
+     * Return the URL of the single-item request for the article at the given web URL, with
+     * its HTML body, or null if it isn't a Guardian article.
+     */
+    public static String articleBodyUrl(String webUrl) {
+        String prefix = "https://www.theguardian.com/";
+        if (webUrl == null || !webUrl.startsWith(prefix) || webUrl.length() == prefix.length()) {
+            return null;
+        }
+        return Uri.parse(NEWS_API_URL + webUrl.substring(prefix.length())).buildUpon()
+                .appendQueryParameter("show-fields", "body")
+                .appendQueryParameter("api-key", "test")
+                .toString();
+    }
+
+    /**
+     * Return the root URL of the API, which every request goes to the host of.
+     */
+    public static String apiRootUrl() {
+        return NEWS_API_URL;
+    }
+
+    /**
+     * Return the URLs of the sections merged into the home feed, sized for the current network.
+     */
+    public static List<String> homeSectionUrls(Context context) {
+        return homeSectionUrls(context, NetworkQualityEstimator.getDefault().getProfile(context));
+    }
+
+    private static List<String> homeSectionUrls(Context context, RequestProfile profile) {
+        String orderBy = context.getString(R.string.settings_order_by_most_recent_value);
+        List<String> sectionUrls = new ArrayList<>();
+        for (String section : context.getResources().getStringArray(R.array.home_sections)) {
+            sectionUrls.add(sectionUrl(section, profile.pageSize, orderBy, profile.thumbnails));
+        }
+        return sectionUrls;
+    }
+
+    /**
+     * Return the URLs the background sync keeps cached: the home feed sections and the first
+     * page of each recent search, as the activity would ask for them.
+     * <p>
+     * The page size and thumbnails in those URLs depend on the network the activity is on
+     * when it asks, which the sync can't know, so there is one URL for every
+     * {@link RequestProfile}.
+     */
+    public static List<String> syncUrls(Context context) {
+        String orderBy = PreferenceManager.getDefaultSharedPreferences(context).getString(
+                context.getString(R.string.settings_order_by_key),
+                context.getString(R.string.settings_order_by_default));
+        List<String> recentSearches = RecentSearches.get(context);
+        // Profiles of different qualities can ask for the same thing.
+        Set<String> syncUrls = new LinkedHashSet<>();
+        for (RequestProfile profile : RequestProfile.forEveryQuality(
+                context.getResources().getInteger(R.integer.page_size))) {
+            syncUrls.addAll(homeSectionUrls(context, profile));
+            for (String query : recentSearches) {
+                syncUrls.add(searchUrl(query, 1, profile.pageSize, orderBy, profile.thumbnails));
+            }
+        }
+        return new ArrayList<>(syncUrls);
+    }
+
+    private static String buildUrl(String endpoint, String query, int page, int pageSize, String orderBy,
+                                   boolean thumbnails) {
+        Uri baseUri = Uri.parse(endpoint);
+        Uri.Builder uriBuilder = baseUri.buildUpon();
+
+        if (query != null) {
+            uriBuilder.appendQueryParameter("q", query);
+        }
+        if (thumbnails) {
+            uriBuilder.appendQueryParameter("show-fields", "thumbnail");
+        }
+        uriBuilder.appendQueryParameter("order-by", orderBy);
+        uriBuilder.appendQueryParameter("page-size", String.valueOf(pageSize));
+        if (page > 1) {
+            uriBuilder.appendQueryParameter("page", String.valueOf(page));
+        }
+        uriBuilder.appendQueryParameter("api-key", "test");
+        return uriBuilder.toString();
+    }
+}
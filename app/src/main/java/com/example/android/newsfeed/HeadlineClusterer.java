@@ -0,0 +1,442 @@
+package com.example.android.newsfeed;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Groups articles whose headlines are nearly the same, such as one story filed under several
+ * sections, a headline edited between two refreshes, or the live blog of a story next to its
+ * report.
+ * <p>
+ * Two headlines are alike when the sets of character shingles of their normalized text have a
+ * Jaccard similarity of at least the given threshold, estimated from MinHash signatures.
+ * Rather than comparing every headline with every other, each signature is cut into bands
+ * that are hashed into buckets, a locality-sensitive hash: only headlines that share a bucket
+ * in some band are compared. Adding a headline costs about the same however many are already
+ * in, so grouping a list takes time linear in its length. Alike headlines are joined into one
+ * group, and a group is led by the first of its articles to be added, which for a list
+ * ordered newest first is the newest. All methods are safe to call from any thread.
+ */
+public class HeadlineClusterer {
+
+    /**
+     * Similarity above which headlines are grouped by default. Light edits and a dropped
+     * "live" marker keep well above it; different stories sharing a few words stay below.
+     */
+    public static final double DEFAULT_SIMILARITY = 0.6;
+
+    /**
+     * Characters per shingle. Long enough that shingles are rarer than letters, short enough
+     * that an edited word only changes a few of them.
+     */
+    private static final int SHINGLE_LENGTH = 4;
+
+    /**
+     * Signature values hashed together into one bucket, and bands per signature. With 16 bands
+     * of 4, headlines half alike share a bucket about two times in three, and headlines at the
+     * default similarity almost nine times in ten.
+     */
+    private static final int ROWS_PER_BAND = 4;
+    private static final int BANDS = 16;
+    private static final int HASHES = ROWS_PER_BAND * BANDS;
+
+    /**
+     * Coefficients of the hash functions, fixed so that a headline always gets the same
+     * signature.
+     */
+    private static final long[] MULTIPLIERS = new long[HASHES];
+    private static final long[] ADDENDS = new long[HASHES];
+
+    static {
+        Random random = new Random(0x6e657773L);
+        for (int i = 0; i < HASHES; i++) {
+            // Odd, so every multiplier spreads the shingle hash over all 64 bits.
+            MULTIPLIERS[i] = random.nextLong() | 1;
+            ADDENDS[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Dash-separated endings that mark a live blog or its wrap-up, as in "Budget 2017 - live".
+     */
+    private static final String[] LIVE_MARKERS = {"live", "as it happened"};
+
+    private final double mSimilarity;
+
+    /**
+     * Every added article, by document number.
+     */
+    private final List<NewsArticle> mDocuments = new ArrayList<>();
+
+    /**
+     * Document number of every added article, by URL, so an article is only added once.
+     */
+    private final Map<String, Integer> mDocumentsByUrl = new HashMap<>();
+
+    /**
+     * MinHash signatures, {@link #HASHES} values per document, one after the other.
+     */
+    private int[] mSignatures = new int[16 * HASHES];
+
+    /**
+     * Union-find forest of the groups: the parent of every document, the root being the
+     * group's earliest document.
+     */
+    private int[] mParents = new int[16];
+
+    /**
+     * Documents in each bucket, keyed by the band and the hash of its signature values. A
+     * bucket lists one document per group that landed in it.
+     */
+    private final Buckets mBuckets = new Buckets();
+
+    private long mComparisonCount;
+
+    /**
+     * Constructs a new {@link HeadlineClusterer} grouping at {@link #DEFAULT_SIMILARITY}.
+     */
+    public HeadlineClusterer() {
+        this(DEFAULT_SIMILARITY);
+    }
+
+    /**
+     * Constructs a new {@link HeadlineClusterer}.
+     *
+     * @param similarity estimated Jaccard similarity of their shingles, from 0 to 1, at which
+     *                   two headlines are grouped
+     */
+    public HeadlineClusterer(double similarity) {
+        mSimilarity = similarity;
+    }
+
+    /**
+     * Return the groups of the given articles, in the order of their first article.
+     */
+    public static List<Group> group(List<NewsArticle> newsArticles) {
+        HeadlineClusterer clusterer = new HeadlineClusterer();
+        clusterer.addAll(newsArticles);
+        return clusterer.groups();
+    }
+
+    /**
+     * Add the given articles. Articles that were already added, and null ones, are skipped.
+     */
+    public synchronized void addAll(List<NewsArticle> newsArticles) {
+        if (newsArticles == null) {
+            return;
+        }
+        for (NewsArticle newsArticle : newsArticles) {
+            if (newsArticle != null && !mDocumentsByUrl.containsKey(newsArticle.getUrlKey())) {
+                add(newsArticle);
+            }
+        }
+    }
+
+    private void add(NewsArticle newsArticle) {
+        int document = mDocuments.size();
+        mDocuments.add(newsArticle);
+        mDocumentsByUrl.put(newsArticle.getUrlKey(), document);
+        if (document == mParents.length) {
+            mParents = Arrays.copyOf(mParents, document * 2);
+            mSignatures = Arrays.copyOf(mSignatures, document * 2 * HASHES);
+        }
+        mParents[document] = document;
+        sign(normalize(newsArticle.getHeadline()), mSignatures, document * HASHES);
+
+        for (int band = 0; band < BANDS; band++) {
+            long key = ((long) band << 32) | (bandHash(document, band) & 0xffffffffL);
+            boolean joined = false;
+            for (int entry = mBuckets.first(key); entry >= 0; entry = mBuckets.next(entry)) {
+                int other = mBuckets.document(entry);
+                if (find(other) == find(document)) {
+                    // Already grouped with it through another band.
+                    joined = true;
+                } else {
+                    mComparisonCount++;
+                    if (similarity(document, other) >= mSimilarity) {
+                        union(document, other);
+                        joined = true;
+                    }
+                }
+            }
+            if (!joined) {
+                mBuckets.add(key, document);
+            }
+        }
+    }
+
+    /**
+     * Return every group, in the order of their first article, with the articles of each in
+     * the order they were added.
+     */
+    public synchronized List<Group> groups() {
+        List<Group> groups = new ArrayList<>();
+        int[] groupOfRoot = new int[mDocuments.size()];
+        for (int document = 0; document < mDocuments.size(); document++) {
+            int root = find(document);
+            // Roots are the earliest documents of their groups, so they come up first.
+            if (root == document) {
+                groupOfRoot[document] = groups.size();
+                groups.add(new Group(mDocuments.get(document)));
+            } else {
+                groups.get(groupOfRoot[root]).add(mDocuments.get(document));
+            }
+        }
+        return groups;
+    }
+
+    public synchronized int size() {
+        return mDocuments.size();
+    }
+
+    /**
+     * Number of pairs of headlines compared so far, for benchmarks. Without the buckets it
+     * would be every pair.
+     */
+    public synchronized long getComparisonCount() {
+        return mComparisonCount;
+    }
+
+    /**
+     * Return the estimated similarity of the headlines of the two documents: the share of
+     * their signature values that are equal.
+     */
+    private double similarity(int first, int second) {
+        int firstStart = first * HASHES;
+        int secondStart = second * HASHES;
+        int equal = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (mSignatures[firstStart + i] == mSignatures[secondStart + i]) {
+                equal++;
+            }
+        }
+        return (double) equal / HASHES;
+    }
+
+    private int bandHash(int document, int band) {
+        int start = document * HASHES + band * ROWS_PER_BAND;
+        int hash = 17;
+        for (int i = start; i < start + ROWS_PER_BAND; i++) {
+            hash = 31 * hash + mSignatures[i];
+        }
+        return hash;
+    }
+
+    private int find(int document) {
+        int root = document;
+        while (mParents[root] != root) {
+            root = mParents[root];
+        }
+        // Point the whole path at the root, so the next find is quick.
+        while (mParents[document] != root) {
+            int parent = mParents[document];
+            mParents[document] = root;
+            document = parent;
+        }
+        return root;
+    }
+
+    private void union(int first, int second) {
+        int firstRoot = find(first);
+        int secondRoot = find(second);
+        // The earlier document stays the root, so it leads the group.
+        if (firstRoot < secondRoot) {
+            mParents[secondRoot] = firstRoot;
+        } else if (secondRoot < firstRoot) {
+            mParents[firstRoot] = secondRoot;
+        }
+    }
+
+    /**
+     * Return the headline in lower case, with any live blog ending taken off, and every run of
+     * characters other than letters and digits turned into a single space.
+     */
+    static String normalize(String headline) {
+        String lowerCase = headline.toLowerCase(Locale.US);
+        int dash = Math.max(lowerCase.lastIndexOf(" \u2013 "), Math.max(lowerCase.lastIndexOf(" - "),
+                lowerCase.lastIndexOf(" \u2014 ")));
+        if (dash > 0) {
+            // Only an ending that is nothing but the marker, so "Liverpool" or "Oliver" stay.
+            String ending = collapse(lowerCase.substring(dash + 3));
+            for (String marker : LIVE_MARKERS) {
+                if (ending.equals(marker)) {
+                    return collapse(lowerCase.substring(0, dash));
+                }
+            }
+        }
+        return collapse(lowerCase);
+    }
+
+    /**
+     * Return the given text with every run of characters other than letters and digits turned
+     * into a single space, and none at either end.
+     */
+    private static String collapse(String lowerCase) {
+        StringBuilder normalized = new StringBuilder(lowerCase.length());
+        boolean space = true;
+        for (int i = 0; i < lowerCase.length(); i++) {
+            char c = lowerCase.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(c);
+                space = false;
+            } else if (!space) {
+                normalized.append(' ');
+                space = true;
+            }
+        }
+        if (space && normalized.length() > 0) {
+            normalized.setLength(normalized.length() - 1);
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Write the MinHash signature of the given text into signatures, from the given offset:
+     * for every hash function, the smallest value it takes over the text's shingles.
+     */
+    static void sign(String text, int[] signatures, int offset) {
+        Arrays.fill(signatures, offset, offset + HASHES, Integer.MAX_VALUE);
+        // A text shorter than a shingle is a shingle of its own.
+        int shingles = Math.max(1, text.length() - SHINGLE_LENGTH + 1);
+        for (int start = 0; start < shingles; start++) {
+            int end = Math.min(start + SHINGLE_LENGTH, text.length());
+            long shingle = 0;
+            for (int i = start; i < end; i++) {
+                shingle = 31 * shingle + text.charAt(i);
+            }
+            for (int i = 0; i < HASHES; i++) {
+                int value = (int) ((MULTIPLIERS[i] * shingle + ADDENDS[i]) >>> 32);
+                if (value < signatures[offset + i]) {
+                    signatures[offset + i] = value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Articles with nearly the same headline, shown as one row that can be expanded.
+     */
+    public static class Group {
+
+        /**
+         * The article shown for the group, the first of them to be added.
+         */
+        public final NewsArticle lead;
+
+        private final List<NewsArticle> mArticles = new ArrayList<>(1);
+
+        Group(NewsArticle lead) {
+            this.lead = lead;
+            mArticles.add(lead);
+        }
+
+        void add(NewsArticle newsArticle) {
+            mArticles.add(newsArticle);
+        }
+
+        /**
+         * Return every article of the group, the lead first.
+         */
+        public List<NewsArticle> getArticles() {
+            return Collections.unmodifiableList(mArticles);
+        }
+
+        public int size() {
+            return mArticles.size();
+        }
+    }
+
+    /**
+     * Hash table from bucket keys to the documents in each bucket, kept in arrays rather than
+     * a map of lists: a feed of thousands of headlines fills tens of thousands of buckets,
+     * almost all of them with a single document.
+     */
+    private static class Buckets {
+
+        /**
+         * Open-addressed slots: the key of each bucket, and its first entry plus one, 0 for an
+         * empty slot.
+         */
+        private long[] mKeys = new long[256];
+        private int[] mFirstEntries = new int[256];
+        private int mBucketCount;
+
+        /**
+         * Every document listed in a bucket, and the entry after it in the same bucket, -1
+         * for the last one.
+         */
+        private int[] mDocuments = new int[256];
+        private int[] mNextEntries = new int[256];
+        private int mEntryCount;
+
+        /**
+         * Return the first entry of the bucket with the given key, or -1 if it has none.
+         */
+        int first(long key) {
+            int slot = slotOf(key, mKeys, mFirstEntries);
+            return mFirstEntries[slot] - 1;
+        }
+
+        int next(int entry) {
+            return mNextEntries[entry];
+        }
+
+        int document(int entry) {
+            return mDocuments[entry];
+        }
+
+        /**
+         * Add the given document to the front of the bucket with the given key.
+         */
+        void add(long key, int document) {
+            if (mEntryCount == mDocuments.length) {
+                mDocuments = Arrays.copyOf(mDocuments, mEntryCount * 2);
+                mNextEntries = Arrays.copyOf(mNextEntries, mEntryCount * 2);
+            }
+            int slot = slotOf(key, mKeys, mFirstEntries);
+            if (mFirstEntries[slot] == 0) {
+                mKeys[slot] = key;
+                mBucketCount++;
+            }
+            mDocuments[mEntryCount] = document;
+            mNextEntries[mEntryCount] = mFirstEntries[slot] - 1;
+            mFirstEntries[slot] = ++mEntryCount;
+            // Kept at most half full, so that probes stay short.
+            if (mBucketCount * 2 > mKeys.length) {
+                grow();
+            }
+        }
+
+        private void grow() {
+            long[] keys = new long[mKeys.length * 2];
+            int[] firstEntries = new int[keys.length];
+            for (int i = 0; i < mKeys.length; i++) {
+                if (mFirstEntries[i] != 0) {
+                    int slot = slotOf(mKeys[i], keys, firstEntries);
+                    keys[slot] = mKeys[i];
+                    firstEntries[slot] = mFirstEntries[i];
+                }
+            }
+            mKeys = keys;
+            mFirstEntries = firstEntries;
+        }
+
+        /**
+         * Return the slot holding the given key, or the empty slot it would go in.
+         */
+        private static int slotOf(long key, long[] keys, int[] firstEntries) {
+            int mask = keys.length - 1;
+            int slot = (int) ((key * 0x9e3779b97f4a7c15L) >>> 32) & mask;
+            while (firstEntries[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
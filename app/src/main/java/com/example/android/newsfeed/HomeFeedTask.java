@@ -0,0 +1,73 @@
+package com.example.android.newsfeed;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads the home feed for a {@link FeedLoadingEngine}: several Guardian sections fetched in
+ * parallel by a {@link FeedAggregator} and merged into one list.
+ * <p>
+ * The merged list is published as {@link FeedState.Status#PARTIAL} every time another section
+ * arrives, so the first articles show up as soon as the fastest section is in rather than when
+ * the slowest one is.
+ */
+public class HomeFeedTask implements FeedLoadingEngine.Task {
+
+    /**
+     * Most section requests running at once, shared by every home feed load.
+     */
+    private static final int MAX_PARALLEL_REQUESTS = 3;
+
+    private static final ExecutorService SECTION_EXECUTOR =
+            Executors.newFixedThreadPool(MAX_PARALLEL_REQUESTS);
+
+    private final List<String> mUrls;
+    private final FeedAggregator mAggregator;
+    private final ArticleRows mRows;
+
+    /**
+     * Set when the user asked for a refresh, so even fresh cached sections are revalidated.
+     */
+    private final boolean mForceRefresh;
+
+    /**
+     * Constructs a new {@link HomeFeedTask}.
+     *
+     * @param repository    to read the cache and the network through
+     * @param rows          to format the rows of the loaded articles with
+     * @param urls          one request URL per section
+     * @param timeoutMillis how long a single section may take before it is left out
+     * @param forceRefresh  whether to revalidate the cached sections even if they are still fresh
+     */
+    public HomeFeedTask(ArticleRepository repository, ArticleRows rows, List<String> urls, long timeoutMillis,
+                        boolean forceRefresh) {
+        mUrls = urls;
+        mAggregator = new FeedAggregator(repository, SECTION_EXECUTOR, timeoutMillis);
+        mRows = rows;
+        mForceRefresh = forceRefresh;
+    }
+
+    /**
+     * This is on a background thread.
+     */
+    @Override
+    public FeedState load(RequestToken token, final FeedLoadingEngine.Publisher publisher) {
+        List<NewsArticle> newsArticles = mAggregator.aggregate(mUrls, mForceRefresh, token, new FeedAggregator.Listener() {
+            @Override
+            public void onPartialResult(List<NewsArticle> partial, int finished, int total) {
+                if (finished == total || partial.isEmpty()) {
+                    // The complete list is the load's own result.
+                    return;
+                }
+                mRows.prepare(partial);
+                publisher.publish(FeedState.Status.PARTIAL, partial);
+            }
+        });
+        if (newsArticles == null || newsArticles.isEmpty()) {
+            return new FeedState(FeedState.Status.ERROR, null);
+        }
+        mRows.prepare(newsArticles);
+        return new FeedState(FeedState.Status.LOADED, newsArticles);
+    }
+}
@@ -0,0 +1,569 @@
+package com.example.android.newsfeed;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The articles of a Guardian search response, decoded only as they are asked for.
+ * <p>
+ * Building the list makes one pass over the raw response bytes and notes where each result
+ * object starts and ends; a {@link NewsArticle} is only built from those bytes the first time
+ * its position is read, as when its row scrolls into view. A small LRU keeps the articles
+ * decoded most recently, so the rows on screen aren't decoded again on every bind. Showing the
+ * first screenful of a response therefore costs the same however many results it holds.
+ * <p>
+ * Results lacking a headline or URL are left out, as {@link NewsArticleParser} does. The
+ * headline, URL and publication date of every result can also be read straight from the bytes,
+ * so the list can be searched and compared with another without decoding its articles.
+ * <p>
+ * The list is read-only and safe to share between threads.
+ */
+public class LazyArticleList extends AbstractList<NewsArticle> {
+
+    /**
+     * Decoded articles kept, a few screenfuls.
+     */
+    private static final int MAX_DECODED = 32;
+
+    private static final byte[] RESPONSE = ascii("response");
+    private static final byte[] RESULTS = ascii("results");
+    private static final byte[] WEB_TITLE = ascii("webTitle");
+    private static final byte[] WEB_URL = ascii("webUrl");
+    private static final byte[] WEB_PUBLICATION_DATE = ascii("webPublicationDate");
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * What {@link #mBounds} holds for each result, in this order: the start and end offset of
+     * the result object, then of the headline, URL and publication date inside it. Those are
+     * the contents of their JSON strings, without the quotes, or -1 for a missing date.
+     */
+    private static final int RESULT = 0;
+    private static final int HEADLINE = 2;
+    private static final int URL = 4;
+    private static final int DATE = 6;
+    private static final int BOUNDS_PER_RESULT = 8;
+
+    private final byte[] mBody;
+
+    private final int[] mBounds;
+
+    /**
+     * Recently decoded articles by position, least recently used first. Guarded by this.
+     */
+    private final Map<Integer, NewsArticle> mDecoded =
+            new LinkedHashMap<Integer, NewsArticle>(MAX_DECODED, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, NewsArticle> eldest) {
+                    return size() > MAX_DECODED;
+                }
+            };
+
+    private int mDecodeCount;
+
+    /**
+     * Asked between results whether indexing should give up, see {@link RequestToken}.
+     */
+    public interface Cancellation {
+        boolean isCancelled();
+    }
+
+    private LazyArticleList(byte[] body, int[] bounds) {
+        mBody = body;
+        mBounds = bounds;
+    }
+
+    /**
+     * Index the results of the given response body. The body is kept, not copied, and must
+     * not be changed afterwards.
+     *
+     * @throws IllegalStateException if the body isn't a search response
+     */
+    public static LazyArticleList index(byte[] body) {
+        try {
+            return index(body, null);
+        } catch (InterruptedIOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Index the results of the given response body, giving up as soon as the token, usually
+     * a {@link RequestToken}, is cancelled.
+     *
+     * @throws InterruptedIOException if the token was cancelled
+     * @throws IllegalStateException  if the body isn't a search response
+     */
+    public static LazyArticleList index(byte[] body, Cancellation token) throws InterruptedIOException {
+        Scanner scanner = new Scanner(body);
+        int[] bounds = new int[0];
+        int[] fields = new int[BOUNDS_PER_RESULT];
+        int count = 0;
+
+        scanner.expect('{');
+        while (scanner.nextMember()) {
+            if (!scanner.nameIs(RESPONSE)) {
+                scanner.skipValue();
+                continue;
+            }
+            scanner.expect('{');
+            while (scanner.nextMember()) {
+                if (!scanner.nameIs(RESULTS)) {
+                    scanner.skipValue();
+                    continue;
+                }
+                scanner.expect('[');
+                while (scanner.nextElement()) {
+                    if (token != null && token.isCancelled()) {
+                        throw new InterruptedIOException("Parse cancelled");
+                    }
+                    if (scanner.skipResult(fields)) {
+                        if (count * BOUNDS_PER_RESULT == bounds.length) {
+                            bounds = Arrays.copyOf(bounds, Math.max(16 * BOUNDS_PER_RESULT, bounds.length * 2));
+                        }
+                        System.arraycopy(fields, 0, bounds, count * BOUNDS_PER_RESULT, BOUNDS_PER_RESULT);
+                        count++;
+                    }
+                }
+            }
+        }
+        return new LazyArticleList(body, Arrays.copyOf(bounds, count * BOUNDS_PER_RESULT));
+    }
+
+    /**
+     * Return the article at the given position, or null if it can't be decoded. Indexing has
+     * checked the bytes, so that only happens to a result the streaming parser would have
+     * left out as well; callers treat it like a row with nothing to show.
+     */
+    @Override
+    public synchronized NewsArticle get(int position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Position " + position + " of " + size());
+        }
+        if (mDecoded.containsKey(position)) {
+            return mDecoded.get(position);
+        }
+        int start = bound(position, RESULT);
+        NewsArticle newsArticle;
+        try {
+            newsArticle = NewsArticleParser.readArticle(mBody, start, bound(position, RESULT + 1) - start);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            // A value of an unexpected type, which the scan doesn't look at.
+            newsArticle = null;
+        }
+        mDecoded.put(position, newsArticle);
+        mDecodeCount++;
+        return newsArticle;
+    }
+
+    @Override
+    public int size() {
+        return mBounds.length / BOUNDS_PER_RESULT;
+    }
+
+    /**
+     * Return the headline of the article at the given position, read from the bytes without
+     * decoding the article.
+     */
+    String getHeadline(int position) {
+        return string(bound(position, HEADLINE), bound(position, HEADLINE + 1));
+    }
+
+    /**
+     * Return the web URL of the article at the given position, read from the bytes without
+     * decoding the article.
+     */
+    String getUrl(int position) {
+        return string(bound(position, URL), bound(position, URL + 1));
+    }
+
+    /**
+     * Return the publication time of the article at the given position, read from the bytes
+     * without decoding the article.
+     */
+    long getPublicationTime(int position) {
+        int start = bound(position, DATE);
+        return start < 0 ? PublicationDates.UNKNOWN
+                : PublicationDates.parse(string(start, bound(position, DATE + 1)));
+    }
+
+    /**
+     * Return how many bytes of the body the result at the given position takes up.
+     */
+    int getResultLength(int position) {
+        return bound(position, RESULT + 1) - bound(position, RESULT);
+    }
+
+    /**
+     * Return whether the article at the given position has the same URL as the given one,
+     * comparing bytes with characters rather than decoding either.
+     */
+    boolean hasSameUrl(int position, NewsArticle newsArticle) {
+        int start = bound(position, URL);
+        int end = bound(position, URL + 1);
+        if (!isPlain(mBody, start, end)) {
+            return getUrl(position).equals(newsArticle.getUrl());
+        }
+        return newsArticle.isUrl(mBody, start, end);
+    }
+
+    /**
+     * Return whether the articles at the given positions of two lists have the same URL,
+     * comparing their bytes rather than decoding either.
+     */
+    static boolean hasSameUrl(LazyArticleList first, int firstPosition, LazyArticleList second, int secondPosition) {
+        int firstStart = first.bound(firstPosition, URL);
+        int firstEnd = first.bound(firstPosition, URL + 1);
+        int secondStart = second.bound(secondPosition, URL);
+        int secondEnd = second.bound(secondPosition, URL + 1);
+        if (!isPlain(first.mBody, firstStart, firstEnd) || !isPlain(second.mBody, secondStart, secondEnd)) {
+            // Escapes can write the same URL in more than one way.
+            return first.getUrl(firstPosition).equals(second.getUrl(secondPosition));
+        }
+        return equal(first.mBody, firstStart, firstEnd, second.mBody, secondStart, secondEnd);
+    }
+
+    /**
+     * Return whether the results at the given positions of two lists are written exactly
+     * alike, in which case they decode to articles showing the same. Results written
+     * differently may still do, so this only rules out having to decode them.
+     */
+    static boolean isSameResult(LazyArticleList first, int firstPosition, LazyArticleList second, int secondPosition) {
+        return equal(first.mBody, first.bound(firstPosition, RESULT), first.bound(firstPosition, RESULT + 1),
+                second.mBody, second.bound(secondPosition, RESULT), second.bound(secondPosition, RESULT + 1));
+    }
+
+    private int bound(int position, int which) {
+        return mBounds[position * BOUNDS_PER_RESULT + which];
+    }
+
+    /**
+     * Decode the contents of a JSON string in the body.
+     */
+    private String string(int start, int end) {
+        if (indexOf(mBody, start, end, (byte) '\\') < 0) {
+            return new String(mBody, start, end - start, UTF_8);
+        }
+        StringBuilder decoded = new StringBuilder(end - start);
+        int run = start;
+        for (int i = start; i < end; i++) {
+            if (mBody[i] != '\\') {
+                continue;
+            }
+            decoded.append(new String(mBody, run, i - run, UTF_8));
+            byte escaped = mBody[++i];
+            switch (escaped) {
+                case 'b':
+                    decoded.append('\b');
+                    break;
+                case 'f':
+                    decoded.append('\f');
+                    break;
+                case 'n':
+                    decoded.append('\n');
+                    break;
+                case 'r':
+                    decoded.append('\r');
+                    break;
+                case 't':
+                    decoded.append('\t');
+                    break;
+                case 'u':
+                    decoded.append((char) Integer.parseInt(new String(mBody, i + 1, 4, UTF_8), 16));
+                    i += 4;
+                    break;
+                default:
+                    // A quote, backslash or slash stands for itself.
+                    decoded.append((char) escaped);
+                    break;
+            }
+            run = i + 1;
+        }
+        return decoded.append(new String(mBody, run, end - run, UTF_8)).toString();
+    }
+
+    /**
+     * Return whether the given bytes are ASCII without escapes, and so are the characters of
+     * the string they hold one for one.
+     */
+    private static boolean isPlain(byte[] data, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (data[i] < 0 || data[i] == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] data, int start, int end, byte b) {
+        for (int i = start; i < end; i++) {
+            if (data[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean equal(byte[] first, int firstStart, int firstEnd,
+                                 byte[] second, int secondStart, int secondEnd) {
+        if (firstEnd - firstStart != secondEnd - secondStart) {
+            return false;
+        }
+        for (int i = 0; i < firstEnd - firstStart; i++) {
+            if (first[firstStart + i] != second[secondStart + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the response body the articles are decoded from. It must not be changed.
+     */
+    public byte[] getBody() {
+        return mBody;
+    }
+
+    /**
+     * Number of times an article has been decoded, counting ones decoded again after they
+     * dropped out of the LRU.
+     */
+    public synchronized int getDecodeCount() {
+        return mDecodeCount;
+    }
+
+    private static byte[] ascii(String name) {
+        byte[] bytes = new byte[name.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) name.charAt(i);
+        }
+        return bytes;
+    }
+
+    /**
+     * Walks the structure of a JSON document without decoding any of its values. UTF-8 needs
+     * no special handling, since every byte of a multi-byte character is above 0x7f and so
+     * never looks like a quote, bracket or backslash.
+     */
+    private static class Scanner {
+
+        final byte[] mData;
+        int mPosition;
+
+        /**
+         * Offsets of the last member name read, without its quotes.
+         */
+        int mNameStart;
+        int mNameEnd;
+
+        /**
+         * Whether the container being read has had an element or member yet.
+         */
+        boolean mFirst;
+
+        Scanner(byte[] data) {
+            mData = data;
+        }
+
+        /**
+         * Consume the given opening bracket and start reading its contents.
+         */
+        void expect(char open) {
+            if (peek() != open) {
+                throw error("Expected " + open);
+            }
+            mPosition++;
+            mFirst = true;
+        }
+
+        /**
+         * Move on to the next member of the object being read and read its name, or consume
+         * the closing brace and return false if there are no more.
+         */
+        boolean nextMember() {
+            if (!next('}')) {
+                return false;
+            }
+            if (peek() != '"') {
+                throw error("Expected a name");
+            }
+            mNameStart = mPosition + 1;
+            skipString();
+            mNameEnd = mPosition - 1;
+            if (peek() != ':') {
+                throw error("Expected :");
+            }
+            mPosition++;
+            return true;
+        }
+
+        /**
+         * Move on to the next element of the array being read, or consume the closing
+         * bracket and return false if there are no more.
+         */
+        boolean nextElement() {
+            return next(']');
+        }
+
+        private boolean next(char close) {
+            int c = peek();
+            if (c == close) {
+                mPosition++;
+                mFirst = false;
+                return false;
+            }
+            if (!mFirst) {
+                if (c != ',') {
+                    throw error("Expected , or " + close);
+                }
+                mPosition++;
+                peek();
+            }
+            mFirst = false;
+            return true;
+        }
+
+        /**
+         * Return whether the last member name read is the given one. Names are compared as
+         * written, which is how The Guardian writes them.
+         */
+        boolean nameIs(byte[] name) {
+            if (mNameEnd - mNameStart != name.length) {
+                return false;
+            }
+            for (int i = 0; i < name.length; i++) {
+                if (mData[mNameStart + i] != name[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Skip a result object, returning whether it has the string headline and URL that
+         * {@link NewsArticleParser} needs to build an article from it. Where it and those
+         * values start and end is written to the given array, laid out as in
+         * {@link #mBounds}.
+         */
+        boolean skipResult(int[] fields) {
+            Arrays.fill(fields, -1);
+            fields[RESULT] = mPosition;
+            expect('{');
+            while (nextMember()) {
+                int field = nameIs(WEB_TITLE) ? HEADLINE : nameIs(WEB_URL) ? URL
+                        : nameIs(WEB_PUBLICATION_DATE) ? DATE : -1;
+                boolean string = peek() == '"';
+                int start = mPosition + 1;
+                skipValue();
+                if (field >= 0) {
+                    fields[field] = string ? start : -1;
+                    fields[field + 1] = string ? mPosition - 1 : -1;
+                }
+            }
+            fields[RESULT + 1] = mPosition;
+            return fields[HEADLINE] >= 0 && fields[URL] >= 0;
+        }
+
+        void skipValue() {
+            int c = peek();
+            if (c == '"') {
+                skipString();
+            } else if (c == '{' || c == '[') {
+                skipContainer();
+            } else {
+                // A number, true, false or null.
+                int start = mPosition;
+                while (mPosition < mData.length && !isDelimiter(mData[mPosition])) {
+                    mPosition++;
+                }
+                if (mPosition == start) {
+                    throw error("Expected a value");
+                }
+            }
+            mFirst = false;
+        }
+
+        /**
+         * Skip an object or array and everything in it, only looking at brackets and strings.
+         */
+        private void skipContainer() {
+            int depth = 0;
+            do {
+                if (mPosition >= mData.length) {
+                    throw error("Unterminated container");
+                }
+                byte c = mData[mPosition];
+                if (c == '"') {
+                    skipString();
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+                mPosition++;
+            } while (depth > 0);
+        }
+
+        /**
+         * Skip a string, checking its escapes, so that every result indexed can be decoded.
+         */
+        private void skipString() {
+            mPosition++;
+            while (mPosition < mData.length) {
+                byte c = mData[mPosition++];
+                if (c == '\\') {
+                    skipEscape();
+                } else if (c == '"') {
+                    return;
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        private void skipEscape() {
+            int c = mPosition < mData.length ? mData[mPosition] : -1;
+            if (c == 'u') {
+                for (int i = 1; i <= 4; i++) {
+                    if (mPosition + i >= mData.length || Character.digit(mData[mPosition + i], 16) < 0) {
+                        throw error("Bad unicode escape");
+                    }
+                }
+                mPosition += 5;
+            } else if (c == '"' || c == '\\' || c == '/' || c == 'b' || c == 'f' || c == 'n' || c == 'r'
+                    || c == 't') {
+                mPosition++;
+            } else {
+                throw error("Bad escape");
+            }
+        }
+
+        /**
+         * Skip whitespace and return the next byte without consuming it, or -1 at the end.
+         */
+        private int peek() {
+            while (mPosition < mData.length) {
+                byte c = mData[mPosition];
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    return c;
+                }
+                mPosition++;
+            }
+            return -1;
+        }
+
+        private static boolean isDelimiter(byte c) {
+            return c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t';
+        }
+
+        private IllegalStateException error(String message) {
+            return new IllegalStateException(message + " at byte " + mPosition);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.android.newsfeed;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A directory of entry files kept in least recently used order and bounded by entry count and
+ * total bytes, which the on-disk stores, {@link ArticleCache} and {@link ReadingStore}, keep
+ * their entries in.
+ * <p>
+ * Each entry is one file named after a hash of its key. The owner writes an entry into a temp
+ * file and then commits it, so an interrupted write never leaves half an entry behind. What
+ * goes in the files is up to the owner, which also guards every call with its own lock.
+ */
+class LruDirectory {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File mDirectory;
+    private final String mSuffix;
+    private final int mMaxEntries;
+    private final long mMaxBytes;
+
+    /**
+     * File name to file size, in least recently used order. Loaded lazily from the directory.
+     */
+    private LinkedHashMap<String, Long> mIndex;
+    private long mTotalBytes;
+
+    /**
+     * File names of the entries that are never evicted.
+     */
+    private Set<String> mPinned = Collections.emptySet();
+
+    /**
+     * Constructs a new {@link LruDirectory}.
+     *
+     * @param directory  to keep the entry files in
+     * @param suffix     ending the name of every entry file; other files are left alone
+     * @param maxEntries maximum number of entries
+     * @param maxBytes   maximum total size of the entry files
+     */
+    LruDirectory(File directory, String suffix, int maxEntries, long maxBytes) {
+        mDirectory = directory;
+        mSuffix = suffix;
+        mMaxEntries = maxEntries;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Hash the key into a file name, since keys such as URLs aren't valid file names.
+     */
+    String fileName(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(key.getBytes(Charset.forName("UTF-8")));
+            StringBuilder name = new StringBuilder(hash.length * 2 + mSuffix.length());
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16));
+                name.append(Character.forDigit(b & 0xf, 16));
+            }
+            return name.append(mSuffix).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    File getFile(String fileName) {
+        return new File(mDirectory, fileName);
+    }
+
+    boolean contains(String fileName) {
+        ensureIndex();
+        return mIndex.containsKey(fileName);
+    }
+
+    /**
+     * Move the entry to the most recently used end, on disk too so the next process sees it.
+     */
+    void touch(String fileName) {
+        ensureIndex();
+        mIndex.get(fileName);
+        getFile(fileName).setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * Return the temp file to write the file of the given name into, creating the directory
+     * if needed.
+     */
+    File newTempFile(String fileName) throws IOException {
+        // Listed first, so the temp file isn't taken for a leftover from an interrupted write.
+        ensureIndex();
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Cannot create directory " + mDirectory);
+        }
+        return new File(mDirectory, fileName + TEMP_SUFFIX);
+    }
+
+    /**
+     * Move the given temp file into place as the file of the given name, which needn't be an
+     * entry. Returns the file.
+     */
+    File replace(String fileName, File temp) throws IOException {
+        File file = getFile(fileName);
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot write " + file);
+        }
+        return file;
+    }
+
+    /**
+     * Move the given temp file into place as the entry of the given file name, evicting old
+     * entries if needed. Returns the size of the entry in bytes.
+     */
+    long commit(String fileName, File temp) throws IOException {
+        ensureIndex();
+        File file = replace(fileName, temp);
+        Long oldSize = mIndex.remove(fileName);
+        if (oldSize != null) {
+            mTotalBytes -= oldSize;
+        }
+        long size = file.length();
+        mIndex.put(fileName, size);
+        mTotalBytes += size;
+        trimToSize();
+        return size;
+    }
+
+    void delete(String fileName) {
+        ensureIndex();
+        Long size = mIndex.remove(fileName);
+        if (size != null) {
+            mTotalBytes -= size;
+        }
+        getFile(fileName).delete();
+    }
+
+    /**
+     * Delete every entry, pinned or not.
+     */
+    void clear() {
+        ensureIndex();
+        for (String fileName : mIndex.keySet()) {
+            getFile(fileName).delete();
+        }
+        mIndex.clear();
+        mTotalBytes = 0;
+    }
+
+    /**
+     * Keep the entries of the given file names however long they go unused, in place of the
+     * ones pinned before. Pinned entries still count towards the bounds, but only the others
+     * are evicted to stay within them.
+     */
+    void setPinned(Set<String> fileNames) {
+        mPinned = fileNames;
+        // Entries unpinned just now may have to go.
+        ensureIndex();
+        trimToSize();
+    }
+
+    int size() {
+        ensureIndex();
+        return mIndex.size();
+    }
+
+    long sizeInBytes() {
+        ensureIndex();
+        return mTotalBytes;
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> eldest = mIndex.entrySet().iterator();
+        while ((mIndex.size() > mMaxEntries || mTotalBytes > mMaxBytes) && eldest.hasNext()) {
+            Map.Entry<String, Long> file = eldest.next();
+            if (mPinned.contains(file.getKey())) {
+                continue;
+            }
+            mTotalBytes -= file.getValue();
+            eldest.remove();
+            getFile(file.getKey()).delete();
+        }
+    }
+
+    /**
+     * Build the LRU index from the files on disk, oldest access first.
+     */
+    private void ensureIndex() {
+        if (mIndex != null) {
+            return;
+        }
+        mIndex = new LinkedHashMap<>(16, 0.75f, true);
+        mTotalBytes = 0;
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(mSuffix)) {
+                mIndex.put(file.getName(), file.length());
+                mTotalBytes += file.length();
+            } else if (file.getName().endsWith(TEMP_SUFFIX)) {
+                // Leftover temp file from an interrupted write.
+                file.delete();
+            }
+        }
+        trimToSize();
+    }
+}
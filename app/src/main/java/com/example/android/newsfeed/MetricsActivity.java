@@ -0,0 +1,61 @@
+package com.example.android.newsfeed;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+
+/**
+ * Debug screen showing the {@link FeedMetrics} recorded so far, along with the HTTP client's,
+ * the reading prefetcher's and the thumbnail loader's counters and the phases of the last
+ * launch.
+ */
+public class MetricsActivity extends AppCompatActivity {
+
+    private TextView mMetricsTextView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.metrics_activity);
+
+        mMetricsTextView = (TextView) findViewById(R.id.metrics);
+
+        Button refreshButton = (Button) findViewById(R.id.metrics_refresh);
+        refreshButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                showMetrics();
+            }
+        });
+
+        Button resetButton = (Button) findViewById(R.id.metrics_reset);
+        resetButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                FeedMetrics.reset();
+                showMetrics();
+            }
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showMetrics();
+    }
+
+    private void showMetrics() {
+        String metrics = FeedMetrics.dump()
+                + "\nhttp " + NewsHttpClient.getDefault()
+                + "\nrequests " + RequestRegistry.getDefault()
+                + "\nquota " + RequestScheduler.getDefault()
+                + "\ncalls " + ResilientFetcher.getDefault()
+                + "\nnetwork " + NetworkQualityEstimator.getDefault()
+                + "\nreading " + ReadingPrefetcher.getDefault(this)
+                + "\n\nthumbnails " + ThumbnailLoader.getInstance(this).dumpStats()
+                + "\n\nlaunch\n" + StartupTrace.dump();
+        mMetricsTextView.setText(metrics);
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.android.newsfeed;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.telephony.TelephonyManager;
+
+/**
+ * Estimates how good the network is from the app's own requests to The Guardian.
+ * <p>
+ * Every response feeds in its round trip time (until the status line arrived) and, for bodies
+ * large enough to tell, its throughput. Both are smoothed with an exponentially weighted moving
+ * average, so one slow request doesn't flip the estimate but a change of network shows after a
+ * few. Until anything has been measured the type of the active network is used instead.
+ * A {@link Quality} can also be forced, for tests and for trying out slow-link behaviour.
+ */
+public class NetworkQualityEstimator {
+
+    /**
+     * How good the network is, from worst to best.
+     */
+    public enum Quality {
+        POOR, MODERATE, GOOD, EXCELLENT, UNKNOWN
+    }
+
+    /**
+     * Weight of each new sample in the averages.
+     */
+    private static final double SMOOTHING = 0.3;
+
+    /**
+     * Bodies smaller than this arrive in a few packets, which says little about throughput.
+     */
+    private static final long MIN_THROUGHPUT_BYTES = 4 * 1024;
+
+    /**
+     * Upper bounds of throughput, in kilobits per second, for POOR, MODERATE and GOOD.
+     */
+    private static final double[] KBPS_LIMITS = {150, 550, 2000};
+
+    /**
+     * Lower bounds of round trip time, in milliseconds, for POOR, MODERATE and GOOD.
+     */
+    private static final double[] RTT_LIMITS = {1000, 400, 150};
+
+    private static NetworkQualityEstimator sDefault;
+
+    private double mKbps = -1;
+    private double mRttMillis = -1;
+    private int mSampleCount;
+    private Quality mOverride;
+
+    public static synchronized NetworkQualityEstimator getDefault() {
+        if (sDefault == null) {
+            sDefault = new NetworkQualityEstimator();
+        }
+        return sDefault;
+    }
+
+    /**
+     * Record one response.
+     *
+     * @param rttNanos  from sending the request until the status line arrived
+     * @param bytes     size of the body as received
+     * @param readNanos time spent blocked reading the body
+     */
+    public synchronized void onResponse(long rttNanos, long bytes, long readNanos) {
+        mRttMillis = smooth(mRttMillis, rttNanos / 1e6);
+        if (bytes >= MIN_THROUGHPUT_BYTES && readNanos > 0) {
+            mKbps = smooth(mKbps, bytes * 8 / 1000.0 / (readNanos / 1e9));
+        }
+        mSampleCount++;
+    }
+
+    private static double smooth(double average, double sample) {
+        return average < 0 ? sample : average + SMOOTHING * (sample - average);
+    }
+
+    /**
+     * Force the given quality regardless of what is measured, or go back to measuring with null.
+     */
+    public synchronized void setOverride(Quality quality) {
+        mOverride = quality;
+    }
+
+    /**
+     * Forget everything measured so far, as after a change of network.
+     */
+    public synchronized void reset() {
+        mKbps = -1;
+        mRttMillis = -1;
+        mSampleCount = 0;
+    }
+
+    /**
+     * Return the quality measured so far, or {@link Quality#UNKNOWN} before the first response.
+     */
+    public synchronized Quality getQuality() {
+        if (mOverride != null) {
+            return mOverride;
+        }
+        if (mSampleCount == 0) {
+            return Quality.UNKNOWN;
+        }
+        // Whichever of the two is worse decides: high latency hurts small responses as much
+        // as low throughput hurts large ones.
+        Quality byRtt = classify(mRttMillis, RTT_LIMITS, false);
+        if (mKbps < 0) {
+            return byRtt;
+        }
+        Quality byThroughput = classify(mKbps, KBPS_LIMITS, true);
+        return byRtt.ordinal() < byThroughput.ordinal() ? byRtt : byThroughput;
+    }
+
+    private static Quality classify(double value, double[] limits, boolean higherIsBetter) {
+        for (int i = 0; i < limits.length; i++) {
+            if (higherIsBetter ? value < limits[i] : value >= limits[i]) {
+                return Quality.values()[i];
+            }
+        }
+        return Quality.EXCELLENT;
+    }
+
+    /**
+     * Return the measured quality, or the one expected of the active network if nothing has
+     * been measured yet.
+     */
+    public Quality getQuality(Context context) {
+        Quality quality = getQuality();
+        if (quality != Quality.UNKNOWN) {
+            return quality;
+        }
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        return fromNetworkClass(cm.getActiveNetworkInfo());
+    }
+
+    /**
+     * Return the quality typical of the given network's type, such as POOR for EDGE.
+     */
+    static Quality fromNetworkClass(NetworkInfo networkInfo) {
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            return Quality.UNKNOWN;
+        }
+        if (networkInfo.getType() != ConnectivityManager.TYPE_MOBILE) {
+            // Wi-Fi, Ethernet and the like.
+            return Quality.GOOD;
+        }
+        switch (networkInfo.getSubtype()) {
+            case TelephonyManager.NETWORK_TYPE_GPRS:
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+            case TelephonyManager.NETWORK_TYPE_IDEN:
+                return Quality.POOR;
+            case TelephonyManager.NETWORK_TYPE_LTE:
+                return Quality.GOOD;
+            default:
+                // The many flavours of 3G.
+                return Quality.MODERATE;
+        }
+    }
+
+    /**
+     * Return the request parameters suited to the current network.
+     */
+    public RequestProfile getProfile(Context context) {
+        return RequestProfile.forQuality(getQuality(context),
+                context.getResources().getInteger(R.integer.page_size));
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "quality=" + getQuality() + " kbps=" + Math.round(mKbps) + " rtt=" + Math.round(mRttMillis)
+                + "ms samples=" + mSampleCount;
+    }
+}
@@ -1,33 +1,191 @@
 package com.example.android.newsfeed;
 
+import java.util.Comparator;
+
+/**
+ * One article from a Guardian search response.
+ * <p>
+ * Kept small because feeds hold thousands of them: the publication date is stored as epoch
+ * milliseconds, and the host part that almost every article and thumbnail URL shares is
+ * stored once in {@link #URL_PREFIXES} rather than in every instance.
+ */
 public class NewsArticle {
 
-    private String mImageId;
-    private String mHeadline;
-    private String mPublicationDate;
-    private String mUrl;
+    /**
+     * Thumbnail shown for articles that come back without one.
+     */
+    public static final String NO_THUMBNAIL_URL =
+            "http://cvalink.com/wp-content/themes/TechNews/images/img_not_available.png";
+
+    /**
+     * Orders articles newest first, with undated ones last.
+     */
+    public static final Comparator<NewsArticle> NEWEST_FIRST = new Comparator<NewsArticle>() {
+        @Override
+        public int compare(NewsArticle first, NewsArticle second) {
+            long firstTime = first.getPublicationTime();
+            long secondTime = second.getPublicationTime();
+            return firstTime < secondTime ? 1 : (firstTime == secondTime ? 0 : -1);
+        }
+    };
+
+    /**
+     * URL beginnings shared by most articles. Order matters: the stored prefix indexes into it.
+     */
+    private static final String[] URL_PREFIXES = {
+            "",
+            "https://www.theguardian.com/",
+            "https://media.guim.co.uk/",
+            "https://i.guim.co.uk/img/media/",
+            "https://static.guim.co.uk/",
+            "http://static.guim.co.uk/",
+    };
+
+    /**
+     * Index of the prefix of article URLs on The Guardian's site, which {@link #getUrlKey()}
+     * leaves unmarked.
+     */
+    private static final byte GUARDIAN_PREFIX = 1;
+
+    private final String mHeadline;
+    private final long mPublicationTime;
+    private final byte mUrlPrefix;
+    private final String mUrlPath;
+    private final byte mThumbnailPrefix;
+
+    /**
+     * Rest of the thumbnail URL after its prefix, or null if there is no thumbnail.
+     */
+    private final String mThumbnailPath;
 
-    public NewsArticle(String imageId, String headline, String publicationDate, String url) {
-        mImageId = imageId;
+    /**
+     * Constructs a new {@link NewsArticle}.
+     *
+     * @param imageId         thumbnail URL, or null if the article has none
+     * @param headline        of the article
+     * @param publicationTime in epoch milliseconds, see {@link PublicationDates}
+     * @param url             of the article on the web
+     */
+    public NewsArticle(String imageId, String headline, long publicationTime, String url) {
         mHeadline = headline;
-        mPublicationDate = publicationDate;
-        mUrl = url;
+        mPublicationTime = publicationTime;
+        mUrlPrefix = prefixOf(url);
+        mUrlPath = url.substring(URL_PREFIXES[mUrlPrefix].length());
+        if (imageId == null || NO_THUMBNAIL_URL.equals(imageId)) {
+            mThumbnailPrefix = 0;
+            mThumbnailPath = null;
+        } else {
+            mThumbnailPrefix = prefixOf(imageId);
+            mThumbnailPath = imageId.substring(URL_PREFIXES[mThumbnailPrefix].length());
+        }
     }
 
+    private static byte prefixOf(String url) {
+        for (byte i = 1; i < URL_PREFIXES.length; i++) {
+            if (url.startsWith(URL_PREFIXES[i])) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Return the thumbnail URL, or {@link #NO_THUMBNAIL_URL} if the article has none. Builds
+     * the URL from its parts, so only call it when the URL itself is needed.
+     */
     public String getImageId() {
-        return mImageId;
+        if (mThumbnailPath == null) {
+            return NO_THUMBNAIL_URL;
+        }
+        return URL_PREFIXES[mThumbnailPrefix].concat(mThumbnailPath);
+    }
+
+    public boolean hasThumbnail() {
+        return mThumbnailPath != null;
     }
 
     public String getHeadline() {
         return mHeadline;
     }
 
-    public String getPublicationDate() {
-        return mPublicationDate;
+    /**
+     * Return the publication time in epoch milliseconds, or {@link PublicationDates#UNKNOWN}.
+     */
+    public long getPublicationTime() {
+        return mPublicationTime;
     }
 
+    /**
+     * Return the web URL. Builds it from its parts, so compare articles with
+     * {@link #hasSameUrl(NewsArticle)} and key them with {@link #getUrlKey()} instead.
+     */
     public String getUrl() {
-        return mUrl;
+        return URL_PREFIXES[mUrlPrefix].concat(mUrlPath);
+    }
+
+    /**
+     * Return whether the given article has the same URL as this one, without building either.
+     */
+    public boolean hasSameUrl(NewsArticle other) {
+        return mUrlPrefix == other.mUrlPrefix && mUrlPath.equals(other.mUrlPath);
+    }
+
+    /**
+     * Return whether the given range of bytes, ASCII characters one for one, spells this
+     * article's URL. Compares without building the URL.
+     */
+    boolean isUrl(byte[] data, int start, int end) {
+        String prefix = URL_PREFIXES[mUrlPrefix];
+        if (end - start != prefix.length() + mUrlPath.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (data[start + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        start += prefix.length();
+        for (int i = 0; i < mUrlPath.length(); i++) {
+            if (data[start + i] != mUrlPath.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return a key that two articles share exactly when their URLs are the same, for looking
+     * articles up by URL. Nothing is built for an article on The Guardian's site.
+     */
+    public String getUrlKey() {
+        return keyOf(mUrlPrefix, mUrlPath);
+    }
+
+    /**
+     * Return the {@link #getUrlKey()} of an article with the given URL.
+     */
+    public static String urlKey(String url) {
+        byte prefix = prefixOf(url);
+        return keyOf(prefix, url.substring(URL_PREFIXES[prefix].length()));
+    }
+
+    private static String keyOf(byte prefix, String path) {
+        // Other prefixes are marked by their index as a leading control character, which can't
+        // start the path of a Guardian URL.
+        return prefix == GUARDIAN_PREFIX ? path : String.valueOf((char) prefix).concat(path);
+    }
+
+    /**
+     * Return whether the given article shows the same as this one, as two copies of an article
+     * decoded from the same response do.
+     */
+    public boolean hasSameContent(NewsArticle other) {
+        return mPublicationTime == other.mPublicationTime
+                && mUrlPrefix == other.mUrlPrefix
+                && mThumbnailPrefix == other.mThumbnailPrefix
+                && mHeadline.equals(other.mHeadline)
+                && mUrlPath.equals(other.mUrlPath)
+                && (mThumbnailPath == null ? other.mThumbnailPath == null : mThumbnailPath.equals(other.mThumbnailPath));
     }
 
 }
@@ -1,55 +1,587 @@
 package com.example.android.newsfeed;
 
-import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
 import android.widget.ImageView;
-import android.widget.LinearLayout;
 import android.widget.TextView;
 
-import com.squareup.picasso.Picasso;
-
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shows the articles of a {@link FeedPager} in a RecyclerView.
+ * <p>
+ * Every change is applied as a diff against the list currently on screen, keyed by article
+ * URL and worked out off the main thread, so only rows that actually changed are bound again.
+ * Rows of pages that have been dropped from memory are shown empty until the page is back.
+ * <p>
+ * What each row shows comes from its {@link ArticleRow}, usually formatted ahead of time, so
+ * binding only sets text. Rows are looked up as they are bound, so a long list, such as a
+ * {@link LazyArticleList}, only has its visible articles decoded before the first frame, and
+ * diffs compare its articles by their bytes rather than decoding them. Relative timestamps
+ * such as "5 min ago" are brought up to date once a minute for the rows on screen, without
+ * binding them again.
+ * <p>
+ * A complete feed, such as the home feed merged from several sections, has articles with
+ * nearly the same headline folded into one row under the first of them, see
+ * {@link HeadlineClusterer}. That row says how many more there are and expands to show them.
+ * Paged lists are shown as they are, since their rows are positioned page by page.
+ */
+public class NewsArticleAdapter extends RecyclerView.Adapter<NewsArticleAdapter.ViewHolder> {
+
+    /**
+     * Thread that diffs are calculated on. One thread keeps them in submission order.
+     */
+    private static final ExecutorService DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * How often the timestamps of the rows on screen are brought up to date.
+     */
+    private static final long TIMESTAMP_UPDATE_MILLIS = 60 * 1000L;
+
+    private final Context mContext;
+    private final FeedPager mPager;
+    /**
+     * Null until the first row is bound, so that creating the adapter during the launch doesn't
+     * wait for the loader's background initializer.
+     */
+    private ThumbnailLoader mThumbnailLoader;
+    private final ArticleRows mRows;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * The list currently shown, and how it was folded. Only ever replaced on the main thread.
+     */
+    private List<NewsArticle> mArticles = Collections.emptyList();
+    private FoldedList mFolded = new FoldedList(mArticles, null, Collections.<String>emptySet());
+
+    /**
+     * Whether the pager holds a complete feed, whose near-identical headlines are folded.
+     */
+    private boolean mGrouped;
+
+    /**
+     * URL keys of the first articles of the groups the user has expanded.
+     */
+    private final Set<String> mExpandedGroups = new HashSet<>();
+
+    private RecyclerView mRecyclerView;
+    private boolean mUpdatingTimestamps;
+
+    /**
+     * Incremented for every submitted list, so that diffs finishing after a newer list was
+     * submitted are thrown away.
+     */
+    private int mGeneration;
+
+    private int mBindCount;
+
+    /**
+     * One listener shared by every row; the row's holder says which article was clicked.
+     */
+    private final View.OnClickListener mOnClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View view) {
+            ArticleRow row = ((ViewHolder) view.getTag()).row;
+            if (row == null) {
+                return;
+            }
+            if (GuardianRequests.articleBodyUrl(row.article.getUrl()) == null) {
+                // Only Guardian articles have a body the reader can fetch.
+                mContext.startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(row.url)));
+            } else {
+                mContext.startActivity(ReaderActivity.newIntent(mContext, row));
+            }
+        }
+    };
 
-public class NewsArticleAdapter extends ArrayAdapter<NewsArticle> {
+    /**
+     * Expands or collapses the group of the row whose "similar" line was clicked.
+     */
+    private final View.OnClickListener mOnSimilarClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View view) {
+            ArticleRow row = ((ViewHolder) view.getTag()).row;
+            HeadlineClusterer.Group group = row == null ? null : mFolded.groupOf(row.article);
+            if (group == null) {
+                return;
+            }
+            String leadKey = group.lead.getUrlKey();
+            if (!mExpandedGroups.remove(leadKey)) {
+                mExpandedGroups.add(leadKey);
+            }
+            submit(mFolded.source, mFolded.groups);
+        }
+    };
+
+    private final Runnable mUpdateTimestamps = new Runnable() {
+        @Override
+        public void run() {
+            updateVisibleTimestamps();
+            mMainHandler.postDelayed(this, TIMESTAMP_UPDATE_MILLIS);
+        }
+    };
 
-    public NewsArticleAdapter(Activity context, ArrayList<NewsArticle> newsArticles) {
-        super(context, 0, newsArticles);
+    public NewsArticleAdapter(Context context, FeedPager pager) {
+        mContext = context;
+        mPager = pager;
+        mRows = ArticleRows.getInstance(context);
     }
 
-    public View getView(int position, View convertView, ViewGroup parent) {
-        View listItemView = convertView;
-        if (listItemView == null) {
-            listItemView = LayoutInflater.from(getContext()).inflate(
-                    R.layout.list_item, parent, false);
+    /**
+     * Start bringing the timestamps on screen up to date, as when the activity becomes visible.
+     */
+    public void startTimestampUpdates() {
+        if (!mUpdatingTimestamps) {
+            mUpdatingTimestamps = true;
+            mMainHandler.post(mUpdateTimestamps);
         }
+    }
+
+    public void stopTimestampUpdates() {
+        mUpdatingTimestamps = false;
+        mMainHandler.removeCallbacks(mUpdateTimestamps);
+    }
+
+    /**
+     * Set the text of the timestamps on screen that have changed since they were bound.
+     */
+    private void updateVisibleTimestamps() {
+        if (mRecyclerView == null) {
+            return;
+        }
+        long nowMillis = System.currentTimeMillis();
+        TimeFormatter formatter = mRows.getFormatter();
+        for (int i = 0; i < mRecyclerView.getChildCount(); i++) {
+            ViewHolder holder = (ViewHolder) mRecyclerView.getChildViewHolder(mRecyclerView.getChildAt(i));
+            if (holder != null && holder.row != null && holder.row.refreshTimestamp(formatter, nowMillis)) {
+                holder.timestampTextView.setText(holder.row.getTimestamp());
+            }
+        }
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        mRecyclerView = recyclerView;
+    }
 
-        final NewsArticle currentnewsArticle = getItem(position);
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        mRecyclerView = null;
+        stopTimestampUpdates();
+    }
+
+    /**
+     * Replace everything in the list with the given articles.
+     */
+    public void setArticles(List<NewsArticle> newsArticles) {
+        mGrouped = false;
+        mPager.reset(newsArticles);
+        submit(mPager.snapshot());
+    }
 
-        ImageView thumbnailImageView = (ImageView) listItemView.findViewById(R.id.thumbnail);
-        //new ImageLoadTask(currentnewsArticle.getImageId(), thumbnailImageView).execute();
+    /**
+     * Replace everything in the list with a complete feed that has no further pages.
+     */
+    public void setAllArticles(List<NewsArticle> newsArticles) {
+        mGrouped = true;
+        mPager.resetUnpaged(newsArticles);
+        submit(mPager.snapshot());
+    }
 
-        Picasso.with(getContext()).load(currentnewsArticle.getImageId()).into(thumbnailImageView);
+    public void clear() {
+        mGrouped = false;
+        mPager.clear();
+        submit(mPager.snapshot());
+    }
 
-        TextView headlineTextView = (TextView) listItemView.findViewById(R.id.headline);
-        headlineTextView.setText(String.valueOf(currentnewsArticle.getHeadline()));
+    /**
+     * Show the pager's current pages, after one has been added or dropped.
+     */
+    public void onPagesChanged() {
+        submit(mPager.snapshot());
+    }
 
-        TextView timestampTextView = (TextView) listItemView.findViewById(R.id.timestamp);
-        timestampTextView.setText(String.valueOf(currentnewsArticle.getPublicationDate()));
+    public NewsArticle getItem(int position) {
+        return mArticles.get(position);
+    }
 
-        LinearLayout listItem = (LinearLayout) listItemView.findViewById(R.id.list_item);
-        listItem.setOnClickListener(new View.OnClickListener() {
+    /**
+     * Number of times a row has been bound, for benchmarks.
+     */
+    public int getBindCount() {
+        return mBindCount;
+    }
+
+    private void submit(List<NewsArticle> newArticles) {
+        submit(newArticles, null);
+    }
+
+    /**
+     * Show the given list from the pager, folding it first if it is a complete feed. Its
+     * groups are worked out unless they are given, as when one has just been expanded.
+     */
+    private void submit(final List<NewsArticle> newArticles, final List<HeadlineClusterer.Group> groups) {
+        final int generation = ++mGeneration;
+        final List<NewsArticle> oldArticles = mArticles;
+        final FoldedList oldFolded = mFolded;
+        final boolean grouped = mGrouped;
+        final Set<String> expanded = new HashSet<>(mExpandedGroups);
+
+        // Nothing to diff against, and nothing to group: the whole range simply goes or comes.
+        boolean needsGrouping = grouped && groups == null && !newArticles.isEmpty();
+        if ((oldArticles.isEmpty() || newArticles.isEmpty()) && !needsGrouping) {
+            showAll(fold(newArticles, grouped, groups, expanded), oldArticles.size());
+            return;
+        }
+
+        // Grouping compares every headline, so it is never done on the main thread, even for
+        // the first list.
+        DIFF_EXECUTOR.execute(new Runnable() {
             @Override
-            public void onClick(View view) {
-                Uri uri = Uri.parse(currentnewsArticle.getUrl()); // missing 'http://' will cause crashed
-                Intent intent = new Intent(Intent.ACTION_VIEW, uri);
-                getContext().startActivity(intent);
+            public void run() {
+                final FoldedList newFolded = fold(newArticles, grouped, groups, expanded);
+                final DiffUtil.DiffResult result =
+                        oldArticles.isEmpty() ? null : calculateDiff(oldFolded, newFolded);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            return;
+                        }
+                        if (result == null) {
+                            showAll(newFolded, oldArticles.size());
+                        } else {
+                            applyDiff(newFolded, result);
+                        }
+                    }
+                });
             }
         });
-        return listItemView;
+    }
+
+    /**
+     * Show the new list in place of the old one, one of which is empty, without a diff.
+     */
+    private void showAll(FoldedList newFolded, int oldCount) {
+        show(newFolded);
+        if (oldCount > 0) {
+            notifyItemRangeRemoved(0, oldCount);
+        } else if (!mArticles.isEmpty()) {
+            notifyItemRangeInserted(0, mArticles.size());
+        }
+    }
+
+    /**
+     * Return the rows to show for the given list. Safe to call on any thread.
+     */
+    static FoldedList fold(List<NewsArticle> newsArticles, boolean grouped,
+                           List<HeadlineClusterer.Group> groups, Set<String> expanded) {
+        if (!grouped) {
+            return new FoldedList(newsArticles, null, expanded);
+        }
+        return new FoldedList(newsArticles, groups != null ? groups : HeadlineClusterer.group(newsArticles),
+                expanded);
+    }
+
+    /**
+     * Work out which rows differ between the two lists. Safe to call on any thread.
+     */
+    static DiffUtil.DiffResult calculateDiff(FoldedList oldFolded, FoldedList newFolded) {
+        return DiffUtil.calculateDiff(new ArticleDiffCallback(oldFolded, newFolded));
+    }
+
+    /**
+     * Show the new list, binding only the rows the diff says have changed.
+     */
+    void applyDiff(FoldedList newFolded, DiffUtil.DiffResult result) {
+        show(newFolded);
+        result.dispatchUpdatesTo(this);
+    }
+
+    private void show(FoldedList folded) {
+        mFolded = folded;
+        mArticles = folded.articles;
+        if (folded.groups != null) {
+            // Forget expanded groups that are no longer in the feed.
+            Set<String> leadKeys = new HashSet<>();
+            for (HeadlineClusterer.Group group : folded.groups) {
+                leadKeys.add(group.lead.getUrlKey());
+            }
+            mExpandedGroups.retainAll(leadKeys);
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return mArticles.size();
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View listItemView = LayoutInflater.from(mContext).inflate(
+                R.layout.list_item, parent, false);
+        ViewHolder holder = new ViewHolder(listItemView);
+        listItemView.setTag(holder);
+        listItemView.setOnClickListener(mOnClickListener);
+        holder.similarTextView.setTag(holder);
+        holder.similarTextView.setOnClickListener(mOnSimilarClickListener);
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        mBindCount++;
+        NewsArticle newsArticle = mArticles.get(position);
+        ArticleRow row = newsArticle == null ? null : mRows.get(newsArticle);
+        holder.row = row;
+
+        if (row == null) {
+            // The page holding this row is being loaded again.
+            getThumbnailLoader().cancel(holder.thumbnailImageView);
+            holder.thumbnailImageView.setImageDrawable(null);
+            holder.headlineTextView.setText(null);
+            holder.timestampTextView.setText(null);
+            holder.similarTextView.setVisibility(View.GONE);
+            return;
+        }
+
+        getThumbnailLoader().load(row.thumbnailUrl, holder.thumbnailImageView);
+
+        holder.headlineTextView.setText(row.headline);
+
+        // Rows kept from an earlier load may have been formatted a while ago.
+        row.refreshTimestamp(mRows.getFormatter(), System.currentTimeMillis());
+        holder.timestampTextView.setText(row.getTimestamp());
+
+        bindGroup(holder, newsArticle);
+    }
+
+    /**
+     * Show how many articles are folded under the row, or indent it if it is one of them.
+     */
+    private void bindGroup(ViewHolder holder, NewsArticle newsArticle) {
+        HeadlineClusterer.Group group = mFolded.groupOf(newsArticle);
+        boolean lead = group != null && group.lead.hasSameUrl(newsArticle);
+        int indent = group != null && !lead
+                ? mContext.getResources().getDimensionPixelSize(R.dimen.similar_headline_indent) : 0;
+        holder.itemView.setPadding(indent, 0, 0, 0);
+        if (!lead) {
+            holder.similarTextView.setVisibility(View.GONE);
+            return;
+        }
+        holder.similarTextView.setVisibility(View.VISIBLE);
+        if (mFolded.isExpanded(group)) {
+            holder.similarTextView.setText(R.string.hide_similar_headlines);
+        } else {
+            int similar = group.size() - 1;
+            holder.similarTextView.setText(mContext.getResources().getQuantityString(
+                    R.plurals.similar_headlines, similar, similar));
+        }
+    }
+
+    /**
+     * Stop loading the thumbnail of a row that has scrolled off screen.
+     */
+    @Override
+    public void onViewRecycled(ViewHolder holder) {
+        getThumbnailLoader().cancel(holder.thumbnailImageView);
+        holder.row = null;
+    }
+
+    private ThumbnailLoader getThumbnailLoader() {
+        if (mThumbnailLoader == null) {
+            mThumbnailLoader = ThumbnailLoader.getInstance(mContext);
+        }
+        return mThumbnailLoader;
+    }
+
+    /**
+     * Views looked up once per row, along with the row being shown.
+     */
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final ImageView thumbnailImageView;
+        final TextView headlineTextView;
+        final TextView timestampTextView;
+        final TextView similarTextView;
+        ArticleRow row;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            thumbnailImageView = (ImageView) itemView.findViewById(R.id.thumbnail);
+            headlineTextView = (TextView) itemView.findViewById(R.id.headline);
+            timestampTextView = (TextView) itemView.findViewById(R.id.timestamp);
+            similarTextView = (TextView) itemView.findViewById(R.id.similar);
+        }
+    }
+
+    /**
+     * The rows shown for a list from the pager: every article of a paged list, or the first
+     * article of every group of a complete feed, followed by the rest for expanded groups.
+     */
+    static class FoldedList {
+
+        /**
+         * The list from the pager.
+         */
+        final List<NewsArticle> source;
+
+        /**
+         * Groups of near-identical headlines, in order, or null for a paged list.
+         */
+        final List<HeadlineClusterer.Group> groups;
+
+        final List<NewsArticle> articles;
+
+        private final Set<String> mExpanded;
+
+        /**
+         * Groups of more than one article, by the URL key of each of their articles.
+         */
+        private final Map<String, HeadlineClusterer.Group> mGroupsByUrl = new HashMap<>();
+
+        FoldedList(List<NewsArticle> source, List<HeadlineClusterer.Group> groups, Set<String> expanded) {
+            this.source = source;
+            this.groups = groups;
+            mExpanded = expanded;
+            if (groups == null) {
+                articles = source;
+                return;
+            }
+            articles = new ArrayList<>(groups.size());
+            for (HeadlineClusterer.Group group : groups) {
+                if (group.size() > 1) {
+                    for (NewsArticle newsArticle : group.getArticles()) {
+                        mGroupsByUrl.put(newsArticle.getUrlKey(), group);
+                    }
+                }
+                if (isExpanded(group)) {
+                    articles.addAll(group.getArticles());
+                } else {
+                    articles.add(group.lead);
+                }
+            }
+        }
+
+        /**
+         * Return the group the given article was folded into, or null if it is alone.
+         */
+        HeadlineClusterer.Group groupOf(NewsArticle newsArticle) {
+            return mGroupsByUrl.isEmpty() ? null : mGroupsByUrl.get(newsArticle.getUrlKey());
+        }
+
+        boolean isExpanded(HeadlineClusterer.Group group) {
+            return group.size() > 1 && mExpanded.contains(group.lead.getUrlKey());
+        }
+
+        /**
+         * Return what the group line of the article's row shows, which changes without the
+         * article changing: 0 for none, -1 for an article folded under another, and otherwise
+         * the number folded under it, negated while they are shown.
+         */
+        int groupLineOf(NewsArticle newsArticle) {
+            HeadlineClusterer.Group group = groupOf(newsArticle);
+            if (group == null) {
+                return 0;
+            }
+            if (!group.lead.hasSameUrl(newsArticle)) {
+                return -1;
+            }
+            return isExpanded(group) ? -group.size() : group.size();
+        }
+    }
+
+    /**
+     * Compares articles by URL. Empty rows of dropped pages only match themselves.
+     * <p>
+     * DiffUtil asks about far more pairs of positions than there are rows, more than the LRU
+     * of a {@link LazyArticleList} holds, so the pages of two unfolded snapshots are compared
+     * by their bytes instead of by decoding their articles.
+     */
+    private static class ArticleDiffCallback extends DiffUtil.Callback {
+
+        private final FoldedList mOldFolded;
+        private final FoldedList mNewFolded;
+        private final List<NewsArticle> mOldArticles;
+        private final List<NewsArticle> mNewArticles;
+
+        /**
+         * The pages of both lists, or null unless neither list is folded.
+         */
+        private final FeedPager.Snapshot mOldSnapshot;
+        private final FeedPager.Snapshot mNewSnapshot;
+
+        ArticleDiffCallback(FoldedList oldFolded, FoldedList newFolded) {
+            mOldFolded = oldFolded;
+            mNewFolded = newFolded;
+            mOldArticles = oldFolded.articles;
+            mNewArticles = newFolded.articles;
+            boolean snapshots = oldFolded.groups == null && newFolded.groups == null
+                    && mOldArticles instanceof FeedPager.Snapshot && mNewArticles instanceof FeedPager.Snapshot;
+            mOldSnapshot = snapshots ? (FeedPager.Snapshot) mOldArticles : null;
+            mNewSnapshot = snapshots ? (FeedPager.Snapshot) mNewArticles : null;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldArticles.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewArticles.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            if (mOldSnapshot != null) {
+                boolean oldLoaded = mOldSnapshot.isLoaded(oldPosition);
+                boolean newLoaded = mNewSnapshot.isLoaded(newPosition);
+                if (!oldLoaded || !newLoaded) {
+                    return !oldLoaded && !newLoaded && oldPosition == newPosition;
+                }
+                return mOldSnapshot.hasSameUrl(oldPosition, mNewSnapshot, newPosition);
+            }
+            NewsArticle oldArticle = mOldArticles.get(oldPosition);
+            NewsArticle newArticle = mNewArticles.get(newPosition);
+            if (oldArticle == null || newArticle == null) {
+                return oldArticle == null && newArticle == null && oldPosition == newPosition;
+            }
+            return oldArticle.hasSameUrl(newArticle);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            if (mOldSnapshot != null) {
+                boolean oldLoaded = mOldSnapshot.isLoaded(oldPosition);
+                boolean newLoaded = mNewSnapshot.isLoaded(newPosition);
+                if (!oldLoaded || !newLoaded) {
+                    return oldLoaded == newLoaded;
+                }
+                return mOldSnapshot.hasSameContent(oldPosition, mNewSnapshot, newPosition);
+            }
+            NewsArticle oldArticle = mOldArticles.get(oldPosition);
+            NewsArticle newArticle = mNewArticles.get(newPosition);
+            if (oldArticle == null || newArticle == null) {
+                return oldArticle == newArticle;
+            }
+            return oldArticle.hasSameContent(newArticle)
+                    && mOldFolded.groupLineOf(oldArticle) == mNewFolded.groupLineOf(newArticle);
+        }
     }
 }
@@ -0,0 +1,190 @@
+package com.example.android.newsfeed;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parser for The Guardian search responses.
+ * <p>
+ * Reads {@code response.results[]} straight off an {@link InputStream} with a pull parser and
+ * builds one {@link NewsArticle} at a time, so the response body is never held as a String or
+ * as a JSON object tree. Fields we never display are skipped without being decoded.
+ */
+public final class NewsArticleParser {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Callback receiving each {@link NewsArticle} as soon as it has been read.
+     */
+    public interface ArticleSink {
+        void onArticle(NewsArticle newsArticle);
+    }
+
+    private NewsArticleParser() {
+    }
+
+    /**
+     * Parse the given response body and return every article in it.
+     */
+    public static List<NewsArticle> readArticles(InputStream inputStream) throws IOException {
+        final List<NewsArticle> newsArticles = new ArrayList<>();
+        readArticles(inputStream, new ArticleSink() {
+            @Override
+            public void onArticle(NewsArticle newsArticle) {
+                newsArticles.add(newsArticle);
+            }
+        });
+        return newsArticles;
+    }
+
+    /**
+     * Parse the given response body, handing each article to the sink as it is read.
+     * The stream is not closed.
+     */
+    public static void readArticles(InputStream inputStream, ArticleSink sink) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, UTF_8));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("response".equals(reader.nextName())) {
+                readResponse(reader, sink);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readResponse(JsonReader reader, ArticleSink sink) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("results".equals(reader.nextName())) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    NewsArticle newsArticle = readArticle(reader);
+                    if (newsArticle != null) {
+                        sink.onArticle(newsArticle);
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Parse the given response to a single-item request made with show-fields=body and return
+     * the HTML body of the article, or null if it has none. The stream is not closed.
+     */
+    public static String readBody(InputStream inputStream) throws IOException {
+        String body = null;
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, UTF_8));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("response".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("content".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        body = readContentBody(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return body;
+    }
+
+    private static String readContentBody(JsonReader reader) throws IOException {
+        String body = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("fields".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("body".equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                        body = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return body;
+    }
+
+    /**
+     * Read the single result object in the given range of bytes, as indexed by
+     * {@link LazyArticleList}, or return null if it lacks the values we need to show it.
+     */
+    static NewsArticle readArticle(byte[] data, int offset, int length) throws IOException {
+        return readArticle(new JsonReader(new InputStreamReader(
+                new ByteArrayInputStream(data, offset, length), UTF_8)));
+    }
+
+    /**
+     * Read a single result object, or return null if it lacks the values we need to show it.
+     */
+    private static NewsArticle readArticle(JsonReader reader) throws IOException {
+        String imageId = null;
+        String headline = null;
+        long publicationTime = PublicationDates.UNKNOWN;
+        String url = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            } else if ("webTitle".equals(name)) {
+                headline = reader.nextString();
+            } else if ("webPublicationDate".equals(name)) {
+                publicationTime = PublicationDates.parse(reader.nextString());
+            } else if ("webUrl".equals(name)) {
+                url = reader.nextString();
+            } else if ("fields".equals(name)) {
+                imageId = readThumbnail(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (headline == null || url == null) {
+            return null;
+        }
+        return new NewsArticle(imageId, headline, publicationTime, url);
+    }
+
+    private static String readThumbnail(JsonReader reader) throws IOException {
+        String thumbnail = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("thumbnail".equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                thumbnail = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return thumbnail;
+    }
+}
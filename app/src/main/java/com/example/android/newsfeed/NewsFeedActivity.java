@@ -1,48 +1,130 @@
 package com.example.android.newsfeed;
 
-import android.app.LoaderManager;
 import android.app.SearchManager;
 import android.content.Context;
 import android.content.Intent;
-import android.content.Loader;
 import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
-import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
 import android.preference.PreferenceManager;
+import android.support.v4.view.MenuItemCompat;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.SearchView;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.ListView;
+import android.view.ViewTreeObserver;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-public class NewsFeedActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<List<NewsArticle>> {
+public class NewsFeedActivity extends AppCompatActivity implements FeedLoadingEngine.Observer {
 
     public static final String LOG_TAG = NewsFeedActivity.class.getName();
-    private static final int NEWS_LOADER_ID = 1;
-    private static final String NEWS_REQUEST_URL =
-            "https://content.guardianapis.com/search?";
+
+    /**
+     * ID of the load of the feed itself: the home feed, or the first page of a search.
+     */
+    private static final int FEED_LOAD_ID = 1;
+
+    /**
+     * Pages after the first are each loaded on their own, with this ID plus the page number.
+     */
+    private static final int PAGE_LOAD_ID_BASE = 100;
+
+    /**
+     * Searches the on-device index, which may be busy indexing a fetched list.
+     */
+    private static final ExecutorService LOCAL_SEARCH_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * Saved instance state key of the query being shown, so that the load the engine
+     * redelivers after a rotation is still taken for a search.
+     */
+    private static final String KEY_USER_INPUT = "user_input";
     private String mRequestUrl;
     private NewsArticleAdapter mAdapter;
+
+    /**
+     * Request parameters the feed being shown was loaded with.
+     */
+    private RequestProfile mProfile;
     private TextView mEmptyStateTextView;
+
+    /**
+     * Says when the rows on screen aren't up to date, and offers to load them again.
+     */
+    private TextView mBannerView;
+
+    /**
+     * Whether tapping the empty view or the banner loads the feed again.
+     */
+    private boolean mRetryOnTap;
     private String mUserInput;
     private ProgressBar progress;
-    private ListView newsListView;
+    private RecyclerView newsListView;
+    private LinearLayoutManager mLayoutManager;
     private SearchView searchView;
+    private final Handler mHandler = new Handler();
+    private SearchSession mSearchSession = new SearchSession();
+    private FeedPager mPager;
+
+    /**
+     * Runs the loads and delivers their states. Kept across rotations, so that loads in flight
+     * carry on.
+     */
+    private FeedLoadingEngine mEngine;
+    private FeedLoadingEngine.Subscription mSubscription;
+
+    /**
+     * IDs of the page loads that haven't finished or been cancelled yet.
+     */
+    private final Set<Integer> mPageLoadIds = new HashSet<>();
+
+    /**
+     * Search waiting out the debounce interval, or null if there is none.
+     */
+    private Runnable mPendingSearch;
+
+    /**
+     * Whether the last search that was started is still being fetched.
+     */
+    private boolean mSearchInFlight;
+
+    /**
+     * Matches for the current query found in the on-device index, shown until the remote
+     * results arrive and then merged into them.
+     */
+    private List<NewsArticle> mLocalResults;
+
+    /**
+     * Query whose local matches are still wanted once the index has found them, or null.
+     */
+    private String mLocalQuery;
+
+    /**
+     * Whether the rows on screen are still the ones drawn from the {@link FeedSnapshot} on launch.
+     */
+    private boolean mShowingSnapshot;
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         MenuInflater inflater = getMenuInflater();
         inflater.inflate(R.menu.options_menu, menu);
+        // The metrics screen is a debugging aid only.
+        menu.findItem(R.id.action_metrics).setVisible(BuildConfig.DEBUG);
 
         // Associate searchable configuration with the SearchView
         SearchManager searchManager =
@@ -55,17 +137,7 @@ public class NewsFeedActivity extends AppCompatActivity implements LoaderManager
         searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             @Override
             public boolean onQueryTextChange(String newText) {
-                mEmptyStateTextView.setText(null); //Sets emptyText to null so that progress loader doesn't overlay emptyText
-                mAdapter.clear(); //Clears adapter so progress loader doesn't overlay the last search results
-                if (!checkNetworkActivity()) {
-                    progress.setVisibility(View.GONE);
-                    mEmptyStateTextView.setText(R.string.no_connection);
-                } else {
-                    mUserInput = newText.replaceAll(" ", "%20");
-                    // Get a reference to the LoaderManager, in order to interact with loaders.
-                    LoaderManager loaderManager = getLoaderManager();
-                    loaderManager.restartLoader(NEWS_LOADER_ID, null, NewsFeedActivity.this);
-                }
+                onSearchQueryChanged(SearchSession.normalize(newText));
                 return true;
             }
 
@@ -76,9 +148,201 @@ public class NewsFeedActivity extends AppCompatActivity implements LoaderManager
             }
         });
 
+        // A search session lasts from opening the search box until it is closed again.
+        MenuItemCompat.setOnActionExpandListener(menu.findItem(R.id.search),
+                new MenuItemCompat.OnActionExpandListener() {
+                    @Override
+                    public boolean onMenuItemActionExpand(MenuItem item) {
+                        return true;
+                    }
+
+                    @Override
+                    public boolean onMenuItemActionCollapse(MenuItem item) {
+                        Log.v("Search", "Session finished: " + mSearchSession);
+                        mSearchSession = new SearchSession();
+                        return true;
+                    }
+                });
+
         return true;
     }
 
+    /**
+     * Show whatever this session already knows about the query straight away, and fetch it
+     * once the user has stopped typing for the debounce interval.
+     */
+    private void onSearchQueryChanged(final String query) {
+        if (mPendingSearch != null) {
+            // The previous keystroke never made it to the network.
+            mHandler.removeCallbacks(mPendingSearch);
+            mPendingSearch = null;
+            mSearchSession.onRequestCoalesced();
+        }
+
+        mEmptyStateTextView.setText(null); //Sets emptyText to null so that progress loader doesn't overlay emptyText
+        showBanner(0);
+
+        List<NewsArticle> fetched = mSearchSession.getFetched(query);
+        if (fetched != null) {
+            // Already fetched during this session, so there is nothing to ask the network.
+            mSearchSession.onRequestCoalesced();
+            cancelSearchInFlight();
+            cancelPageLoads();
+            mUserInput = query;
+            mLocalResults = null;
+            mLocalQuery = null;
+            mAdapter.setArticles(fetched);
+            return;
+        }
+
+        mLocalResults = null;
+        mLocalQuery = query.isEmpty() ? null : query;
+        cancelPageLoads();
+        mAdapter.setAllArticles(null); //Clears adapter so progress loader doesn't overlay the last search results
+        if (mLocalQuery != null) {
+            searchLocally(query);
+        }
+
+        mPendingSearch = new Runnable() {
+            @Override
+            public void run() {
+                mPendingSearch = null;
+                startSearch(query);
+            }
+        };
+        mHandler.postDelayed(mPendingSearch, getResources().getInteger(R.integer.search_debounce_millis));
+    }
+
+    /**
+     * Show the articles already on the device that match the query, while it is pending.
+     */
+    private void searchLocally(final String query) {
+        final ArticleIndex index = ArticleRepository.getInstance(this).getIndex();
+        final int limit = mPager.getPageSize();
+        LOCAL_SEARCH_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<NewsArticle> matches = index.search(query, limit);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!query.equals(mLocalQuery)) {
+                            // Typed over, or the remote results got here first.
+                            return;
+                        }
+                        mLocalQuery = null;
+                        mLocalResults = matches;
+                        // Shown unpaged, since no further pages of them can be requested.
+                        mAdapter.setAllArticles(mLocalResults);
+                    }
+                });
+            }
+        });
+    }
+
+    private void startSearch(String query) {
+        if (mSearchInFlight) {
+            // Starting the feed load again cancels the request that is still running.
+            mSearchSession.onRequestCancelled();
+        }
+        mSearchSession.onRequestIssued();
+        mSearchInFlight = true;
+        // Clearing the search box goes back to the home feed.
+        mUserInput = query.isEmpty() ? null : query;
+        cancelPageLoads();
+        startFeedLoad(false);
+    }
+
+    private void cancelSearchInFlight() {
+        if (mSearchInFlight) {
+            mSearchSession.onRequestCancelled();
+            mSearchInFlight = false;
+            mEngine.cancel(FEED_LOAD_ID);
+        }
+    }
+
+    /**
+     * Load the feed for the current search, or the home feed if there is none.
+     *
+     * @param refresh whether to revalidate a cached list even if it is still fresh
+     */
+    private void startFeedLoad(boolean refresh) {
+        // A new feed is sized for the network as it is now; its later pages follow suit.
+        mProfile = NetworkQualityEstimator.getDefault().getProfile(this);
+        mPager.setPageSize(mProfile.pageSize);
+        ThumbnailLoader.setProfile(mProfile);
+        Log.v("Loader", "Request profile " + mProfile + ", " + NetworkQualityEstimator.getDefault());
+
+        FeedLoadingEngine.Task task;
+        if (mUserInput == null) {
+            // Nothing searched yet: show the home feed, merged from several sections.
+            task = new HomeFeedTask(ArticleRepository.getInstance(this), ArticleRows.getInstance(this),
+                    GuardianRequests.homeSectionUrls(this),
+                    getResources().getInteger(R.integer.section_timeout_millis), refresh);
+        } else {
+            // The first page of a search is what the user is waiting for.
+            task = newSearchTask(1, mProfile.pageSize, refresh,
+                    refresh ? RequestScheduler.Priority.REFRESH : RequestScheduler.Priority.USER_VISIBLE);
+        }
+        mEngine.start(FEED_LOAD_ID, task);
+    }
+
+    private FeedLoadingEngine.Task newSearchTask(int page, int pageSize, boolean refresh,
+                                                 RequestScheduler.Priority priority) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+
+        String orderBy = sharedPrefs.getString(
+                getString(R.string.settings_order_by_key),
+                getString(R.string.settings_order_by_default));
+
+        return new ArticleListTask(ArticleRepository.getInstance(this), ArticleRows.getInstance(this),
+                GuardianRequests.searchUrl(mUserInput, page, pageSize, orderBy, mProfile.thumbnails), refresh,
+                priority);
+    }
+
+    /**
+     * Request the pages the pager asks for now that the given rows are on screen.
+     */
+    private void requestPages(int firstVisible, int visibleCount) {
+        if (mPager == null) {
+            return;
+        }
+        for (int page : mPager.pagesToRequest(firstVisible, visibleCount)) {
+            // Only the next page is loaded ahead of need, and may be dropped when the budget is
+            // tight. A page on screen that was trimmed away is needed now: dropped, nothing
+            // would bring it back until the user scrolled again.
+            RequestScheduler.Priority priority = mPager.isLookAhead(page)
+                    ? RequestScheduler.Priority.PREFETCH : RequestScheduler.Priority.REFRESH;
+            mPageLoadIds.add(PAGE_LOAD_ID_BASE + page);
+            mEngine.start(PAGE_LOAD_ID_BASE + page, newSearchTask(page, mPager.getPageSize(), false, priority));
+        }
+    }
+
+    /**
+     * Have the bodies of the articles at rest on screen downloaded for the in-app reader.
+     */
+    private void prefetchVisibleArticles() {
+        int firstVisible = mLayoutManager.findFirstVisibleItemPosition();
+        int lastVisible = mLayoutManager.findLastVisibleItemPosition();
+        List<NewsArticle> visible = new ArrayList<>();
+        if (firstVisible != RecyclerView.NO_POSITION) {
+            for (int position = firstVisible; position <= lastVisible; position++) {
+                visible.add(mAdapter.getItem(position));
+            }
+        }
+        ReadingPrefetcher.getDefault(this).setVisible(visible);
+    }
+
+    /**
+     * Cancel the page loads, as when the first page is about to be replaced.
+     */
+    private void cancelPageLoads() {
+        for (int id : mPageLoadIds) {
+            mEngine.cancel(id);
+        }
+        mPageLoadIds.clear();
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         int id = item.getItemId();
@@ -87,101 +351,347 @@ public class NewsFeedActivity extends AppCompatActivity implements LoaderManager
             startActivity(settingsIntent);
             return true;
         }
-        LoaderManager loaderManager = getLoaderManager();
-        loaderManager.restartLoader(NEWS_LOADER_ID, null, NewsFeedActivity.this);
+        if (id == R.id.action_metrics) {
+            startActivity(new Intent(this, MetricsActivity.class));
+            return true;
+        }
+        refreshFeed();
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * Load the feed again, as asked for from the menu or by tapping a failed load.
+     */
+    private void refreshFeed() {
+        cancelPageLoads();
+        // Shows the cached list straight away and then asks only for what is newer.
+        startFeedLoad(true);
+    }
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        if (savedInstanceState != null) {
+            mUserInput = savedInstanceState.getString(KEY_USER_INPUT);
+        }
+        StartupTrace.startLaunch();
+        // Client and cache setup runs in the background while the layout is inflated.
+        StartupInitializer.startDefault(this);
+
+        StartupTrace.Section inflate = StartupTrace.begin("inflate");
         setContentView(R.layout.activity_news_feed);
+        inflate.end();
 
-        // Find a reference to the {@link ListView} in the layout
-        newsListView = (ListView) findViewById(R.id.list);
+        // Find a reference to the {@link RecyclerView} in the layout
+        newsListView = (RecyclerView) findViewById(R.id.list);
+        mLayoutManager = new LinearLayoutManager(this);
+        newsListView.setLayoutManager(mLayoutManager);
+        newsListView.setHasFixedSize(true);
 
         mEmptyStateTextView = (TextView) findViewById(R.id.empty_view);
-        newsListView.setEmptyView(mEmptyStateTextView);
+        mBannerView = (TextView) findViewById(R.id.feed_banner);
+        View.OnClickListener retryListener = new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                if (mRetryOnTap) {
+                    mRetryOnTap = false;
+                    showBanner(0);
+                    refreshFeed();
+                }
+            }
+        };
+        mEmptyStateTextView.setOnClickListener(retryListener);
+        mBannerView.setOnClickListener(retryListener);
 
         progress = (ProgressBar) findViewById(R.id.progress_bar);
-        if (!checkNetworkActivity()) {
-            progress.setVisibility(View.GONE);
-            mEmptyStateTextView.setText(R.string.no_connection);
-        } else {
-            // Create a new {@link ArrayAdapter} of books
-            mAdapter = new NewsArticleAdapter(this, new ArrayList<NewsArticle>());
 
-            // Set the adapter on the {@link ListView}
-            // so the list can be populated in the user interface
-            newsListView.setAdapter(mAdapter);
+        StartupTrace.Section adapter = StartupTrace.begin("adapter");
+        // Create a new {@link NewsArticleAdapter} over a pager that grows as the user scrolls
+        mProfile = NetworkQualityEstimator.getDefault().getProfile(this);
+        ThumbnailLoader.setProfile(mProfile);
+        mPager = new FeedPager(
+                mProfile.pageSize,
+                getResources().getInteger(R.integer.page_prefetch_distance),
+                getResources().getInteger(R.integer.max_page_requests),
+                getResources().getInteger(R.integer.max_pages_in_memory));
+        mAdapter = new NewsArticleAdapter(this, mPager);
 
-            // Get a reference to the LoaderManager, in order to interact with loaders.
-            LoaderManager loaderManager = getLoaderManager();
+        // Set the adapter on the {@link RecyclerView}
+        // so the list can be populated in the user interface
+        newsListView.setAdapter(mAdapter);
+        adapter.end();
+        newsListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                // Rows only pass by during a fling, so their thumbnails can wait.
+                ThumbnailLoader thumbnailLoader = ThumbnailLoader.getInstance(NewsFeedActivity.this);
+                if (newState == RecyclerView.SCROLL_STATE_SETTLING) {
+                    thumbnailLoader.pause();
+                } else {
+                    thumbnailLoader.resume();
+                }
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    prefetchVisibleArticles();
+                }
+            }
+
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                int firstVisible = mLayoutManager.findFirstVisibleItemPosition();
+                int lastVisible = mLayoutManager.findLastVisibleItemPosition();
+                if (firstVisible != RecyclerView.NO_POSITION) {
+                    requestPages(firstVisible, lastVisible - firstVisible + 1);
+                }
+                // Also called after a layout changed the rows on screen.
+                if (recyclerView.getScrollState() == RecyclerView.SCROLL_STATE_IDLE) {
+                    prefetchVisibleArticles();
+                }
+            }
+        });
+
+        // RecyclerView has no empty view of its own, so show ours whenever the list empties.
+        mAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                updateEmptyView();
+            }
 
-            // Initialize the loader. Pass in the int ID constant defined above and pass in null for
-            // the bundle. Pass in this activity for the LoaderCallbacks parameter (which is valid
-            // because this activity implements the LoaderCallbacks interface).
-            loaderManager.initLoader(NEWS_LOADER_ID, null, this);
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+        });
+
+        // Draw the feed from the last run straight away, while the loads start up. The home
+        // feed only, so not when coming back to a search.
+        if (mUserInput == null) {
+            showSnapshot();
         }
 
-    }
+        // The launch is over once the rows have been laid out and are about to be drawn.
+        newsListView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                newsListView.getViewTreeObserver().removeOnPreDrawListener(this);
+                StartupTrace.mark("first-frame");
+                Log.v("Startup", "Launch phases:\n" + StartupTrace.dump());
+                return true;
+            }
+        });
 
-    protected boolean checkNetworkActivity() {
-        ConnectivityManager cm = (ConnectivityManager) this.getSystemService(Context.CONNECTIVITY_SERVICE);
-        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
-        return activeNetwork != null && activeNetwork.isConnectedOrConnecting();
+        // After a rotation the engine of the previous instance is still running its loads, and
+        // redelivers their latest states once this instance starts.
+        mEngine = (FeedLoadingEngine) getLastCustomNonConfigurationInstance();
+        boolean restored = mEngine != null;
+        if (!restored) {
+            mEngine = FeedLoadingEngine.create();
+        }
+        mSubscription = mEngine.observe(this);
+
+        // The loads read the cache before going to the network, so they are started even
+        // without a connection; "no connection" is only shown if nothing was cached either.
+        if (!restored) {
+            StartupTrace.Section load = StartupTrace.begin("start-load");
+            startFeedLoad(false);
+            load.end();
+        }
     }
 
     @Override
-    public Loader<List<NewsArticle>> onCreateLoader(int i, Bundle bundle) {
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(KEY_USER_INPUT, mUserInput);
+    }
 
-        String orderBy = sharedPrefs.getString(
-                getString(R.string.settings_order_by_key),
-                getString(R.string.settings_order_by_default));
+    @Override
+    public Object onRetainCustomNonConfigurationInstance() {
+        return mEngine;
+    }
 
-        Uri baseUri = Uri.parse(NEWS_REQUEST_URL);
-        Uri.Builder uriBuilder = baseUri.buildUpon();
+    /**
+     * Show the first screenful of the home feed saved by the last run, if there is one.
+     */
+    private void showSnapshot() {
+        StartupTrace.Section section = StartupTrace.begin("snapshot");
+        FeedSnapshot snapshot = FeedSnapshot.open(FeedSnapshot.getFile(this));
+        if (snapshot == null || snapshot.size() == 0) {
+            section.end();
+            return;
+        }
+        // Only the rows that fit on screen are decoded; the load brings the whole feed.
+        mAdapter.setAllArticles(snapshot.head(getResources().getInteger(R.integer.snapshot_rows_on_launch)));
+        progress.setVisibility(View.GONE);
+        mShowingSnapshot = true;
+        Log.v("Startup", "Snapshot of " + snapshot.size() + " articles shown in "
+                + section.end() + " us");
+    }
 
-        if (mUserInput != null) {
-            uriBuilder.appendQueryParameter("q", mUserInput);
+    /**
+     * Show the given string above the list, or hide the banner if it is 0.
+     */
+    private void showBanner(int resId) {
+        if (resId == 0) {
+            mBannerView.setVisibility(View.GONE);
+        } else {
+            mBannerView.setText(resId);
+            mBannerView.setVisibility(View.VISIBLE);
         }
-        uriBuilder.appendQueryParameter("show-fields", "thumbnail");
-        uriBuilder.appendQueryParameter("order-by", orderBy);
-        uriBuilder.appendQueryParameter("api-key", "test");
+    }
+
+    private void updateEmptyView() {
+        mEmptyStateTextView.setVisibility(mAdapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+    }
 
-        Log.v("Context", String.valueOf(uriBuilder));
-        return new NewsArticleLoader(this, uriBuilder.toString());
+    protected boolean checkNetworkActivity() {
+        ConnectivityManager cm = (ConnectivityManager) this.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
+        return activeNetwork != null && activeNetwork.isConnectedOrConnecting();
     }
 
     @Override
-    public void onLoadFinished(Loader<List<NewsArticle>> loader, List<NewsArticle> newsArticles) {
-        progress.setVisibility(View.GONE);
+    public void onStateChanged(FeedState state) {
+        if (state.id == FEED_LOAD_ID) {
+            onFeedStateChanged(state);
+        } else if (state.status != FeedState.Status.LOADING) {
+            onPageStateChanged(state);
+        }
+    }
+
+    private void onFeedStateChanged(FeedState state) {
+        List<NewsArticle> newsArticles = state.articles;
+        FeedStatePresenter.Screen screen = FeedStatePresenter.present(state, mUserInput != null,
+                checkNetworkActivity(), mAdapter.getItemCount() > 0);
+        progress.setVisibility(screen.progress ? View.VISIBLE : View.GONE);
         //bookListView.setVisibility(View.VISIBLE);
 
         //Set empty state text
-        mEmptyStateTextView.setText(R.string.no_articles);
+        if (screen.emptyMessage == 0) {
+            mEmptyStateTextView.setText(null);
+        } else {
+            mEmptyStateTextView.setText(screen.emptyMessage);
+        }
+        showBanner(screen.banner);
+        mRetryOnTap = screen.retry;
 
+        Log.v("Loader", "onFeedStateChanged " + state);
+        if (state.isFinal()) {
+            mSearchInFlight = false;
+        }
+        if (mUserInput != null && state.status == FeedState.Status.LOADED) {
+            // Only what the network returned; a cached list shown on the way, or after a failed
+            // request, would be served for the rest of the session as if it were fresh.
+            mSearchSession.onResults(mUserInput, newsArticles);
+            // Kept cached by the background sync from now on.
+            RecentSearches.add(this, mUserInput);
+        }
+        if (!screen.replaceRows) {
+            // Nothing to show yet, or the load failed: the rows on screen stay.
+            return;
+        }
+        // Replace the adapter's data with the first page. If there is no valid list
+        // of {@link NewsArticle}s, the list is just cleared. This will trigger the RecyclerView to update.
         if (mUserInput == null) {
-            mEmptyStateTextView.setText(R.string.instructions);
+            if (newsArticles == null || newsArticles.isEmpty()) {
+                if (mShowingSnapshot) {
+                    // Nothing newer to be had, so the feed from the last run is better than none.
+                    return;
+                }
+            } else {
+                mShowingSnapshot = false;
+                FeedSnapshot.saveInBackground(FeedSnapshot.getFile(this), newsArticles);
+            }
+            // The home feed arrives whole, one more section at a time.
+            mAdapter.setAllArticles(newsArticles);
+        } else {
+            showSearchResults(newsArticles);
         }
+    }
 
-        Log.v("Loader", "onLoadFinished");
-        // Clear the adapter of previous book data
-        mAdapter.clear();
+    /**
+     * Show the remote results of a search, merged with the local matches shown while it ran.
+     */
+    private void showSearchResults(List<NewsArticle> newsArticles) {
+        mLocalQuery = null;
+        if (mLocalResults == null || mLocalResults.isEmpty()) {
+            mAdapter.setArticles(newsArticles);
+        } else if (newsArticles == null) {
+            // The remote search failed, so keep what was found on the device.
+            mAdapter.setAllArticles(mLocalResults);
+        } else if (newsArticles.size() < mProfile.pageSize) {
+            // The remote results are complete, so add any local matches they left out.
+            List<NewsArticle> merged = new ArrayList<>(newsArticles);
+            Set<String> urls = new HashSet<>();
+            for (NewsArticle newsArticle : newsArticles) {
+                if (newsArticle != null) {
+                    urls.add(newsArticle.getUrlKey());
+                }
+            }
+            for (NewsArticle newsArticle : mLocalResults) {
+                if (urls.add(newsArticle.getUrlKey())) {
+                    merged.add(newsArticle);
+                }
+            }
+            mAdapter.setAllArticles(merged);
+        } else {
+            // More pages follow, which will bring in the rest of the local matches.
+            mAdapter.setArticles(newsArticles);
+        }
+    }
 
-        // If there is a valid list of {@link Book}s, then add them to the adapter's
-        // data set. This will trigger the ListView to update.
-        if (newsArticles != null && !newsArticles.isEmpty()) {
-            mAdapter.addAll(newsArticles);
+    /**
+     * Add a page that arrived after the first one. The adapter diffs the pages against what
+     * is on screen, so only the new rows are bound.
+     */
+    private void onPageStateChanged(FeedState state) {
+        int page = state.id - PAGE_LOAD_ID_BASE;
+        if (state.articles != null) {
+            mPager.onPageLoaded(page, state.articles);
+        } else if (state.isFinal()) {
+            mPager.onPageFailed(page);
+        }
+        mAdapter.onPagesChanged();
+
+        if (state.isFinal()) {
+            // The page now lives in the pager, which decides when to drop it.
+            mPageLoadIds.remove(state.id);
+            mEngine.cancel(state.id);
         }
     }
 
     @Override
-    public void onLoaderReset(Loader<List<NewsArticle>> loader) {
-        // Loader reset, so we can clear out our existing data.
-        Log.v("Loader", "onLoaderReset");
-        mAdapter.clear();
+    protected void onStart() {
+        super.onStart();
+        mAdapter.startTimestampUpdates();
+        // Catches up on whatever the loads delivered while the activity was stopped.
+        mSubscription.setActive(true);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        mSubscription.setActive(false);
+        mAdapter.stopTimestampUpdates();
+        // Nothing is on screen to prefetch for any more.
+        ReadingPrefetcher.getDefault(this).cancelAll();
+        Log.v("Thumbnails", ThumbnailLoader.getInstance(this).dumpStats());
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mPendingSearch != null) {
+            mHandler.removeCallbacks(mPendingSearch);
+        }
+        mLocalQuery = null;
+        mSubscription.close();
+        if (!isChangingConfigurations()) {
+            mEngine.cancelAll();
+        }
     }
 
 }
@@ -0,0 +1,479 @@
+package com.example.android.newsfeed;
+
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static com.example.android.newsfeed.NewsFeedActivity.LOG_TAG;
+
+/**
+ * Makes the HTTP requests for Guardian search results.
+ * <p>
+ * Connections are left to HttpURLConnection's keep-alive pool: a response that was read to
+ * the end is closed rather than disconnected, so the next request to the same host skips the
+ * TCP and TLS handshakes. Responses are requested gzipped, and every list is remembered with
+ * its ETag and Last-Modified validators so that a 304 Not Modified hands back the list parsed
+ * last time instead of downloading and parsing it again. Lists are returned as
+ * {@link LazyArticleList}s over the response body, so their articles are decoded as they are
+ * shown rather than all up front. Every request first waits for a permit from the
+ * {@link RequestScheduler}, which is told about 429 responses.
+ */
+public class NewsHttpClient {
+
+    private static final int READ_TIMEOUT = 10000;
+    private static final int CONNECTION_TIMEOUT = 15000;
+
+    /**
+     * Number of responses whose validators are remembered for conditional requests.
+     */
+    private static final int MAX_VALIDATED_RESPONSES = 32;
+
+    private static NewsHttpClient sDefault;
+
+    /**
+     * Last good response per request URL, least recently used first.
+     */
+    private final Map<String, ValidatedResponse> mValidated =
+            new LinkedHashMap<String, ValidatedResponse>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ValidatedResponse> eldest) {
+                    return size() > MAX_VALIDATED_RESPONSES;
+                }
+            };
+
+    /**
+     * Permits every request, or null to make requests as soon as asked.
+     */
+    private final RequestScheduler mScheduler;
+
+    private int mRequestCount;
+    private int mNotModifiedCount;
+    private int mPreconnectCount;
+    private long mBytesReceived;
+
+    /**
+     * Constructs a new {@link NewsHttpClient} that makes its requests as soon as asked.
+     */
+    public NewsHttpClient() {
+        this(null);
+    }
+
+    /**
+     * Constructs a new {@link NewsHttpClient}.
+     *
+     * @param scheduler to get a permit from before every request, or null to not wait for one
+     */
+    public NewsHttpClient(RequestScheduler scheduler) {
+        mScheduler = scheduler;
+    }
+
+    /**
+     * Return the client shared by the whole app, so every request goes through one pool, one
+     * set of remembered validators and one rate limit.
+     */
+    public static synchronized NewsHttpClient getDefault() {
+        if (sDefault == null) {
+            sDefault = new NewsHttpClient(RequestScheduler.getDefault());
+        }
+        return sDefault;
+    }
+
+    /**
+     * Request the given URL and parse the articles in the response. Returns the list from the
+     * previous response if the server says it hasn't changed, or null if the request failed
+     * or was cancelled through the token.
+     */
+    public List<NewsArticle> fetchArticles(URL url, RequestToken token) throws IOException {
+        try {
+            return request(url, token, Math.max(READ_TIMEOUT, CONNECTION_TIMEOUT));
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem retrieving the newsArticle JSON results.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Request the given URL and parse the articles in the response, waiting no longer than
+     * timeoutMillis to connect or for any one read. Returns the list from the previous response
+     * if the server says it hasn't changed, or null if the request was cancelled through the
+     * token.
+     *
+     * @throws ApiException if the server answered with an error status or a malformed body,
+     *                      or the scheduler dropped the request
+     * @throws IOException  if the request failed on the way
+     */
+    public List<NewsArticle> request(URL url, RequestToken token, int timeoutMillis) throws IOException {
+        if (!schedule(token)) {
+            return null;
+        }
+        String key = url.toString();
+        ValidatedResponse previous;
+        synchronized (this) {
+            previous = mValidated.get(key);
+            mRequestCount++;
+        }
+
+        List<NewsArticle> newsArticles = null;
+        HttpURLConnection urlConnection = null;
+        InputStream inputStream = null;
+        boolean reusable = false;
+        try {
+            urlConnection = openConnection(url, timeoutMillis);
+            if (previous != null) {
+                if (previous.etag != null) {
+                    urlConnection.setRequestProperty("If-None-Match", previous.etag);
+                }
+                if (previous.lastModified != null) {
+                    urlConnection.setRequestProperty("If-Modified-Since", previous.lastModified);
+                }
+            }
+            if (!token.attach(urlConnection)) {
+                return null;
+            }
+            long startNanos = System.nanoTime();
+            urlConnection.connect();
+            FeedMetrics.recordSince(FeedMetrics.Phase.CONNECT, startNanos);
+
+            int responseCode = urlConnection.getResponseCode();
+            long firstByteNanos = System.nanoTime() - startNanos;
+            FeedMetrics.record(FeedMetrics.Phase.FIRST_BYTE, firstByteNanos / 1000);
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && previous != null) {
+                synchronized (this) {
+                    mNotModifiedCount++;
+                }
+                newsArticles = previous.newsArticles;
+                // The empty body still has to be consumed to release the connection.
+                inputStream = urlConnection.getInputStream();
+                drain(inputStream);
+                reusable = true;
+                NetworkQualityEstimator.getDefault().onResponse(firstByteNanos, 0, 0);
+            } else if (responseCode == HttpURLConnection.HTTP_OK) {
+                // If the request was successful (response code 200), then read the body and
+                // index its results. Articles are only decoded once they are shown.
+                CountingInputStream countingStream = new CountingInputStream(urlConnection.getInputStream());
+                inputStream = countingStream;
+                InputStream body = countingStream;
+                if ("gzip".equalsIgnoreCase(urlConnection.getContentEncoding())) {
+                    body = new GZIPInputStream(countingStream);
+                }
+                long parseStartNanos = System.nanoTime();
+                newsArticles = LazyArticleList.index(readBody(body, token), token);
+                long parseNanos = System.nanoTime() - parseStartNanos;
+                // Only a response read to the very end can hand its connection back to the pool.
+                drain(countingStream);
+                reusable = true;
+                synchronized (this) {
+                    mBytesReceived += countingStream.getCount();
+                }
+                // The time spent blocked in network reads is told apart from the time spent
+                // unzipping and indexing.
+                FeedMetrics.record(FeedMetrics.Phase.BODY_READ, countingStream.getReadNanos() / 1000);
+                FeedMetrics.record(FeedMetrics.Phase.PARSE,
+                        (parseNanos - countingStream.getReadNanos()) / 1000);
+                FeedMetrics.record(FeedMetrics.Phase.BYTES, countingStream.getCount());
+                FeedMetrics.record(FeedMetrics.Phase.ARTICLES, newsArticles.size());
+                NetworkQualityEstimator.getDefault().onResponse(
+                        firstByteNanos, countingStream.getCount(), countingStream.getReadNanos());
+                remember(key, urlConnection, newsArticles);
+            } else {
+                Log.e(LOG_TAG, "Error response code: " + responseCode);
+                throw errorResponse(urlConnection, responseCode);
+            }
+        } catch (IllegalStateException e) {
+            // Thrown by the index when the JSON isn't shaped as expected.
+            throw new ApiException("Malformed response", e);
+        } catch (IOException e) {
+            if (token.isCancelled()) {
+                Log.v(LOG_TAG, "Request cancelled: " + url);
+                return null;
+            }
+            throw e;
+        } finally {
+            token.detach();
+            if (inputStream != null) {
+                inputStream.close();
+            }
+            // A connection in an unknown state can't be handed to the next request.
+            if (urlConnection != null && !reusable) {
+                urlConnection.disconnect();
+            }
+        }
+        return newsArticles;
+    }
+
+    /**
+     * Request the given single-item URL, asked for with show-fields=body, and return the HTML
+     * body of the article, or null if it has none or the request was cancelled through the
+     * token. Used by {@link ReadingPrefetcher}, so nothing is remembered for revalidation.
+     *
+     * @throws ApiException if the server answered with an error status or a malformed body,
+     *                      or the scheduler dropped the request
+     * @throws IOException  if the request failed on the way
+     */
+    public String requestArticleBody(URL url, RequestToken token, int timeoutMillis) throws IOException {
+        if (!schedule(token)) {
+            return null;
+        }
+        synchronized (this) {
+            mRequestCount++;
+        }
+        HttpURLConnection urlConnection = null;
+        InputStream inputStream = null;
+        boolean reusable = false;
+        try {
+            urlConnection = openConnection(url, timeoutMillis);
+            if (!token.attach(urlConnection)) {
+                return null;
+            }
+            int responseCode = urlConnection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw errorResponse(urlConnection, responseCode);
+            }
+            CountingInputStream countingStream = new CountingInputStream(urlConnection.getInputStream());
+            inputStream = countingStream;
+            InputStream body = countingStream;
+            if ("gzip".equalsIgnoreCase(urlConnection.getContentEncoding())) {
+                body = new GZIPInputStream(countingStream);
+            }
+            String articleBody = NewsArticleParser.readBody(new ByteArrayInputStream(readBody(body, token)));
+            drain(countingStream);
+            reusable = true;
+            synchronized (this) {
+                mBytesReceived += countingStream.getCount();
+            }
+            return articleBody;
+        } catch (IllegalStateException e) {
+            throw new ApiException("Malformed response", e);
+        } catch (IOException e) {
+            if (token.isCancelled()) {
+                return null;
+            }
+            throw e;
+        } finally {
+            token.detach();
+            if (inputStream != null) {
+                inputStream.close();
+            }
+            if (urlConnection != null && !reusable) {
+                urlConnection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Wait for the scheduler to let the request of the given token go. Returns false if the
+     * token was cancelled while it waited.
+     *
+     * @throws ApiException if the request is a prefetch the scheduler dropped
+     */
+    private boolean schedule(RequestToken token) throws ApiException {
+        if (mScheduler == null || mScheduler.acquire(token)) {
+            return true;
+        }
+        if (token.isCancelled()) {
+            return false;
+        }
+        throw ApiException.dropped();
+    }
+
+    /**
+     * Return the failure for the given error status, telling the scheduler if the rate limit
+     * was exceeded.
+     */
+    private ApiException errorResponse(HttpURLConnection urlConnection, int responseCode) {
+        ApiException failure = new ApiException(responseCode, ApiException.parseRetryAfter(
+                urlConnection.getHeaderField("Retry-After"), System.currentTimeMillis()));
+        if (failure.isRateLimited() && mScheduler != null) {
+            mScheduler.onRateLimited(failure.getRetryAfterMillis());
+        }
+        return failure;
+    }
+
+    /**
+     * Open a connection to the host of the given URL ahead of the first real request, so that
+     * the DNS lookup and the TCP and TLS handshakes are out of the way by the time it is made.
+     * The response, whatever its status, is read to the end and the connection left in the
+     * keep-alive pool for that request to pick up. A plain GET is used rather than HEAD, since
+     * some servers close the connection after answering a HEAD. It asks for no content, so it
+     * doesn't wait for the {@link RequestScheduler}. Returns whether the host answered.
+     */
+    public boolean preconnect(URL url, int timeoutMillis) {
+        HttpURLConnection urlConnection = null;
+        boolean reusable = false;
+        try {
+            urlConnection = openConnection(url, timeoutMillis);
+            int responseCode = urlConnection.getResponseCode();
+            // The API root answers with a short error without a key; reading it to the end
+            // is what hands the connection back to the pool.
+            InputStream body = responseCode < HttpURLConnection.HTTP_BAD_REQUEST
+                    ? urlConnection.getInputStream() : urlConnection.getErrorStream();
+            if (body != null) {
+                try {
+                    drain(body);
+                } finally {
+                    body.close();
+                }
+            }
+            reusable = true;
+            synchronized (this) {
+                mPreconnectCount++;
+            }
+            return true;
+        } catch (IOException e) {
+            Log.v(LOG_TAG, "Preconnect to " + url.getHost() + " failed: " + e);
+            return false;
+        } finally {
+            if (urlConnection != null && !reusable) {
+                urlConnection.disconnect();
+            }
+        }
+    }
+
+    private static HttpURLConnection openConnection(URL url, int timeoutMillis) throws IOException {
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        urlConnection.setReadTimeout(Math.min(READ_TIMEOUT, timeoutMillis) /* milliseconds */);
+        urlConnection.setConnectTimeout(Math.min(CONNECTION_TIMEOUT, timeoutMillis) /* milliseconds */);
+        urlConnection.setRequestMethod("GET");
+        // The HTTP response cache installed for thumbnails must not answer API requests.
+        urlConnection.setUseCaches(false);
+        // Asking for gzip ourselves means we also have to decode it ourselves.
+        urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+        return urlConnection;
+    }
+
+    private synchronized void remember(String key, HttpURLConnection urlConnection,
+                                       List<NewsArticle> newsArticles) {
+        String etag = urlConnection.getHeaderField("ETag");
+        String lastModified = urlConnection.getHeaderField("Last-Modified");
+        if (etag == null && lastModified == null) {
+            mValidated.remove(key);
+        } else {
+            mValidated.put(key, new ValidatedResponse(etag, lastModified, newsArticles));
+        }
+    }
+
+    /**
+     * Read the rest of the given body, giving up as soon as the token is cancelled, which
+     * stops the read even when the rest of the body has already arrived.
+     *
+     * @throws InterruptedIOException if the token was cancelled
+     */
+    private static byte[] readBody(InputStream body, RequestToken token) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(16 * 1024);
+        byte[] buffer = new byte[8 * 1024];
+        int count;
+        while ((count = body.read(buffer)) != -1) {
+            if (token.isCancelled()) {
+                throw new InterruptedIOException("Read cancelled");
+            }
+            output.write(buffer, 0, count);
+        }
+        return output.toByteArray();
+    }
+
+    private static void drain(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[1024];
+        while (inputStream.read(buffer) != -1) {
+            // Discard whatever is left, such as the gzip trailer.
+        }
+    }
+
+    /**
+     * Number of requests made, including ones answered with 304 Not Modified.
+     */
+    public synchronized int getRequestCount() {
+        return mRequestCount;
+    }
+
+    public synchronized int getNotModifiedCount() {
+        return mNotModifiedCount;
+    }
+
+    /**
+     * Number of response body bytes read off the network, before gzip decoding.
+     */
+    public synchronized long getBytesReceived() {
+        return mBytesReceived;
+    }
+
+    /**
+     * Forget every remembered response, so the next requests are unconditional.
+     */
+    public synchronized void clearValidators() {
+        mValidated.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "requests=" + mRequestCount + " notModified=" + mNotModifiedCount
+                + " bytesReceived=" + mBytesReceived + " preconnects=" + mPreconnectCount;
+    }
+
+    /**
+     * A parsed list together with the validators its response came with.
+     */
+    private static class ValidatedResponse {
+        final String etag;
+        final String lastModified;
+        final List<NewsArticle> newsArticles;
+
+        ValidatedResponse(String etag, String lastModified, List<NewsArticle> newsArticles) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.newsArticles = newsArticles;
+        }
+    }
+
+    /**
+     * Counts the bytes read through it and the time spent waiting for them.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long mCount;
+        private long mReadNanos;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long startNanos = System.nanoTime();
+            int b = super.read();
+            mReadNanos += System.nanoTime() - startNanos;
+            if (b != -1) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            long startNanos = System.nanoTime();
+            int count = super.read(buffer, offset, length);
+            mReadNanos += System.nanoTime() - startNanos;
+            if (count > 0) {
+                mCount += count;
+            }
+            return count;
+        }
+
+        long getCount() {
+            return mCount;
+        }
+
+        long getReadNanos() {
+            return mReadNanos;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.android.newsfeed;
+
+/**
+ * Converts The Guardian's ISO 8601 timestamps, such as "2017-04-01T12:34:56Z", to and from
+ * epoch milliseconds.
+ * <p>
+ * Written by hand rather than with SimpleDateFormat so parsing allocates nothing, needs no locking
+ * and can run on any thread.
+ */
+public final class PublicationDates {
+
+    /**
+     * Returned for timestamps that can't be parsed.
+     */
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * MILLIS_PER_SECOND;
+
+    private PublicationDates() {
+    }
+
+    /**
+     * Parse a UTC timestamp of the form yyyy-MM-ddTHH:mm:ss, optionally followed by fractional
+     * seconds and either "Z" or a +hh:mm / -hh:mm offset. Returns {@link #UNKNOWN} otherwise.
+     */
+    public static long parse(String text) {
+        if (text == null || text.length() < 19 || text.charAt(4) != '-' || text.charAt(7) != '-'
+                || text.charAt(10) != 'T' || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return UNKNOWN;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return UNKNOWN;
+        }
+
+        long millis = daysFromCivil(year, month, day) * MILLIS_PER_DAY
+                + ((hour * 60L + minute) * 60L + second) * MILLIS_PER_SECOND;
+
+        int index = 19;
+        if (index < text.length() && text.charAt(index) == '.') {
+            // Keep up to millisecond precision of the fraction.
+            int scale = 100;
+            index++;
+            while (index < text.length() && Character.isDigit(text.charAt(index))) {
+                millis += (text.charAt(index) - '0') * scale;
+                scale /= 10;
+                index++;
+            }
+        }
+        if (index == text.length() - 1 && text.charAt(index) == 'Z') {
+            return millis;
+        }
+        if (index == text.length() - 6 && text.charAt(index + 3) == ':'
+                && (text.charAt(index) == '+' || text.charAt(index) == '-')) {
+            int offsetHours = digits(text, index + 1, 2);
+            int offsetMinutes = digits(text, index + 4, 2);
+            if (offsetHours < 0 || offsetMinutes < 0) {
+                return UNKNOWN;
+            }
+            long offset = (offsetHours * 60L + offsetMinutes) * 60L * MILLIS_PER_SECOND;
+            return text.charAt(index) == '+' ? millis - offset : millis + offset;
+        }
+        return index == text.length() ? millis : UNKNOWN;
+    }
+
+    /**
+     * Format epoch milliseconds as a UTC timestamp of the form yyyy-MM-ddTHH:mm:ssZ,
+     * or an empty String for {@link #UNKNOWN}.
+     */
+    public static String format(long millis) {
+        if (millis == UNKNOWN) {
+            return "";
+        }
+        long days = floorDiv(millis, MILLIS_PER_DAY);
+        long millisOfDay = millis - days * MILLIS_PER_DAY;
+        int secondOfDay = (int) (millisOfDay / MILLIS_PER_SECOND);
+
+        // Civil date from days since the epoch, after Howard Hinnant's days_from_civil inverse.
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        char[] chars = new char[20];
+        pad(chars, 0, (int) year, 4);
+        chars[4] = '-';
+        pad(chars, 5, month, 2);
+        chars[7] = '-';
+        pad(chars, 8, day, 2);
+        chars[10] = 'T';
+        pad(chars, 11, secondOfDay / 3600, 2);
+        chars[13] = ':';
+        pad(chars, 14, secondOfDay / 60 % 60, 2);
+        chars[16] = ':';
+        pad(chars, 17, secondOfDay % 60, 2);
+        chars[19] = 'Z';
+        return new String(chars);
+    }
+
+    /**
+     * Number of days in the given month, 1 to 12, of the given year.
+     */
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * Days since 1970-01-01 of the given proleptic Gregorian date.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Integer division rounding towards negative infinity, for dates before the epoch.
+     */
+    private static long floorDiv(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        if ((dividend % divisor != 0) && ((dividend < 0) != (divisor < 0))) {
+            quotient--;
+        }
+        return quotient;
+    }
+
+    /**
+     * Read a run of decimal digits, or return -1 if any of them isn't one.
+     */
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static void pad(char[] chars, int start, int value, int width) {
+        for (int i = start + width - 1; i >= start; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -1,22 +1,11 @@
 package com.example.android.newsfeed;
 
 
-import android.text.TextUtils;
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
 import java.util.List;
 
 import static com.example.android.newsfeed.NewsFeedActivity.LOG_TAG;
@@ -26,9 +15,6 @@ import static com.example.android.newsfeed.NewsFeedActivity.LOG_TAG;
  */
 public final class QueryUtils {
 
-    private static final int READ_TIMEOUT = 10000;
-    private static final int CONNECTION_TIMEOUT = 15000;
-
     /**
      * Create a private constructor because no one should ever create a {@link QueryUtils} object.
      * This class is only meant to hold static variables and methods, which can be accessed
@@ -37,68 +23,6 @@ public final class QueryUtils {
     private QueryUtils() {
     }
 
-    /**
-     * Return a list of {@link NewsArticle} objects that has been built up from
-     * parsing the given JSON response.
-     */
-    private static List<NewsArticle> extractFeatureFromJson(String newsArticleJSON) {
-        // If the JSON string is empty or null, then return early.
-        if (TextUtils.isEmpty(newsArticleJSON)) {
-            return null;
-        }
-
-        // Create an empty ArrayList that we can start adding news articles to
-        List<NewsArticle> newsArticles = new ArrayList<>();
-
-        // Try to parse the JSON response string. If there's a problem with the way the JSON
-        // is formatted, a JSONException exception object will be thrown.
-        // Catch the exception so the app doesn't crash, and print the error message to the logs.
-        try {
-
-            // Create a JSONObject from the JSON response string
-            JSONObject baseJsonResponse = new JSONObject(newsArticleJSON);
-
-            JSONObject response = baseJsonResponse.getJSONObject("response");
-
-            // Extract the JSONArray associated with the key called "results",
-            // which represents a list of features (or newsArticles).
-            JSONArray newsArticleArray = response.getJSONArray("results");
-
-            // For each newsArticle in the newsArticleArray, create an {@link NewsArticle} object
-            for (int i = 0; i < newsArticleArray.length(); i++) {
-
-                // Get a single newsArticle at position i within the list of newsArticles
-                JSONObject currentNewsArticle = newsArticleArray.getJSONObject(i);
-                String imageId;
-                if (currentNewsArticle.has("fields")) {
-                    JSONObject fields = currentNewsArticle.getJSONObject("fields");
-                    imageId = fields.getString("thumbnail");
-                } else {
-                    imageId = "http://cvalink.com/wp-content/themes/TechNews/images/img_not_available.png";
-                }
-                String headline = currentNewsArticle.getString("webTitle");
-                String publicationDate = currentNewsArticle.getString("webPublicationDate");
-                String url = currentNewsArticle.getString("webUrl");
-
-                // Create a new {@link NewsArticle} object with the imageId, headline,
-                // publicationDate, and url from the JSON response.
-                NewsArticle newsArticle = new NewsArticle(imageId, headline, publicationDate, url);
-
-                // Add the new {@link NewsArticle} to the list of newsArticles.
-                newsArticles.add(newsArticle);
-            }
-
-        } catch (JSONException e) {
-            // If an error is thrown when executing any of the above statements in the "try" block,
-            // catch the exception here, so the app doesn't crash. Print a log message
-            // with the message from the exception.
-            Log.e("QueryUtils", "Problem parsing the newsArticle JSON results", e);
-        }
-
-        // Return the list of newsArticles
-        return newsArticles;
-    }
-
     /**
      * Returns new URL object from the given string URL.
      */
@@ -113,86 +37,45 @@ public final class QueryUtils {
     }
 
     /**
-     * Make an HTTP request to the given URL and return a String as the response.
+     * Make an HTTP request to the given URL and parse the response as it streams in, waiting no
+     * longer than timeoutMillis to connect or for any one read.
+     * Returns null if the request was cancelled through the token.
+     *
+     * @throws ApiException if The Guardian answered with an error
+     * @throws IOException  if the request failed on the way
      */
-    private static String makeHttpRequest(URL url) throws IOException {
-        String jsonResponse = "";
-
-        // If the URL is null, then return early.
-        if (url == null) {
-            return jsonResponse;
-        }
-
-        HttpURLConnection urlConnection = null;
-        InputStream inputStream = null;
-        try {
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setReadTimeout(READ_TIMEOUT /* milliseconds */);
-            urlConnection.setConnectTimeout(CONNECTION_TIMEOUT /* milliseconds */);
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // If the request was successful (response code 200),
-            // then read the input stream and parse the response.
-            if (urlConnection.getResponseCode() == 200) {
-                inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
-            } else {
-                Log.e(LOG_TAG, "Error response code: " + urlConnection.getResponseCode());
-            }
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem retrieving the newsArticle JSON results.", e);
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-            if (inputStream != null) {
-                // Closing the input stream could throw an IOException, which is why
-                // the makeHttpRequest(URL url) method signature specifies than an IOException
-                // could be thrown.
-                inputStream.close();
-            }
-        }
-        return jsonResponse;
+    static List<NewsArticle> makeHttpRequest(URL url, RequestToken token, int timeoutMillis) throws IOException {
+        return NewsHttpClient.getDefault().request(url, token, timeoutMillis);
     }
 
     /**
-     * Convert the {@link InputStream} into a String which contains the
-     * whole JSON response from the server.
+     * Query the Google NewsArticles dataset and return a list of {@link NewsArticle} objects.
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
-        StringBuilder output = new StringBuilder();
-        if (inputStream != null) {
-            InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
-            BufferedReader reader = new BufferedReader(inputStreamReader);
-            String line = reader.readLine();
-            while (line != null) {
-                output.append(line);
-                line = reader.readLine();
-            }
-        }
-        return output.toString();
+    public static List<NewsArticle> fetchNewsArticleData(String requestUrl) {
+        return fetchNewsArticleData(requestUrl, new RequestToken());
     }
 
     /**
-     * Query the Google NewsArticles dataset and return a list of {@link NewsArticle} objects.
+     * Query The Guardian and return a list of {@link NewsArticle} objects, or null if the
+     * request failed or the token was cancelled while it was running.
+     * <p>
+     * Identical requests made at the same time share one fetch, see {@link RequestRegistry}.
      */
-    public static List<NewsArticle> fetchNewsArticleData(String requestUrl) {
+    public static List<NewsArticle> fetchNewsArticleData(String requestUrl, RequestToken token) {
         Log.v("Loader", "fetchNewsArticleData");
+        return RequestRegistry.getDefault().fetch(requestUrl, token);
+    }
 
-        // Create URL object
-        URL url = createUrl(requestUrl);
-
-        // Perform HTTP request to the URL and receive a JSON response back
-        String jsonResponse = null;
-        try {
-            jsonResponse = makeHttpRequest(url);
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem making the HTTP request.", e);
+    /**
+     * Query The Guardian directly, bypassing the {@link RequestRegistry}. Failed requests are
+     * retried within a deadline, see {@link ResilientFetcher}.
+     */
+    static List<NewsArticle> fetchFromNetwork(String requestUrl, RequestToken token) {
+        // If the URL can't be built, then return early.
+        if (createUrl(requestUrl) == null) {
+            return null;
         }
-
-        // Return the list of {@link NewsArticle}s
-        return extractFeatureFromJson(jsonResponse);
+        return ResilientFetcher.getDefault().fetch(requestUrl, token);
     }
 }
 
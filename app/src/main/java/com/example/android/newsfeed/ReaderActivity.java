@@ -0,0 +1,161 @@
+package com.example.android.newsfeed;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.support.v7.app.AppCompatActivity;
+import android.text.Html;
+import android.text.Spanned;
+import android.text.method.LinkMovementMethod;
+import android.util.Log;
+import android.view.View;
+import android.widget.Button;
+import android.widget.ImageView;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shows an article inside the app, from the body {@link ReadingPrefetcher} stored while its
+ * row was on screen. A body that wasn't prefetched is fetched when the article is opened.
+ * The article can always be opened in the browser instead.
+ */
+public class ReaderActivity extends AppCompatActivity {
+
+    private static final String LOG_TAG = ReaderActivity.class.getName();
+
+    private static final String EXTRA_URL = "url";
+    private static final String EXTRA_WEB_URL = "web_url";
+    private static final String EXTRA_HEADLINE = "headline";
+    private static final String EXTRA_TIMESTAMP = "timestamp";
+    private static final String EXTRA_THUMBNAIL_URL = "thumbnail_url";
+
+    /**
+     * Reads the stored body of the article opened, or fetches it if it wasn't prefetched, and
+     * turns it into styled text, all off the main thread.
+     */
+    private static final ExecutorService FETCH_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Handler mHandler = new Handler();
+    private final RequestToken mToken = new RequestToken(RequestScheduler.Priority.USER_VISIBLE);
+
+    private TextView mBodyTextView;
+    private ProgressBar mProgressBar;
+    private String mWebUrl;
+
+    /**
+     * Return the intent opening the article of the given row.
+     */
+    public static Intent newIntent(Context context, ArticleRow row) {
+        Intent intent = new Intent(context, ReaderActivity.class);
+        intent.putExtra(EXTRA_URL, row.article.getUrl());
+        intent.putExtra(EXTRA_WEB_URL, row.url);
+        intent.putExtra(EXTRA_HEADLINE, row.headline);
+        intent.putExtra(EXTRA_TIMESTAMP, row.getTimestamp());
+        if (row.thumbnailUrl != null) {
+            intent.putExtra(EXTRA_THUMBNAIL_URL, row.thumbnailUrl);
+        }
+        return intent;
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.reader_activity);
+
+        Intent intent = getIntent();
+        final String url = intent.getStringExtra(EXTRA_URL);
+        mWebUrl = intent.getStringExtra(EXTRA_WEB_URL);
+        ((TextView) findViewById(R.id.reader_headline)).setText(intent.getStringExtra(EXTRA_HEADLINE));
+        ((TextView) findViewById(R.id.reader_timestamp)).setText(intent.getStringExtra(EXTRA_TIMESTAMP));
+
+        ImageView thumbnailImageView = (ImageView) findViewById(R.id.reader_thumbnail);
+        String thumbnailUrl = intent.getStringExtra(EXTRA_THUMBNAIL_URL);
+        if (thumbnailUrl == null) {
+            thumbnailImageView.setVisibility(View.GONE);
+        } else {
+            // Usually already in the thumbnail caches, since its row was just on screen.
+            ThumbnailLoader.getInstance(this).load(thumbnailUrl, thumbnailImageView);
+        }
+
+        Button browserButton = (Button) findViewById(R.id.reader_open_in_browser);
+        browserButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                openInBrowser();
+            }
+        });
+
+        mBodyTextView = (TextView) findViewById(R.id.reader_body);
+        mBodyTextView.setMovementMethod(LinkMovementMethod.getInstance());
+        mProgressBar = (ProgressBar) findViewById(R.id.reader_progress);
+
+        final ReadingPrefetcher prefetcher = ReadingPrefetcher.getDefault(this);
+        // Only the first time counts as an open; after a rotation the body is just read again.
+        final boolean opening = savedInstanceState == null;
+        mProgressBar.setVisibility(View.VISIBLE);
+        FETCH_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                String body = opening ? prefetcher.open(url) : prefetcher.getStore().get(url);
+                if (body == null) {
+                    try {
+                        body = prefetcher.fetch(url, mToken);
+                    } catch (IOException e) {
+                        Log.e(LOG_TAG, "Problem fetching the body of " + url, e);
+                    }
+                }
+                // Images in the body are left out; the article's own picture is shown above it.
+                final Spanned text = body == null ? null : fromHtml(body);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!mToken.isCancelled()) {
+                            showBody(text);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Show the given body, or say the article can't be shown here if it is null.
+     */
+    private void showBody(Spanned body) {
+        mProgressBar.setVisibility(View.GONE);
+        if (body == null) {
+            mBodyTextView.setText(R.string.reader_no_body);
+        } else {
+            mBodyTextView.setText(body);
+        }
+    }
+
+    /**
+     * Turn the given HTML into styled text the way every version of Android has.
+     */
+    @SuppressWarnings("deprecation")
+    private static Spanned fromHtml(String html) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return Html.fromHtml(html, Html.FROM_HTML_MODE_LEGACY);
+        }
+        return Html.fromHtml(html);
+    }
+
+    private void openInBrowser() {
+        Intent intent = new Intent(Intent.ACTION_VIEW, Uri.parse(mWebUrl));
+        startActivity(intent);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mToken.cancel();
+    }
+}
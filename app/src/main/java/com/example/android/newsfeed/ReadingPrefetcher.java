@@ -0,0 +1,312 @@
+package com.example.android.newsfeed;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Downloads the bodies of the articles on screen ahead of them being tapped, so that the
+ * {@link ReaderActivity} can show them straight from disk.
+ * <p>
+ * The list reports the articles it shows whenever it comes to rest. The first few of them
+ * whose bodies aren't stored yet are fetched one at a time on a background-priority thread
+ * and kept in a {@link ReadingStore}, which holds them to a byte budget. Fetches for articles
+ * that have scrolled off screen before their turn came, or while they were running, are
+ * cancelled through their {@link RequestToken}. Fetches are prefetches to the
+ * {@link RequestScheduler}, so they are dropped when the rate limit is tight, and tried again
+ * the next time the list comes to rest. Counts of what was fetched, cancelled and later
+ * opened show how much of the prefetching pays off.
+ */
+public class ReadingPrefetcher {
+
+    private static final String LOG_TAG = ReadingPrefetcher.class.getName();
+
+    private static final String STORE_DIRECTORY = "reading";
+    private static final long DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * How long one body may take to come in.
+     */
+    private static final int TIMEOUT_MILLIS = 15000;
+
+    private static ReadingPrefetcher sDefault;
+
+    /**
+     * Where article bodies come from.
+     */
+    public interface BodySource {
+        /**
+         * Return the HTML body of the article at the given web URL, or null if it has none or
+         * the token was cancelled.
+         */
+        String fetchBody(String articleUrl, RequestToken token) throws IOException;
+    }
+
+    private final ReadingStore mStore;
+    private final BodySource mSource;
+    private final ExecutorService mExecutor;
+    private final int mMaxPrefetched;
+
+    /**
+     * Fetches queued or running, by article URL. Guarded by this, as are the counters.
+     */
+    private final Map<String, Prefetch> mPrefetches = new HashMap<>();
+
+    /**
+     * Articles that came back without a body, such as videos, so they aren't asked for again.
+     */
+    private final Set<String> mWithoutBody = new HashSet<>();
+
+    private int mStartedCount;
+    private int mStoredCount;
+    private long mStoredBytes;
+    private int mCancelledCount;
+    private int mFailedCount;
+    private int mDroppedCount;
+    private int mOpenCount;
+    private int mHitCount;
+
+    /**
+     * Constructs a new {@link ReadingPrefetcher}.
+     *
+     * @param store         to keep the bodies in
+     * @param source        to fetch the bodies from
+     * @param executor      to run the fetches on, one at a time
+     * @param maxPrefetched number of the articles on screen, from the top, to fetch bodies for
+     */
+    public ReadingPrefetcher(ReadingStore store, BodySource source, ExecutorService executor, int maxPrefetched) {
+        mStore = store;
+        mSource = source;
+        mExecutor = executor;
+        mMaxPrefetched = maxPrefetched;
+    }
+
+    /**
+     * Return the prefetcher shared by the whole app, fetching through {@link NewsHttpClient}
+     * into a store under the app's cache directory.
+     */
+    public static synchronized ReadingPrefetcher getDefault(Context context) {
+        if (sDefault == null) {
+            Context appContext = context.getApplicationContext();
+            ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            // Below the loads and thumbnails of what is being shown.
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "ReadingPrefetcher");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            sDefault = new ReadingPrefetcher(
+                    new ReadingStore(new File(appContext.getCacheDir(), STORE_DIRECTORY), DEFAULT_MAX_BYTES),
+                    new BodySource() {
+                        @Override
+                        public String fetchBody(String articleUrl, RequestToken token) throws IOException {
+                            String bodyUrl = GuardianRequests.articleBodyUrl(articleUrl);
+                            if (bodyUrl == null) {
+                                return null;
+                            }
+                            return NewsHttpClient.getDefault().requestArticleBody(
+                                    new URL(bodyUrl), token, TIMEOUT_MILLIS);
+                        }
+                    },
+                    executor,
+                    appContext.getResources().getInteger(R.integer.reading_prefetch_rows));
+        }
+        return sDefault;
+    }
+
+    /**
+     * Take note of the articles now on screen, in order from the top: start fetching the
+     * bodies of the first of them that aren't stored yet, and cancel the fetches of articles
+     * that are no longer among them.
+     */
+    public synchronized void setVisible(List<NewsArticle> visible) {
+        Set<String> wanted = new HashSet<>();
+        List<String> toStart = new ArrayList<>();
+        for (NewsArticle newsArticle : visible) {
+            if (wanted.size() >= mMaxPrefetched) {
+                break;
+            }
+            if (newsArticle == null) {
+                continue;
+            }
+            String url = newsArticle.getUrl();
+            if (wanted.add(url) && !mPrefetches.containsKey(url) && !mWithoutBody.contains(url)
+                    && !mStore.contains(url)) {
+                toStart.add(url);
+            }
+        }
+
+        for (Prefetch prefetch : new ArrayList<>(mPrefetches.values())) {
+            if (!wanted.contains(prefetch.mUrl)) {
+                cancel(prefetch);
+            }
+        }
+        for (String url : toStart) {
+            Prefetch prefetch = new Prefetch(url);
+            mPrefetches.put(url, prefetch);
+            prefetch.mFuture = mExecutor.submit(prefetch);
+        }
+    }
+
+    /**
+     * Cancel every fetch, as when the list is no longer on screen.
+     */
+    public synchronized void cancelAll() {
+        for (Prefetch prefetch : new ArrayList<>(mPrefetches.values())) {
+            cancel(prefetch);
+        }
+    }
+
+    private void cancel(Prefetch prefetch) {
+        mPrefetches.remove(prefetch.mUrl);
+        mCancelledCount++;
+        prefetch.mToken.cancel();
+        if (prefetch.mFuture != null) {
+            // A running fetch stops through its token.
+            prefetch.mFuture.cancel(false);
+        }
+    }
+
+    /**
+     * Return the stored body of the article being opened, or null if it hasn't been fetched.
+     * Counts towards the hit rate, so call once per article opened.
+     */
+    public String open(String url) {
+        String body = mStore.get(url);
+        synchronized (this) {
+            mOpenCount++;
+            if (body != null) {
+                mHitCount++;
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Fetch the body of an article that was opened before it could be prefetched, and store
+     * it. Call on a background thread. Returns null if there is no body or the token was
+     * cancelled.
+     */
+    public String fetch(String url, RequestToken token) throws IOException {
+        String body = mSource.fetchBody(url, token);
+        if (body != null && !token.isCancelled()) {
+            store(url, body);
+        }
+        return body;
+    }
+
+    private void store(String url, String body) {
+        try {
+            long bytes = mStore.put(url, body);
+            synchronized (this) {
+                mStoredCount++;
+                mStoredBytes += bytes;
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem storing the body of " + url, e);
+        }
+    }
+
+    public ReadingStore getStore() {
+        return mStore;
+    }
+
+    /**
+     * Share of the articles opened whose body was already stored, or 0 if none was opened.
+     */
+    public synchronized double getHitRate() {
+        return mOpenCount == 0 ? 0 : (double) mHitCount / mOpenCount;
+    }
+
+    public synchronized int getStoredCount() {
+        return mStoredCount;
+    }
+
+    public synchronized int getCancelledCount() {
+        return mCancelledCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "started=" + mStartedCount + " stored=" + mStoredCount + " (" + mStoredBytes + "B)"
+                + " cancelled=" + mCancelledCount + " failed=" + mFailedCount + " dropped=" + mDroppedCount
+                + " opened=" + mOpenCount + " hits=" + mHitCount
+                + " hitRate=" + Math.round(getHitRate() * 100) + "% store=" + mStore;
+    }
+
+    /**
+     * One queued or running fetch.
+     */
+    private class Prefetch implements Runnable {
+
+        private final String mUrl;
+        private final RequestToken mToken = new RequestToken(RequestScheduler.Priority.PREFETCH);
+        private volatile Future<?> mFuture;
+
+        Prefetch(String url) {
+            mUrl = url;
+        }
+
+        @Override
+        public void run() {
+            if (mToken.isCancelled()) {
+                return;
+            }
+            synchronized (ReadingPrefetcher.this) {
+                mStartedCount++;
+            }
+            try {
+                String body = mSource.fetchBody(mUrl, mToken);
+                if (mToken.isCancelled()) {
+                    return;
+                }
+                if (body != null) {
+                    store(mUrl, body);
+                } else {
+                    synchronized (ReadingPrefetcher.this) {
+                        mWithoutBody.add(mUrl);
+                    }
+                }
+            } catch (IOException e) {
+                if (ApiException.isDropped(e)) {
+                    synchronized (ReadingPrefetcher.this) {
+                        mDroppedCount++;
+                    }
+                } else if (!mToken.isCancelled()) {
+                    Log.e(LOG_TAG, "Problem prefetching " + mUrl, e);
+                    synchronized (ReadingPrefetcher.this) {
+                        mFailedCount++;
+                    }
+                }
+            } finally {
+                synchronized (ReadingPrefetcher.this) {
+                    if (mPrefetches.get(mUrl) == this) {
+                        mPrefetches.remove(mUrl);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.android.newsfeed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Article bodies kept on disk for the in-app reader, keyed by the article's web URL.
+ * <p>
+ * Each body is one file holding its HTML deflated, since article markup compresses well. The
+ * store is bounded in total bytes and evicts the least recently read bodies first, in an
+ * {@link LruDirectory} like the one {@link ArticleCache} keeps its lists in.
+ */
+public class ReadingStore {
+
+    /**
+     * Written at the start of every body file, so files of another layout are ignored.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String FILE_SUFFIX = ".body";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final LruDirectory mFiles;
+    private final long mMaxBytes;
+
+    /**
+     * Constructs a new {@link ReadingStore}.
+     *
+     * @param directory to keep the body files in
+     * @param maxBytes  maximum total size of the body files
+     */
+    public ReadingStore(File directory, long maxBytes) {
+        mFiles = new LruDirectory(directory, FILE_SUFFIX, Integer.MAX_VALUE, maxBytes);
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Return whether a body is stored for the given URL, without counting as a read.
+     */
+    public synchronized boolean contains(String url) {
+        return mFiles.contains(mFiles.fileName(url));
+    }
+
+    /**
+     * Return the stored body of the given URL, or null if there is none.
+     */
+    public synchronized String get(String url) {
+        String fileName = mFiles.fileName(url);
+        if (!mFiles.contains(fileName)) {
+            return null;
+        }
+        String body = null;
+        try {
+            body = read(mFiles.getFile(fileName), url);
+        } catch (IOException e) {
+            // A body that can't be read is as good as missing.
+        }
+        if (body == null) {
+            mFiles.delete(fileName);
+            return null;
+        }
+        mFiles.touch(fileName);
+        return body;
+    }
+
+    /**
+     * Store the body of the given URL, evicting old bodies if needed. Returns the number of
+     * bytes it takes on disk.
+     */
+    public long put(String url, String body) throws IOException {
+        // Compressed outside the lock, so a slow write doesn't hold up readers.
+        byte[] compressed = deflate(body);
+        synchronized (this) {
+            String fileName = mFiles.fileName(url);
+            File temp = mFiles.newTempFile(fileName);
+            write(temp, url, compressed);
+            return mFiles.commit(fileName, temp);
+        }
+    }
+
+    public synchronized int size() {
+        return mFiles.size();
+    }
+
+    public synchronized long sizeInBytes() {
+        return mFiles.sizeInBytes();
+    }
+
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return mFiles.size() + " bodies " + mFiles.sizeInBytes() + "/" + mMaxBytes + "B";
+    }
+
+    private static byte[] deflate(String body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        DeflaterOutputStream output = new DeflaterOutputStream(compressed, deflater);
+        try {
+            output.write(body.getBytes(UTF_8));
+        } finally {
+            output.close();
+            deflater.end();
+        }
+        return compressed.toByteArray();
+    }
+
+    private static void write(File file, String url, byte[] compressed) throws IOException {
+        DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            output.writeInt(FORMAT_VERSION);
+            output.writeUTF(url);
+            output.write(compressed);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Read the body stored in the given file, or return null if it belongs to another URL or
+     * was written in an older format.
+     */
+    private static String read(File file, String url) throws IOException {
+        DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        // Closing the inflating stream also frees its native inflater.
+        InputStream body = new InflaterInputStream(input);
+        try {
+            if (input.readInt() != FORMAT_VERSION || !url.equals(input.readUTF())) {
+                return null;
+            }
+            ByteArrayOutputStream html = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8 * 1024];
+            int count;
+            while ((count = body.read(buffer)) != -1) {
+                html.write(buffer, 0, count);
+            }
+            return new String(html.toByteArray(), UTF_8);
+        } finally {
+            body.close();
+        }
+    }
+}
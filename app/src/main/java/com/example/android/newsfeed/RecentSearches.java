@@ -0,0 +1,74 @@
+package com.example.android.newsfeed;
+
+import android.content.Context;
+import android.preference.PreferenceManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Remembers the last few queries searched for across runs, newest first, so that the
+ * background {@link FeedSync} can keep their results cached as well as the home feed.
+ */
+public final class RecentSearches {
+
+    private static final String PREFERENCE_KEY = "recent_searches";
+
+    /**
+     * Normalized queries never hold a line break, so one separates them.
+     */
+    private static final String SEPARATOR = "\n";
+
+    private RecentSearches() {
+    }
+
+    /**
+     * Remember the given normalized query as the most recent one.
+     */
+    public static void add(Context context, String query) {
+        List<String> queries = push(get(context), query,
+                context.getResources().getInteger(R.integer.synced_searches));
+        StringBuilder joined = new StringBuilder();
+        for (String recent : queries) {
+            if (joined.length() > 0) {
+                joined.append(SEPARATOR);
+            }
+            joined.append(recent);
+        }
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putString(PREFERENCE_KEY, joined.toString())
+                .apply();
+    }
+
+    /**
+     * Return the queries remembered, newest first.
+     */
+    public static List<String> get(Context context) {
+        String joined = PreferenceManager.getDefaultSharedPreferences(context).getString(PREFERENCE_KEY, "");
+        if (joined.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(joined.split(SEPARATOR)));
+    }
+
+    /**
+     * Return the given queries with the query moved or added to the front, keeping at most
+     * the given number of them.
+     */
+    static List<String> push(List<String> queries, String query, int max) {
+        List<String> pushed = new ArrayList<>(queries.size() + 1);
+        if (!query.isEmpty() && max > 0) {
+            pushed.add(query);
+        }
+        for (String recent : queries) {
+            if (pushed.size() >= max) {
+                break;
+            }
+            if (!recent.equals(query)) {
+                pushed.add(recent);
+            }
+        }
+        return pushed;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.android.newsfeed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How much to ask The Guardian for at once on a network of a given {@link
+ * NetworkQualityEstimator.Quality}: on a slow link a smaller first page without thumbnails
+ * reaches the screen sooner, and thumbnails that are loaded come in a smaller size.
+ */
+public class RequestProfile {
+
+    /**
+     * Widths The Guardian's image service renders thumbnails at.
+     */
+    public static final int SMALL_IMAGE_WIDTH = 140;
+    public static final int DEFAULT_IMAGE_WIDTH = 500;
+
+    /**
+     * Page size used on slow networks.
+     */
+    private static final int SMALL_PAGE_SIZE = 10;
+
+    public final int pageSize;
+    public final boolean thumbnails;
+    public final int imageWidth;
+
+    public RequestProfile(int pageSize, boolean thumbnails, int imageWidth) {
+        this.pageSize = pageSize;
+        this.thumbnails = thumbnails;
+        this.imageWidth = imageWidth;
+    }
+
+    /**
+     * Return the profile for the given quality. Good and unknown networks get the defaults.
+     */
+    public static RequestProfile forQuality(NetworkQualityEstimator.Quality quality, int defaultPageSize) {
+        switch (quality) {
+            case POOR:
+                return new RequestProfile(Math.min(SMALL_PAGE_SIZE, defaultPageSize), false, SMALL_IMAGE_WIDTH);
+            case MODERATE:
+                return new RequestProfile(Math.min(SMALL_PAGE_SIZE, defaultPageSize), true, SMALL_IMAGE_WIDTH);
+            default:
+                return new RequestProfile(defaultPageSize, true, DEFAULT_IMAGE_WIDTH);
+        }
+    }
+
+    /**
+     * Return the profile of every quality, in the order of {@link NetworkQualityEstimator.Quality},
+     * so that whatever the network the app asks on, its request is among theirs.
+     */
+    public static List<RequestProfile> forEveryQuality(int defaultPageSize) {
+        List<RequestProfile> profiles = new ArrayList<>();
+        for (NetworkQualityEstimator.Quality quality : NetworkQualityEstimator.Quality.values()) {
+            profiles.add(forQuality(quality, defaultPageSize));
+        }
+        return profiles;
+    }
+
+    /**
+     * Return the URL of the given Guardian thumbnail at this profile's width. URLs that aren't
+     * from The Guardian's image service are returned as they are.
+     */
+    public String thumbnailUrl(String url) {
+        String defaultSuffix = "/" + DEFAULT_IMAGE_WIDTH + ".jpg";
+        if (imageWidth == DEFAULT_IMAGE_WIDTH || url == null || !url.startsWith("https://media.guim.co.uk/")
+                || !url.endsWith(defaultSuffix)) {
+            return url;
+        }
+        return url.substring(0, url.length() - defaultSuffix.length()) + "/" + imageWidth + ".jpg";
+    }
+
+    @Override
+    public String toString() {
+        return "pageSize=" + pageSize + " thumbnails=" + thumbnails + " imageWidth=" + imageWidth;
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.android.newsfeed;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Makes sure the same feed URL is only fetched once at a time.
+ * <p>
+ * Requests are keyed by their normalized URI. A caller asking for a URI that is already being
+ * fetched waits for that fetch and shares its parsed result, and a result that has just come
+ * back is handed out again for a short window instead of being fetched a second time. Each
+ * caller can still cancel through its own token: the shared fetch is only aborted once every
+ * caller waiting for it has cancelled. The shared fetch is scheduled with the priority of the
+ * most urgent caller waiting for it.
+ */
+public class RequestRegistry {
+
+    /**
+     * How long a completed result is reused for identical requests.
+     */
+    public static final long DEFAULT_REUSE_MILLIS = 2000;
+
+    private static final int MAX_COMPLETED = 16;
+
+    /**
+     * Does the actual network request for a URL.
+     */
+    public interface Fetcher {
+        List<NewsArticle> fetch(String requestUrl, RequestToken token);
+    }
+
+    private static RequestRegistry sDefault;
+
+    /**
+     * Threads the shared fetches run on, so none of the callers' threads is tied to a fetch
+     * that other callers are still waiting for.
+     */
+    private static final ExecutorService FETCH_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RequestRegistry");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Fetcher mFetcher;
+    private final long mReuseMillis;
+
+    /**
+     * Fetches still running, by normalized URI. Guarded by this.
+     */
+    private final Map<String, Flight> mInFlight = new HashMap<>();
+
+    /**
+     * Results that came back recently, by normalized URI. Guarded by this.
+     */
+    private final Map<String, Flight> mCompleted = new LinkedHashMap<String, Flight>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Flight> eldest) {
+            return size() > MAX_COMPLETED;
+        }
+    };
+
+    private int mNetworkCount;
+    private int mCoalescedCount;
+    private int mReusedCount;
+
+    /**
+     * Constructs a new {@link RequestRegistry}.
+     *
+     * @param fetcher     that makes the network requests
+     * @param reuseMillis how long a completed result is handed out again
+     */
+    public RequestRegistry(Fetcher fetcher, long reuseMillis) {
+        mFetcher = fetcher;
+        mReuseMillis = reuseMillis;
+    }
+
+    /**
+     * Return the registry every request to The Guardian goes through.
+     */
+    public static synchronized RequestRegistry getDefault() {
+        if (sDefault == null) {
+            sDefault = new RequestRegistry(new Fetcher() {
+                @Override
+                public List<NewsArticle> fetch(String requestUrl, RequestToken token) {
+                    return QueryUtils.fetchFromNetwork(requestUrl, token);
+                }
+            }, DEFAULT_REUSE_MILLIS);
+        }
+        return sDefault;
+    }
+
+    /**
+     * Return the articles for the given request URL, joining a fetch of the same URI that is
+     * already running or reusing one that has just finished. Returns null if the request
+     * failed, or if the token was cancelled before the result arrived.
+     */
+    public List<NewsArticle> fetch(final String requestUrl, RequestToken token) {
+        String key = normalize(requestUrl);
+        final Flight flight;
+        synchronized (this) {
+            Flight completed = mCompleted.get(key);
+            if (completed != null && System.nanoTime() - completed.completedAtNanos < mReuseMillis * 1000000L) {
+                mReusedCount++;
+                return completed.result;
+            }
+            Flight inFlight = mInFlight.get(key);
+            if (inFlight != null) {
+                mCoalescedCount++;
+                flight = inFlight;
+                flight.token.raisePriority(token.getPriority());
+            } else {
+                mNetworkCount++;
+                flight = new Flight(key, token.getPriority());
+                mInFlight.put(key, flight);
+                FETCH_EXECUTOR.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        List<NewsArticle> result = mFetcher.fetch(requestUrl, flight.token);
+                        onFlightFinished(flight, result);
+                    }
+                });
+            }
+            flight.waiters++;
+        }
+        return await(flight, token);
+    }
+
+    private List<NewsArticle> await(final Flight flight, RequestToken token) {
+        Runnable onCancel = new Runnable() {
+            @Override
+            public void run() {
+                leave(flight);
+            }
+        };
+        token.addCancelListener(onCancel);
+        try {
+            synchronized (flight) {
+                while (!flight.finished && !token.isCancelled()) {
+                    flight.wait();
+                }
+                return token.isCancelled() ? null : flight.result;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            token.removeCancelListener(onCancel);
+        }
+    }
+
+    /**
+     * Called when a waiting caller cancels. Wakes it up, and aborts the fetch if nobody is
+     * waiting for it any more.
+     */
+    private void leave(Flight flight) {
+        boolean abandoned;
+        synchronized (this) {
+            flight.waiters--;
+            abandoned = flight.waiters == 0 && mInFlight.get(flight.key) == flight;
+            if (abandoned) {
+                mInFlight.remove(flight.key);
+            }
+        }
+        if (abandoned) {
+            flight.token.cancel();
+        }
+        synchronized (flight) {
+            flight.notifyAll();
+        }
+    }
+
+    private void onFlightFinished(Flight flight, List<NewsArticle> result) {
+        synchronized (flight) {
+            // Callers share the list, so it is handed out read-only. A lazy list already is, and
+            // wrapping it would hide it from the cache and the rows, which store and prepare
+            // it differently.
+            flight.result = result == null || result instanceof LazyArticleList
+                    ? result : Collections.unmodifiableList(result);
+        }
+        // Move the flight over to the completed results before its callers are woken, so a
+        // caller asking again straight away reuses the result rather than joining a finished
+        // flight.
+        synchronized (this) {
+            if (mInFlight.get(flight.key) == flight) {
+                mInFlight.remove(flight.key);
+            }
+            // Failures and aborted fetches are not worth handing out again.
+            if (result != null && !flight.token.isCancelled()) {
+                flight.completedAtNanos = System.nanoTime();
+                mCompleted.put(flight.key, flight);
+            }
+        }
+        synchronized (flight) {
+            flight.finished = true;
+            flight.notifyAll();
+        }
+    }
+
+    /**
+     * Forget every completed result, so the next request for any URI goes to the network.
+     */
+    public synchronized void clear() {
+        mCompleted.clear();
+    }
+
+    /**
+     * Number of fetches that actually went to the network.
+     */
+    public synchronized int getNetworkCount() {
+        return mNetworkCount;
+    }
+
+    /**
+     * Number of requests that joined a fetch of the same URI already running.
+     */
+    public synchronized int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    /**
+     * Number of requests answered with a result that had just come back.
+     */
+    public synchronized int getReusedCount() {
+        return mReusedCount;
+    }
+
+    /**
+     * Return the URI in the form requests are keyed by: scheme and host in lower case, no
+     * fragment, and the query parameters sorted by name, so that URLs that only differ in
+     * the order they were built in share one fetch.
+     */
+    static String normalize(String requestUrl) {
+        URI uri;
+        try {
+            uri = new URI(requestUrl);
+        } catch (URISyntaxException e) {
+            return requestUrl;
+        }
+        StringBuilder builder = new StringBuilder();
+        if (uri.getScheme() != null) {
+            builder.append(uri.getScheme().toLowerCase(Locale.US)).append("://");
+        }
+        if (uri.getRawAuthority() != null) {
+            builder.append(uri.getRawAuthority().toLowerCase(Locale.US));
+        }
+        String path = uri.getRawPath();
+        builder.append(path == null || path.isEmpty() ? "/" : path);
+
+        String query = uri.getRawQuery();
+        if (query != null && !query.isEmpty()) {
+            List<String> parameters = new ArrayList<>();
+            for (String parameter : query.split("&")) {
+                if (!parameter.isEmpty()) {
+                    parameters.add(parameter);
+                }
+            }
+            // Stable, so repeated parameters keep their relative order.
+            Collections.sort(parameters, new Comparator<String>() {
+                @Override
+                public int compare(String left, String right) {
+                    return name(left).compareTo(name(right));
+                }
+            });
+            for (int i = 0; i < parameters.size(); i++) {
+                builder.append(i == 0 ? '?' : '&').append(parameters.get(i));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String name(String parameter) {
+        int equals = parameter.indexOf('=');
+        return equals < 0 ? parameter : parameter.substring(0, equals);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "network=" + mNetworkCount + " coalesced=" + mCoalescedCount + " reused=" + mReusedCount
+                + " inFlight=" + mInFlight.size();
+    }
+
+    /**
+     * One shared fetch and the callers waiting for it.
+     */
+    private static class Flight {
+        final String key;
+        final RequestToken token;
+
+        /**
+         * Callers still waiting. Guarded by the registry.
+         */
+        int waiters;
+
+        /**
+         * Guarded by the registry.
+         */
+        long completedAtNanos;
+
+        /**
+         * Guarded by the flight itself, and set before the flight is published as completed.
+         */
+        boolean finished;
+        List<NewsArticle> result;
+
+        Flight(String key, RequestScheduler.Priority priority) {
+            this.key = key;
+            this.token = new RequestToken(priority);
+        }
+    }
+}
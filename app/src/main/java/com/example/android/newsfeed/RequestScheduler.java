@@ -0,0 +1,275 @@
+package com.example.android.newsfeed;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Keeps the app's calls to The Guardian within the API key's rate limit.
+ * <p>
+ * Every request asks for a permit from a token bucket first: the bucket holds up to a burst
+ * of permits and refills at a steady rate. When it is empty, requests queue for the next
+ * permit, and the queue is served by {@link Priority}, most urgent first, then in the order
+ * the requests came in. The priority is read from the request's {@link RequestToken}, so a
+ * queued request whose token is raised moves up. Prefetches never queue: they only go when
+ * the bucket has permits to spare beyond a reserve kept for the user, and are dropped
+ * otherwise. Identical requests are merged before they get here, see {@link RequestRegistry}.
+ * <p>
+ * A 429 Too Many Requests from the server empties the bucket and holds every request back
+ * for as long as the server asked, or for a second if it didn't say.
+ */
+public class RequestScheduler {
+
+    private static final String LOG_TAG = RequestScheduler.class.getName();
+
+    /**
+     * How urgent a request is, most urgent first.
+     */
+    public enum Priority {
+        /** Something the user is looking at right now waits for it, such as a search. */
+        USER_VISIBLE,
+        /** Brings what is shown up to date, such as the home feed or a menu refresh. */
+        REFRESH,
+        /** Fetched ahead of being needed, such as later pages, article bodies and syncs. */
+        PREFETCH
+    }
+
+    /**
+     * The Guardian allows a developer key 12 calls a second. A full burst followed by the
+     * refill makes at most that many in any one second.
+     */
+    private static final int DEFAULT_CAPACITY = 6;
+    private static final double DEFAULT_PERMITS_PER_SECOND = 6;
+    private static final int DEFAULT_PREFETCH_RESERVE = 2;
+
+    /**
+     * How long requests are held back after a 429 that didn't come with a Retry-After.
+     */
+    private static final long DEFAULT_PAUSE_MILLIS = 1000;
+
+    private static RequestScheduler sDefault;
+
+    private final int mCapacity;
+    private final double mPermitsPerSecond;
+    private final int mPrefetchReserve;
+
+    /**
+     * Everything below is guarded by this.
+     */
+    private double mPermits;
+    private long mRefilledAtNanos;
+    private long mPausedUntilNanos;
+    private long mNextSequence;
+    private final List<Waiter> mWaiting = new ArrayList<>();
+
+    private final int[] mGrantedCounts = new int[Priority.values().length];
+    private int mDroppedCount;
+    private int mRateLimitedCount;
+
+    /**
+     * Constructs a new {@link RequestScheduler}, with a full bucket.
+     *
+     * @param capacity         most permits the bucket holds, which is the largest burst
+     * @param permitsPerSecond rate the bucket refills at
+     * @param prefetchReserve  permits a prefetch has to leave in the bucket to go ahead
+     */
+    public RequestScheduler(int capacity, double permitsPerSecond, int prefetchReserve) {
+        mCapacity = capacity;
+        mPermitsPerSecond = permitsPerSecond;
+        mPrefetchReserve = prefetchReserve;
+        mPermits = capacity;
+        mRefilledAtNanos = System.nanoTime();
+    }
+
+    /**
+     * Return the scheduler every request to The Guardian goes through.
+     */
+    public static synchronized RequestScheduler getDefault() {
+        if (sDefault == null) {
+            sDefault = new RequestScheduler(DEFAULT_CAPACITY, DEFAULT_PERMITS_PER_SECOND,
+                    DEFAULT_PREFETCH_RESERVE);
+        }
+        return sDefault;
+    }
+
+    /**
+     * Wait for a permit to make the request of the given token. Returns false if the token
+     * was cancelled while waiting, or if the request is a prefetch and was dropped.
+     */
+    public boolean acquire(RequestToken token) {
+        long startNanos = System.nanoTime();
+        Waiter waiter;
+        synchronized (this) {
+            refill(startNanos);
+            if (token.getPriority() == Priority.PREFETCH) {
+                if (mWaiting.isEmpty() && startNanos >= mPausedUntilNanos
+                        && mPermits >= 1 + mPrefetchReserve) {
+                    grant(Priority.PREFETCH, startNanos);
+                    return true;
+                }
+                mDroppedCount++;
+                return false;
+            }
+            waiter = new Waiter(token, mNextSequence++);
+            mWaiting.add(waiter);
+        }
+
+        Runnable onCancel = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (RequestScheduler.this) {
+                    RequestScheduler.this.notifyAll();
+                }
+            }
+        };
+        token.addCancelListener(onCancel);
+        try {
+            synchronized (this) {
+                while (true) {
+                    if (token.isCancelled()) {
+                        leave(waiter);
+                        return false;
+                    }
+                    long nowNanos = System.nanoTime();
+                    refill(nowNanos);
+                    long waitNanos;
+                    if (nowNanos < mPausedUntilNanos) {
+                        waitNanos = mPausedUntilNanos - nowNanos;
+                    } else if (mPermits < 1) {
+                        waitNanos = (long) ((1 - mPermits) / mPermitsPerSecond * 1e9);
+                    } else if (next() != waiter) {
+                        // A permit is there, but for a more urgent or older request, which is
+                        // woken when it becomes next. Look again once another permit is due,
+                        // in case a raised priority made this one next without waking it.
+                        waitNanos = (long) (1e9 / mPermitsPerSecond);
+                    } else {
+                        mWaiting.remove(waiter);
+                        grant(token.getPriority(), startNanos);
+                        // The next in line may be able to go as well.
+                        notifyAll();
+                        return true;
+                    }
+                    wait(Math.max(1, waitNanos / 1000000L));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synchronized (this) {
+                leave(waiter);
+            }
+            return false;
+        } finally {
+            token.removeCancelListener(onCancel);
+        }
+    }
+
+    /**
+     * Take note of a 429 Too Many Requests: empty the bucket and hold every request back until
+     * the given time has passed, or for a second if it is 0.
+     */
+    public synchronized void onRateLimited(long retryAfterMillis) {
+        long pauseMillis = retryAfterMillis > 0 ? retryAfterMillis : DEFAULT_PAUSE_MILLIS;
+        long nowNanos = System.nanoTime();
+        refill(nowNanos);
+        mPermits = 0;
+        mPausedUntilNanos = Math.max(mPausedUntilNanos, nowNanos + pauseMillis * 1000000L);
+        mRateLimitedCount++;
+        Log.w(LOG_TAG, "Rate limited, holding requests back for " + pauseMillis + " ms");
+        notifyAll();
+    }
+
+    /**
+     * Fill the bucket back up and forget any pause, as if no request had been made yet.
+     */
+    public synchronized void reset() {
+        mPermits = mCapacity;
+        mRefilledAtNanos = System.nanoTime();
+        mPausedUntilNanos = 0;
+        notifyAll();
+    }
+
+    private void grant(Priority priority, long startNanos) {
+        mPermits -= 1;
+        mGrantedCounts[priority.ordinal()]++;
+        FeedMetrics.recordSince(FeedMetrics.Phase.QUEUE, startNanos);
+    }
+
+    private void leave(Waiter waiter) {
+        mWaiting.remove(waiter);
+        // It may have been the one the others were waiting behind.
+        notifyAll();
+    }
+
+    /**
+     * Add the permits earned since the last refill, not counting any time spent paused.
+     */
+    private void refill(long nowNanos) {
+        long fromNanos = Math.max(mRefilledAtNanos, mPausedUntilNanos);
+        if (nowNanos > fromNanos) {
+            mPermits = Math.min(mCapacity, mPermits + (nowNanos - fromNanos) * mPermitsPerSecond / 1e9);
+        }
+        mRefilledAtNanos = Math.max(mRefilledAtNanos, nowNanos);
+    }
+
+    /**
+     * Return the waiting request to be served next: the most urgent, then the oldest.
+     */
+    private Waiter next() {
+        Waiter next = null;
+        for (Waiter waiter : mWaiting) {
+            if (next == null || waiter.comesBefore(next)) {
+                next = waiter;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Number of requests let through with the given priority.
+     */
+    public synchronized int getGrantedCount(Priority priority) {
+        return mGrantedCounts[priority.ordinal()];
+    }
+
+    /**
+     * Number of prefetches dropped because the budget was tight.
+     */
+    public synchronized int getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    public synchronized int getRateLimitedCount() {
+        return mRateLimitedCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        refill(System.nanoTime());
+        return "granted=" + mGrantedCounts[Priority.USER_VISIBLE.ordinal()]
+                + "/" + mGrantedCounts[Priority.REFRESH.ordinal()]
+                + "/" + mGrantedCounts[Priority.PREFETCH.ordinal()]
+                + " dropped=" + mDroppedCount + " rateLimited=" + mRateLimitedCount
+                + " waiting=" + mWaiting.size()
+                + String.format(Locale.US, " permits=%.1f/%d", mPermits, mCapacity);
+    }
+
+    /**
+     * A request waiting for a permit.
+     */
+    private static class Waiter {
+        final RequestToken token;
+        final long sequence;
+
+        Waiter(RequestToken token, long sequence) {
+            this.token = token;
+            this.sequence = sequence;
+        }
+
+        boolean comesBefore(Waiter other) {
+            int byPriority = token.getPriority().compareTo(other.token.getPriority());
+            return byPriority < 0 || (byPriority == 0 && sequence < other.sequence);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.android.newsfeed;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lets another thread abort a request made through {@link QueryUtils}.
+ * <p>
+ * Cancelling disconnects the request's connection, which makes a blocked socket read on the
+ * loading thread fail straight away instead of running to completion. Cancelling also cancels
+ * every token made with {@link #newChild()} and runs every listener added with
+ * {@link #addCancelListener(Runnable)}.
+ * <p>
+ * A token also carries the priority its request is scheduled with, see
+ * {@link RequestScheduler}. Children start with the priority of their parent.
+ */
+public class RequestToken implements LazyArticleList.Cancellation {
+
+    private volatile boolean mCancelled;
+    private volatile RequestScheduler.Priority mPriority;
+    private HttpURLConnection mConnection;
+    private List<RequestToken> mChildren;
+    private List<Runnable> mCancelListeners;
+
+    /**
+     * Constructs a new {@link RequestToken} for a request that brings what is shown up to date.
+     */
+    public RequestToken() {
+        this(RequestScheduler.Priority.REFRESH);
+    }
+
+    public RequestToken(RequestScheduler.Priority priority) {
+        mPriority = priority;
+    }
+
+    public void cancel() {
+        HttpURLConnection connection;
+        List<RequestToken> children;
+        List<Runnable> cancelListeners;
+        synchronized (this) {
+            if (mCancelled) {
+                return;
+            }
+            mCancelled = true;
+            connection = mConnection;
+            mConnection = null;
+            children = mChildren;
+            mChildren = null;
+            cancelListeners = mCancelListeners;
+            mCancelListeners = null;
+        }
+        if (connection != null) {
+            connection.disconnect();
+        }
+        if (children != null) {
+            for (RequestToken child : children) {
+                child.cancel();
+            }
+        }
+        if (cancelListeners != null) {
+            for (Runnable listener : cancelListeners) {
+                listener.run();
+            }
+        }
+    }
+
+    /**
+     * Run the given listener on the cancelling thread when this token is cancelled, or straight
+     * away if it already has been.
+     */
+    public void addCancelListener(Runnable listener) {
+        synchronized (this) {
+            if (!mCancelled) {
+                if (mCancelListeners == null) {
+                    mCancelListeners = new ArrayList<>();
+                }
+                mCancelListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    public synchronized void removeCancelListener(Runnable listener) {
+        if (mCancelListeners != null) {
+            mCancelListeners.remove(listener);
+        }
+    }
+
+    /**
+     * Return a token for one of several requests made on behalf of this one. It is cancelled
+     * along with this token, but can also be cancelled on its own.
+     */
+    public RequestToken newChild() {
+        return newChild(mPriority);
+    }
+
+    /**
+     * Return a child token, as {@link #newChild()} does, with the given priority instead of
+     * this token's.
+     */
+    public RequestToken newChild(RequestScheduler.Priority priority) {
+        RequestToken child = new RequestToken(priority);
+        synchronized (this) {
+            if (!mCancelled) {
+                if (mChildren == null) {
+                    mChildren = new ArrayList<>();
+                }
+                mChildren.add(child);
+                return child;
+            }
+        }
+        child.cancel();
+        return child;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    public RequestScheduler.Priority getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * Make this token, and its children, at least as urgent as the given priority, as when a
+     * more urgent caller joins a request that is already running.
+     */
+    public void raisePriority(RequestScheduler.Priority priority) {
+        List<RequestToken> children;
+        synchronized (this) {
+            if (priority.compareTo(mPriority) >= 0) {
+                return;
+            }
+            mPriority = priority;
+            children = mChildren == null ? null : new ArrayList<>(mChildren);
+        }
+        if (children != null) {
+            for (RequestToken child : children) {
+                child.raisePriority(priority);
+            }
+        }
+    }
+
+    /**
+     * Register the connection the request is using. Returns false, and leaves the connection
+     * alone, if the request has already been cancelled.
+     */
+    synchronized boolean attach(HttpURLConnection connection) {
+        if (mCancelled) {
+            return false;
+        }
+        mConnection = connection;
+        return true;
+    }
+
+    synchronized void detach() {
+        mConnection = null;
+    }
+}
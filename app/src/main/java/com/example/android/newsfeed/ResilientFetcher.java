@@ -0,0 +1,268 @@
+package com.example.android.newsfeed;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes a request to The Guardian survive the failures worth surviving, within a fixed time.
+ * <p>
+ * Overload (429) and server errors (5xx) and network errors are retried as the
+ * {@link RetryPolicy} says, honouring Retry-After. Every call has an overall deadline: each
+ * attempt's timeouts are cut to what is left of it, and the call is cancelled when it runs
+ * out, so no load waits longer than that however the retries go. A {@link CircuitBreaker} per
+ * host turns calls away straight away while the API is down, so the loads fall back to the
+ * cache at once.
+ */
+public class ResilientFetcher implements RequestRegistry.Fetcher {
+
+    private static final String LOG_TAG = ResilientFetcher.class.getName();
+
+    public static final long DEFAULT_DEADLINE_MILLIS = 20000;
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_BASE_DELAY_MILLIS = 500;
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 4000;
+    private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    private static final long DEFAULT_OPEN_MILLIS = 30000;
+
+    /**
+     * Makes one attempt at a request.
+     */
+    public interface Attempt {
+        /**
+         * Return the articles, or null if the token was cancelled.
+         *
+         * @param timeoutMillis longest the attempt may wait to connect or for any one read
+         */
+        List<NewsArticle> attempt(String requestUrl, RequestToken token, int timeoutMillis) throws IOException;
+    }
+
+    private static final ScheduledExecutorService DEADLINE_EXECUTOR =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ResilientFetcher");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private static ResilientFetcher sDefault;
+
+    private final Attempt mAttempt;
+    private final RetryPolicy mRetryPolicy;
+    private final long mDeadlineMillis;
+    private final int mFailureThreshold;
+    private final long mOpenMillis;
+
+    /**
+     * Breakers by host and port. Guarded by this.
+     */
+    private final Map<String, CircuitBreaker> mBreakers = new HashMap<>();
+
+    private int mCallCount;
+    private int mRetryCount;
+    private int mRejectedCount;
+    private int mDeadlineExceededCount;
+    private int mFailedCount;
+    private int mDroppedCount;
+
+    /**
+     * Constructs a new {@link ResilientFetcher}.
+     *
+     * @param attempt          that makes each single request
+     * @param retryPolicy      deciding on retries
+     * @param deadlineMillis   longest a call may take, retries included
+     * @param failureThreshold failed calls in a row to a host that open its breaker
+     * @param openMillis       how long an open breaker turns calls away
+     */
+    public ResilientFetcher(Attempt attempt, RetryPolicy retryPolicy, long deadlineMillis,
+                            int failureThreshold, long openMillis) {
+        mAttempt = attempt;
+        mRetryPolicy = retryPolicy;
+        mDeadlineMillis = deadlineMillis;
+        mFailureThreshold = failureThreshold;
+        mOpenMillis = openMillis;
+    }
+
+    public static synchronized ResilientFetcher getDefault() {
+        if (sDefault == null) {
+            sDefault = new ResilientFetcher(new Attempt() {
+                @Override
+                public List<NewsArticle> attempt(String requestUrl, RequestToken token, int timeoutMillis)
+                        throws IOException {
+                    return QueryUtils.makeHttpRequest(new URL(requestUrl), token, timeoutMillis);
+                }
+            }, new RetryPolicy(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS, new Random()),
+                    DEFAULT_DEADLINE_MILLIS, DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS);
+        }
+        return sDefault;
+    }
+
+    /**
+     * Return the articles for the given URL, or null if every attempt failed, the deadline
+     * passed, the host's breaker is open or the token was cancelled.
+     */
+    @Override
+    public List<NewsArticle> fetch(String requestUrl, RequestToken token) {
+        long startNanos = System.nanoTime();
+        CircuitBreaker breaker = breakerFor(requestUrl);
+        synchronized (this) {
+            mCallCount++;
+        }
+        if (!breaker.allowRequest()) {
+            synchronized (this) {
+                mRejectedCount++;
+            }
+            Log.w(LOG_TAG, "API unavailable, not requesting " + requestUrl);
+            return null;
+        }
+
+        // Cancelled by the caller or when the deadline passes, whichever comes first.
+        final RequestToken callToken = token.newChild();
+        ScheduledFuture<?> deadline = DEADLINE_EXECUTOR.schedule(new Runnable() {
+            @Override
+            public void run() {
+                callToken.cancel();
+            }
+        }, mDeadlineMillis, TimeUnit.MILLISECONDS);
+        long deadlineNanos = startNanos + mDeadlineMillis * 1000000L;
+
+        int retries = 0;
+        try {
+            for (int attempt = 1; ; attempt++) {
+                long remainingMillis = (deadlineNanos - System.nanoTime()) / 1000000L;
+                IOException failure;
+                try {
+                    List<NewsArticle> newsArticles = null;
+                    if (remainingMillis > 0) {
+                        newsArticles = mAttempt.attempt(requestUrl, callToken, (int) remainingMillis);
+                    }
+                    if (newsArticles != null) {
+                        breaker.onSuccess();
+                        return newsArticles;
+                    }
+                    if (token.isCancelled()) {
+                        breaker.onAbandoned();
+                        return null;
+                    }
+                    // Only the deadline cancels the call token on its own.
+                    onDeadlineExceeded(breaker, requestUrl);
+                    return null;
+                } catch (IOException e) {
+                    failure = e;
+                }
+
+                if (ApiException.isDropped(failure)) {
+                    // Never made, so it says nothing about the server.
+                    breaker.onAbandoned();
+                    synchronized (this) {
+                        mDroppedCount++;
+                    }
+                    return null;
+                }
+                if (!ApiException.isRetriable(failure)) {
+                    // The server is fine; the request itself is wrong.
+                    breaker.onSuccess();
+                    Log.e(LOG_TAG, "Request failed: " + requestUrl, failure);
+                    return null;
+                }
+                long retryAfterMillis = failure instanceof ApiException
+                        ? ((ApiException) failure).getRetryAfterMillis() : 0;
+                long delayMillis = mRetryPolicy.delayAfter(attempt, retryAfterMillis);
+                if (attempt >= mRetryPolicy.getMaxAttempts()) {
+                    breaker.onFailure();
+                    synchronized (this) {
+                        mFailedCount++;
+                    }
+                    Log.e(LOG_TAG, "Giving up after " + attempt + " attempts: " + requestUrl, failure);
+                    return null;
+                }
+                if (System.nanoTime() + delayMillis * 1000000L >= deadlineNanos) {
+                    // The next attempt couldn't start before the deadline, as when this one
+                    // timed out on what was left of it.
+                    onDeadlineExceeded(breaker, requestUrl);
+                    return null;
+                }
+                Log.w(LOG_TAG, "Attempt " + attempt + " failed (" + failure.getMessage() + "), retrying in "
+                        + delayMillis + " ms");
+                retries++;
+                synchronized (this) {
+                    mRetryCount++;
+                }
+                if (!mRetryPolicy.sleep(delayMillis, callToken)) {
+                    if (token.isCancelled()) {
+                        breaker.onAbandoned();
+                    } else {
+                        onDeadlineExceeded(breaker, requestUrl);
+                    }
+                    return null;
+                }
+            }
+        } finally {
+            deadline.cancel(false);
+            FeedMetrics.recordSince(FeedMetrics.Phase.CALL, startNanos);
+            FeedMetrics.record(FeedMetrics.Phase.RETRIES, retries);
+        }
+    }
+
+    private void onDeadlineExceeded(CircuitBreaker breaker, String requestUrl) {
+        breaker.onFailure();
+        synchronized (this) {
+            mDeadlineExceededCount++;
+        }
+        Log.e(LOG_TAG, "Deadline of " + mDeadlineMillis + " ms exceeded: " + requestUrl);
+    }
+
+    /**
+     * Return the breaker of the host the given URL is on.
+     */
+    synchronized CircuitBreaker breakerFor(String requestUrl) {
+        String host;
+        try {
+            URL url = new URL(requestUrl);
+            host = url.getHost() + ":" + url.getPort();
+        } catch (MalformedURLException e) {
+            host = "";
+        }
+        CircuitBreaker breaker = mBreakers.get(host);
+        if (breaker == null) {
+            breaker = new CircuitBreaker(mFailureThreshold, mOpenMillis);
+            mBreakers.put(host, breaker);
+        }
+        return breaker;
+    }
+
+    public synchronized int getRetryCount() {
+        return mRetryCount;
+    }
+
+    /**
+     * Number of calls turned away by an open breaker.
+     */
+    public synchronized int getRejectedCount() {
+        return mRejectedCount;
+    }
+
+    public synchronized int getDeadlineExceededCount() {
+        return mDeadlineExceededCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "calls=" + mCallCount + " retries=" + mRetryCount + " failed=" + mFailedCount
+                + " deadlineExceeded=" + mDeadlineExceededCount + " rejected=" + mRejectedCount
+                + " dropped=" + mDroppedCount;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.android.newsfeed;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how often and after how long a failed request is tried again.
+ * <p>
+ * Delays grow exponentially and are drawn at random below that bound ("full jitter"), so that
+ * many clients failing at the same moment don't all come back at the same moment too. A
+ * Retry-After given by the server is waited out at least.
+ * <p>
+ * The policy also does the waiting, so that tests can record the delays instead of sitting
+ * them out.
+ */
+public class RetryPolicy {
+
+    private final int mMaxAttempts;
+    private final long mBaseDelayMillis;
+    private final long mMaxDelayMillis;
+    private final Random mRandom;
+
+    /**
+     * Constructs a new {@link RetryPolicy}.
+     *
+     * @param maxAttempts     attempts in all, counting the first
+     * @param baseDelayMillis upper bound of the delay before the first retry
+     * @param maxDelayMillis  upper bound of any delay the policy picks itself
+     * @param random          source of the jitter
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, Random random) {
+        mMaxAttempts = maxAttempts;
+        mBaseDelayMillis = baseDelayMillis;
+        mMaxDelayMillis = maxDelayMillis;
+        mRandom = random;
+    }
+
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    /**
+     * Return how long to wait after the given attempt, counted from 1, failed.
+     *
+     * @param retryAfterMillis what the server asked for, or 0
+     */
+    public long delayAfter(int attempt, long retryAfterMillis) {
+        long bound = mBaseDelayMillis << Math.min(attempt - 1, 20);
+        bound = Math.min(bound, mMaxDelayMillis);
+        long delay;
+        synchronized (mRandom) {
+            delay = (long) (mRandom.nextDouble() * bound);
+        }
+        return Math.max(delay, retryAfterMillis);
+    }
+
+    /**
+     * Wait for the given time before the next attempt, or until the token is cancelled.
+     *
+     * @return false if the token was cancelled, or the thread interrupted, first
+     */
+    public boolean sleep(long millis, RequestToken token) {
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        Runnable listener = new Runnable() {
+            @Override
+            public void run() {
+                cancelled.countDown();
+            }
+        };
+        token.addCancelListener(listener);
+        try {
+            return !cancelled.await(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            token.removeCancelListener(listener);
+        }
+    }
+}
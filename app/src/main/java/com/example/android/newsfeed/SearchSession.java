@@ -0,0 +1,97 @@
+package com.example.android.newsfeed;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * State of one search-as-you-type session, from opening the search box to closing it.
+ * <p>
+ * Remembers the results of the queries fetched during the session so that repeated queries
+ * can be answered without waiting for the network. Also counts how many requests the session
+ * issued, cancelled and coalesced.
+ */
+public class SearchSession {
+
+    /**
+     * Number of fetched queries remembered for the session.
+     */
+    private static final int MAX_REMEMBERED_QUERIES = 8;
+
+    private final Map<String, List<NewsArticle>> mFetched =
+            new LinkedHashMap<String, List<NewsArticle>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<NewsArticle>> eldest) {
+                    return size() > MAX_REMEMBERED_QUERIES;
+                }
+            };
+
+    private int mRequestsIssued;
+    private int mRequestsCancelled;
+    private int mRequestsCoalesced;
+
+    /**
+     * Return the query in the form it is sent and remembered in: trimmed, lower case and with
+     * runs of whitespace collapsed to one space.
+     */
+    public static String normalize(String query) {
+        if (query == null) {
+            return "";
+        }
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.US);
+    }
+
+    /**
+     * Return the results already fetched for exactly this normalized query, or null.
+     */
+    public List<NewsArticle> getFetched(String query) {
+        return mFetched.get(query);
+    }
+
+    /**
+     * Remember the results fetched for the given normalized query.
+     */
+    public void onResults(String query, List<NewsArticle> newsArticles) {
+        if (newsArticles != null) {
+            mFetched.put(query, newsArticles);
+        }
+    }
+
+    public void onRequestIssued() {
+        mRequestsIssued++;
+    }
+
+    /**
+     * A request was superseded by a newer query while it was still running.
+     */
+    public void onRequestCancelled() {
+        mRequestsCancelled++;
+    }
+
+    /**
+     * A query change didn't need a request of its own, either because a later keystroke
+     * replaced it within the debounce window or because its results were already fetched.
+     */
+    public void onRequestCoalesced() {
+        mRequestsCoalesced++;
+    }
+
+    public int getRequestsIssued() {
+        return mRequestsIssued;
+    }
+
+    public int getRequestsCancelled() {
+        return mRequestsCancelled;
+    }
+
+    public int getRequestsCoalesced() {
+        return mRequestsCoalesced;
+    }
+
+    @Override
+    public String toString() {
+        return "issued=" + mRequestsIssued + " cancelled=" + mRequestsCancelled
+                + " coalesced=" + mRequestsCoalesced;
+    }
+}
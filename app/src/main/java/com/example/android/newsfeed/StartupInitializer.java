@@ -0,0 +1,168 @@
+package com.example.android.newsfeed;
+
+import android.content.Context;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the setup a launch needs off the main thread, while the main thread inflates the
+ * layout and draws the feed saved by the last run.
+ * <p>
+ * Each initializer is timed as a {@link StartupTrace} section. Most of them build one of the
+ * app's singletons, whose getters are synchronized: if the main thread asks for one before
+ * its initializer is done, it waits for it rather than building it a second time, so an
+ * initializer never costs more than running it on the main thread would have.
+ */
+public class StartupInitializer {
+
+    private static final String LOG_TAG = StartupInitializer.class.getName();
+
+    /**
+     * One thread is mostly waiting on the preconnect; the other works through the rest.
+     */
+    private static final int THREADS = 2;
+
+    /**
+     * How long the preconnect may take. The first load doesn't wait for it, so this only
+     * bounds how long its thread is held up.
+     */
+    private static final int PRECONNECT_TIMEOUT_MILLIS = 10000;
+
+    private static StartupInitializer sDefault;
+
+    private final ExecutorService mExecutor;
+    private final List<Future<?>> mStarted = new ArrayList<>();
+
+    /**
+     * Constructs a new {@link StartupInitializer}.
+     *
+     * @param executor to run the initializers on
+     */
+    public StartupInitializer(ExecutorService executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * Start the app's initializers, once per process. Call first thing in the launch.
+     */
+    public static synchronized void startDefault(Context context) {
+        if (sDefault != null) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                // Left at the default priority: the main thread may end up waiting on them.
+                Thread thread = new Thread(runnable, "StartupInitializer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        sDefault = new StartupInitializer(executor);
+        sDefault.startAll(context.getApplicationContext());
+        // The threads go away once the initializers are done.
+        executor.shutdown();
+    }
+
+    private void startAll(final Context context) {
+        // First, since it spends the longest waiting on the network.
+        start("preconnect", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    NewsHttpClient.getDefault().preconnect(
+                            new URL(GuardianRequests.apiRootUrl()), PRECONNECT_TIMEOUT_MILLIS);
+                } catch (MalformedURLException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        });
+        start("thumbnails", new Runnable() {
+            @Override
+            public void run() {
+                // Opens the thumbnail disk cache, which reads its journal.
+                ThumbnailLoader.getInstance(context);
+            }
+        });
+        start("preferences", new Runnable() {
+            @Override
+            public void run() {
+                // The first read waits for the preferences file to be loaded; later ones on
+                // the main thread are then only map lookups.
+                PreferenceManager.getDefaultSharedPreferences(context).getString(
+                        context.getString(R.string.settings_order_by_key),
+                        context.getString(R.string.settings_order_by_default));
+            }
+        });
+        start("rows", new Runnable() {
+            @Override
+            public void run() {
+                ArticleRows.getInstance(context);
+            }
+        });
+        start("sync", new Runnable() {
+            @Override
+            public void run() {
+                // Asks the job scheduler what is pending before scheduling anything.
+                FeedSync.schedule(context);
+            }
+        });
+    }
+
+    /**
+     * Run the given initializer in the background, timed as a section with the given name.
+     * An initializer that throws is logged and doesn't hold up the others.
+     */
+    public synchronized Future<?> start(final String name, final Runnable initializer) {
+        Future<?> future = mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                StartupTrace.Section section = StartupTrace.begin(name);
+                try {
+                    initializer.run();
+                } catch (RuntimeException e) {
+                    Log.e(LOG_TAG, "Startup initializer " + name + " failed", e);
+                } finally {
+                    section.end();
+                }
+            }
+        });
+        mStarted.add(future);
+        return future;
+    }
+
+    /**
+     * Wait for every initializer started so far to finish. Returns false if they didn't
+     * within the given time.
+     */
+    public boolean awaitAll(long timeoutMillis) throws InterruptedException {
+        List<Future<?>> started;
+        synchronized (this) {
+            started = new ArrayList<>(mStarted);
+        }
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Future<?> future : started) {
+            try {
+                future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                // Only an Error gets this far; the initializer has finished all the same.
+                Log.e(LOG_TAG, "Startup initializer failed", e.getCause());
+            } catch (TimeoutException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.android.newsfeed;
+
+import android.os.Build;
+import android.os.Trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The phases of the last launch, from the feed activity being created until its first frame.
+ * <p>
+ * Each phase is a {@link Section}, which shows up as a named slice in a systrace of the app
+ * on Android 4.3 and later, and is also timed here so that the launch can be read back from
+ * the log or the metrics screen without a trace. Sections may be opened on any thread; the
+ * background initializers record theirs alongside the main thread's.
+ */
+public final class StartupTrace {
+
+    /**
+     * Phases recorded since the launch started, in the order they ended.
+     */
+    private static final List<String> SECTIONS = new ArrayList<>();
+
+    /**
+     * {@link System#nanoTime()} when the launch started, or 0 before it has.
+     */
+    private static long sLaunchNanos;
+
+    private StartupTrace() {
+    }
+
+    /**
+     * Start timing a new launch, forgetting the phases of any earlier one.
+     */
+    public static synchronized void startLaunch() {
+        SECTIONS.clear();
+        sLaunchNanos = System.nanoTime();
+    }
+
+    /**
+     * Open a section with the given name on the calling thread. It has to be ended on the
+     * same thread, and sections opened after it ended before it.
+     */
+    public static Section begin(String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(name);
+        }
+        return new Section(name, System.nanoTime());
+    }
+
+    /**
+     * Record that the launch reached the given point, as a phase that took no time.
+     */
+    public static void mark(String name) {
+        long nowNanos = System.nanoTime();
+        record(name, nowNanos, nowNanos);
+    }
+
+    /**
+     * Return every phase of the last launch on a line of its own: when it started and how
+     * long it took, in milliseconds since the launch started, and the thread it ran on.
+     */
+    public static synchronized String dump() {
+        StringBuilder dump = new StringBuilder();
+        for (String section : SECTIONS) {
+            dump.append(section).append('\n');
+        }
+        return dump.toString();
+    }
+
+    /**
+     * Return the number of phases recorded for the last launch.
+     */
+    public static synchronized int size() {
+        return SECTIONS.size();
+    }
+
+    private static synchronized void record(String name, long startNanos, long endNanos) {
+        if (sLaunchNanos == 0) {
+            return;
+        }
+        SECTIONS.add(String.format(Locale.US, "%-12s at %6.1f ms took %6.1f ms on %s", name,
+                (startNanos - sLaunchNanos) / 1e6, (endNanos - startNanos) / 1e6,
+                Thread.currentThread().getName()));
+    }
+
+    /**
+     * One phase of the launch, open until {@link #end()} is called.
+     */
+    public static final class Section {
+
+        private final String mName;
+        private final long mStartNanos;
+
+        private Section(String name, long startNanos) {
+            mName = name;
+            mStartNanos = startNanos;
+        }
+
+        /**
+         * Close the section and record how long it was open. Returns that time in microseconds.
+         */
+        public long end() {
+            long endNanos = System.nanoTime();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                Trace.endSection();
+            }
+            record(mName, mStartNanos, endNanos);
+            return (endNanos - mStartNanos) / 1000;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.android.newsfeed;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.net.http.HttpResponseCache;
+import android.util.Log;
+import android.widget.ImageView;
+
+import com.squareup.picasso.LruCache;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.StatsSnapshot;
+import com.squareup.picasso.UrlConnectionDownloader;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Loads article thumbnails into list rows.
+ * <p>
+ * Images are decoded at the size of the view they go into rather than at full size, and
+ * kept in a memory cache bounded in bytes in front of an HTTP disk cache. Requests can be
+ * paused while the list is flinging, and are cancelled when their row is recycled.
+ */
+public final class ThumbnailLoader {
+
+    private static final String LOG_TAG = ThumbnailLoader.class.getName();
+
+    /**
+     * Tag put on every thumbnail request so they can be paused and resumed together.
+     */
+    private static final Object REQUEST_TAG = new Object();
+
+    private static final String DISK_CACHE_DIRECTORY = "thumbnails";
+    private static final long DISK_CACHE_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Share of the app's memory class given to decoded thumbnails.
+     */
+    private static final int MEMORY_CACHE_FRACTION = 8;
+
+    private static ThumbnailLoader sInstance;
+
+    /**
+     * Decides the size thumbnails are downloaded at. Null until the first profile is set.
+     * Kept apart from the instance, which a launch builds in the background, so that setting
+     * it never waits for the disk cache to open.
+     */
+    private static volatile RequestProfile sProfile;
+
+    private final Picasso mPicasso;
+    private final LruCache mMemoryCache;
+
+    private ThumbnailLoader(Context context) {
+        installDiskCache(context);
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryCacheBytes = activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CACHE_FRACTION;
+        mMemoryCache = new LruCache(memoryCacheBytes);
+        mPicasso = new Picasso.Builder(context)
+                .memoryCache(mMemoryCache)
+                .downloader(new UrlConnectionDownloader(context))
+                .build();
+    }
+
+    public static synchronized ThumbnailLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ThumbnailLoader(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Install the HTTP response cache that thumbnail downloads go through, unless one is
+     * already installed.
+     */
+    private static void installDiskCache(Context context) {
+        if (HttpResponseCache.getInstalled() != null) {
+            return;
+        }
+        try {
+            HttpResponseCache.install(new File(context.getCacheDir(), DISK_CACHE_DIRECTORY),
+                    DISK_CACHE_BYTES);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem installing the thumbnail disk cache.", e);
+        }
+    }
+
+    /**
+     * Download thumbnails at the size suited to the given profile from now on.
+     */
+    public static void setProfile(RequestProfile profile) {
+        sProfile = profile;
+    }
+
+    /**
+     * Load the given thumbnail into the view, decoded to the view's size, or show the local
+     * placeholder if the url is null. Any earlier request for the same view is cancelled.
+     */
+    public void load(String url, ImageView target) {
+        if (url == null) {
+            // Nothing to download, as when thumbnails are dropped on a slow network.
+            mPicasso.cancelRequest(target);
+            target.setImageResource(R.drawable.thumbnail_placeholder);
+            return;
+        }
+        RequestProfile profile = sProfile;
+        if (profile != null) {
+            url = profile.thumbnailUrl(url);
+        }
+        mPicasso.load(url)
+                .fit()
+                .centerCrop()
+                .placeholder(R.drawable.thumbnail_placeholder)
+                .tag(REQUEST_TAG)
+                .into(target);
+    }
+
+    /**
+     * Cancel the request for the given view, as when its row has scrolled off screen.
+     */
+    public void cancel(ImageView target) {
+        mPicasso.cancelRequest(target);
+    }
+
+    /**
+     * Hold back new thumbnail work, as while the list is flinging.
+     */
+    public void pause() {
+        mPicasso.pauseTag(REQUEST_TAG);
+    }
+
+    public void resume() {
+        mPicasso.resumeTag(REQUEST_TAG);
+    }
+
+    /**
+     * Return how many bytes have been decoded and how the memory cache is doing.
+     */
+    public StatsSnapshot getStats() {
+        return mPicasso.getSnapshot();
+    }
+
+    /**
+     * Return a one-line summary of decoded bytes and memory and disk cache hits.
+     */
+    public String dumpStats() {
+        StatsSnapshot stats = getStats();
+        StringBuilder dump = new StringBuilder()
+                .append("decoded=").append(stats.totalOriginalBitmapSize)
+                .append("B resized=").append(stats.totalTransformedBitmapSize)
+                .append("B memory=").append(stats.size).append('/').append(stats.maxSize)
+                .append("B memoryHits=").append(stats.cacheHits)
+                .append(" memoryMisses=").append(stats.cacheMisses)
+                .append(" downloaded=").append(stats.totalDownloadSize).append('B');
+        HttpResponseCache diskCache = HttpResponseCache.getInstalled();
+        if (diskCache != null) {
+            dump.append(" diskHits=").append(diskCache.getHitCount())
+                    .append(" diskRequests=").append(diskCache.getRequestCount());
+        }
+        return dump.toString();
+    }
+}
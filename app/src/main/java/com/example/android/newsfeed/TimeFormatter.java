@@ -0,0 +1,127 @@
+package com.example.android.newsfeed;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns publication times into the text shown on a row: "5 min ago" for recent articles and a
+ * localized date and time for older ones.
+ * <p>
+ * Safe to use from any thread. The DateFormat each thread needs is made once and kept, since
+ * DateFormat itself can't be shared between threads and is expensive to create.
+ */
+public class TimeFormatter {
+
+    private static final long MINUTE_MILLIS = 60 * 1000L;
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    /**
+     * Articles older than this show their date instead of how long ago they were published.
+     */
+    private static final long MAX_RELATIVE_MILLIS = 7 * DAY_MILLIS;
+
+    /**
+     * Gives the text for a number of minutes, hours or days ago, in the plural form that the
+     * number takes in the language shown.
+     */
+    public interface Quantities {
+
+        /**
+         * Return the text for the given number of minutes, hours or days ago.
+         */
+        String format(TimeUnit unit, int count);
+    }
+
+    private final String mJustNow;
+    private final Quantities mQuantities;
+    private final Locale mLocale;
+    private final TimeZone mTimeZone;
+
+    private final ThreadLocal<DateFormat> mDateFormats = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT, mLocale);
+            dateFormat.setTimeZone(mTimeZone);
+            return dateFormat;
+        }
+    };
+
+    /**
+     * Constructs a new {@link TimeFormatter}.
+     *
+     * @param justNow    shown for articles less than a minute old
+     * @param quantities gives the text for articles older than that
+     * @param locale     to format dates in
+     * @param timeZone   to show dates in
+     */
+    public TimeFormatter(String justNow, Quantities quantities, Locale locale, TimeZone timeZone) {
+        mJustNow = justNow;
+        mQuantities = quantities;
+        mLocale = locale;
+        mTimeZone = timeZone;
+    }
+
+    /**
+     * Return a formatter using the app's strings in the current locale and time zone.
+     */
+    public static TimeFormatter fromResources(Context context) {
+        final Resources resources = context.getResources();
+        return new TimeFormatter(resources.getString(R.string.time_just_now), new Quantities() {
+            @Override
+            public String format(TimeUnit unit, int count) {
+                int id;
+                if (unit == TimeUnit.MINUTES) {
+                    id = R.plurals.time_minutes_ago;
+                } else if (unit == TimeUnit.HOURS) {
+                    id = R.plurals.time_hours_ago;
+                } else {
+                    id = R.plurals.time_days_ago;
+                }
+                return resources.getQuantityString(id, count, count);
+            }
+        }, Locale.getDefault(), TimeZone.getDefault());
+    }
+
+    public Locale getLocale() {
+        return mLocale;
+    }
+
+    /**
+     * Return the text for an article published at the given time, as seen at nowMillis.
+     * Returns an empty String for {@link PublicationDates#UNKNOWN}.
+     */
+    public String format(long publicationTime, long nowMillis) {
+        if (publicationTime == PublicationDates.UNKNOWN) {
+            return "";
+        }
+        long age = nowMillis - publicationTime;
+        if (age < MINUTE_MILLIS) {
+            // Includes times slightly in the future, from a clock that is behind.
+            return mJustNow;
+        }
+        if (age < HOUR_MILLIS) {
+            return mQuantities.format(TimeUnit.MINUTES, (int) (age / MINUTE_MILLIS));
+        }
+        if (age < DAY_MILLIS) {
+            return mQuantities.format(TimeUnit.HOURS, (int) (age / HOUR_MILLIS));
+        }
+        if (age < MAX_RELATIVE_MILLIS) {
+            return mQuantities.format(TimeUnit.DAYS, (int) (age / DAY_MILLIS));
+        }
+        return formatAbsolute(publicationTime);
+    }
+
+    /**
+     * Return the localized date and time of the given publication time.
+     */
+    public String formatAbsolute(long publicationTime) {
+        return mDateFormats.get().format(new Date(publicationTime));
+    }
+}
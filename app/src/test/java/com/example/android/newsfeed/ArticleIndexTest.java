@@ -0,0 +1,166 @@
+package com.example.android.newsfeed;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ArticleIndexTest {
+
+    private static NewsArticle article(String headline, String time, String path) {
+        return new NewsArticle(null, headline, PublicationDates.parse(time), "https://www.theguardian.com/" + path);
+    }
+
+    private static final List<NewsArticle> ARTICLES = Arrays.asList(
+            article("Climate change talks stall", "2017-04-01T10:00:00Z", "environment/2017/apr/01/a"),
+            article("Markets rally as climate fund grows", "2017-04-01T11:00:00Z", "business/2017/apr/01/b"),
+            article("Storm leaves thousands without power", "2017-04-01T12:00:00Z", "world/2017/apr/01/c"),
+            article("Climbing the charts: a change of tune", "2017-04-01T09:00:00Z", "culture/2017/apr/01/d"));
+
+    private static ArticleIndex newIndex() {
+        return new ArticleIndex(64, 2 * 1024 * 1024);
+    }
+
+    @Test
+    public void lastWord_matchesAsPrefix() {
+        ArticleIndex index = newIndex();
+        index.put("a", ARTICLES);
+
+        // Newest first.
+        assertEquals(Arrays.asList(ARTICLES.get(1), ARTICLES.get(0), ARTICLES.get(3)), index.search("cli", 10));
+        assertEquals(Arrays.asList(ARTICLES.get(0)), index.search("climate ch", 10));
+        assertTrue(index.search("clim change", 10).isEmpty());
+    }
+
+    @Test
+    public void section_isSearchable() {
+        ArticleIndex index = newIndex();
+        index.put("a", ARTICLES);
+
+        assertEquals(Arrays.asList(ARTICLES.get(2)), index.search("world", 10));
+        assertEquals(Arrays.asList(ARTICLES.get(1)), index.search("business climate", 10));
+    }
+
+    @Test
+    public void articles_areIndexedOnce() {
+        ArticleIndex index = newIndex();
+        index.put("a", ARTICLES);
+        index.put("b", ARTICLES);
+
+        assertEquals(4, index.size());
+        assertEquals(3, index.search("cli", 10).size());
+    }
+
+    @Test
+    public void query_isSplitLikeHeadlines() {
+        NewsArticle covid = article("Covid-19 cases rise in the U.K.", "2017-04-01T08:00:00Z", "world/2017/apr/01/e");
+        ArticleIndex index = newIndex();
+        index.put("a", Arrays.asList(covid));
+
+        assertEquals(Arrays.asList(covid), index.search("covid-19", 10));
+        assertEquals(Arrays.asList(covid), index.search("u.k.", 10));
+        assertEquals(Arrays.asList(covid), index.search("covid-1", 10));
+        assertTrue(index.search("-", 10).isEmpty());
+    }
+
+    @Test
+    public void oldestLists_areDropped() {
+        ArticleIndex index = new ArticleIndex(2, Long.MAX_VALUE);
+        index.put("climate", ARTICLES.subList(0, 1));
+        index.put("markets", ARTICLES.subList(1, 2));
+        index.put("storm", ARTICLES.subList(2, 3));
+
+        assertEquals(2, index.getEntryCount());
+        assertFalse(index.contains("climate"));
+        assertTrue(index.search("climate change", 10).isEmpty());
+        assertEquals(Arrays.asList(ARTICLES.get(2)), index.search("storm", 10));
+    }
+
+    @Test
+    public void articles_stayWhileAnyListHoldsThem() {
+        ArticleIndex index = new ArticleIndex(2, Long.MAX_VALUE);
+        index.put("home", ARTICLES);
+        index.put("climate", ARTICLES.subList(0, 2));
+        index.put("storm", ARTICLES.subList(2, 3));
+
+        // Only the climate articles are still held, by the list of that name.
+        assertEquals(3, index.size());
+        assertEquals(Arrays.asList(ARTICLES.get(1), ARTICLES.get(0)), index.search("cli", 10));
+        assertTrue(index.search("charts", 10).isEmpty());
+    }
+
+    @Test
+    public void index_isBoundedByBytes() {
+        List<NewsArticle> newsArticles = SyntheticArticles.generate(2000, 3);
+        ArticleIndex index = new ArticleIndex(Integer.MAX_VALUE, 64 * 1024);
+        for (int i = 0; i < newsArticles.size(); i += 100) {
+            index.put("page " + i, newsArticles.subList(i, i + 100));
+        }
+
+        assertTrue(index.sizeInBytes() + " bytes", index.sizeInBytes() <= 64 * 1024);
+        assertTrue(index.getEntryCount() > 0 && index.getEntryCount() < 20);
+        // The newest pages are the ones left, and can still be searched.
+        NewsArticle last = newsArticles.get(newsArticles.size() - 1);
+        assertTrue(index.search(last.getHeadline().toLowerCase(Locale.US), 100).contains(last));
+    }
+
+    @Test
+    public void replacedList_isDroppedWithItsArticles() {
+        ArticleIndex index = newIndex();
+        index.put("a", ARTICLES);
+        index.put("a", ARTICLES.subList(2, 4));
+
+        assertEquals(2, index.size());
+        assertEquals(Arrays.asList(ARTICLES.get(3)), index.search("cli", 10));
+    }
+
+    @Test
+    public void search_findsEveryArticleMatchingTheQuery() {
+        List<NewsArticle> newsArticles = SyntheticArticles.generate(2000, 7);
+        ArticleIndex index = newIndex();
+        index.put("the", newsArticles);
+
+        for (String query : new String[]{"the climate", "the ma", "the bank ho", "the of to"}) {
+            Set<String> expected = new HashSet<>();
+            for (NewsArticle newsArticle : newsArticles) {
+                if (matches(newsArticle, query)) {
+                    expected.add(newsArticle.getUrl());
+                }
+            }
+            Set<String> found = new HashSet<>();
+            for (NewsArticle newsArticle : index.search(query, Integer.MAX_VALUE)) {
+                found.add(newsArticle.getUrl());
+            }
+            assertFalse(query, expected.isEmpty());
+            assertEquals(query, expected, found);
+        }
+    }
+
+    /**
+     * Whether every word of the query but the last is a term of the article, and the last
+     * starts one, checked the slow way.
+     */
+    private static boolean matches(NewsArticle newsArticle, String query) {
+        List<String> terms = ArticleIndex.terms(newsArticle.getHeadline(), newsArticle.getUrl());
+        List<String> words = ArticleIndex.words(query);
+        for (int i = 0; i < words.size() - 1; i++) {
+            if (!terms.contains(words.get(i))) {
+                return false;
+            }
+        }
+        String prefix = words.get(words.size() - 1);
+        for (String term : terms) {
+            if (term.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
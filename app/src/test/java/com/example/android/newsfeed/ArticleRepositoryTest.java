@@ -0,0 +1,238 @@
+package com.example.android.newsfeed;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ArticleRepositoryTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private LocalGuardianServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new LocalGuardianServer();
+        mServer.setResponder(LocalGuardianServer.ok(Fixtures.searchResponse(50)));
+        RequestRegistry.getDefault().clear();
+        RequestScheduler.getDefault().reset();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void fetch_isCachedAcrossRepositories() throws Exception {
+        File directory = mFolder.newFolder();
+        String url = mServer.url("/search?q=climate");
+
+        ArticleRepository repository = new ArticleRepository(new ArticleCache(directory, 8, 1 << 20), 60000);
+        assertNull(repository.getCached(url));
+        assertEquals(50, repository.fetch(url).size());
+        assertEquals(1, mServer.getRequestCount());
+
+        // A fresh repository over the same directory stands in for a cold start.
+        ArticleRepository restarted = new ArticleRepository(new ArticleCache(directory, 8, 1 << 20), 60000);
+        ArticleCache.Entry entry = restarted.getCached(url);
+        assertNotNull(entry);
+        assertTrue(restarted.isFresh(entry));
+        assertEquals(50, entry.articles.size());
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void expiredEntry_isStaleButStillServed() throws Exception {
+        ArticleRepository repository = new ArticleRepository(
+                new ArticleCache(mFolder.newFolder(), 8, 1 << 20), 0);
+        String url = mServer.url("/search?q=rates");
+        repository.fetch(url);
+
+        ArticleCache.Entry entry = repository.getCached(url);
+        assertNotNull(entry);
+        assertFalse(repository.isFresh(entry));
+    }
+
+    @Test
+    public void failedFetch_keepsCachedEntry() throws Exception {
+        ArticleRepository repository = new ArticleRepository(
+                new ArticleCache(mFolder.newFolder(), 8, 1 << 20), 0);
+        String url = mServer.url("/search?q=storm");
+        repository.fetch(url);
+
+        // Otherwise the result that has just come back would be handed out again.
+        RequestRegistry.getDefault().clear();
+        mServer.setResponder(LocalGuardianServer.status(503));
+        assertNull(repository.fetch(url));
+        assertEquals(50, repository.getCached(url).articles.size());
+    }
+
+    @Test
+    public void cache_evictsLeastRecentlyUsed() throws Exception {
+        ArticleCache cache = new ArticleCache(mFolder.newFolder(), 2, 1 << 20);
+        List<NewsArticle> articles = new ArticleRepository(cache, 0).fetch(mServer.url("/search?q=a"));
+        cache.put("b", articles, 1);
+        cache.get("a-missing");
+        cache.get(mServer.url("/search?q=a"));
+        cache.put("c", articles, 2);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(mServer.url("/search?q=a")));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void sinceUrl_onlyNarrowsFirstPageOfNewestFirst() {
+        long watermark = PublicationDates.parse("2017-04-01T11:44:22Z");
+        assertEquals("http://h/search?order-by=newest&page-size=20&from-date=2017-04-01T11%3A44%3A22Z",
+                ArticleRepository.sinceUrl("http://h/search?order-by=newest&page-size=20", watermark));
+        assertNull(ArticleRepository.sinceUrl("http://h/search?order-by=relevance", watermark));
+        assertNull(ArticleRepository.sinceUrl("http://h/search?order-by=newest&page=2", watermark));
+        assertNull(ArticleRepository.sinceUrl("http://h/search?order-by=newest", PublicationDates.UNKNOWN));
+    }
+
+    @Test
+    public void mergeNewer_replacesCopiesAndKeepsPageSize() {
+        NewsArticle a = new NewsArticle("", "a", 4, "u/a");
+        NewsArticle b = new NewsArticle("", "b", 3, "u/b");
+        NewsArticle c = new NewsArticle("", "c", 2, "u/c");
+        NewsArticle d = new NewsArticle("", "d", 1, "u/d");
+        NewsArticle editedB = new NewsArticle("", "b, updated", 3, "u/b");
+
+        List<NewsArticle> merged = ArticleRepository.mergeNewer(
+                Arrays.asList(a, editedB), Arrays.asList(b, c, d), 3);
+        assertEquals(Arrays.asList(a, editedB, c), merged);
+        assertEquals("b, updated", merged.get(1).getHeadline());
+    }
+
+    @Test
+    public void refresh_downloadsOnlyWhatIsNew() throws Exception {
+        GuardianFeed feed = new GuardianFeed(Fixtures.searchResponse(1000), 50);
+        mServer.setResponder(feed);
+        String url = mServer.url("/search?order-by=newest&page-size=50");
+        ArticleRepository repository = new ArticleRepository(
+                new ArticleCache(mFolder.newFolder(), 8, 1 << 20), 0);
+        NewsHttpClient client = NewsHttpClient.getDefault();
+        client.clearValidators();
+
+        assertEquals(50, repository.refresh(url, new RequestToken()).size());
+
+        // Five articles are published since, and the list is refreshed.
+        feed.publish(5);
+        FeedMetrics.reset();
+        long before = client.getBytesReceived();
+        List<NewsArticle> refreshed = repository.refresh(url, new RequestToken());
+        long incrementalBytes = client.getBytesReceived() - before;
+
+        String requested = mServer.getRequestedUris().get(1);
+        assertTrue(requested, requested.contains("from-date="));
+        // The five new articles, plus the newest cached one on the inclusive boundary.
+        assertEquals(6, FeedMetrics.get(FeedMetrics.Phase.ARTICLES).getSum());
+
+        // Refreshing the whole page instead returns the same list for all its bytes.
+        RequestRegistry.getDefault().clear();
+        before = client.getBytesReceived();
+        List<NewsArticle> full = new ArticleRepository(
+                new ArticleCache(mFolder.newFolder(), 8, 1 << 20), 0).fetch(url);
+        long refetchBytes = client.getBytesReceived() - before;
+
+        assertEquals(urls(full), urls(refreshed));
+        assertEquals(urls(full), urls(repository.getCached(url).articles));
+        assertTrue(incrementalBytes + " of " + refetchBytes, incrementalBytes * 5 < refetchBytes);
+    }
+
+    @Test
+    public void refresh_withNothingNew_keepsList() throws Exception {
+        GuardianFeed feed = new GuardianFeed(Fixtures.searchResponse(1000), 0);
+        mServer.setResponder(feed);
+        String url = mServer.url("/search?order-by=newest&page-size=20");
+        ArticleRepository repository = new ArticleRepository(
+                new ArticleCache(mFolder.newFolder(), 8, 1 << 20), 0);
+
+        List<NewsArticle> first = repository.refresh(url, new RequestToken());
+        List<NewsArticle> second = repository.refresh(url, new RequestToken());
+        assertEquals(urls(first), urls(second));
+    }
+
+    private static List<String> urls(List<NewsArticle> newsArticles) {
+        List<String> urls = new ArrayList<>();
+        for (NewsArticle newsArticle : newsArticles) {
+            urls.add(newsArticle.getUrl());
+        }
+        return urls;
+    }
+
+    /**
+     * Serves a newest-first feed out of a recorded response, honouring page-size and
+     * from-date, where the newest results are held back until they are published.
+     */
+    private static class GuardianFeed implements LocalGuardianServer.Responder {
+
+        private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+        private final JSONObject mResponse;
+        private final JSONArray mResults;
+        private volatile int mFirstPublished;
+
+        GuardianFeed(byte[] response, int unpublished) {
+            mResponse = new JSONObject(new String(response, UTF_8));
+            mResults = mResponse.getJSONObject("response").getJSONArray("results");
+            mFirstPublished = unpublished;
+        }
+
+        void publish(int count) {
+            mFirstPublished -= count;
+        }
+
+        @Override
+        public synchronized void respond(HttpExchange exchange) throws IOException {
+            int pageSize = 10;
+            long fromDate = PublicationDates.UNKNOWN;
+            for (String pair : exchange.getRequestURI().getRawQuery().split("&")) {
+                String value = URLDecoder.decode(pair.substring(pair.indexOf('=') + 1), "UTF-8");
+                if (pair.startsWith("page-size=")) {
+                    pageSize = Integer.parseInt(value);
+                } else if (pair.startsWith("from-date=")) {
+                    fromDate = PublicationDates.parse(value);
+                } else if (pair.startsWith("page=")) {
+                    fail("Only the first page is served");
+                }
+            }
+
+            JSONArray page = new JSONArray();
+            for (int i = mFirstPublished; i < mResults.length() && page.length() < pageSize; i++) {
+                JSONObject result = mResults.getJSONObject(i);
+                if (PublicationDates.parse(result.getString("webPublicationDate")) >= fromDate) {
+                    page.put(result);
+                }
+            }
+            JSONObject response = new JSONObject(mResponse.toString());
+            response.getJSONObject("response").put("results", page);
+            LocalGuardianServer.send(exchange, 200, response.toString().getBytes(UTF_8));
+        }
+    }
+}
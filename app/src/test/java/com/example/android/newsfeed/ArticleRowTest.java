@@ -0,0 +1,118 @@
+package com.example.android.newsfeed;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ArticleRowTest {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long PUBLISHED = PublicationDates.parse("2017-04-01T11:44:22Z");
+
+    private static final TimeFormatter FORMATTER = Fixtures.timeFormatter();
+
+    @Test
+    public void format_isRelativeForAWeekThenAbsolute() {
+        assertEquals("Just now", FORMATTER.format(PUBLISHED, PUBLISHED + 59 * 1000));
+        assertEquals("Just now", FORMATTER.format(PUBLISHED, PUBLISHED - MINUTE));
+        assertEquals("5 min ago", FORMATTER.format(PUBLISHED, PUBLISHED + 5 * MINUTE + 30 * 1000));
+        assertEquals("1 h ago", FORMATTER.format(PUBLISHED, PUBLISHED + 60 * MINUTE));
+        assertEquals("3 h ago", FORMATTER.format(PUBLISHED, PUBLISHED + 200 * MINUTE));
+        assertEquals("6 d ago", FORMATTER.format(PUBLISHED, PUBLISHED + 6 * 24 * 60 * MINUTE));
+        // The exact pattern depends on the locale data of the runtime.
+        String absolute = FORMATTER.format(PUBLISHED, PUBLISHED + 8 * 24 * 60 * MINUTE);
+        assertEquals(FORMATTER.formatAbsolute(PUBLISHED), absolute);
+        assertTrue(absolute, absolute.contains("2017") && absolute.contains("11:44"));
+        assertEquals("", FORMATTER.format(PublicationDates.UNKNOWN, PUBLISHED));
+    }
+
+    @Test
+    public void formatAbsolute_isSafeAcrossThreads() throws Exception {
+        final long[] times = new long[200];
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < times.length; i++) {
+            times[i] = PUBLISHED - i * 7919 * MINUTE;
+            expected.add(FORMATTER.formatAbsolute(times[i]));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executor.submit(new Callable<List<String>>() {
+                    @Override
+                    public List<String> call() {
+                        List<String> formatted = new ArrayList<>();
+                        for (long time : times) {
+                            formatted.add(FORMATTER.formatAbsolute(time));
+                        }
+                        return formatted;
+                    }
+                }));
+            }
+            for (Future<List<String>> future : futures) {
+                assertEquals(expected, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void row_cleansHeadlineAndUrl() {
+        NewsArticle article = new NewsArticle(null, "  Storm  hits\tcoast \n", PUBLISHED,
+                "www.theguardian.com/world/storm");
+        ArticleRow row = new ArticleRow(article, FORMATTER, PUBLISHED + 5 * MINUTE);
+
+        assertEquals("Storm hits coast", row.headline);
+        assertEquals("https://www.theguardian.com/world/storm", row.url);
+        assertNull(row.thumbnailUrl);
+        assertEquals("5 min ago", row.getTimestamp());
+
+        assertEquals("Already clean", ArticleRow.cleanHeadline("Already clean"));
+        assertEquals("http://x/y", ArticleRow.sanitizeUrl(" http://x/y "));
+        assertEquals("https://x/y", ArticleRow.sanitizeUrl("//x/y"));
+    }
+
+    @Test
+    public void refreshTimestamp_onlyChangesAfterAMinute() {
+        ArticleRow row = new ArticleRow(new NewsArticle(null, "a", PUBLISHED, "https://x/a"),
+                FORMATTER, PUBLISHED + 5 * MINUTE);
+
+        assertFalse(row.refreshTimestamp(FORMATTER, PUBLISHED + 5 * MINUTE + 30 * 1000));
+        assertEquals("5 min ago", row.getTimestamp());
+        assertTrue(row.refreshTimestamp(FORMATTER, PUBLISHED + 7 * MINUTE));
+        assertEquals("7 min ago", row.getTimestamp());
+    }
+
+    @Test
+    public void rows_arePreparedOnceAndReused() {
+        ArticleRows rows = new ArticleRows(FORMATTER);
+        NewsArticle first = new NewsArticle(null, "a", PUBLISHED, "https://x/a");
+        NewsArticle second = new NewsArticle(null, "b", PUBLISHED, "https://x/b");
+        rows.prepare(Arrays.asList(first, null, second));
+
+        ArticleRow firstRow = rows.get(first);
+        assertSame(first, firstRow.article);
+        assertSame(second, rows.get(second).article);
+        assertSame(firstRow, rows.get(first));
+        assertEquals(0, rows.getBuiltOnDemandCount());
+
+        // An edited copy of an article gets a row of its own.
+        NewsArticle edited = new NewsArticle(null, "a, updated", PUBLISHED, "https://x/a");
+        assertEquals("a, updated", rows.get(edited).headline);
+        assertEquals(1, rows.getBuiltOnDemandCount());
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.android.newsfeed;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FeedAggregatorTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private LocalGuardianServer mServer;
+    private ExecutorService mExecutor;
+    private ArticleRepository mRepository;
+
+    /**
+     * Counted down by every request as it reaches the server.
+     */
+    private volatile CountDownLatch mArrivals = new CountDownLatch(0);
+
+    /**
+     * Sections that don't answer until {@link #mRelease} is counted down.
+     */
+    private final Set<String> mHeld = Collections.synchronizedSet(new HashSet<String>());
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new LocalGuardianServer();
+        mExecutor = Executors.newFixedThreadPool(3);
+        mRepository = new ArticleRepository(new ArticleCache(mFolder.newFolder(), 16, 1 << 22), 60000);
+
+        // "uk" repeats the articles of "world".
+        final byte[] tenResults = Fixtures.searchResponse(10);
+        final byte[] fiftyResults = Fixtures.searchResponse(50);
+        mServer.setResponder(new LocalGuardianServer.Responder() {
+            @Override
+            public void respond(HttpExchange exchange) throws IOException {
+                String section = exchange.getRequestURI().getPath().substring(1);
+                byte[] body;
+                if (section.equals("world") || section.equals("uk")) {
+                    body = tenResults;
+                } else if (section.equals("business") || section.equals("slow")) {
+                    body = fiftyResults;
+                } else {
+                    LocalGuardianServer.send(exchange, 404, new byte[0]);
+                    return;
+                }
+                mArrivals.countDown();
+                if (mHeld.contains(section)) {
+                    await(mRelease);
+                }
+                LocalGuardianServer.send(exchange, 200, body);
+            }
+        });
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Release the held sections once the given number of requests have reached the server.
+     */
+    private void releaseAfterArrivals(int count) {
+        final CountDownLatch arrivals = new CountDownLatch(count);
+        mArrivals = arrivals;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                await(arrivals);
+                mRelease.countDown();
+            }
+        }).start();
+    }
+
+    @After
+    public void tearDown() {
+        mRelease.countDown();
+        mServer.shutdown();
+        mExecutor.shutdownNow();
+    }
+
+    private File newFolder() {
+        try {
+            return mFolder.newFolder();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private List<String> urls(String... sections) {
+        List<String> urls = new ArrayList<>();
+        for (String section : sections) {
+            urls.add(mServer.url("/" + section));
+        }
+        return urls;
+    }
+
+    @Test
+    public void sections_runInParallelAndMergeNewestFirstWithoutDuplicates() {
+        FeedAggregator aggregator = new FeedAggregator(mRepository, mExecutor, 5000);
+        // No section answers until all three have been asked, which one after another
+        // would never happen.
+        mHeld.addAll(Arrays.asList("world", "business", "uk"));
+        releaseAfterArrivals(3);
+
+        List<NewsArticle> newsArticles = aggregator.aggregate(
+                urls("world", "business", "uk"), false, new RequestToken(), null);
+
+        assertEquals(60, newsArticles.size());
+        assertEquals(0, aggregator.getTimedOutCount());
+
+        Set<String> urls = new HashSet<>();
+        for (int i = 0; i < newsArticles.size(); i++) {
+            assertTrue(urls.add(newsArticles.get(i).getUrl()));
+            if (i > 0) {
+                assertTrue(newsArticles.get(i - 1).getPublicationTime()
+                        >= newsArticles.get(i).getPublicationTime());
+            }
+        }
+    }
+
+    @Test
+    public void partialResults_arriveAsEachSectionFinishes() {
+        FeedAggregator aggregator = new FeedAggregator(mRepository, mExecutor, 5000);
+        final List<Integer> sizes = new ArrayList<>();
+        // Business only answers once the world section has been shown on its own.
+        mHeld.add("business");
+
+        aggregator.aggregate(urls("business", "world"), false, new RequestToken(), new FeedAggregator.Listener() {
+            @Override
+            public void onPartialResult(List<NewsArticle> newsArticles, int finished, int total) {
+                sizes.add(newsArticles.size());
+                mRelease.countDown();
+            }
+        });
+
+        assertEquals(Arrays.asList(10, 60), sizes);
+    }
+
+    @Test
+    public void slowSection_isLeftOutAfterTimeout() {
+        FeedAggregator aggregator = new FeedAggregator(mRepository, mExecutor, 500);
+        // Never answers during the test, so only the timeout ends its request.
+        mHeld.add("slow");
+
+        List<NewsArticle> newsArticles = aggregator.aggregate(
+                urls("world", "slow"), false, new RequestToken(), null);
+
+        assertEquals(10, newsArticles.size());
+        assertEquals(1, aggregator.getTimedOutCount());
+    }
+
+    @Test
+    public void cachedSections_areShownFirstAndKeptWhenOffline() {
+        // A repository whose entries go stale at once, so every section is requested again.
+        ArticleRepository repository = new ArticleRepository(
+                new ArticleCache(newFolder(), 16, 1 << 22), 0);
+        FeedAggregator aggregator = new FeedAggregator(repository, mExecutor, 2000);
+        aggregator.aggregate(urls("world", "business"), false, new RequestToken(), null);
+
+        mServer.setResponder(LocalGuardianServer.status(503));
+        final List<Integer> sizes = new ArrayList<>();
+        List<NewsArticle> newsArticles = aggregator.aggregate(urls("world", "business"), false,
+                new RequestToken(), new FeedAggregator.Listener() {
+                    @Override
+                    public void onPartialResult(List<NewsArticle> partial, int finished, int total) {
+                        sizes.add(partial.size());
+                    }
+                });
+
+        assertEquals(60, newsArticles.size());
+        // Delivered from the cache before any request finished, and never shrinking after.
+        assertEquals(Arrays.asList(60, 60, 60), sizes);
+    }
+
+    @Test
+    public void freshSections_areNotRequested() {
+        FeedAggregator aggregator = new FeedAggregator(mRepository, mExecutor, 2000);
+        aggregator.aggregate(urls("world", "business"), false, new RequestToken(), null);
+        int requests = mServer.getRequestCount();
+
+        assertEquals(60, aggregator.aggregate(urls("world", "business"), false, new RequestToken(), null).size());
+        assertEquals(requests, mServer.getRequestCount());
+    }
+
+    @Test
+    public void refresh_requestsFreshSectionsToo() {
+        FeedAggregator aggregator = new FeedAggregator(mRepository, mExecutor, 2000);
+        aggregator.aggregate(urls("world", "business"), false, new RequestToken(), null);
+        int requests = mServer.getRequestCount();
+        // Past the window in which a result that just came back is handed out again.
+        RequestRegistry.getDefault().clear();
+
+        assertEquals(60, aggregator.aggregate(urls("world", "business"), true, new RequestToken(), null).size());
+        assertEquals(requests + 2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void cancelledToken_abandonsEverySection() throws Exception {
+        FeedAggregator aggregator = new FeedAggregator(mRepository, mExecutor, 10000);
+        final RequestToken token = new RequestToken();
+        // Both requests hang until the token is cancelled, once they have reached the server.
+        mHeld.add("slow");
+        final CountDownLatch arrivals = new CountDownLatch(2);
+        mArrivals = arrivals;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                await(arrivals);
+                token.cancel();
+            }
+        }).start();
+
+        assertNull(aggregator.aggregate(urls("slow", "slow?page=2"), false, token, null));
+        assertEquals(0, aggregator.getTimedOutCount());
+    }
+}
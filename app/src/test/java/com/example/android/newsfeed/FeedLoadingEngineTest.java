@@ -0,0 +1,396 @@
+package com.example.android.newsfeed;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FeedLoadingEngineTest {
+
+    private static final int FEED_ID = 1;
+
+    /**
+     * Delivers states on the loading thread, standing in for the main thread.
+     */
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private ExecutorService mExecutor;
+    private FeedLoadingEngine mEngine;
+    private RecordingObserver mObserver;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newFixedThreadPool(4);
+        mEngine = new FeedLoadingEngine(mExecutor, DIRECT);
+        mObserver = new RecordingObserver();
+        RequestRegistry.getDefault().clear();
+        RequestScheduler.getDefault().reset();
+    }
+
+    @After
+    public void tearDown() {
+        mEngine.cancelAll();
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void supersededLoad_isCancelledWithoutWaitingForIt() throws Exception {
+        mEngine.observe(mObserver).setActive(true);
+        final CountDownLatch firstStarted = new CountDownLatch(1);
+        final CountDownLatch firstCancelled = new CountDownLatch(1);
+        mEngine.start(FEED_ID, new FeedLoadingEngine.Task() {
+            @Override
+            public FeedState load(RequestToken token, FeedLoadingEngine.Publisher publisher) {
+                firstStarted.countDown();
+                awaitCancel(token);
+                firstCancelled.countDown();
+                // Slow to wind down, and its result must still never show up.
+                sleep(500);
+                return new FeedState(FeedState.Status.LOADED, articles("old"));
+            }
+        });
+        assertTrue(firstStarted.await(1000, TimeUnit.MILLISECONDS));
+        mEngine.start(FEED_ID, result(articles("new")));
+
+        FeedState state = mObserver.awaitFinal(200);
+        assertEquals("new", state.articles.get(0).getHeadline());
+        assertTrue(firstCancelled.await(0, TimeUnit.MILLISECONDS));
+        assertEquals(1, mEngine.getSupersededCount());
+
+        sleep(600);
+        for (FeedState delivered : mObserver.getStates()) {
+            assertFalse(delivered.articles != null && "old".equals(delivered.articles.get(0).getHeadline()));
+        }
+    }
+
+    @Test
+    public void subscription_catchesUpOnlyOnWhatItMissed() throws Exception {
+        FeedLoadingEngine.Subscription subscription = mEngine.observe(mObserver);
+        mEngine.start(FEED_ID, result(articles("a", "b")));
+        while (mEngine.isRunning(FEED_ID)) {
+            sleep(5);
+        }
+        assertTrue(mObserver.getStates().isEmpty());
+
+        // As in onStart: the latest state arrives, and only that.
+        subscription.setActive(true);
+        assertEquals(1, mObserver.getStates().size());
+        assertEquals(FeedState.Status.LOADED, mObserver.getStates().get(0).status);
+
+        // Stopped and started again with nothing new: nothing is delivered twice.
+        subscription.setActive(false);
+        subscription.setActive(true);
+        assertEquals(1, mObserver.getStates().size());
+
+        // A new observer, as after a rotation, gets the latest state too.
+        RecordingObserver rotated = new RecordingObserver();
+        mEngine.observe(rotated).setActive(true);
+        assertEquals(1, rotated.getStates().size());
+
+        subscription.close();
+        mEngine.start(FEED_ID, result(articles("c")));
+        rotated.awaitFinal(1000);
+        assertEquals(1, mObserver.getStates().size());
+    }
+
+    @Test
+    public void articleListTask_showsStaleCacheThenFreshList() throws Exception {
+        LocalGuardianServer server = new LocalGuardianServer();
+        try {
+            server.setResponder(LocalGuardianServer.ok(Fixtures.searchResponse(10)));
+            String url = server.url("/search?q=stale");
+            // A TTL of zero makes every cached list stale.
+            ArticleRepository repository = new ArticleRepository(new ArticleCache(mFolder.newFolder(), 8, 1 << 20), 0);
+            assertNotNull(repository.fetch(url));
+            ArticleRows rows = new ArticleRows(Fixtures.timeFormatter());
+
+            mEngine.observe(mObserver).setActive(true);
+            mEngine.start(FEED_ID, new ArticleListTask(repository, rows, url, false));
+            mObserver.awaitFinal(5000);
+
+            List<FeedState.Status> statuses = new ArrayList<>();
+            for (FeedState state : mObserver.getStates()) {
+                statuses.add(state.status);
+            }
+            assertEquals(Arrays.asList(FeedState.Status.LOADING, FeedState.Status.STALE,
+                    FeedState.Status.LOADED), statuses);
+
+            // The server goes away: the cached list comes back with the error.
+            server.setResponder(LocalGuardianServer.status(400));
+            RequestRegistry.getDefault().clear();
+            mEngine.start(FEED_ID, new ArticleListTask(repository, rows, url, true));
+            FeedState state = mObserver.awaitFinal(5000);
+            assertEquals(FeedState.Status.ERROR, state.status);
+            assertEquals(10, state.articles.size());
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void cancelledToken_stopsTheParse() throws IOException {
+        RequestToken token = new RequestToken();
+        token.cancel();
+        try {
+            LazyArticleList.index(Fixtures.searchResponse(200), token);
+            fail("Parse should have stopped");
+        } catch (InterruptedIOException expected) {
+            // Stopped at the first article, although the whole body was there.
+        }
+    }
+
+    /**
+     * Types a query one letter at a time against a server that takes a while to answer, and
+     * times how long the last query takes to show up.
+     */
+    @Test
+    public void rapidQueryChanges_benchmark() throws Exception {
+        LocalGuardianServer server = new LocalGuardianServer();
+        try {
+            final byte[] body = Fixtures.searchResponse(50);
+            server.setResponder(new LocalGuardianServer.Responder() {
+                @Override
+                public void respond(HttpExchange exchange) throws IOException {
+                    LocalGuardianServer.sendThrottled(exchange, body, 200, 4 * 1024 * 1024);
+                }
+            });
+
+            long serial = typeQuery(server, new SerialLoader(false));
+            long serialCancelling = typeQuery(server, new SerialLoader(true));
+            long engine = typeQuery(server, new EngineLoader(mEngine));
+
+            assertTrue(engine + " vs " + serial, engine < serial);
+            // Cancelling already freed the serial loader quickly; the engine must not lose on it.
+            assertTrue(engine + " vs " + serialCancelling, engine < serialCancelling + 100);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private long typeQuery(LocalGuardianServer server, QueryLoader loader) throws Exception {
+        String query = "election";
+        long typedNanos = 0;
+        int before = server.getRequestCount();
+        // Each run starts with the whole burst the rate limit allows.
+        RequestScheduler.getDefault().reset();
+        for (int length = 1; length <= query.length(); length++) {
+            RequestRegistry.getDefault().clear();
+            // Each run asks for its own URLs, so nothing is served from an earlier run.
+            loader.load(server.url("/search?q=" + query.substring(0, length) + "&run=" + before));
+            typedNanos = System.nanoTime();
+            if (length < query.length()) {
+                sleep(60);
+            }
+        }
+        List<NewsArticle> newsArticles = loader.awaitLast(10000);
+        long millis = (System.nanoTime() - typedNanos) / 1000000L;
+        assertEquals(50, newsArticles.size());
+        return millis;
+    }
+
+    private static FeedLoadingEngine.Task result(final List<NewsArticle> newsArticles) {
+        return new FeedLoadingEngine.Task() {
+            @Override
+            public FeedState load(RequestToken token, FeedLoadingEngine.Publisher publisher) {
+                return new FeedState(FeedState.Status.LOADED, newsArticles);
+            }
+        };
+    }
+
+    private static List<NewsArticle> articles(String... headlines) {
+        List<NewsArticle> newsArticles = new ArrayList<>();
+        for (String headline : headlines) {
+            newsArticles.add(new NewsArticle(null, headline, 0, "https://www.theguardian.com/" + headline));
+        }
+        return newsArticles;
+    }
+
+    private static void awaitCancel(RequestToken token) {
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        token.addCancelListener(new Runnable() {
+            @Override
+            public void run() {
+                cancelled.countDown();
+            }
+        });
+        try {
+            cancelled.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class RecordingObserver implements FeedLoadingEngine.Observer {
+
+        private final List<FeedState> mStates = Collections.synchronizedList(new ArrayList<FeedState>());
+        private final List<FeedState> mFinal = new ArrayList<>();
+
+        @Override
+        public void onStateChanged(FeedState state) {
+            mStates.add(state);
+            if (state.isFinal()) {
+                synchronized (mFinal) {
+                    mFinal.add(state);
+                    mFinal.notifyAll();
+                }
+            }
+        }
+
+        List<FeedState> getStates() {
+            synchronized (mStates) {
+                return new ArrayList<>(mStates);
+            }
+        }
+
+        /**
+         * Wait for the next final state not yet waited for.
+         */
+        FeedState awaitFinal(long timeoutMillis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            synchronized (mFinal) {
+                while (mFinal.isEmpty()) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        fail("No final state within " + timeoutMillis + " ms");
+                    }
+                    mFinal.wait(remaining);
+                }
+                return mFinal.remove(0);
+            }
+        }
+    }
+
+    /**
+     * Something that loads search results as the user types.
+     */
+    private interface QueryLoader {
+        void load(String url);
+
+        /**
+         * Wait for the results of the last URL passed to {@link #load(String)}.
+         */
+        List<NewsArticle> awaitLast(long timeoutMillis) throws InterruptedException;
+    }
+
+    /**
+     * Loads as AsyncTaskLoader does: one load at a time, with a load started while another runs
+     * waiting for it to finish. Of the loads waiting, only the newest is run.
+     */
+    private static class SerialLoader implements QueryLoader {
+
+        private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+        private final boolean mCancelSuperseded;
+        private final AtomicReference<List<NewsArticle>> mLast = new AtomicReference<>();
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private int mGeneration;
+        private RequestToken mToken;
+
+        /**
+         * @param cancelSuperseded whether to cancel the running load's request, as
+         *                         cancelLoadInBackground does
+         */
+        SerialLoader(boolean cancelSuperseded) {
+            mCancelSuperseded = cancelSuperseded;
+        }
+
+        @Override
+        public synchronized void load(final String url) {
+            if (mCancelSuperseded && mToken != null) {
+                mToken.cancel();
+            }
+            final int generation = ++mGeneration;
+            final RequestToken token = new RequestToken();
+            mToken = token;
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!isCurrent(generation)) {
+                        return;
+                    }
+                    List<NewsArticle> newsArticles = QueryUtils.fetchNewsArticleData(url, token);
+                    if (isCurrent(generation) && newsArticles != null) {
+                        mLast.set(newsArticles);
+                        mDone.countDown();
+                    }
+                }
+            });
+        }
+
+        private synchronized boolean isCurrent(int generation) {
+            return generation == mGeneration;
+        }
+
+        @Override
+        public List<NewsArticle> awaitLast(long timeoutMillis) throws InterruptedException {
+            mDone.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            mExecutor.shutdown();
+            return mLast.get();
+        }
+    }
+
+    private static class EngineLoader implements QueryLoader {
+
+        private final FeedLoadingEngine mEngine;
+        private final RecordingObserver mObserver = new RecordingObserver();
+
+        EngineLoader(FeedLoadingEngine engine) {
+            mEngine = engine;
+            mEngine.observe(mObserver).setActive(true);
+        }
+
+        @Override
+        public void load(final String url) {
+            mEngine.start(FEED_ID, new FeedLoadingEngine.Task() {
+                @Override
+                public FeedState load(RequestToken token, FeedLoadingEngine.Publisher publisher) {
+                    List<NewsArticle> newsArticles = QueryUtils.fetchNewsArticleData(url, token);
+                    return new FeedState(newsArticles != null ? FeedState.Status.LOADED : FeedState.Status.ERROR,
+                            newsArticles);
+                }
+            });
+        }
+
+        @Override
+        public List<NewsArticle> awaitLast(long timeoutMillis) throws InterruptedException {
+            return mObserver.awaitFinal(timeoutMillis).articles;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.android.newsfeed;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FeedMetricsTest {
+
+    private LocalGuardianServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        FeedMetrics.reset();
+        mServer = new LocalGuardianServer();
+        mServer.setResponder(LocalGuardianServer.ok(Fixtures.searchResponse(50)));
+    }
+
+    @After
+    public void tearDown() {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void histogram_percentilesAreTheTopOfTheirBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500, histogram.getMean());
+        assertEquals(1000, histogram.getMax());
+        // The 500th value falls in the bucket of 256 to 511.
+        assertEquals(511, histogram.getPercentile(50));
+        // The 990th falls in the bucket of 512 to 1023, capped at the largest value seen.
+        assertEquals(1000, histogram.getPercentile(99));
+        assertEquals(1, histogram.getPercentile(0.1));
+    }
+
+    @Test
+    public void histogram_percentilesOfKnownSamples() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // Nine fast samples and one slow one.
+        for (int i = 0; i < 9; i++) {
+            histogram.record(3);
+        }
+        histogram.record(100);
+
+        assertEquals(12, histogram.getMean());
+        assertEquals(3, histogram.getPercentile(50));
+        assertEquals(3, histogram.getPercentile(90));
+        assertEquals(100, histogram.getPercentile(99));
+        assertEquals("n=10 mean=12 p50=3 p90=3 p99=100 max=100", histogram.toString());
+    }
+
+    @Test
+    public void histogram_countsEveryConcurrentRecord() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100000; j++) {
+                        histogram.record(j % 64);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(400000, histogram.getCount());
+        assertEquals(63, histogram.getMax());
+    }
+
+    @Test
+    public void request_recordsEveryNetworkPhase() throws Exception {
+        NewsHttpClient client = new NewsHttpClient();
+        for (int i = 0; i < 3; i++) {
+            client.fetchArticles(new URL(mServer.url("/search?page=" + i)), new RequestToken());
+        }
+
+        assertEquals(3, FeedMetrics.get(FeedMetrics.Phase.CONNECT).getCount());
+        assertEquals(3, FeedMetrics.get(FeedMetrics.Phase.FIRST_BYTE).getCount());
+        assertEquals(3, FeedMetrics.get(FeedMetrics.Phase.BODY_READ).getCount());
+        assertEquals(3, FeedMetrics.get(FeedMetrics.Phase.PARSE).getCount());
+        assertEquals(50, FeedMetrics.get(FeedMetrics.Phase.ARTICLES).getMax());
+        assertEquals(client.getBytesReceived(), FeedMetrics.get(FeedMetrics.Phase.BYTES).getSum());
+
+        String dump = FeedMetrics.dump();
+        assertTrue(dump, dump.contains("\nparse n=3 "));
+        assertTrue(dump, dump.contains("\narticles n=3 mean=50 p50=50 p90=50 p99=50 max=50\n"));
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.android.newsfeed;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FeedPagerTest {
+
+    private static final int PAGE_SIZE = 10;
+
+    private static List<NewsArticle> page(int page, int size) {
+        List<NewsArticle> articles = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            articles.add(new NewsArticle(NewsArticle.NO_THUMBNAIL_URL, "Article " + page + "." + i,
+                    PublicationDates.parse("2017-04-01T10:00:00Z"), "https://www.theguardian.com/" + page + "/" + i));
+        }
+        return articles;
+    }
+
+    @Test
+    public void nextPage_isRequestedWithinPrefetchDistance() {
+        FeedPager pager = new FeedPager(PAGE_SIZE, 3, 2, 10);
+        pager.reset(page(1, PAGE_SIZE));
+
+        assertTrue(pager.pagesToRequest(0, 5).isEmpty());
+        assertEquals(Collections.singletonList(2), pager.pagesToRequest(2, 5));
+        // Already in flight, so not requested twice.
+        assertTrue(pager.pagesToRequest(3, 5).isEmpty());
+
+        pager.onPageLoaded(2, page(2, PAGE_SIZE));
+        assertEquals(20, pager.getItemCount());
+        assertEquals("Article 2.4", pager.getItem(14).getHeadline());
+    }
+
+    @Test
+    public void unpagedFeed_keepsEveryArticleAndRequestsNothing() {
+        FeedPager pager = new FeedPager(PAGE_SIZE, 3, 2, 2);
+        List<NewsArticle> merged = new ArrayList<>();
+        for (int p = 1; p <= 3; p++) {
+            merged.addAll(page(p, 7));
+        }
+        pager.resetUnpaged(merged);
+
+        assertEquals(21, pager.getItemCount());
+        assertEquals(merged, pager.snapshot());
+        assertTrue(pager.pagesToRequest(15, 6).isEmpty());
+    }
+
+    @Test
+    public void shortPage_endsTheFeed() {
+        FeedPager pager = new FeedPager(PAGE_SIZE, 3, 2, 10);
+        pager.reset(page(1, PAGE_SIZE));
+        pager.pagesToRequest(5, 5);
+        pager.onPageLoaded(2, page(2, 4));
+
+        assertEquals(14, pager.getItemCount());
+        assertTrue(pager.pagesToRequest(9, 5).isEmpty());
+    }
+
+    @Test
+    public void inFlightRequests_areCapped() {
+        FeedPager pager = new FeedPager(PAGE_SIZE, 3, 1, 2);
+        pager.reset(page(1, PAGE_SIZE));
+        for (int p = 2; p <= 4; p++) {
+            pager.pagesToRequest((p - 1) * PAGE_SIZE - 5, 5);
+            pager.onPageLoaded(p, page(p, PAGE_SIZE));
+        }
+
+        // Only pages 3 and 4 are still in memory, and scrolling back to the top requests
+        // page 1 again and nothing else while that request is running.
+        assertNull(pager.getItem(0));
+        assertNotNull(pager.getItem(35));
+        assertEquals(Arrays.asList(1), pager.pagesToRequest(0, 15));
+        assertTrue(pager.pagesToRequest(0, 15).isEmpty());
+        assertEquals(40, pager.getItemCount());
+    }
+
+    @Test
+    public void droppedPagesBackOnScreen_areNotLookAhead() {
+        FeedPager pager = new FeedPager(PAGE_SIZE, 3, 2, 2);
+        pager.reset(page(1, PAGE_SIZE));
+        for (int p = 2; p <= 3; p++) {
+            pager.pagesToRequest((p - 1) * PAGE_SIZE - 3, 3);
+            pager.onPageLoaded(p, page(p, PAGE_SIZE));
+        }
+
+        // Page 1 was trimmed away and is on screen again; page 4 is only wanted ahead.
+        assertEquals(Arrays.asList(1), pager.pagesToRequest(0, 5));
+        assertFalse(pager.isLookAhead(1));
+        assertEquals(Arrays.asList(4), pager.pagesToRequest(27, 3));
+        assertTrue(pager.isLookAhead(4));
+
+        // A failed page can be asked for again.
+        pager.onPageFailed(1);
+        assertEquals(Arrays.asList(1), pager.pagesToRequest(0, 5));
+    }
+
+    @Test
+    public void farPages_areDroppedFirst() {
+        FeedPager pager = new FeedPager(PAGE_SIZE, 3, 2, 3);
+        pager.reset(page(1, PAGE_SIZE));
+        for (int p = 2; p <= 5; p++) {
+            pager.pagesToRequest((p - 1) * PAGE_SIZE - 3, 3);
+            pager.onPageLoaded(p, page(p, PAGE_SIZE));
+        }
+
+        assertNull(pager.getItem(5));
+        assertNull(pager.getItem(15));
+        assertNotNull(pager.getItem(25));
+        assertNotNull(pager.getItem(45));
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.android.newsfeed;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FeedSnapshotTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("feed", ".snapshot");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void snapshot_roundTripsEveryField() throws IOException {
+        List<NewsArticle> newsArticles = NewsArticleParser.readArticles(
+                new ByteArrayInputStream(Fixtures.searchResponse(50)));
+        FeedSnapshot.write(mFile, newsArticles, 1234L);
+
+        FeedSnapshot snapshot = FeedSnapshot.open(mFile);
+        assertNotNull(snapshot);
+        assertEquals(1234L, snapshot.getSavedAtMillis());
+        assertEquals(newsArticles.size(), snapshot.size());
+        boolean sawMissingThumbnail = false;
+        for (int i = 0; i < newsArticles.size(); i++) {
+            NewsArticle expected = newsArticles.get(i);
+            NewsArticle actual = snapshot.get(i);
+            assertEquals(expected.getHeadline(), actual.getHeadline());
+            assertEquals(expected.getUrl(), actual.getUrl());
+            assertEquals(expected.getPublicationTime(), actual.getPublicationTime());
+            assertEquals(expected.hasThumbnail(), actual.hasThumbnail());
+            assertEquals(expected.getImageId(), actual.getImageId());
+            sawMissingThumbnail |= !expected.hasThumbnail();
+        }
+        // The fixture has articles without thumbnails, which must come back without one.
+        assertTrue(sawMissingThumbnail);
+    }
+
+    @Test
+    public void firstScreenful_ofThousandArticles_isReadWithoutDecodingTheRest() throws IOException {
+        List<NewsArticle> newsArticles = SyntheticArticles.generate(1000, 19);
+        FeedSnapshot.write(mFile, newsArticles, System.currentTimeMillis());
+
+        FeedSnapshot snapshot = FeedSnapshot.open(mFile);
+        assertEquals(1000, snapshot.size());
+        assertEquals(0, snapshot.getDecodedCount());
+
+        List<NewsArticle> head = snapshot.head(12);
+        assertEquals(12, head.size());
+        assertEquals(12, snapshot.getDecodedCount());
+        assertEquals(newsArticles.get(11).getUrl(), head.get(11).getUrl());
+
+        // A row further down is decoded on its own, and only once.
+        assertEquals(newsArticles.get(500).getHeadline(), snapshot.get(500).getHeadline());
+        assertEquals(newsArticles.get(500).getHeadline(), snapshot.get(500).getHeadline());
+        assertEquals(13, snapshot.getDecodedCount());
+
+        for (int i = 0; i < snapshot.size(); i++) {
+            snapshot.get(i);
+        }
+        assertEquals(1000, snapshot.getDecodedCount());
+        assertEquals(newsArticles.get(999).getHeadline(), snapshot.get(999).getHeadline());
+    }
+
+    @Test
+    public void damagedFiles_areIgnored() throws IOException {
+        assertNull(FeedSnapshot.open(new File(mFile.getPath() + ".missing")));
+
+        FeedSnapshot.write(mFile, SyntheticArticles.generate(20, 1), 0);
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            // Written in a newer format.
+            file.seek(4);
+            file.writeInt(99);
+            assertNull(FeedSnapshot.open(mFile));
+
+            // Cut short in the middle of the offset table.
+            file.seek(4);
+            file.writeInt(1);
+            file.setLength(40);
+            assertNull(FeedSnapshot.open(mFile));
+        } finally {
+            file.close();
+        }
+
+        // Cut short in the records: the intact head can still be shown.
+        FeedSnapshot.write(mFile, SyntheticArticles.generate(20, 1), 0);
+        file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.setLength(file.length() - 10);
+        } finally {
+            file.close();
+        }
+        FeedSnapshot snapshot = FeedSnapshot.open(mFile);
+        assertNotNull(snapshot);
+        assertNull(snapshot.get(19));
+        assertEquals(19, snapshot.head(20).size());
+        assertFalse(snapshot.head(20).contains(null));
+    }
+}
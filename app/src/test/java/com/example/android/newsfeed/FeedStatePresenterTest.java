@@ -0,0 +1,111 @@
+package com.example.android.newsfeed;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FeedStatePresenterTest {
+
+    private static final List<NewsArticle> ARTICLES = SyntheticArticles.generate(3, 1);
+
+    @Test
+    public void loading_showsProgressOnlyWithoutRows() {
+        FeedStatePresenter.Screen empty = present(FeedState.Status.LOADING, null, false);
+        FeedStatePresenter.Screen snapshot = present(FeedState.Status.LOADING, null, true);
+
+        assertTrue(empty.progress);
+        assertFalse(empty.replaceRows);
+        assertEquals(0, empty.emptyMessage);
+        assertFalse(snapshot.progress);
+        assertFalse(snapshot.replaceRows);
+        assertEquals(0, snapshot.banner);
+    }
+
+    @Test
+    public void partialFeed_isShownWithMoreToCome() {
+        FeedStatePresenter.Screen screen = present(FeedState.Status.PARTIAL, ARTICLES, true);
+
+        assertTrue(screen.replaceRows);
+        assertFalse(screen.progress);
+        assertEquals(R.string.feed_loading_more, screen.banner);
+        assertFalse(screen.retry);
+    }
+
+    @Test
+    public void staleArticles_areShownAsUpdating() {
+        FeedStatePresenter.Screen screen = present(FeedState.Status.STALE, ARTICLES, false);
+
+        assertTrue(screen.replaceRows);
+        assertFalse(screen.progress);
+        assertEquals(R.string.feed_updating, screen.banner);
+        assertFalse(screen.retry);
+    }
+
+    @Test
+    public void errorWithoutArticles_keepsTheRowsAndOffersARetry() {
+        FeedStatePresenter.Screen screen = present(FeedState.Status.ERROR, null, true);
+
+        assertFalse(screen.replaceRows);
+        assertEquals(R.string.feed_not_updated, screen.banner);
+        assertEquals(R.string.feed_load_failed, screen.emptyMessage);
+        assertTrue(screen.retry);
+    }
+
+    @Test
+    public void errorWithNothingOnScreen_saysTheLoadFailed() {
+        FeedStatePresenter.Screen screen = present(FeedState.Status.ERROR, null, false);
+
+        assertEquals(0, screen.banner);
+        assertEquals(R.string.feed_load_failed, screen.emptyMessage);
+        assertTrue(screen.retry);
+    }
+
+    @Test
+    public void errorWhileOffline_saysThereIsNoConnection() {
+        FeedStatePresenter.Screen screen = FeedStatePresenter.present(
+                new FeedState(FeedState.Status.ERROR, null), true, false, false);
+
+        assertEquals(R.string.no_connection, screen.emptyMessage);
+        assertTrue(screen.retry);
+    }
+
+    @Test
+    public void errorWithCachedArticles_showsThemAsNotUpdated() {
+        FeedStatePresenter.Screen screen = present(FeedState.Status.ERROR, ARTICLES, false);
+
+        assertTrue(screen.replaceRows);
+        assertEquals(R.string.feed_not_updated, screen.banner);
+        assertTrue(screen.retry);
+    }
+
+    @Test
+    public void loadedArticles_showNoBanner() {
+        FeedStatePresenter.Screen screen = present(FeedState.Status.LOADED, ARTICLES, true);
+
+        assertTrue(screen.replaceRows);
+        assertEquals(0, screen.banner);
+        assertFalse(screen.retry);
+    }
+
+    @Test
+    public void emptySearch_saysNothingMatched() {
+        List<NewsArticle> none = Collections.emptyList();
+
+        assertEquals(R.string.no_articles, present(FeedState.Status.LOADED, none, false).emptyMessage);
+        assertEquals(R.string.instructions, FeedStatePresenter.present(
+                new FeedState(FeedState.Status.LOADED, none), false, true, false).emptyMessage);
+    }
+
+    /**
+     * Return what a search shows for the given state while connected.
+     */
+    private static FeedStatePresenter.Screen present(FeedState.Status status, List<NewsArticle> articles,
+                                                     boolean hasRows) {
+        return FeedStatePresenter.present(new FeedState(status, articles), true, true, hasRows);
+    }
+}
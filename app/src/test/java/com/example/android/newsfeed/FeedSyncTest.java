@@ -0,0 +1,106 @@
+package com.example.android.newsfeed;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FeedSyncTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private LocalGuardianServer mServer;
+    private ArticleRepository mRepository;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new LocalGuardianServer();
+        mServer.setResponder(LocalGuardianServer.ok(Fixtures.searchResponse(10)));
+        mRepository = new ArticleRepository(new ArticleCache(mFolder.newFolder(), 16, 1 << 20), 60000);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void sync_fillsTheCacheAndSkipsFreshEntries() {
+        List<String> urls = Arrays.asList(mServer.url("/world"), mServer.url("/business"));
+
+        assertTrue(FeedSync.sync(mRepository, urls, new RequestToken()));
+        assertEquals(2, mServer.getRequestCount());
+        for (String url : urls) {
+            assertNotNull(mRepository.getCached(url));
+        }
+
+        // Everything is fresh now, so a second sync asks for nothing.
+        assertTrue(FeedSync.sync(mRepository, urls, new RequestToken()));
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void syncedLists_outliveBrowsingAndTheProcess() throws Exception {
+        File directory = mFolder.newFolder();
+        ArticleRepository repository = new ArticleRepository(new ArticleCache(directory, 2, 1 << 20), 60000);
+        List<String> synced = Arrays.asList(mServer.url("/world"), mServer.url("/search?q=budget"));
+        assertTrue(FeedSync.sync(repository, synced, new RequestToken()));
+
+        // Browsing fills the cache well past its two entries.
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(repository.fetch(mServer.url("/search?q=browse" + i)));
+        }
+        ArticleCache reopened = new ArticleCache(directory, 2, 1 << 20);
+        for (String url : synced) {
+            assertTrue(reopened.isPinned(url));
+            assertNotNull(url, reopened.get(url));
+        }
+        assertNull(reopened.get(mServer.url("/search?q=browse0")));
+
+        // The next sync pins its own lists instead, and the old ones can go.
+        reopened.setPinned(Arrays.asList(mServer.url("/business")));
+        assertFalse(reopened.isPinned(synced.get(0)));
+        assertEquals(2, reopened.size());
+    }
+
+    @Test
+    public void recentSearches_areNewestFirstWithoutRepeats() {
+        List<String> recent = RecentSearches.push(new ArrayList<String>(), "budget", 3);
+        recent = RecentSearches.push(recent, "election", 3);
+        recent = RecentSearches.push(recent, "budget", 3);
+        recent = RecentSearches.push(recent, "storm", 3);
+        recent = RecentSearches.push(recent, "", 3);
+
+        assertEquals(Arrays.asList("storm", "budget", "election"), recent);
+        assertEquals(Arrays.asList("climate", "storm", "budget"), RecentSearches.push(recent, "climate", 3));
+    }
+
+    @Test
+    public void failedRequest_asksForARetry() {
+        mServer.setResponder(LocalGuardianServer.status(503));
+
+        assertFalse(FeedSync.sync(mRepository, Arrays.asList(mServer.url("/world")), new RequestToken()));
+    }
+
+    @Test
+    public void cancelledSync_stops() {
+        RequestToken token = new RequestToken();
+        token.cancel();
+
+        assertFalse(FeedSync.sync(mRepository, Arrays.asList(mServer.url("/world")), token));
+        assertEquals(0, mServer.getRequestCount());
+    }
+}
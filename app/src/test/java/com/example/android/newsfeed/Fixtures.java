@@ -0,0 +1,62 @@
+package com.example.android.newsfeed;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads recorded Guardian responses from the test resources, and makes the other things the
+ * tests share.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * Return the raw bytes of a Guardian search response holding the given number of results.
+     */
+    static byte[] searchResponse(int resultCount) throws IOException {
+        return read("fixtures/guardian-search-" + resultCount + ".json");
+    }
+
+    /**
+     * Return a formatter with the app's English texts, showing dates as in the UK in UTC.
+     */
+    static TimeFormatter timeFormatter() {
+        return new TimeFormatter("Just now", new TimeFormatter.Quantities() {
+            @Override
+            public String format(TimeUnit unit, int count) {
+                switch (unit) {
+                    case MINUTES:
+                        return count + " min ago";
+                    case HOURS:
+                        return count + " h ago";
+                    default:
+                        return count + " d ago";
+                }
+            }
+        }, Locale.UK, TimeZone.getTimeZone("UTC"));
+    }
+
+    static byte[] read(String name) throws IOException {
+        InputStream inputStream = Fixtures.class.getClassLoader().getResourceAsStream(name);
+        if (inputStream == null) {
+            throw new IOException("Missing fixture " + name);
+        }
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.android.newsfeed;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HeadlineClustererTest {
+
+    private static NewsArticle article(String headline, String path) {
+        return new NewsArticle(null, headline, PublicationDates.parse("2017-04-01T12:00:00Z"),
+                "https://www.theguardian.com/" + path);
+    }
+
+    private static final List<NewsArticle> ARTICLES = Arrays.asList(
+            article("Storm leaves thousands without power across northern England", "uk-news/a"),
+            article("Storm leaves thousands without power across northern England \u2013 live", "uk-news/live/b"),
+            article("Markets rally as central bank holds rates steady", "business/c"),
+            article("Storm leaves tens of thousands without power across northern England", "world/d"),
+            article("Storm clouds gather over central bank as markets wait", "business/e"));
+
+    @Test
+    public void nearIdenticalHeadlines_areGroupedUnderTheFirst() {
+        List<HeadlineClusterer.Group> groups = HeadlineClusterer.group(ARTICLES);
+
+        assertEquals(3, groups.size());
+        assertSame(ARTICLES.get(0), groups.get(0).lead);
+        assertEquals(Arrays.asList(ARTICLES.get(0), ARTICLES.get(1), ARTICLES.get(3)), groups.get(0).getArticles());
+        assertEquals(Arrays.asList(ARTICLES.get(2)), groups.get(1).getArticles());
+        assertEquals(Arrays.asList(ARTICLES.get(4)), groups.get(2).getArticles());
+    }
+
+    @Test
+    public void normalize_dropsLiveEndingsCaseAndPunctuation() {
+        assertEquals("budget 2017", HeadlineClusterer.normalize("Budget 2017 \u2013 live!"));
+        assertEquals("budget 2017", HeadlineClusterer.normalize("  Budget, 2017 - as it happened"));
+        assertEquals("live music returns to the o2",
+                HeadlineClusterer.normalize("Live music returns to the O2"));
+    }
+
+    @Test
+    public void endingsThatOnlyContainLive_areKept() {
+        List<NewsArticle> articles = Arrays.asList(
+                article("Football \u2013 Liverpool sign Mohamed Salah from Roma", "football/a"),
+                article("Football \u2013 Oliver Giroud ruled out for a month", "football/b"));
+
+        assertEquals("football liverpool sign mohamed salah from roma",
+                HeadlineClusterer.normalize(articles.get(0).getHeadline()));
+        assertEquals("football oliver giroud ruled out for a month",
+                HeadlineClusterer.normalize(articles.get(1).getHeadline()));
+        assertEquals(2, HeadlineClusterer.group(articles).size());
+    }
+
+    @Test
+    public void articles_areAddedOnce() {
+        HeadlineClusterer clusterer = new HeadlineClusterer();
+        clusterer.addAll(ARTICLES);
+        clusterer.addAll(ARTICLES);
+
+        assertEquals(5, clusterer.size());
+        assertEquals(3, clusterer.groups().size());
+    }
+
+    /**
+     * A feed of 2,000 made-up headlines, a tenth of which come twice: once as made and once
+     * edited, under another URL. How long larger feeds take is measured by ClusterBenchmark.
+     */
+    @Test
+    public void editedCopies_areGroupedWithTheirOriginals() {
+        List<NewsArticle> newsArticles = SyntheticArticles.generateWithEditedCopies(2000, 2);
+        HeadlineClusterer clusterer = new HeadlineClusterer();
+        clusterer.addAll(newsArticles);
+        List<HeadlineClusterer.Group> groups = clusterer.groups();
+
+        Map<String, HeadlineClusterer.Group> groupsByUrl = new HashMap<>();
+        for (HeadlineClusterer.Group group : groups) {
+            for (NewsArticle newsArticle : group.getArticles()) {
+                groupsByUrl.put(newsArticle.getUrl(), group);
+            }
+        }
+        int copies = 0;
+        int found = 0;
+        for (NewsArticle newsArticle : newsArticles) {
+            String url = newsArticle.getUrl();
+            if (url.endsWith("-copy")) {
+                copies++;
+                if (groupsByUrl.get(url.substring(0, url.length() - 5)) == groupsByUrl.get(url)) {
+                    found++;
+                }
+            }
+        }
+
+        assertTrue(copies > 150);
+        assertTrue(found + " of " + copies, found >= copies * 99 / 100);
+        // Different headlines stay apart.
+        assertTrue(groups.size() + " groups", groups.size() >= (newsArticles.size() - copies) * 99 / 100);
+        // The buckets keep it far from comparing every pair.
+        assertTrue(clusterer.getComparisonCount() < 10L * newsArticles.size());
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.android.newsfeed;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the lazy list against the streaming parser and compares how long the first
+ * screenful of a response takes with each.
+ */
+public class LazyArticleListTest {
+
+    /**
+     * Rows on screen at once.
+     */
+    private static final int SCREENFUL = 8;
+
+    private static final int WARMUP_ROUNDS = 30;
+    private static final int MEASURED_ROUNDS = 100;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void lazyList_matchesStreamingParse() throws IOException {
+        byte[] body = Fixtures.searchResponse(1000);
+        List<NewsArticle> parsed = NewsArticleParser.readArticles(new ByteArrayInputStream(body));
+        LazyArticleList lazy = LazyArticleList.index(body);
+
+        assertEquals(parsed.size(), lazy.size());
+        for (int i = 0; i < parsed.size(); i++) {
+            assertSameArticle(parsed.get(i), lazy.get(i));
+        }
+    }
+
+    @Test
+    public void firstScreenful_onlyDecodesVisibleArticles() throws IOException {
+        LazyArticleList lazy = LazyArticleList.index(Fixtures.searchResponse(1000));
+        FeedPager pager = new FeedPager(1000, 5, 2, 4);
+        pager.reset(lazy);
+
+        // What the adapter does with a new list before the first frame.
+        List<NewsArticle> snapshot = pager.snapshot();
+        for (int position = 0; position < SCREENFUL; position++) {
+            snapshot.get(position);
+        }
+        assertEquals(1000, snapshot.size());
+        assertEquals(SCREENFUL, lazy.getDecodeCount());
+
+        // Binding the same rows again is served from the LRU.
+        for (int position = 0; position < SCREENFUL; position++) {
+            snapshot.get(position);
+        }
+        assertEquals(SCREENFUL, lazy.getDecodeCount());
+    }
+
+    @Test
+    public void resultsWithoutHeadlineOrUrl_areLeftOut() {
+        String json = "{\"response\":{\"status\":\"ok\",\"total\":3,\"results\":["
+                + "{\"webTitle\":\"Kept \\\"quoted\\\" [1]\",\"webUrl\":\"https://www.theguardian.com/a\","
+                + "\"fields\":{\"thumbnail\":\"https://media.guim.co.uk/t.jpg\"},\"isHosted\":false},"
+                + "{\"webTitle\":null,\"webUrl\":\"https://www.theguardian.com/b\"},"
+                + "{\"webUrl\":\"https://www.theguardian.com/c\",\"tags\":[{\"webTitle\":\"Tag\"}]}"
+                + "], \"pages\" : 1 }}";
+
+        LazyArticleList lazy = LazyArticleList.index(json.getBytes(Charset.forName("UTF-8")));
+
+        assertEquals(1, lazy.size());
+        assertEquals("Kept \"quoted\" [1]", lazy.get(0).getHeadline());
+        assertEquals("https://media.guim.co.uk/t.jpg", lazy.get(0).getImageId());
+    }
+
+    @Test
+    public void malformedResponses_areRejected() {
+        String[] bodies = {
+                "",
+                "[]",
+                "{\"response\":{\"results\":{}}}",
+                "{\"response\":{\"results\":[{\"webTitle\":\"a\"}",
+                "{\"response\":{\"results\":[{\"webTitle\":\"a\" \"webUrl\":\"b\"}]}}",
+                "{\"response\":{\"results\":[{\"webTitle\":\"a\\x\",\"webUrl\":\"b\"}]}}",
+                "{\"response\":{\"results\":[{\"webTitle\":\"a\\u00zz\",\"webUrl\":\"b\"}]}}",
+        };
+        for (String body : bodies) {
+            try {
+                LazyArticleList.index(body.getBytes(Charset.forName("UTF-8")));
+                fail("Accepted " + body);
+            } catch (IllegalStateException expected) {
+                // The HTTP client reports these as malformed responses.
+            }
+        }
+    }
+
+    @Test
+    public void undecodableResult_isNull() {
+        String json = "{\"response\":{\"results\":["
+                + "{\"webTitle\":\"Kept\",\"webUrl\":\"https://www.theguardian.com/a\"},"
+                + "{\"webTitle\":\"Odd\",\"webUrl\":\"https://www.theguardian.com/b\",\"fields\":\"none\"}"
+                + "]}}";
+
+        LazyArticleList lazy = LazyArticleList.index(json.getBytes(Charset.forName("UTF-8")));
+
+        assertEquals(2, lazy.size());
+        assertEquals("Kept", lazy.get(0).getHeadline());
+        assertNull(lazy.get(1));
+        // Its headline and URL can still be read, for searching and diffing.
+        assertEquals("Odd", lazy.getHeadline(1));
+    }
+
+    @Test
+    public void rawFields_matchDecodedArticles() throws IOException {
+        byte[] body = Fixtures.searchResponse(200);
+        List<NewsArticle> parsed = NewsArticleParser.readArticles(new ByteArrayInputStream(body));
+        LazyArticleList lazy = LazyArticleList.index(body);
+
+        for (int i = 0; i < parsed.size(); i++) {
+            assertEquals(parsed.get(i).getHeadline(), lazy.getHeadline(i));
+            assertEquals(parsed.get(i).getUrl(), lazy.getUrl(i));
+            assertEquals(parsed.get(i).getPublicationTime(), lazy.getPublicationTime(i));
+            assertTrue(lazy.hasSameUrl(i, parsed.get(i)));
+            assertFalse(lazy.hasSameUrl(i, parsed.get((i + 1) % parsed.size())));
+        }
+        assertEquals(0, lazy.getDecodeCount());
+    }
+
+    @Test
+    public void escapedHeadline_isDecodedFromTheBytes() {
+        String json = "{\"response\":{\"results\":[{\"webTitle\":\"Caf\\u00e9 \\\"owner\\\" \\/ na\u00efve\","
+                + "\"webUrl\":\"https:\\/\\/www.theguardian.com\\/a\",\"webPublicationDate\":\"2017-04-01T12:00:00Z\"}]}}";
+
+        LazyArticleList lazy = LazyArticleList.index(json.getBytes(Charset.forName("UTF-8")));
+
+        assertEquals("Caf\u00e9 \"owner\" / na\u00efve", lazy.getHeadline(0));
+        assertEquals(lazy.get(0).getHeadline(), lazy.getHeadline(0));
+        assertEquals("https://www.theguardian.com/a", lazy.getUrl(0));
+        assertTrue(lazy.hasSameUrl(0, lazy.get(0)));
+        assertEquals(PublicationDates.parse("2017-04-01T12:00:00Z"), lazy.getPublicationTime(0));
+    }
+
+    @Test
+    public void snapshots_compareLazyPagesWithoutDecoding() throws IOException {
+        byte[] body = Fixtures.searchResponse(200);
+        LazyArticleList first = LazyArticleList.index(body);
+        LazyArticleList second = LazyArticleList.index(body.clone());
+        FeedPager pager = new FeedPager(200, 5, 2, 4);
+        pager.reset(first);
+        FeedPager.Snapshot before = pager.snapshot();
+        pager.reset(second);
+        FeedPager.Snapshot after = pager.snapshot();
+
+        for (int i = 0; i < before.size(); i++) {
+            for (int j = 0; j < after.size(); j++) {
+                assertEquals(i == j, before.hasSameUrl(i, after, j));
+            }
+            assertTrue(before.hasSameContent(i, after, i));
+        }
+        assertEquals(0, first.getDecodeCount());
+        assertEquals(0, second.getDecodeCount());
+    }
+
+    @Test
+    public void index_readsLazyListsWithoutDecoding() throws IOException {
+        LazyArticleList lazy = LazyArticleList.index(Fixtures.searchResponse(1000));
+        ArticleIndex index = new ArticleIndex(64, 2 * 1024 * 1024);
+
+        index.put("search", lazy);
+        assertEquals(0, lazy.getDecodeCount());
+
+        // Only what a search returns is decoded.
+        String word = ArticleIndex.words(lazy.getHeadline(500)).get(0);
+        List<NewsArticle> found = index.search(word, 5);
+        assertFalse(found.isEmpty());
+        assertEquals(found.size(), lazy.getDecodeCount());
+    }
+
+    @Test
+    public void cachedResponse_isReadBackLazily() throws IOException {
+        byte[] body = Fixtures.searchResponse(200);
+        ArticleCache cache = new ArticleCache(mFolder.newFolder(), 8, 1 << 20);
+        cache.put("search", LazyArticleList.index(body), 1234L);
+
+        ArticleCache.Entry entry = cache.get("search");
+
+        assertTrue(entry.articles instanceof LazyArticleList);
+        assertEquals(1234L, entry.fetchedAtMillis);
+        List<NewsArticle> parsed = NewsArticleParser.readArticles(new ByteArrayInputStream(body));
+        assertEquals(parsed.size(), entry.articles.size());
+        assertSameArticle(parsed.get(199), entry.articles.get(199));
+    }
+
+    /**
+     * Times going from a complete response body to the articles of the first screenful, with
+     * the streaming parser and with the lazy list. The lazy list only scans the bytes for
+     * where each result starts, so it grows far more slowly with the page size.
+     */
+    @Test
+    public void benchmark_firstScreenful() throws IOException {
+        long eagerThousand = 0;
+        long lazyThousand = 0;
+        for (int size : new int[]{10, 50, 200, 1000}) {
+            final byte[] body = Fixtures.searchResponse(size);
+
+            long eager = measure(new FirstScreenful() {
+                @Override
+                public List<NewsArticle> load() throws IOException {
+                    return NewsArticleParser.readArticles(new ByteArrayInputStream(body));
+                }
+            });
+            long lazy = measure(new FirstScreenful() {
+                @Override
+                public List<NewsArticle> load() {
+                    return LazyArticleList.index(body);
+                }
+            });
+            if (size == 1000) {
+                eagerThousand = eager;
+                lazyThousand = lazy;
+            }
+        }
+        assertTrue("lazy " + lazyThousand + " us, eager " + eagerThousand + " us",
+                lazyThousand < eagerThousand);
+    }
+
+    private interface FirstScreenful {
+        List<NewsArticle> load() throws IOException;
+    }
+
+    /**
+     * Return the median time, in microseconds, to load and read the first screenful.
+     */
+    private static long measure(FirstScreenful firstScreenful) throws IOException {
+        long[] micros = new long[MEASURED_ROUNDS];
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            List<NewsArticle> newsArticles = firstScreenful.load();
+            for (int position = 0; position < SCREENFUL && position < newsArticles.size(); position++) {
+                newsArticles.get(position).getHeadline();
+            }
+            if (round >= WARMUP_ROUNDS) {
+                micros[round - WARMUP_ROUNDS] = (System.nanoTime() - start) / 1000;
+            }
+        }
+        Arrays.sort(micros);
+        return micros[micros.length / 2];
+    }
+
+    private static void assertSameArticle(NewsArticle expected, NewsArticle actual) {
+        assertEquals(expected.getHeadline(), actual.getHeadline());
+        assertEquals(expected.getPublicationTime(), actual.getPublicationTime());
+        assertEquals(expected.getUrl(), actual.getUrl());
+        assertEquals(expected.getImageId(), actual.getImageId());
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.android.newsfeed;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local stand-in for content.guardianapis.com, serving canned responses on a loopback port.
+ */
+final class LocalGuardianServer {
+
+    /**
+     * Writes the response to a request the server received.
+     */
+    interface Responder {
+        void respond(HttpExchange exchange) throws IOException;
+    }
+
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor;
+    private final List<String> mRequestedUris = new CopyOnWriteArrayList<>();
+    private final Set<Integer> mRemotePorts = new CopyOnWriteArraySet<>();
+    private volatile Responder mResponder;
+
+    LocalGuardianServer() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mExecutor = Executors.newCachedThreadPool();
+        mServer.setExecutor(mExecutor);
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mRequestedUris.add(exchange.getRequestURI().toString());
+                mRemotePorts.add(exchange.getRemoteAddress().getPort());
+                try {
+                    mResponder.respond(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        mServer.start();
+    }
+
+    /**
+     * Serve the given body with a 200 response to every request.
+     */
+    static Responder ok(final byte[] body) {
+        return new Responder() {
+            @Override
+            public void respond(HttpExchange exchange) throws IOException {
+                send(exchange, 200, body);
+            }
+        };
+    }
+
+    /**
+     * Serve an empty response with the given status code to every request.
+     */
+    static Responder status(final int code) {
+        return new Responder() {
+            @Override
+            public void respond(HttpExchange exchange) throws IOException {
+                send(exchange, code, new byte[0]);
+            }
+        };
+    }
+
+    static void send(HttpExchange exchange, int code, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            OutputStream output = exchange.getResponseBody();
+            output.write(body);
+            output.close();
+        }
+    }
+
+    /**
+     * Send a 200 response as a slow link would: after the given latency, and then at no more
+     * than the given number of bytes per second.
+     */
+    static void sendThrottled(HttpExchange exchange, byte[] body, long latencyMillis, int bytesPerSecond)
+            throws IOException {
+        sleep(latencyMillis);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream output = exchange.getResponseBody();
+        int chunk = Math.max(1, bytesPerSecond / 20);
+        for (int start = 0; start < body.length; start += chunk) {
+            int length = Math.min(chunk, body.length - start);
+            output.write(body, start, length);
+            output.flush();
+            sleep(length * 1000L / bytesPerSecond);
+        }
+        output.close();
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+        }
+    }
+
+    void setResponder(Responder responder) {
+        mResponder = responder;
+    }
+
+    /**
+     * Return an absolute URL on this server for the given path and query.
+     */
+    String url(String pathAndQuery) {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + pathAndQuery;
+    }
+
+    int getRequestCount() {
+        return mRequestedUris.size();
+    }
+
+    List<String> getRequestedUris() {
+        return mRequestedUris;
+    }
+
+    /**
+     * Return the number of distinct client connections requests arrived on.
+     */
+    int getConnectionCount() {
+        return mRemotePorts.size();
+    }
+
+    void shutdown() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.android.newsfeed;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NetworkQualityEstimatorTest {
+
+    private static final long MILLIS = 1000000L;
+
+    private LocalGuardianServer mServer;
+    private NetworkQualityEstimator mEstimator;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new LocalGuardianServer();
+        mEstimator = NetworkQualityEstimator.getDefault();
+        mEstimator.reset();
+        mEstimator.setOverride(null);
+        RequestRegistry.getDefault().clear();
+        RequestScheduler.getDefault().reset();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.shutdown();
+        mEstimator.reset();
+        mEstimator.setOverride(null);
+    }
+
+    @Test
+    public void quality_isTheWorseOfLatencyAndThroughput() {
+        NetworkQualityEstimator estimator = new NetworkQualityEstimator();
+        assertEquals(NetworkQualityEstimator.Quality.UNKNOWN, estimator.getQuality());
+
+        // 100 KB in 100 ms after a 50 ms round trip.
+        estimator.onResponse(50 * MILLIS, 100 * 1024, 100 * MILLIS);
+        assertEquals(NetworkQualityEstimator.Quality.EXCELLENT, estimator.getQuality());
+
+        estimator.reset();
+        // Quick to answer, but 20 KB take two seconds.
+        estimator.onResponse(50 * MILLIS, 20 * 1024, 2000 * MILLIS);
+        assertEquals(NetworkQualityEstimator.Quality.POOR, estimator.getQuality());
+
+        estimator.reset();
+        // Fast transfer, but every request waits half a second first.
+        estimator.onResponse(500 * MILLIS, 100 * 1024, 100 * MILLIS);
+        assertEquals(NetworkQualityEstimator.Quality.MODERATE, estimator.getQuality());
+    }
+
+    @Test
+    public void quality_isSmoothedOverSeveralResponses() {
+        NetworkQualityEstimator estimator = new NetworkQualityEstimator();
+        for (int i = 0; i < 10; i++) {
+            estimator.onResponse(50 * MILLIS, 100 * 1024, 100 * MILLIS);
+        }
+        assertEquals(NetworkQualityEstimator.Quality.EXCELLENT, estimator.getQuality());
+        // One slow response only nudges the estimate...
+        estimator.onResponse(1000 * MILLIS, 0, 0);
+        assertEquals(NetworkQualityEstimator.Quality.GOOD, estimator.getQuality());
+        // ...but a run of them takes it down.
+        for (int i = 0; i < 3; i++) {
+            estimator.onResponse(3000 * MILLIS, 0, 0);
+        }
+        assertEquals(NetworkQualityEstimator.Quality.POOR, estimator.getQuality());
+
+        estimator.setOverride(NetworkQualityEstimator.Quality.EXCELLENT);
+        assertEquals(NetworkQualityEstimator.Quality.EXCELLENT, estimator.getQuality());
+    }
+
+    @Test
+    public void profile_shrinksRequestsOnSlowNetworks() {
+        RequestProfile poor = RequestProfile.forQuality(NetworkQualityEstimator.Quality.POOR, 20);
+        assertEquals(10, poor.pageSize);
+        assertFalse(poor.thumbnails);
+        RequestProfile moderate = RequestProfile.forQuality(NetworkQualityEstimator.Quality.MODERATE, 20);
+        assertTrue(moderate.thumbnails);
+        assertEquals("https://media.guim.co.uk/bd51/0_127_3479_1291/140.jpg",
+                moderate.thumbnailUrl("https://media.guim.co.uk/bd51/0_127_3479_1291/500.jpg"));
+        assertEquals("https://example.com/500.jpg", moderate.thumbnailUrl("https://example.com/500.jpg"));
+
+        RequestProfile unknown = RequestProfile.forQuality(NetworkQualityEstimator.Quality.UNKNOWN, 20);
+        assertEquals(20, unknown.pageSize);
+        assertEquals("https://media.guim.co.uk/bd51/0_127_3479_1291/500.jpg",
+                unknown.thumbnailUrl("https://media.guim.co.uk/bd51/0_127_3479_1291/500.jpg"));
+    }
+
+    @Test
+    public void everyQuality_coversEachProfileTheActivityCanUse() {
+        List<RequestProfile> profiles = RequestProfile.forEveryQuality(20);
+        assertEquals(NetworkQualityEstimator.Quality.values().length, profiles.size());
+        for (NetworkQualityEstimator.Quality quality : NetworkQualityEstimator.Quality.values()) {
+            RequestProfile expected = RequestProfile.forQuality(quality, 20);
+            boolean found = false;
+            for (RequestProfile profile : profiles) {
+                found |= profile.pageSize == expected.pageSize && profile.thumbnails == expected.thumbnails;
+            }
+            assertTrue(quality.toString(), found);
+        }
+    }
+
+    @Test
+    public void estimate_followsMeasuredLink() throws Exception {
+        ThrottledFeed feed = new ThrottledFeed(0, 0);
+        mServer.setResponder(feed);
+        for (int i = 0; i < 3; i++) {
+            QueryUtils.fetchNewsArticleData(mServer.url("/search?q=fast" + i + "&page-size=50&show-fields=thumbnail"));
+        }
+        NetworkQualityEstimator.Quality fast = mEstimator.getQuality();
+        assertTrue(fast.toString(), fast == NetworkQualityEstimator.Quality.GOOD
+                || fast == NetworkQualityEstimator.Quality.EXCELLENT);
+
+        // Roughly EDGE: 250 ms of latency and 12 KB/s.
+        mEstimator.reset();
+        feed.throttle(250, 12 * 1024);
+        QueryUtils.fetchNewsArticleData(mServer.url("/search?q=slow&page-size=10&show-fields=thumbnail"));
+        assertEquals(mEstimator.toString(), NetworkQualityEstimator.Quality.POOR, mEstimator.getQuality());
+    }
+
+    @Test
+    public void slowLinkProfile_showsFirstContentSooner() throws Exception {
+        ThrottledFeed feed = new ThrottledFeed(150, 12 * 1024);
+        mServer.setResponder(feed);
+
+        long defaultMillis = timeFirstPage(RequestProfile.forQuality(NetworkQualityEstimator.Quality.UNKNOWN, 20));
+        mEstimator.setOverride(NetworkQualityEstimator.Quality.POOR);
+        RequestProfile poor = RequestProfile.forQuality(mEstimator.getQuality(), 20);
+        long poorMillis = timeFirstPage(poor);
+
+        assertTrue(poorMillis + " vs " + defaultMillis, poorMillis * 3 < defaultMillis * 2);
+    }
+
+    private long timeFirstPage(RequestProfile profile) {
+        String url = mServer.url("/search?q=storm&order-by=newest&page-size=" + profile.pageSize
+                + (profile.thumbnails ? "&show-fields=thumbnail" : ""));
+        long start = System.nanoTime();
+        List<NewsArticle> newsArticles = QueryUtils.fetchNewsArticleData(url);
+        long millis = (System.nanoTime() - start) / MILLIS;
+        assertEquals(profile.pageSize, newsArticles.size());
+        assertEquals(profile.thumbnails, newsArticles.get(0).hasThumbnail());
+        return millis;
+    }
+
+    /**
+     * Serves a recorded response cut to the requested page size, with thumbnails only if they
+     * were asked for, over a link of configurable speed.
+     */
+    private static class ThrottledFeed implements LocalGuardianServer.Responder {
+
+        private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+        private final JSONObject mResponse;
+        private volatile long mLatencyMillis;
+        private volatile int mBytesPerSecond;
+
+        ThrottledFeed(long latencyMillis, int bytesPerSecond) throws IOException {
+            mResponse = new JSONObject(new String(Fixtures.searchResponse(50), UTF_8));
+            throttle(latencyMillis, bytesPerSecond);
+        }
+
+        /**
+         * Slow the link down, or set bytesPerSecond to zero for no limit.
+         */
+        void throttle(long latencyMillis, int bytesPerSecond) {
+            mLatencyMillis = latencyMillis;
+            mBytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public void respond(HttpExchange exchange) throws IOException {
+            String query = exchange.getRequestURI().getRawQuery();
+            int pageSize = 10;
+            for (String pair : query.split("&")) {
+                if (pair.startsWith("page-size=")) {
+                    pageSize = Integer.parseInt(pair.substring("page-size=".length()));
+                }
+            }
+            boolean thumbnails = query.contains("show-fields=thumbnail");
+
+            JSONObject response = new JSONObject(mResponse.toString());
+            JSONArray results = response.getJSONObject("response").getJSONArray("results");
+            JSONArray page = new JSONArray();
+            for (int i = 0; i < Math.min(pageSize, results.length()); i++) {
+                JSONObject result = results.getJSONObject(i);
+                if (!thumbnails) {
+                    result.remove("fields");
+                }
+                page.put(result);
+            }
+            response.getJSONObject("response").put("results", page);
+            byte[] body = response.toString().getBytes(UTF_8);
+
+            if (mBytesPerSecond == 0) {
+                LocalGuardianServer.send(exchange, 200, body);
+            } else {
+                LocalGuardianServer.sendThrottled(exchange, body, mLatencyMillis, mBytesPerSecond);
+            }
+        }
+    }
+}
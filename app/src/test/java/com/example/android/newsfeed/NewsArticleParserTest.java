@@ -0,0 +1,53 @@
+package com.example.android.newsfeed;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the streaming parser against a JSONObject reading of recorded Guardian responses.
+ * How the two compare in time and allocations is measured by ParseBenchmark.
+ */
+public class NewsArticleParserTest {
+
+    @Test
+    public void streamingParse_matchesJsonObject() throws Exception {
+        byte[] body = Fixtures.searchResponse(50);
+
+        List<NewsArticle> streamed = NewsArticleParser.readArticles(new ByteArrayInputStream(body));
+        JSONArray results = new JSONObject(new String(body, Charset.forName("UTF-8")))
+                .getJSONObject("response").getJSONArray("results");
+
+        assertEquals(50, streamed.size());
+        assertEquals(results.length(), streamed.size());
+        for (int i = 0; i < streamed.size(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            JSONObject fields = result.optJSONObject("fields");
+            String thumbnail = fields == null ? NewsArticle.NO_THUMBNAIL_URL : fields.getString("thumbnail");
+            assertEquals(result.getString("webTitle"), streamed.get(i).getHeadline());
+            assertEquals(PublicationDates.parse(result.getString("webPublicationDate")),
+                    streamed.get(i).getPublicationTime());
+            assertEquals(result.getString("webUrl"), streamed.get(i).getUrl());
+            assertEquals(thumbnail, streamed.get(i).getImageId());
+        }
+    }
+
+    @Test
+    public void streamingParse_usesFallbackThumbnail() throws Exception {
+        String json = "{\"response\":{\"status\":\"ok\",\"results\":[{\"webTitle\":\"Headline\","
+                + "\"webPublicationDate\":\"2017-04-01T10:00:00Z\",\"webUrl\":\"https://www.theguardian.com/a\","
+                + "\"tags\":[{\"id\":\"skipped\"}]}]}}";
+
+        List<NewsArticle> articles = NewsArticleParser.readArticles(
+                new ByteArrayInputStream(json.getBytes("UTF-8")));
+
+        assertEquals(1, articles.size());
+        assertEquals(NewsArticle.NO_THUMBNAIL_URL, articles.get(0).getImageId());
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.android.newsfeed;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NewsArticleTest {
+
+    private static NewsArticle article(String url) {
+        return new NewsArticle(null, "Storm hits coast", 0, url);
+    }
+
+    /**
+     * Feeds hold thousands of articles, so each keeps its headline, its publication time as a
+     * number rather than a String, and its two URLs split into an index into the shared
+     * prefixes and the rest. Nothing else: no whole URL or date text kept alongside.
+     */
+    @Test
+    public void fields_areCompact() {
+        List<String> fields = new ArrayList<>();
+        for (Field field : NewsArticle.class.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                fields.add(field.getType().getSimpleName() + " " + field.getName());
+            }
+        }
+        assertEquals(Arrays.asList("String mHeadline", "long mPublicationTime", "byte mUrlPrefix",
+                "String mUrlPath", "byte mThumbnailPrefix", "String mThumbnailPath"), fields);
+    }
+
+    @Test
+    public void urlParts_areJoinedBackTogether() {
+        NewsArticle newsArticle = new NewsArticle("https://media.guim.co.uk/abc/500.jpg", "Storm hits coast", 0,
+                "https://www.theguardian.com/world/2017/apr/01/storm");
+
+        assertEquals("https://www.theguardian.com/world/2017/apr/01/storm", newsArticle.getUrl());
+        assertEquals("https://media.guim.co.uk/abc/500.jpg", newsArticle.getImageId());
+        assertEquals("http://example.com/a", article("http://example.com/a").getUrl());
+    }
+
+    @Test
+    public void sameUrl_comparesWithoutBuildingTheUrl() {
+        NewsArticle guardian = article("https://www.theguardian.com/world/a");
+
+        assertTrue(guardian.hasSameUrl(article("https://www.theguardian.com/world/a")));
+        assertFalse(guardian.hasSameUrl(article("https://www.theguardian.com/world/b")));
+        // Same path after another prefix.
+        assertFalse(guardian.hasSameUrl(article("https://static.guim.co.uk/world/a")));
+    }
+
+    @Test
+    public void urlKey_isSharedExactlyBySameUrls() {
+        String[] urls = {"https://www.theguardian.com/world/a", "https://static.guim.co.uk/world/a",
+                "world/a", "http://example.com/world/a"};
+        for (int i = 0; i < urls.length; i++) {
+            NewsArticle newsArticle = article(urls[i]);
+            assertEquals(urls[i], newsArticle.getUrlKey(), article(urls[i]).getUrlKey());
+            assertEquals(urls[i], newsArticle.getUrlKey(), NewsArticle.urlKey(urls[i]));
+            for (int j = i + 1; j < urls.length; j++) {
+                assertNotEquals(urls[i] + " " + urls[j], newsArticle.getUrlKey(), article(urls[j]).getUrlKey());
+            }
+        }
+        // The usual article URL is keyed by what the article already holds.
+        assertEquals("world/a", article(urls[0]).getUrlKey());
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.android.newsfeed;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class NewsHttpClientTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    private LocalGuardianServer mServer;
+    private byte[] mBody;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new LocalGuardianServer();
+        mBody = Fixtures.searchResponse(50);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.shutdown();
+    }
+
+    /**
+     * Serves the fixture with an ETag, gzipped when asked, and answers 304 to a matching
+     * If-None-Match.
+     */
+    private final LocalGuardianServer.Responder mConditionalResponder = new LocalGuardianServer.Responder() {
+        @Override
+        public void respond(HttpExchange exchange) throws IOException {
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                LocalGuardianServer.send(exchange, 304, new byte[0]);
+                return;
+            }
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                LocalGuardianServer.send(exchange, 200, gzip(mBody));
+            } else {
+                LocalGuardianServer.send(exchange, 200, mBody);
+            }
+        }
+    };
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(output);
+        gzip.write(bytes);
+        gzip.close();
+        return output.toByteArray();
+    }
+
+    @Test
+    public void gzippedResponse_isDecodedAndSmallerOnTheWire() throws Exception {
+        mServer.setResponder(mConditionalResponder);
+        NewsHttpClient client = new NewsHttpClient();
+
+        List<NewsArticle> newsArticles = client.fetchArticles(
+                new URL(mServer.url("/search?q=gzip")), new RequestToken());
+
+        assertEquals(50, newsArticles.size());
+        assertTrue(client.getBytesReceived() > 0);
+        assertTrue("received " + client.getBytesReceived() + " of " + mBody.length,
+                client.getBytesReceived() * 3 < mBody.length);
+    }
+
+    @Test
+    public void notModified_returnsPreviousListWithoutABody() throws Exception {
+        mServer.setResponder(mConditionalResponder);
+        NewsHttpClient client = new NewsHttpClient();
+        URL url = new URL(mServer.url("/search?q=etag"));
+
+        List<NewsArticle> first = client.fetchArticles(url, new RequestToken());
+        long bytesAfterFirst = client.getBytesReceived();
+        List<NewsArticle> second = client.fetchArticles(url, new RequestToken());
+
+        assertSame(first, second);
+        assertEquals(1, client.getNotModifiedCount());
+        assertEquals(bytesAfterFirst, client.getBytesReceived());
+    }
+
+    @Test
+    public void sequentialRequests_reuseOneConnection() throws Exception {
+        mServer.setResponder(mConditionalResponder);
+        NewsHttpClient client = new NewsHttpClient();
+
+        // Every request is for a new page, so each is a full gzipped response. (The JDK's
+        // HttpServer closes the connection after any 304, so those can't be counted here.)
+        int requests = 10;
+        for (int i = 0; i < requests; i++) {
+            client.fetchArticles(new URL(mServer.url("/search?page=" + (i + 1))), new RequestToken());
+        }
+
+        assertEquals(requests, mServer.getRequestCount());
+        assertEquals(1, mServer.getConnectionCount());
+    }
+
+    @Test
+    public void errorResponse_returnsNull() throws Exception {
+        mServer.setResponder(LocalGuardianServer.status(500));
+        NewsHttpClient client = new NewsHttpClient();
+
+        assertNull(client.fetchArticles(new URL(mServer.url("/search")), new RequestToken()));
+    }
+}
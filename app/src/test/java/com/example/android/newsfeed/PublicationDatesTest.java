@@ -0,0 +1,45 @@
+package com.example.android.newsfeed;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class PublicationDatesTest {
+
+    @Test
+    public void parse_matchesSimpleDateFormat() throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        String[] dates = {"2017-04-01T12:34:56Z", "2000-02-29T23:59:59Z", "2016-02-29T00:00:00Z", "1969-12-31T00:00:01Z",
+                "2024-12-31T00:00:00Z", "2017-03-01T00:00:00Z"};
+        for (String date : dates) {
+            assertEquals(date, format.parse(date).getTime(), PublicationDates.parse(date));
+            assertEquals(date, PublicationDates.format(PublicationDates.parse(date)));
+        }
+    }
+
+    @Test
+    public void parse_handlesFractionsAndOffsets() {
+        long base = PublicationDates.parse("2017-04-01T12:00:00Z");
+        assertEquals(base + 250, PublicationDates.parse("2017-04-01T12:00:00.25Z"));
+        assertEquals(base, PublicationDates.parse("2017-04-01T13:30:00+01:30"));
+        assertEquals(base, PublicationDates.parse("2017-04-01T07:00:00-05:00"));
+    }
+
+    @Test
+    public void parse_rejectsMalformedText() {
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse(null));
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse("yesterday"));
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse("2017-04-01 12:00:00Z"));
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse("2017-13-01T12:00:00Z"));
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse("2017-02-31T12:00:00Z"));
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse("2017-04-31T12:00:00Z"));
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse("2017-02-29T12:00:00Z"));
+        assertEquals(PublicationDates.UNKNOWN, PublicationDates.parse("1900-02-29T12:00:00Z"));
+        assertEquals("", PublicationDates.format(PublicationDates.UNKNOWN));
+    }
+}
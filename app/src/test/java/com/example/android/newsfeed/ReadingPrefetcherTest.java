@@ -0,0 +1,170 @@
+package com.example.android.newsfeed;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReadingPrefetcherTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private ExecutorService mExecutor;
+    private List<NewsArticle> mArticles;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newSingleThreadExecutor();
+        mArticles = SyntheticArticles.generate(20, 22);
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void topVisibleArticles_areStoredAndOpenedFromDisk() throws Exception {
+        FakeSource source = new FakeSource();
+        ReadingPrefetcher prefetcher = new ReadingPrefetcher(
+                new ReadingStore(mFolder.newFolder(), 1 << 20), source, mExecutor, 4);
+
+        prefetcher.setVisible(mArticles.subList(0, 8));
+        drain();
+
+        assertEquals(4, source.mFetched.size());
+        assertEquals(4, prefetcher.getStoredCount());
+        assertEquals(body(mArticles.get(0).getUrl()), prefetcher.open(mArticles.get(0).getUrl()));
+        assertNull(prefetcher.open(mArticles.get(6).getUrl()));
+        assertEquals(0.5, prefetcher.getHitRate(), 0.001);
+
+        // Coming back to rest on the same rows fetches nothing again.
+        prefetcher.setVisible(mArticles.subList(0, 8));
+        drain();
+        assertEquals(4, source.mFetched.size());
+    }
+
+    @Test
+    public void articlesScrolledOffScreen_areCancelled() throws Exception {
+        FakeSource source = new FakeSource();
+        CountDownLatch blocked = new CountDownLatch(1);
+        source.mBlocked = blocked;
+        ReadingPrefetcher prefetcher = new ReadingPrefetcher(
+                new ReadingStore(mFolder.newFolder(), 1 << 20), source, mExecutor, 4);
+
+        prefetcher.setVisible(mArticles.subList(0, 8));
+        assertTrue(source.mStarted.await(5, TimeUnit.SECONDS));
+        // The first fetch is running and three more are queued when the user scrolls on.
+        prefetcher.setVisible(mArticles.subList(10, 18));
+        blocked.countDown();
+        drain();
+
+        assertEquals(4, prefetcher.getCancelledCount());
+        assertTrue(source.mCancelledWhileRunning);
+        assertFalse(prefetcher.getStore().contains(mArticles.get(0).getUrl()));
+        assertTrue(prefetcher.getStore().contains(mArticles.get(10).getUrl()));
+        // Only the running fetch of the old rows ever reached the source.
+        assertEquals(1 + 4, source.mFetched.size());
+        assertEquals(4, prefetcher.getStoredCount());
+    }
+
+    @Test
+    public void store_keepsBodiesCompressedWithinItsBudget() throws IOException {
+        String html = body("https://www.theguardian.com/a");
+        ReadingStore store = new ReadingStore(mFolder.newFolder(), 1024);
+
+        long bytes = store.put("https://www.theguardian.com/a", html);
+        assertTrue(bytes < html.length() / 2);
+
+        // Reading the first body keeps it over the ones stored after it.
+        for (int i = 0; i < 10; i++) {
+            store.put("https://www.theguardian.com/" + i, body("https://www.theguardian.com/" + i));
+            assertEquals(html, store.get("https://www.theguardian.com/a"));
+        }
+        assertTrue(store.sizeInBytes() <= 1024);
+        assertFalse(store.contains("https://www.theguardian.com/0"));
+        assertTrue(store.contains("https://www.theguardian.com/9"));
+    }
+
+    @Test
+    public void bodyResponse_isParsed() throws IOException {
+        String json = "{\"response\":{\"status\":\"ok\",\"total\":1,\"content\":{\"id\":\"world/a\","
+                + "\"webTitle\":\"Headline\",\"fields\":{\"body\":\"<p>First \\\"paragraph\\\"</p>\"},"
+                + "\"isHosted\":false}}}";
+        assertEquals("<p>First \"paragraph\"</p>",
+                NewsArticleParser.readBody(new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8")))));
+
+        String withoutBody = "{\"response\":{\"status\":\"ok\",\"content\":{\"id\":\"video/a\",\"fields\":{}}}}";
+        assertNull(NewsArticleParser.readBody(
+                new ByteArrayInputStream(withoutBody.getBytes(Charset.forName("UTF-8")))));
+    }
+
+    /**
+     * Wait for everything submitted so far to have run.
+     */
+    private void drain() throws Exception {
+        mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * A few paragraphs of article markup, different for every URL.
+     */
+    private static String body(String url) {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 12; i++) {
+            html.append("<p>Paragraph ").append(i).append(" of <a href=\"").append(url)
+                    .append("\">the article</a>, which goes on about the news of the day at some length.</p>");
+        }
+        return html.toString();
+    }
+
+    private static class FakeSource implements ReadingPrefetcher.BodySource {
+        final List<String> mFetched = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch mStarted = new CountDownLatch(1);
+        volatile CountDownLatch mBlocked;
+        volatile boolean mCancelledWhileRunning;
+
+        @Override
+        public String fetchBody(String articleUrl, RequestToken token) throws IOException {
+            mFetched.add(articleUrl);
+            mStarted.countDown();
+            CountDownLatch blocked = mBlocked;
+            if (blocked != null) {
+                mBlocked = null;
+                try {
+                    blocked.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                if (token.isCancelled()) {
+                    mCancelledWhileRunning = true;
+                    return null;
+                }
+            }
+            return body(articleUrl);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.android.newsfeed;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RequestRegistryTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static final List<NewsArticle> ARTICLES = Collections.singletonList(
+            new NewsArticle("", "Storm hits coast", 0, "https://www.theguardian.com/a"));
+
+    /**
+     * Answers every fetch once released, counting the fetches and remembering the last token.
+     */
+    private static class GatedFetcher implements RequestRegistry.Fetcher {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger fetches = new AtomicInteger();
+        volatile RequestToken token;
+        volatile List<NewsArticle> result = ARTICLES;
+
+        @Override
+        public List<NewsArticle> fetch(String requestUrl, RequestToken token) {
+            fetches.incrementAndGet();
+            this.token = token;
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return null;
+            }
+            return token.isCancelled() ? null : result;
+        }
+    }
+
+    private static Future<List<NewsArticle>> fetchAsync(ExecutorService executor, final RequestRegistry registry,
+                                                        final String url, final RequestToken token) {
+        return executor.submit(new Callable<List<NewsArticle>>() {
+            @Override
+            public List<NewsArticle> call() {
+                return registry.fetch(url, token);
+            }
+        });
+    }
+
+    private static void awaitCoalesced(RequestRegistry registry, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (registry.getCoalescedCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void concurrentIdenticalRequests_shareOneFetch() throws Exception {
+        GatedFetcher fetcher = new GatedFetcher();
+        RequestRegistry registry = new RequestRegistry(fetcher, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<List<NewsArticle>> first = fetchAsync(executor, registry,
+                    "https://content.guardianapis.com/search?q=storm&page-size=20", new RequestToken());
+            fetcher.started.await(5, TimeUnit.SECONDS);
+            // Same request, with its parameters built in another order.
+            Future<List<NewsArticle>> second = fetchAsync(executor, registry,
+                    "HTTPS://Content.guardianapis.com/search?page-size=20&q=storm", new RequestToken());
+            Future<List<NewsArticle>> third = fetchAsync(executor, registry,
+                    "https://content.guardianapis.com/search?q=storm&page-size=20", new RequestToken());
+            awaitCoalesced(registry, 2);
+            fetcher.release.countDown();
+
+            assertEquals(ARTICLES, first.get(5, TimeUnit.SECONDS));
+            assertSame(first.get(), second.get(5, TimeUnit.SECONDS));
+            assertSame(first.get(), third.get(5, TimeUnit.SECONDS));
+            assertEquals(1, fetcher.fetches.get());
+            assertEquals(1, registry.getNetworkCount());
+            assertEquals(2, registry.getCoalescedCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void completedResult_isReusedWithinWindow() {
+        GatedFetcher fetcher = new GatedFetcher();
+        fetcher.release.countDown();
+        RequestRegistry registry = new RequestRegistry(fetcher, 60000);
+
+        registry.fetch("http://h/search?q=a", new RequestToken());
+        registry.fetch("http://h/search?q=a", new RequestToken());
+        assertEquals(1, fetcher.fetches.get());
+        assertEquals(1, registry.getReusedCount());
+
+        registry.clear();
+        registry.fetch("http://h/search?q=a", new RequestToken());
+        assertEquals(2, fetcher.fetches.get());
+    }
+
+    @Test
+    public void failedResult_isNotReused() {
+        GatedFetcher fetcher = new GatedFetcher();
+        fetcher.release.countDown();
+        fetcher.result = null;
+        RequestRegistry registry = new RequestRegistry(fetcher, 60000);
+
+        assertNull(registry.fetch("http://h/search?q=a", new RequestToken()));
+        fetcher.result = ARTICLES;
+        assertEquals(ARTICLES, registry.fetch("http://h/search?q=a", new RequestToken()));
+        assertEquals(2, fetcher.fetches.get());
+        assertEquals(0, registry.getReusedCount());
+    }
+
+    @Test
+    public void cancellingOneCaller_leavesSharedFetchRunning() throws Exception {
+        GatedFetcher fetcher = new GatedFetcher();
+        RequestRegistry registry = new RequestRegistry(fetcher, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            RequestToken cancelled = new RequestToken();
+            Future<List<NewsArticle>> first = fetchAsync(executor, registry, "http://h/search?q=a", cancelled);
+            fetcher.started.await(5, TimeUnit.SECONDS);
+            Future<List<NewsArticle>> second = fetchAsync(executor, registry, "http://h/search?q=a",
+                    new RequestToken());
+            awaitCoalesced(registry, 1);
+
+            // The cancelled caller returns straight away, before the fetch has finished.
+            cancelled.cancel();
+            assertNull(first.get(5, TimeUnit.SECONDS));
+            assertFalse(fetcher.token.isCancelled());
+
+            fetcher.release.countDown();
+            assertEquals(ARTICLES, second.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cancellingEveryCaller_abortsSharedFetch() throws Exception {
+        GatedFetcher fetcher = new GatedFetcher();
+        RequestRegistry registry = new RequestRegistry(fetcher, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            RequestToken firstToken = new RequestToken();
+            RequestToken secondToken = new RequestToken();
+            Future<List<NewsArticle>> first = fetchAsync(executor, registry, "http://h/search?q=a", firstToken);
+            fetcher.started.await(5, TimeUnit.SECONDS);
+            Future<List<NewsArticle>> second = fetchAsync(executor, registry, "http://h/search?q=a", secondToken);
+            awaitCoalesced(registry, 1);
+
+            firstToken.cancel();
+            secondToken.cancel();
+            assertNull(first.get(5, TimeUnit.SECONDS));
+            assertNull(second.get(5, TimeUnit.SECONDS));
+            assertTrue(fetcher.token.isCancelled());
+        } finally {
+            fetcher.release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void lazyResult_reachesCacheAndRowsAsLazyList() throws Exception {
+        final LazyArticleList lazy = LazyArticleList.index(Fixtures.searchResponse(50));
+        RequestRegistry registry = new RequestRegistry(new RequestRegistry.Fetcher() {
+            @Override
+            public List<NewsArticle> fetch(String requestUrl, RequestToken token) {
+                return lazy;
+            }
+        }, 60000);
+
+        List<NewsArticle> fetched = registry.fetch("http://h/search?q=a", new RequestToken());
+        List<NewsArticle> reused = registry.fetch("http://h/search?q=a", new RequestToken());
+        assertTrue(fetched instanceof LazyArticleList);
+        assertSame(fetched, reused);
+
+        // Only the first rows are prepared, so only they are decoded.
+        new ArticleRows(Fixtures.timeFormatter()).prepare(fetched);
+        assertEquals(24, lazy.getDecodeCount());
+
+        // And the cache stores the response body, which it reads back as a lazy list.
+        ArticleCache cache = new ArticleCache(mFolder.newFolder(), 8, 1 << 20);
+        cache.put("http://h/search?q=a", fetched, 0);
+        assertEquals(24, lazy.getDecodeCount());
+        assertTrue(cache.get("http://h/search?q=a").articles instanceof LazyArticleList);
+    }
+
+    @Test
+    public void normalize_sortsParametersAndLowerCasesHost() {
+        assertEquals("https://content.guardianapis.com/search?order-by=newest&page-size=20&q=Storm",
+                RequestRegistry.normalize(
+                        "HTTPS://Content.Guardianapis.com/search?q=Storm&page-size=20&order-by=newest#top"));
+        assertEquals("http://h/", RequestRegistry.normalize("http://h"));
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.android.newsfeed;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RequestSchedulerTest {
+
+    /**
+     * Requests the local server takes within any {@link #QUOTA_WINDOW_MILLIS}.
+     */
+    private static final int QUOTA = 10;
+    private static final long QUOTA_WINDOW_MILLIS = 500;
+
+    private static final int BURST = 15;
+
+    private LocalGuardianServer mServer;
+    private QuotaFeed mFeed;
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new LocalGuardianServer();
+        mFeed = new QuotaFeed(Fixtures.searchResponse(10));
+        mServer.setResponder(mFeed);
+        mExecutor = Executors.newCachedThreadPool();
+        FeedMetrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        mServer.shutdown();
+    }
+
+    @Test
+    public void burst_isSpreadOutToStayWithinTheQuota() throws Exception {
+        // Unscheduled, a burst runs straight into the server's limit.
+        assertEquals(BURST - QUOTA, failedRequests(new NewsHttpClient(), "unscheduled"));
+        assertEquals(BURST - QUOTA, mFeed.mRejected.get());
+        Thread.sleep(QUOTA_WINDOW_MILLIS);
+        mFeed.mRejected.set(0);
+
+        // Half the quota as a burst, and a little less than the other half per window as the
+        // refill rate, leaving room for requests bunching up on their way to the server.
+        RequestScheduler scheduler = new RequestScheduler(QUOTA / 2, (QUOTA / 2 - 1) * 1000.0 / QUOTA_WINDOW_MILLIS, 0);
+        assertEquals(0, failedRequests(new NewsHttpClient(scheduler), "scheduled"));
+
+        assertEquals(0, mFeed.mRejected.get());
+        assertEquals(2 * BURST, mServer.getRequestCount());
+        // Every request of the burst went through the queue, none was dropped on the way.
+        assertEquals(BURST, scheduler.getGrantedCount(RequestScheduler.Priority.REFRESH));
+        assertEquals(0, scheduler.getDroppedCount());
+        assertEquals(BURST, FeedMetrics.get(FeedMetrics.Phase.QUEUE).getCount());
+    }
+
+    @Test
+    public void userVisibleRequests_goAheadOfQueuedRefreshes() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(1, 5, 0);
+        assertTrue(scheduler.acquire(new RequestToken()));
+
+        final List<RequestScheduler.Priority> granted = Collections.synchronizedList(
+                new ArrayList<RequestScheduler.Priority>());
+        List<Future<?>> waiting = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            waiting.add(acquireInBackground(scheduler, new RequestToken(), granted));
+        }
+        Thread.sleep(50);
+        RequestToken search = new RequestToken(RequestScheduler.Priority.USER_VISIBLE);
+        waiting.add(acquireInBackground(scheduler, search, granted));
+        for (Future<?> future : waiting) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(RequestScheduler.Priority.USER_VISIBLE, granted.get(0));
+        assertEquals(4, granted.size());
+    }
+
+    @Test
+    public void raisingAQueuedRequest_movesItUp() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(1, 5, 0);
+        assertTrue(scheduler.acquire(new RequestToken()));
+
+        final List<RequestScheduler.Priority> granted = Collections.synchronizedList(
+                new ArrayList<RequestScheduler.Priority>());
+        Future<?> refresh = acquireInBackground(scheduler, new RequestToken(), granted);
+        Thread.sleep(20);
+        // A search joining a shared fetch raises the token the fetch was started with.
+        RequestToken shared = new RequestToken();
+        Future<?> joined = acquireInBackground(scheduler, shared.newChild(), granted);
+        Thread.sleep(20);
+        shared.raisePriority(RequestScheduler.Priority.USER_VISIBLE);
+        refresh.get(5, TimeUnit.SECONDS);
+        joined.get(5, TimeUnit.SECONDS);
+
+        assertEquals(RequestScheduler.Priority.USER_VISIBLE, granted.get(0));
+    }
+
+    @Test
+    public void prefetches_areDroppedWhenTheBudgetIsTight() {
+        RequestScheduler scheduler = new RequestScheduler(4, 0.1, 2);
+
+        assertTrue(scheduler.acquire(new RequestToken(RequestScheduler.Priority.PREFETCH)));
+        assertTrue(scheduler.acquire(new RequestToken(RequestScheduler.Priority.PREFETCH)));
+        // Two permits are left, which are kept for the user.
+        assertFalse(scheduler.acquire(new RequestToken(RequestScheduler.Priority.PREFETCH)));
+        assertTrue(scheduler.acquire(new RequestToken(RequestScheduler.Priority.USER_VISIBLE)));
+
+        assertEquals(1, scheduler.getDroppedCount());
+    }
+
+    @Test
+    public void droppedPrefetch_isNotRetriedOrCountedAgainstTheServer() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(1, 0.1, 1);
+        final NewsHttpClient client = new NewsHttpClient(scheduler);
+        ResilientFetcher fetcher = new ResilientFetcher(new ResilientFetcher.Attempt() {
+            @Override
+            public List<NewsArticle> attempt(String requestUrl, RequestToken token, int timeoutMillis)
+                    throws IOException {
+                return client.request(new URL(requestUrl), token, timeoutMillis);
+            }
+        }, new RetryPolicy(3, 10, 10, new Random(1)), 5000, 1, 30000);
+        String url = mServer.url("/search?q=prefetch");
+
+        assertNull(fetcher.fetch(url, new RequestToken(RequestScheduler.Priority.PREFETCH)));
+
+        assertEquals(0, mServer.getRequestCount());
+        assertEquals(0, fetcher.getRetryCount());
+        assertEquals(CircuitBreaker.State.CLOSED, fetcher.breakerFor(url).getState());
+        assertNotNull(fetcher.fetch(url, new RequestToken(RequestScheduler.Priority.USER_VISIBLE)));
+    }
+
+    @Test
+    public void tooManyRequests_holdsBackEveryRequest() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(QUOTA, 100, 0);
+        NewsHttpClient client = new NewsHttpClient(scheduler);
+        mFeed.mRetryAfterSeconds = 1;
+        mFeed.exhaust();
+
+        List<NewsArticle> first = client.fetchArticles(new URL(mServer.url("/search?q=a")), new RequestToken());
+        long start = System.nanoTime();
+        List<NewsArticle> second = client.fetchArticles(new URL(mServer.url("/search?q=b")), new RequestToken());
+        long millis = (System.nanoTime() - start) / 1000000L;
+
+        assertNull(first);
+        assertNotNull(second);
+        assertTrue(millis + " ms", millis >= 900);
+        assertEquals(1, scheduler.getRateLimitedCount());
+        assertEquals(1, mFeed.mRejected.get());
+    }
+
+    /**
+     * Fire a burst of different requests at once and return how many of them failed.
+     */
+    private int failedRequests(final NewsHttpClient client, final String query) throws Exception {
+        List<Future<List<NewsArticle>>> results = new ArrayList<>();
+        for (int i = 0; i < BURST; i++) {
+            final URL url = new URL(mServer.url("/search?q=" + query + "&page=" + (i + 1)));
+            results.add(mExecutor.submit(new Callable<List<NewsArticle>>() {
+                @Override
+                public List<NewsArticle> call() throws IOException {
+                    return client.fetchArticles(url, new RequestToken());
+                }
+            }));
+        }
+        int failed = 0;
+        for (Future<List<NewsArticle>> result : results) {
+            if (result.get(10, TimeUnit.SECONDS) == null) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    private Future<?> acquireInBackground(final RequestScheduler scheduler, final RequestToken token,
+                                          final List<RequestScheduler.Priority> granted) {
+        return mExecutor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                assertTrue(scheduler.acquire(token));
+                granted.add(token.getPriority());
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Serves a recorded response to at most {@link #QUOTA} requests within any
+     * {@link #QUOTA_WINDOW_MILLIS}, and answers the rest with 429 Too Many Requests.
+     */
+    private static class QuotaFeed implements LocalGuardianServer.Responder {
+
+        private final byte[] mBody;
+        private final LinkedList<Long> mServedAtNanos = new LinkedList<>();
+        final AtomicInteger mRejected = new AtomicInteger();
+        volatile int mRetryAfterSeconds;
+
+        QuotaFeed(byte[] body) {
+            mBody = body;
+        }
+
+        /**
+         * Use up the whole quota of the current window.
+         */
+        synchronized void exhaust() {
+            for (int i = 0; i < QUOTA; i++) {
+                mServedAtNanos.add(System.nanoTime());
+            }
+        }
+
+        private synchronized boolean admit() {
+            long now = System.nanoTime();
+            while (!mServedAtNanos.isEmpty()
+                    && now - mServedAtNanos.getFirst() >= QUOTA_WINDOW_MILLIS * 1000000L) {
+                mServedAtNanos.removeFirst();
+            }
+            if (mServedAtNanos.size() >= QUOTA) {
+                return false;
+            }
+            mServedAtNanos.add(now);
+            return true;
+        }
+
+        @Override
+        public void respond(HttpExchange exchange) throws IOException {
+            if (admit()) {
+                LocalGuardianServer.send(exchange, 200, mBody);
+                return;
+            }
+            mRejected.incrementAndGet();
+            if (mRetryAfterSeconds > 0) {
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(mRetryAfterSeconds));
+            }
+            LocalGuardianServer.send(exchange, 429, new byte[0]);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.android.newsfeed;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResilientFetcherTest {
+
+    private static final ResilientFetcher.Attempt HTTP = new ResilientFetcher.Attempt() {
+        @Override
+        public List<NewsArticle> attempt(String requestUrl, RequestToken token, int timeoutMillis)
+                throws IOException {
+            return QueryUtils.makeHttpRequest(new URL(requestUrl), token, timeoutMillis);
+        }
+    };
+
+    private LocalGuardianServer mServer;
+    private FaultyFeed mFeed;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new LocalGuardianServer();
+        mFeed = new FaultyFeed(Fixtures.searchResponse(10));
+        mServer.setResponder(mFeed);
+        RequestScheduler.getDefault().reset();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void serverErrors_areRetriedUntilTheySucceed() {
+        RecordingPolicy policy = new RecordingPolicy(3, 20, 100);
+        ResilientFetcher fetcher = new ResilientFetcher(HTTP, policy, 10000, 5, 30000);
+        mFeed.failWith(503, 502);
+
+        List<NewsArticle> newsArticles = fetcher.fetch(mServer.url("/search?q=retry"), new RequestToken());
+
+        assertNotNull(newsArticles);
+        assertEquals(10, newsArticles.size());
+        assertEquals(3, mServer.getRequestCount());
+        assertEquals(2, fetcher.getRetryCount());
+        // Drawn below a bound that doubles with every attempt.
+        assertEquals(2, policy.mDelays.size());
+        assertTrue(policy.mDelays.get(0) + " ms", policy.mDelays.get(0) < 20);
+        assertTrue(policy.mDelays.get(1) + " ms", policy.mDelays.get(1) < 40);
+    }
+
+    @Test
+    public void clientErrors_areNotRetried() {
+        ResilientFetcher fetcher = newFetcher(3, 10000);
+        mFeed.failWith(400);
+
+        assertNull(fetcher.fetch(mServer.url("/search?q=bad"), new RequestToken()));
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(0, fetcher.getRetryCount());
+    }
+
+    @Test
+    public void tooManyRequests_waitsOutRetryAfter() {
+        RecordingPolicy policy = new RecordingPolicy(2, 20, 100);
+        ResilientFetcher fetcher = new ResilientFetcher(HTTP, policy, 10000, 5, 30000);
+        mFeed.failWith(429);
+        mFeed.setRetryAfter("1");
+
+        List<NewsArticle> newsArticles = fetcher.fetch(mServer.url("/search?q=busy"), new RequestToken());
+
+        assertNotNull(newsArticles);
+        assertEquals(2, mServer.getRequestCount());
+        // The server's second, not the policy's own few milliseconds.
+        assertEquals(Arrays.asList(1000L), policy.mDelays);
+    }
+
+    @Test
+    public void retryAfter_isSecondsOrHttpDate() {
+        assertEquals(120000, ApiException.parseRetryAfter("120", 0));
+        long now = 784111777000L - 30000;
+        assertEquals(30000, ApiException.parseRetryAfter("Sun, 06 Nov 1994 08:49:37 GMT", now));
+        assertEquals(0, ApiException.parseRetryAfter("soon", now));
+        assertEquals(0, ApiException.parseRetryAfter(null, now));
+    }
+
+    @Test
+    public void hangingServer_isBoundedByTheDeadline() {
+        final List<Integer> timeouts = Collections.synchronizedList(new ArrayList<Integer>());
+        ResilientFetcher.Attempt attempt = new ResilientFetcher.Attempt() {
+            @Override
+            public List<NewsArticle> attempt(String requestUrl, RequestToken token, int timeoutMillis)
+                    throws IOException {
+                timeouts.add(timeoutMillis);
+                return HTTP.attempt(requestUrl, token, timeoutMillis);
+            }
+        };
+        RecordingPolicy policy = new RecordingPolicy(3, 20, 100);
+        ResilientFetcher fetcher = new ResilientFetcher(attempt, policy, 400, 5, 30000);
+        mFeed.hangFor(5000);
+
+        List<NewsArticle> newsArticles = fetcher.fetch(mServer.url("/search?q=hang"), new RequestToken());
+
+        assertNull(newsArticles);
+        assertEquals(1, fetcher.getDeadlineExceededCount());
+        // The one attempt could only wait for what was left of the deadline, and no retry
+        // was started once it had passed.
+        assertEquals(1, timeouts.size());
+        assertTrue(timeouts.get(0) + " ms", timeouts.get(0) <= 400);
+        assertTrue(policy.mDelays.isEmpty());
+    }
+
+    @Test
+    public void failingServer_opensBreakerThenRecovers() throws Exception {
+        ResilientFetcher fetcher = new ResilientFetcher(HTTP, new RetryPolicy(1, 10, 10, new Random(1)),
+                10000, 2, 300);
+        String url = mServer.url("/search?q=down");
+        mServer.setResponder(LocalGuardianServer.status(503));
+
+        assertNull(fetcher.fetch(url, new RequestToken()));
+        assertNull(fetcher.fetch(url, new RequestToken()));
+        assertEquals(CircuitBreaker.State.OPEN, fetcher.breakerFor(url).getState());
+
+        // Turned away, without a request reaching the server.
+        assertNull(fetcher.fetch(url, new RequestToken()));
+        assertEquals(2, mServer.getRequestCount());
+        assertEquals(1, fetcher.getRejectedCount());
+
+        // Once the breaker has been open long enough, a trial request gets through.
+        mServer.setResponder(mFeed);
+        Thread.sleep(350);
+        assertNotNull(fetcher.fetch(url, new RequestToken()));
+        assertEquals(CircuitBreaker.State.CLOSED, fetcher.breakerFor(url).getState());
+    }
+
+    @Test
+    public void cancellingTheToken_stopsRetrying() throws Exception {
+        final RequestToken token = new RequestToken();
+        final List<Long> delays = new ArrayList<>();
+        final List<Boolean> slept = new ArrayList<>();
+        ResilientFetcher fetcher = new ResilientFetcher(HTTP, new RetryPolicy(5, 2000, 2000, new Random(1)) {
+            @Override
+            public long delayAfter(int attempt, long retryAfterMillis) {
+                return 2000;
+            }
+
+            @Override
+            public boolean sleep(long millis, RequestToken callToken) {
+                // The user gives up while the retry is pending, which ends the wait at once.
+                delays.add(millis);
+                token.cancel();
+                slept.add(super.sleep(millis, callToken));
+                return slept.get(0);
+            }
+        }, 10000, 5, 30000);
+        mServer.setResponder(LocalGuardianServer.status(503));
+
+        assertNull(fetcher.fetch(mServer.url("/search?q=cancel"), token));
+        assertEquals(Arrays.asList(2000L), delays);
+        assertEquals(Arrays.asList(false), slept);
+        assertEquals(1, mServer.getRequestCount());
+        assertFalse(fetcher.breakerFor(mServer.url("/")).getState() == CircuitBreaker.State.OPEN);
+    }
+
+    private static ResilientFetcher newFetcher(int maxAttempts, long deadlineMillis) {
+        return new ResilientFetcher(HTTP, new RetryPolicy(maxAttempts, 20, 100, new Random(1)),
+                deadlineMillis, 5, 30000);
+    }
+
+    /**
+     * Records the delays it is asked to wait between attempts instead of waiting them out.
+     */
+    private static class RecordingPolicy extends RetryPolicy {
+
+        final List<Long> mDelays = Collections.synchronizedList(new ArrayList<Long>());
+
+        RecordingPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+            super(maxAttempts, baseDelayMillis, maxDelayMillis, new Random(1));
+        }
+
+        @Override
+        public boolean sleep(long millis, RequestToken token) {
+            mDelays.add(millis);
+            return !token.isCancelled();
+        }
+    }
+
+    /**
+     * Serves a recorded response after failing the first requests with the given statuses, or
+     * after not answering for a while.
+     */
+    private static class FaultyFeed implements LocalGuardianServer.Responder {
+
+        private final byte[] mBody;
+        private final ConcurrentLinkedQueue<Integer> mFailures = new ConcurrentLinkedQueue<>();
+        private volatile String mRetryAfter;
+        private volatile long mHangMillis;
+
+        FaultyFeed(byte[] body) {
+            mBody = body;
+        }
+
+        void failWith(Integer... statusCodes) {
+            for (Integer statusCode : statusCodes) {
+                mFailures.add(statusCode);
+            }
+        }
+
+        void setRetryAfter(String retryAfter) {
+            mRetryAfter = retryAfter;
+        }
+
+        void hangFor(long millis) {
+            mHangMillis = millis;
+        }
+
+        @Override
+        public void respond(HttpExchange exchange) throws IOException {
+            if (mHangMillis > 0) {
+                try {
+                    Thread.sleep(mHangMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            Integer failure = mFailures.poll();
+            if (failure != null) {
+                if (mRetryAfter != null) {
+                    exchange.getResponseHeaders().set("Retry-After", mRetryAfter);
+                }
+                LocalGuardianServer.send(exchange, failure, new byte[0]);
+            } else {
+                LocalGuardianServer.send(exchange, 200, mBody);
+            }
+        }
+    }
+}
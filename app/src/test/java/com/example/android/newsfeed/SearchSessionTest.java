@@ -0,0 +1,29 @@
+package com.example.android.newsfeed;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SearchSessionTest {
+
+    @Test
+    public void normalize_collapsesWhitespaceAndCase() {
+        assertEquals("climate change", SearchSession.normalize("  Climate   CHANGE "));
+        assertEquals("", SearchSession.normalize(null));
+    }
+
+    @Test
+    public void counters_trackSessionTraffic() {
+        SearchSession session = new SearchSession();
+        for (int i = 0; i < 13; i++) {
+            session.onRequestCoalesced();
+        }
+        session.onRequestIssued();
+        session.onRequestIssued();
+        session.onRequestCancelled();
+
+        assertEquals(2, session.getRequestsIssued());
+        assertEquals(1, session.getRequestsCancelled());
+        assertEquals(13, session.getRequestsCoalesced());
+    }
+}
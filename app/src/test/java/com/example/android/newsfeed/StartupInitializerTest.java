@@ -0,0 +1,94 @@
+package com.example.android.newsfeed;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the launch's initializers on the JVM, with the first request going to a
+ * {@link LocalGuardianServer}. How long a launch takes is measured on a device by
+ * StartupBenchmark.
+ */
+public class StartupInitializerTest {
+
+    private LocalGuardianServer mServer;
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new LocalGuardianServer();
+        mServer.setResponder(LocalGuardianServer.ok(Fixtures.searchResponse(50)));
+        mExecutor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        mServer.shutdown();
+    }
+
+    @Test
+    public void preconnect_isPickedUpByTheFirstRequest() throws Exception {
+        NewsHttpClient client = new NewsHttpClient();
+
+        assertTrue(client.preconnect(new URL(mServer.url("/")), 5000));
+        List<NewsArticle> newsArticles = client.fetchArticles(
+                new URL(mServer.url("/search?q=launch")), new RequestToken());
+
+        assertEquals(50, newsArticles.size());
+        assertEquals(2, mServer.getRequestCount());
+        assertEquals(1, mServer.getConnectionCount());
+    }
+
+    @Test
+    public void failingInitializer_doesNotHoldUpTheOthers() throws Exception {
+        StartupInitializer initializer = new StartupInitializer(mExecutor);
+        final boolean[] ran = new boolean[1];
+
+        initializer.start("broken", new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("No disk");
+            }
+        });
+        initializer.start("working", new Runnable() {
+            @Override
+            public void run() {
+                ran[0] = true;
+            }
+        });
+
+        assertTrue(initializer.awaitAll(5000));
+        assertTrue(ran[0]);
+    }
+
+    @Test
+    public void backgroundPreconnect_isReusedByTheFirstLoad() throws Exception {
+        final NewsHttpClient client = new NewsHttpClient();
+        final URL root = new URL(mServer.url("/"));
+        StartupInitializer initializer = new StartupInitializer(mExecutor);
+
+        initializer.start("preconnect", new Runnable() {
+            @Override
+            public void run() {
+                client.preconnect(root, 5000);
+            }
+        });
+        // The first load needs what the initializers set up.
+        assertTrue(initializer.awaitAll(5000));
+        List<NewsArticle> newsArticles = client.fetchArticles(
+                new URL(mServer.url("/search?q=launch")), new RequestToken());
+
+        assertEquals(50, newsArticles.size());
+        assertEquals(2, mServer.getRequestCount());
+        assertEquals(1, mServer.getConnectionCount());
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.android.newsfeed;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates large, repeatable feeds of made-up articles for scale tests and benchmarks.
+ * <p>
+ * Headline words are drawn from a Zipf distribution over a 20,000 word vocabulary, so a few
+ * words are very common and most are rare, as in real headlines. The commonest words are real
+ * ones, so queries such as "climate ch" find something.
+ */
+public final class SyntheticArticles {
+
+    private static final String[] COMMON_WORDS = ("the of to in and a for on as after with over "
+            + "climate change talks stall ministers clash emissions targets markets rally central "
+            + "bank holds rates steady tech giants face new scrutiny regulators storm leaves "
+            + "thousands without power across northern england scientists discover vast coral "
+            + "reef coast election campaign enters final week polls tightening").split(" ");
+
+    private static final String[] SECTIONS = {
+            "world", "business", "technology", "politics", "environment", "sport", "culture", "science"};
+
+    private static final int VOCABULARY_SIZE = 20000;
+
+    private SyntheticArticles() {
+    }
+
+    /**
+     * Return the given number of articles, newest first. The same count and seed always give
+     * the same articles.
+     */
+    public static List<NewsArticle> generate(int count, long seed) {
+        Random random = new Random(seed);
+        String[] vocabulary = vocabulary(random);
+        double[] cumulative = zipfCumulative(vocabulary.length);
+
+        List<NewsArticle> newsArticles = new ArrayList<>(count);
+        long time = PublicationDates.parse("2017-04-01T12:00:00Z");
+        StringBuilder headline = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            headline.setLength(0);
+            int words = 6 + random.nextInt(8);
+            for (int w = 0; w < words; w++) {
+                int index = Arrays.binarySearch(cumulative, random.nextDouble());
+                String word = vocabulary[Math.min(index < 0 ? -index - 1 : index, vocabulary.length - 1)];
+                if (w > 0) {
+                    headline.append(' ');
+                }
+                headline.append(w == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+            }
+            time -= 60000 + random.nextInt(600000);
+            String section = SECTIONS[random.nextInt(SECTIONS.length)];
+            String url = "https://www.theguardian.com/" + section + "/2017/apr/01/article-" + seed + "-" + i;
+            String thumbnail = i % 9 == 4 ? null
+                    : "https://media.guim.co.uk/" + Long.toHexString(random.nextLong()) + "/0_0_3000_1800/500.jpg";
+            newsArticles.add(new NewsArticle(thumbnail, headline.toString(), time, url));
+        }
+        return newsArticles;
+    }
+
+    /**
+     * Return the given number of articles, every tenth of them followed by an edited copy under
+     * its URL plus "-copy": marked live, with a word added, or in other case and punctuation.
+     */
+    public static List<NewsArticle> generateWithEditedCopies(int count, long seed) {
+        List<NewsArticle> generated = generate(count * 10 / 11, seed);
+        List<NewsArticle> newsArticles = new ArrayList<>(count);
+        for (int i = 0; i < generated.size(); i++) {
+            NewsArticle original = generated.get(i);
+            newsArticles.add(original);
+            if (i % 10 != 0) {
+                continue;
+            }
+            String headline = original.getHeadline();
+            String edited;
+            switch (i / 10 % 3) {
+                case 0:
+                    edited = headline + " \u2013 live";
+                    break;
+                case 1:
+                    int space = headline.indexOf(' ');
+                    edited = headline.substring(0, space) + " new" + headline.substring(space);
+                    break;
+                default:
+                    edited = headline.toUpperCase(Locale.US).replace(' ', ',') + "!";
+                    break;
+            }
+            newsArticles.add(new NewsArticle(null, edited, original.getPublicationTime(),
+                    original.getUrl() + "-copy"));
+        }
+        return newsArticles;
+    }
+
+    private static String[] vocabulary(Random random) {
+        String[] vocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < vocabulary.length; i++) {
+            if (i < COMMON_WORDS.length) {
+                vocabulary[i] = COMMON_WORDS[i];
+            } else {
+                char[] letters = new char[4 + random.nextInt(7)];
+                for (int c = 0; c < letters.length; c++) {
+                    letters[c] = (char) ('a' + random.nextInt(26));
+                }
+                vocabulary[i] = new String(letters);
+            }
+        }
+        return vocabulary;
+    }
+
+    private static double[] zipfCumulative(int size) {
+        double[] cumulative = new double[size];
+        double total = 0;
+        for (int rank = 1; rank <= size; rank++) {
+            total += 1.0 / rank;
+            cumulative[rank - 1] = total;
+        }
+        for (int i = 0; i < size; i++) {
+            cumulative[i] /= total;
+        }
+        return cumulative;
+    }
+}
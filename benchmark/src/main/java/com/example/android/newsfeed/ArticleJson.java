@@ -0,0 +1,84 @@
+package com.example.android.newsfeed;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * The buffered way of reading a Guardian search response: the whole body into a String, then
+ * into a JSON object tree, then into {@link NewsArticle}s.
+ * <p>
+ * The app reads responses into a {@link LazyArticleList} instead, which decodes each result
+ * with {@link NewsArticleParser} as it is shown. This is only kept for {@link ParseBenchmark}
+ * to compare against.
+ */
+final class ArticleJson {
+
+    private ArticleJson() {
+    }
+
+    /**
+     * Parse the given JSON response, adding each article to the list. Articles read before a
+     * problem was found stay in the list.
+     */
+    static void parseTree(String newsArticleJSON, List<NewsArticle> newsArticles) throws JSONException {
+        // Create a JSONObject from the JSON response string
+        JSONObject baseJsonResponse = new JSONObject(newsArticleJSON);
+
+        JSONObject response = baseJsonResponse.getJSONObject("response");
+
+        // Extract the JSONArray associated with the key called "results",
+        // which represents a list of features (or newsArticles).
+        JSONArray newsArticleArray = response.getJSONArray("results");
+
+        // For each newsArticle in the newsArticleArray, create an {@link NewsArticle} object
+        for (int i = 0; i < newsArticleArray.length(); i++) {
+
+            // Get a single newsArticle at position i within the list of newsArticles
+            JSONObject currentNewsArticle = newsArticleArray.getJSONObject(i);
+            String imageId;
+            if (currentNewsArticle.has("fields")) {
+                JSONObject fields = currentNewsArticle.getJSONObject("fields");
+                imageId = fields.getString("thumbnail");
+            } else {
+                imageId = null;
+            }
+            String headline = currentNewsArticle.getString("webTitle");
+            long publicationTime = PublicationDates.parse(
+                    currentNewsArticle.getString("webPublicationDate"));
+            String url = currentNewsArticle.getString("webUrl");
+
+            // Create a new {@link NewsArticle} object with the imageId, headline,
+            // publicationDate, and url from the JSON response.
+            NewsArticle newsArticle = new NewsArticle(imageId, headline, publicationTime, url);
+
+            // Add the new {@link NewsArticle} to the list of newsArticles.
+            newsArticles.add(newsArticle);
+        }
+    }
+
+    /**
+     * Convert the {@link InputStream} into a String which contains the
+     * whole JSON response from the server.
+     */
+    static String readFully(InputStream inputStream) throws IOException {
+        StringBuilder output = new StringBuilder();
+        if (inputStream != null) {
+            InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
+            BufferedReader reader = new BufferedReader(inputStreamReader);
+            String line = reader.readLine();
+            while (line != null) {
+                output.append(line);
+                line = reader.readLine();
+            }
+        }
+        return output.toString();
+    }
+}
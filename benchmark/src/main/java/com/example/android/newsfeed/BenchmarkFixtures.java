@@ -0,0 +1,36 @@
+package com.example.android.newsfeed;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Loads the recorded Guardian responses the benchmarks run over.
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Return the raw bytes of a Guardian search response holding the given number of results.
+     */
+    static byte[] searchResponse(int resultCount) throws IOException {
+        String name = "fixtures/guardian-search-" + resultCount + ".json";
+        InputStream inputStream = BenchmarkFixtures.class.getClassLoader().getResourceAsStream(name);
+        if (inputStream == null) {
+            throw new IOException("Missing fixture " + name);
+        }
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.android.newsfeed;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to group feeds of 10k and 50k made-up headlines with {@link HeadlineClusterer}, a tenth
+ * of which come twice: once as made and once edited, under another URL. Without the buckets
+ * every pair would be compared, 1.25 billion of them for the larger feed, so five times the
+ * headlines should cost about five times as much, not twenty-five.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClusterBenchmark {
+
+    @Param({"10000", "50000"})
+    public int headlines;
+
+    private List<NewsArticle> mNewsArticles;
+
+    @Setup
+    public void setUp() {
+        mNewsArticles = SyntheticArticles.generateWithEditedCopies(headlines, headlines);
+    }
+
+    @Benchmark
+    public List<HeadlineClusterer.Group> group() {
+        return HeadlineClusterer.group(mNewsArticles);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.android.newsfeed;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency of the on-device {@link ArticleIndex}, over 10k and 100k made-up articles.
+ * The index size is printed when each one is built.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexBenchmark {
+
+    /**
+     * Number of results a search-as-you-type query asks for: one page.
+     */
+    private static final int LIMIT = 20;
+
+    @Param({"10000", "100000"})
+    public int articles;
+
+    /**
+     * A common word, a word and a prefix, a single letter and a term that isn't there.
+     */
+    @Param({"climate", "climate ch", "s", "zq"})
+    public String query;
+
+    private ArticleIndex mIndex;
+
+    @Setup
+    public void setUp() {
+        List<NewsArticle> newsArticles = SyntheticArticles.generate(articles, articles);
+        // Unbounded, so every article stays in.
+        mIndex = new ArticleIndex(Integer.MAX_VALUE, Long.MAX_VALUE);
+        mIndex.put("synthetic", newsArticles);
+        System.out.println("\nArticleIndex of " + articles + " articles: " + mIndex.getTermCount()
+                + " terms, " + mIndex.getPostingCount() + " postings, ~"
+                + mIndex.estimateSizeBytes() / 1024 + " KB");
+    }
+
+    @Benchmark
+    public List<NewsArticle> search() {
+        return mIndex.search(query, LIMIT);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.android.newsfeed;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What building and reading {@link NewsArticle}s costs, apart from parsing the JSON around them.
+ * Every operation works through all 200 articles of one response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+
+    private String[] mImageIds;
+    private String[] mHeadlines;
+    private String[] mDates;
+    private long[] mTimes;
+    private String[] mUrls;
+    private List<NewsArticle> mNewsArticles;
+
+    @Setup
+    public void setUp() throws IOException {
+        mNewsArticles = NewsArticleParser.readArticles(
+                new ByteArrayInputStream(BenchmarkFixtures.searchResponse(200)));
+        int count = mNewsArticles.size();
+        mImageIds = new String[count];
+        mHeadlines = new String[count];
+        mDates = new String[count];
+        mTimes = new long[count];
+        mUrls = new String[count];
+        for (int i = 0; i < count; i++) {
+            NewsArticle newsArticle = mNewsArticles.get(i);
+            mImageIds[i] = newsArticle.hasThumbnail() ? newsArticle.getImageId() : null;
+            mHeadlines[i] = newsArticle.getHeadline();
+            mTimes[i] = newsArticle.getPublicationTime();
+            mDates[i] = PublicationDates.format(mTimes[i]);
+            mUrls[i] = newsArticle.getUrl();
+        }
+    }
+
+    /**
+     * Constructing the articles, which splits their URLs into a shared prefix and a path.
+     */
+    @Benchmark
+    public void construct(Blackhole blackhole) {
+        for (int i = 0; i < mHeadlines.length; i++) {
+            blackhole.consume(new NewsArticle(mImageIds[i], mHeadlines[i], mTimes[i], mUrls[i]));
+        }
+    }
+
+    /**
+     * Reading back the URLs, which joins them again.
+     */
+    @Benchmark
+    public void readUrls(Blackhole blackhole) {
+        for (NewsArticle newsArticle : mNewsArticles) {
+            blackhole.consume(newsArticle.getUrl());
+            blackhole.consume(newsArticle.getImageId());
+        }
+    }
+
+    @Benchmark
+    public void parseDates(Blackhole blackhole) {
+        for (String date : mDates) {
+            blackhole.consume(PublicationDates.parse(date));
+        }
+    }
+
+    @Benchmark
+    public void formatDates(Blackhole blackhole) {
+        for (long time : mTimes) {
+            blackhole.consume(PublicationDates.format(time));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.android.newsfeed;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning a response body into {@link NewsArticle}s, for responses of several sizes.
+ * <p>
+ * Each benchmark is run for throughput and as sampled latency, which gives the parse time
+ * percentiles. Run with {@code -prof gc} (the default of the jmh task) for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"10", "50", "200", "1000"})
+    public int results;
+
+    private byte[] mBody;
+    private String mJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        mBody = BenchmarkFixtures.searchResponse(results);
+        mJson = ArticleJson.readFully(new ByteArrayInputStream(mBody));
+    }
+
+    /**
+     * What requests do: pull-parse the body as it is read.
+     */
+    @Benchmark
+    public List<NewsArticle> streaming() throws IOException {
+        return NewsArticleParser.readArticles(new ByteArrayInputStream(mBody));
+    }
+
+    /**
+     * The old request path: read the body into a String, then build a JSON tree from it.
+     */
+    @Benchmark
+    public List<NewsArticle> tree() throws IOException, JSONException {
+        List<NewsArticle> newsArticles = new ArrayList<>();
+        ArticleJson.parseTree(ArticleJson.readFully(new ByteArrayInputStream(mBody)), newsArticles);
+        return newsArticles;
+    }
+
+    /**
+     * Reading the body into a String alone, as the buffered path does.
+     */
+    @Benchmark
+    public String readFully() throws IOException {
+        return ArticleJson.readFully(new ByteArrayInputStream(mBody));
+    }
+
+    /**
+     * Building the JSON tree and the articles from a String that has already been read.
+     */
+    @Benchmark
+    public List<NewsArticle> treeFromString() throws JSONException {
+        List<NewsArticle> newsArticles = new ArrayList<>();
+        ArticleJson.parseTree(mJson, newsArticles);
+        return newsArticles;
+    }
+}